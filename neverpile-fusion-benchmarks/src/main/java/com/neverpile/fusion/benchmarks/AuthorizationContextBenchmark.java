@@ -0,0 +1,70 @@
+package com.neverpile.fusion.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.neverpile.common.authorization.api.AuthorizationContext;
+import com.neverpile.common.authorization.policy.impl.CompositeAuthorizationContext;
+import com.neverpile.common.authorization.policy.impl.PrefixAuthorizationContext;
+import com.neverpile.fusion.authorization.CollectionAuthorizationContextContributor;
+import com.neverpile.fusion.model.Collection;
+
+/**
+ * Measures the construction of the authorization context of a collection and the resolution of
+ * the values typically referenced by access policies, the way the
+ * {@link com.neverpile.fusion.authorization.CollectionAuthorizationService} does it for every
+ * request. The collection metadata is padded with the given number of additional entries.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthorizationContextBenchmark {
+  @Param({
+      "10", "100", "1000"
+  })
+  public int metadataEntries;
+
+  private CollectionAuthorizationContextContributor contributor;
+
+  private Collection collection;
+
+  @Setup
+  public void setup() {
+    ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    contributor = new CollectionAuthorizationContextContributor(objectMapper);
+
+    collection = Fixtures.createCollection(objectMapper, "aCollection", 0);
+    ObjectNode extra = ((ObjectNode) collection.getMetadata()).putObject("extra");
+    for (int i = 0; i < metadataEntries; i++)
+      extra.put("key-" + i, "value-" + i);
+  }
+
+  @Benchmark
+  public void resolve(final Blackhole blackhole) {
+    CompositeAuthorizationContext composite = new CompositeAuthorizationContext();
+    composite.subContext(contributor.contributeAuthorizationContext(collection));
+    AuthorizationContext context = new PrefixAuthorizationContext("collection", composite);
+
+    blackhole.consume(context.resolveValue("collection.type"));
+    blackhole.consume(context.resolveValue("collection.state"));
+    blackhole.consume(context.resolveValue("collection.metadata.customer.id"));
+    blackhole.consume(context.resolveValue("collection.metadata.extra.key-0"));
+  }
+}
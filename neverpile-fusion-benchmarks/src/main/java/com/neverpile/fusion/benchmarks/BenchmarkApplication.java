@@ -0,0 +1,79 @@
+package com.neverpile.fusion.benchmarks;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.boot.Banner;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.XADataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.jta.JtaAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+
+import com.neverpile.fusion.configuration.FusionModelMapperConfiguration;
+import com.neverpile.fusion.configuration.JacksonConfiguration;
+import com.neverpile.fusion.jpa.collection.JPACollectionServiceConfiguration;
+
+/**
+ * The application context of the benchmarks which depend on the Jackson, ModelMapper or JPA set-up
+ * of the application. Collections are persisted to an embedded H2 database using plain JPA
+ * transactions instead of the JTA set-up of the application.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration(exclude = {
+    JtaAutoConfiguration.class, XADataSourceAutoConfiguration.class
+})
+@Import({
+    JacksonConfiguration.class, FusionModelMapperConfiguration.class, JPACollectionServiceConfiguration.class
+})
+public class BenchmarkApplication {
+  /**
+   * A clock advancing by one millisecond upon every reading, so that consecutive versions of a
+   * collection never share a version timestamp.
+   */
+  private static final class TickingClock extends Clock {
+    private final AtomicLong millis = new AtomicLong(System.currentTimeMillis());
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(final ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return Instant.ofEpochMilli(millis.incrementAndGet());
+    }
+  }
+
+  @Bean
+  @Primary
+  public Clock tickingClock() {
+    return new TickingClock();
+  }
+
+  /**
+   * Start the application context.
+   *
+   * @return the context
+   */
+  public static ConfigurableApplicationContext start() {
+    return new SpringApplicationBuilder(BenchmarkApplication.class) //
+        .web(WebApplicationType.NONE) //
+        .bannerMode(Banner.Mode.OFF) //
+        .properties("logging.level.root=WARN", "spring.jpa.open-in-view=false") //
+        .run();
+  }
+}
@@ -0,0 +1,28 @@
+package com.neverpile.fusion.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openjdk.jmh.Main;
+
+/**
+ * Runs the benchmarks, accepting the usual JMH command line options. Unless specified otherwise,
+ * the results are written to <code>jmh-result.json</code> in JMH's JSON format, so that runs can be
+ * compared with tools like the JMH visualizer.
+ */
+public final class BenchmarkMain {
+  private BenchmarkMain() {
+    // static only
+  }
+
+  public static void main(final String[] args) throws Exception {
+    List<String> arguments = new ArrayList<>(Arrays.asList(args));
+    if (!arguments.contains("-rf"))
+      arguments.addAll(Arrays.asList("-rf", "json"));
+    if (!arguments.contains("-rff"))
+      arguments.addAll(Arrays.asList("-rff", "jmh-result.json"));
+
+    Main.main(arguments.toArray(new String[0]));
+  }
+}
@@ -0,0 +1,71 @@
+package com.neverpile.fusion.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.jpa.collection.CollectionEntity;
+import com.neverpile.fusion.model.Collection;
+
+/**
+ * Measures the mapping of collections to and from {@link CollectionEntity} using the model mapper
+ * configured by the application.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CollectionEntityMappingBenchmark {
+  @Param({
+      "10", "100", "1000"
+  })
+  public int elements;
+
+  private ConfigurableApplicationContext context;
+
+  private ModelMapper modelMapper;
+
+  private Collection collection;
+
+  private CollectionEntity entity;
+
+  @Setup
+  public void setup() {
+    context = BenchmarkApplication.start();
+    modelMapper = context.getBean(ModelMapper.class);
+
+    collection = Fixtures.createCollection(context.getBean(ObjectMapper.class), "aCollection", elements);
+    entity = modelMapper.map(collection, CollectionEntity.class);
+  }
+
+  @TearDown
+  public void teardown() {
+    context.close();
+  }
+
+  @Benchmark
+  public CollectionEntity toEntity() {
+    return modelMapper.map(collection, CollectionEntity.class);
+  }
+
+  @Benchmark
+  public Collection fromEntity() {
+    return modelMapper.map(entity, Collection.class);
+  }
+}
@@ -0,0 +1,70 @@
+package com.neverpile.fusion.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.model.Collection;
+
+/**
+ * Measures the JSON serialization and deserialization of collections using the object mapper
+ * configured by the application.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CollectionJsonBenchmark {
+  @Param({
+      "10", "100", "1000"
+  })
+  public int elements;
+
+  private ConfigurableApplicationContext context;
+
+  private ObjectMapper objectMapper;
+
+  private Collection collection;
+
+  private byte[] json;
+
+  @Setup
+  public void setup() throws IOException {
+    context = BenchmarkApplication.start();
+    objectMapper = context.getBean(ObjectMapper.class);
+
+    collection = Fixtures.createCollection(objectMapper, "aCollection", elements);
+    json = objectMapper.writeValueAsBytes(collection);
+  }
+
+  @TearDown
+  public void teardown() {
+    context.close();
+  }
+
+  @Benchmark
+  public byte[] serialize() throws IOException {
+    return objectMapper.writeValueAsBytes(collection);
+  }
+
+  @Benchmark
+  public Collection deserialize() throws IOException {
+    return objectMapper.readValue(json, Collection.class);
+  }
+}
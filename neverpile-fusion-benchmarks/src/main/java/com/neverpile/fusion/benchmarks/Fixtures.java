@@ -0,0 +1,145 @@
+package com.neverpile.fusion.benchmarks;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+import org.springframework.http.MediaType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.Collection.State;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.View;
+import com.neverpile.fusion.model.rules.Rule;
+import com.neverpile.fusion.model.rules.grouping.GroupingRule;
+import com.neverpile.fusion.model.rules.javascript.JavascriptRule;
+import com.neverpile.fusion.model.spec.Artifact;
+
+/**
+ * The collections and collection types the benchmarks operate on.
+ */
+final class Fixtures {
+  static final String TYPE_ID = "aBenchmarkType";
+
+  private static final String[] TAGS = {
+      "invoice", "contract", "letter", "form", "note"
+  };
+
+  private Fixtures() {
+    // static only
+  }
+
+  /**
+   * Create a collection resembling a typical dossier: every element refers to a PDF artifact and
+   * carries a few tags and metadata entries.
+   *
+   * @param objectMapper the object mapper used to create the metadata
+   * @param id the collection id
+   * @param elements the number of elements
+   * @return the collection
+   */
+  static Collection createCollection(final ObjectMapper objectMapper, final String id, final int elements) {
+    Instant now = Instant.now();
+
+    Collection c = new Collection();
+    c.setId(id);
+    c.setTypeId(TYPE_ID);
+    c.setState(State.Active);
+    c.setCreatedBy("benchmark");
+    c.setDateCreated(now);
+    c.setDateModified(now);
+
+    ObjectNode metadata = objectMapper.createObjectNode();
+    metadata.put("title", "A benchmark collection");
+    metadata.putObject("customer").put("id", 4711).put("name", "ACME Corp.");
+    metadata.putArray("keywords").add("benchmark").add("jmh");
+    c.setMetadata(metadata);
+
+    for (int i = 0; i < elements; i++)
+      c.getElements().add(createElement(objectMapper, i, now));
+
+    return c;
+  }
+
+  private static Element createElement(final ObjectMapper objectMapper, final int i, final Instant now) {
+    Element e = new Element();
+    e.setId("element-" + i);
+    e.setDateCreated(now);
+    e.setDateModified(now);
+    e.setTags(Arrays.asList(TAGS[i % TAGS.length], "page-count-" + (i % 3)));
+    e.setMetadata(objectMapper.createObjectNode() //
+        .put("title", "Document " + i) //
+        .put("category", "category-" + (i % 7)) //
+        .put("pages", i % 20 + 1));
+
+    Artifact artifact = new Artifact();
+    artifact.setContentURI("https://documents.example.com/content/" + i);
+    artifact.setMediaType(MediaType.APPLICATION_PDF);
+    e.setSpecification(artifact);
+
+    return e;
+  }
+
+  /**
+   * Create a collection type with three views: one grouping the elements by tag, one by category
+   * and one listing all elements sorted by a tree rule. The grouping views are either defined
+   * by script rules or by equivalent native grouping rules.
+   *
+   * @param grouping whether to use grouping rules instead of script rules where possible
+   * @return the collection type
+   */
+  static CollectionType createCollectionType(final boolean grouping) {
+    CollectionType t = new CollectionType();
+    t.setId(TYPE_ID);
+    t.setName("A benchmark type");
+
+    t.getGlobalRules().add(script("Title", "titleVsualization('text', collection.metadata.title);"));
+
+    t.getViews().add(view("By tag", grouping //
+        ? groupBy("By tag", "$.tags[*]") //
+        : script("By tag", "tags.forEach(function(t) {" //
+            + "  createNode(t, element.id).withElement(element)" //
+            + "    .withVisualization('text', element.metadata.title);" //
+            + "});")));
+
+    t.getViews().add(view("By category", grouping //
+        ? groupBy("By category", "$.metadata.category") //
+        : script("By category", "createNode(element.metadata.category, element.id).withElement(element)" //
+            + "  .withVisualization('text', element.metadata.title);")));
+
+    View all = view("All", script("All", "createElementNode(element, 'All')" //
+        + "  .withVisualization('text', element.metadata.title);"));
+    all.getTreeRules().add(script("Sort", "withNode(function(n) {" //
+        + "  n.children.sort(function(a, b) {" //
+        + "    return a.elementId < b.elementId ? -1 : a.elementId > b.elementId ? 1 : 0;" //
+        + "  });" //
+        + "}, 'All');"));
+    t.getViews().add(all);
+
+    return t;
+  }
+
+  private static View view(final String name, final Rule elementRule) {
+    View v = new View();
+    v.setName(name);
+    v.getElementRules().add(elementRule);
+    return v;
+  }
+
+  private static JavascriptRule script(final String name, final String code) {
+    JavascriptRule rule = new JavascriptRule();
+    rule.setName(name);
+    rule.setScriptCode(code);
+    return rule;
+  }
+
+  private static GroupingRule groupBy(final String name, final String selector) {
+    GroupingRule rule = new GroupingRule();
+    rule.setName(name);
+    rule.getGroupBy().add(selector);
+    rule.getElementVisualization().put("text", "${$.metadata.title}");
+    return rule;
+  }
+}
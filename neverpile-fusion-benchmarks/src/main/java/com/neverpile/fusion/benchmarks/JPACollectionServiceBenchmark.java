@@ -0,0 +1,102 @@
+package com.neverpile.fusion.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.api.CollectionSaveResult;
+import com.neverpile.fusion.jpa.collection.JPACollectionService;
+import com.neverpile.fusion.model.Collection;
+
+/**
+ * Measures saving and retrieving collections via the {@link JPACollectionService} backed by an
+ * embedded H2 database. Every invocation of {@link #saveVersion()} adds a version to the same
+ * collection, while {@link #saveNew()} creates a new collection each time. {@link #saveNewBatch()}
+ * creates {@value #BATCH_SIZE} new collections via {@link JPACollectionService#saveAll(List)}; its
+ * score is reported per collection so that it can be compared with {@link #saveNew()}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JPACollectionServiceBenchmark {
+  private static final String COLLECTION_ID = "aCollection";
+
+  private static final int BATCH_SIZE = 100;
+
+  @Param({
+      "10", "100", "1000"
+  })
+  public int elements;
+
+  private ConfigurableApplicationContext context;
+
+  private JPACollectionService collectionService;
+
+  private Collection collection;
+
+  private int sequence;
+
+  @Setup
+  public void setup() {
+    context = BenchmarkApplication.start();
+    collectionService = context.getBean(JPACollectionService.class);
+
+    collection = Fixtures.createCollection(context.getBean(ObjectMapper.class), COLLECTION_ID, elements);
+    collection = collectionService.save(collection);
+  }
+
+  @TearDown
+  public void teardown() {
+    context.close();
+  }
+
+  @Benchmark
+  public Collection saveNew() {
+    Collection c = Fixtures.createCollection(context.getBean(ObjectMapper.class), "new-" + sequence++, 0);
+    c.setElements(collection.getElements());
+    return collectionService.save(c);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public List<CollectionSaveResult> saveNewBatch() {
+    List<Collection> batch = new ArrayList<>(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      Collection c = Fixtures.createCollection(context.getBean(ObjectMapper.class), "new-" + sequence++, 0);
+      c.setElements(collection.getElements());
+      batch.add(c);
+    }
+    return collectionService.saveAll(batch);
+  }
+
+  @Benchmark
+  public Collection saveVersion() {
+    // the saved collection carries the version timestamp of the current version
+    collection = collectionService.save(collection);
+    return collection;
+  }
+
+  @Benchmark
+  public Collection getCurrent() {
+    return collectionService.getCurrent(COLLECTION_ID).orElseThrow(IllegalStateException::new);
+  }
+}
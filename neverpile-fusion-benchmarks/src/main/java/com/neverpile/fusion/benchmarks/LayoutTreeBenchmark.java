@@ -0,0 +1,82 @@
+package com.neverpile.fusion.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.rules.CollectionLayout;
+import com.neverpile.fusion.model.rules.javascript.JavascriptViewLayoutEngine;
+import com.neverpile.fusion.model.rules.javascript.NashornLayoutBackend;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Measures the layout of a collection with three views, see
+ * {@link Fixtures#createCollectionType(boolean)}, either defined by script rules or by grouping
+ * rules. The layout cache is disabled, so that every invocation performs a full layout.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LayoutTreeBenchmark {
+  @Param({
+      "10", "100", "1000"
+  })
+  public int elements;
+
+  @Param({
+      "javascript", "grouping"
+  })
+  public String rules;
+
+  private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+  private NashornLayoutBackend backend;
+
+  private JavascriptViewLayoutEngine engine;
+
+  private Collection collection;
+
+  private CollectionType collectionType;
+
+  @Setup
+  public void setup() {
+    LayoutEngineConfiguration config = new LayoutEngineConfiguration();
+    config.getPool().setSize(1);
+    config.getCache().setEnabled(false);
+    backend = new NashornLayoutBackend(objectMapper, config, new SimpleMeterRegistry());
+    engine = new JavascriptViewLayoutEngine(backend, config, objectMapper, new SimpleMeterRegistry());
+
+    collection = Fixtures.createCollection(objectMapper, "aCollection", elements);
+    collectionType = Fixtures.createCollectionType("grouping".equals(rules));
+    engine.precompile(collectionType);
+  }
+
+  @TearDown
+  public void teardown() {
+    backend.close();
+  }
+
+  @Benchmark
+  public CollectionLayout layoutTree() {
+    return engine.layoutTree(collection, collectionType);
+  }
+}
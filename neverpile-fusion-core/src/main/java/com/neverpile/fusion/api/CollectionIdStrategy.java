@@ -1,5 +1,8 @@
 package com.neverpile.fusion.api;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * A CollectionIdStrategy is responsible for generating new and validating externally-supplied ids
  * for collections and collection elements.
@@ -13,6 +16,20 @@ public interface CollectionIdStrategy {
    */
   String creatcollectionId();
 
+  /**
+   * Create a number of new collection ids at once. Strategies which allocate ids from a shared
+   * resource should override the default implementation, which creates them one after another.
+   * 
+   * @param count the number of ids to create
+   * @return the new collection ids
+   */
+  default List<String> createCollectionIds(final int count) {
+    List<String> ids = new ArrayList<>(count);
+    for (int i = 0; i < count; i++)
+      ids.add(creatcollectionId());
+    return ids;
+  }
+
   /**
    * Validate the given id, return <code>true</code> if it is acceptable.
    * 
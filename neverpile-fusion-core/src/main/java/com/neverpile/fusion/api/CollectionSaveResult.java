@@ -0,0 +1,62 @@
+package com.neverpile.fusion.api;
+
+import com.neverpile.fusion.model.Collection;
+
+/**
+ * The outcome of saving a single collection as part of
+ * {@link CollectionService#saveAll(java.util.List)}: either the saved collection or the reason why
+ * it could not be saved.
+ */
+public final class CollectionSaveResult {
+  private final Collection collection;
+
+  private final RuntimeException failure;
+
+  private CollectionSaveResult(final Collection collection, final RuntimeException failure) {
+    this.collection = collection;
+    this.failure = failure;
+  }
+
+  /**
+   * Create the result for a collection which was saved.
+   *
+   * @param saved the saved collection, with the version timestamp updated accordingly
+   * @return the result
+   */
+  public static CollectionSaveResult saved(final Collection saved) {
+    return new CollectionSaveResult(saved, null);
+  }
+
+  /**
+   * Create the result for a collection which could not be saved.
+   *
+   * @param collection the collection as given to the service
+   * @param failure the reason, e.g. a {@link com.neverpile.fusion.api.exception.VersionMismatchException}
+   * @return the result
+   */
+  public static CollectionSaveResult failed(final Collection collection, final RuntimeException failure) {
+    return new CollectionSaveResult(collection, failure);
+  }
+
+  public boolean isSaved() {
+    return null == failure;
+  }
+
+  /**
+   * Return the saved collection or, if saving failed, the collection as given to the service.
+   *
+   * @return the collection
+   */
+  public Collection getCollection() {
+    return collection;
+  }
+
+  /**
+   * Return the reason why the collection could not be saved.
+   *
+   * @return the failure or <code>null</code> if the collection was saved
+   */
+  public RuntimeException getFailure() {
+    return failure;
+  }
+}
@@ -1,7 +1,10 @@
 package com.neverpile.fusion.api;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import com.neverpile.fusion.api.exception.VersionMismatchException;
@@ -21,6 +24,23 @@ public interface CollectionService {
    */
   Optional<Collection> getCurrent(String id);
 
+  /**
+   * Get the current versions of the collections with the given ids. The default implementation
+   * retrieves the collections one after another. Implementations should override it with one that
+   * retrieves them in bulk or in parallel.
+   * 
+   * @param ids the collections' ids
+   * @return the current versions by collection id, in the iteration order of the given ids. Ids for
+   *         which there is no such collection are absent.
+   */
+  default Map<String, Collection> getCurrent(final java.util.Collection<String> ids) {
+    Map<String, Collection> current = new LinkedHashMap<>();
+    for (String id : ids)
+      if (!current.containsKey(id))
+        getCurrent(id).ifPresent(c -> current.put(id, c));
+    return current;
+  }
+
   /**
    * Get a particular version of the collection with the given id.
    * 
@@ -30,6 +50,37 @@ public interface CollectionService {
    */
   Optional<Collection> getVersion(String id, Instant versionTimestamp);
 
+  /**
+   * Get the version timestamp of the current version of the collection with the given id. Serves
+   * to check whether a client's copy of a collection is still current. Implementations should
+   * override the default implementation, which retrieves the whole collection, with one that
+   * doesn't load the collection content.
+   * 
+   * @param id the collection's id
+   * @return the current version timestamp or the empty optional if there is no such collection.
+   */
+  default Optional<Instant> getCurrentVersionTimestamp(final String id) {
+    return getCurrent(id).map(Collection::getVersionTimestamp);
+  }
+
+  /**
+   * Get the version timestamps of the current versions of the collections with the given ids. Serves
+   * to tell existing collections from new ones without loading them. The default implementation
+   * resolves the timestamps one after another via {@link #getCurrentVersionTimestamp(String)}.
+   * Implementations should override it with one that resolves them in bulk or in parallel.
+   * 
+   * @param ids the collections' ids
+   * @return the current version timestamps by collection id, in the iteration order of the given
+   *         ids. Ids for which there is no such collection are absent.
+   */
+  default Map<String, Instant> getCurrentVersionTimestamps(final java.util.Collection<String> ids) {
+    Map<String, Instant> current = new LinkedHashMap<>();
+    for (String id : ids)
+      if (!current.containsKey(id))
+        getCurrentVersionTimestamp(id).ifPresent(v -> current.put(id, v));
+    return current;
+  }
+
   /**
    * Get the version timestamps of all versions of the collection with the given id.
    * 
@@ -52,4 +103,26 @@ public interface CollectionService {
    * @throws VersionMismatchException if a version mismatch is detected.
    */
   Collection save(Collection newVersion);
+
+  /**
+   * Save many new collections or new versions thereof. Every collection is subject to the same
+   * version checks as with {@link #save(Collection)}, but the collections are saved independently
+   * of each other: a collection which cannot be saved does not prevent the others from being saved.
+   * The default implementation saves the collections one after another. Implementations should
+   * override it with one that saves them in bulk.
+   * 
+   * @param newVersions the new collections or versions
+   * @return one result per given collection, in the order of the given collections
+   */
+  default List<CollectionSaveResult> saveAll(final List<Collection> newVersions) {
+    List<CollectionSaveResult> results = new ArrayList<>(newVersions.size());
+    for (Collection newVersion : newVersions) {
+      try {
+        results.add(CollectionSaveResult.saved(save(newVersion)));
+      } catch (RuntimeException e) {
+        results.add(CollectionSaveResult.failed(newVersion, e));
+      }
+    }
+    return results;
+  }
 }
@@ -0,0 +1,18 @@
+package com.neverpile.fusion.api;
+
+import com.neverpile.fusion.api.exception.NeverpileException;
+import com.neverpile.fusion.model.CollectionType;
+
+/**
+ * A CollectionTypeValidator checks collection type definitions before they are made available by a
+ * {@link CollectionTypeService}.
+ */
+public interface CollectionTypeValidator {
+  /**
+   * Validate the given collection type.
+   * 
+   * @param type the type
+   * @throws NeverpileException describing the problem if the type is invalid
+   */
+  void validate(CollectionType type) throws NeverpileException;
+}
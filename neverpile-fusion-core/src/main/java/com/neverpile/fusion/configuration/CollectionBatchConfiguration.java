@@ -0,0 +1,39 @@
+package com.neverpile.fusion.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration of requests retrieving or saving many collections at once.
+ */
+@Component
+@ConfigurationProperties("neverpile-fusion.collection-batch")
+public class CollectionBatchConfiguration {
+  /**
+   * The maximum number of collections a single batch request may retrieve or save.
+   */
+  private int maxCollections = 500;
+
+  /**
+   * The number of threads used by collection services which cannot retrieve many collections with a
+   * single request to their backend but retrieve them in parallel instead. The threads are shared
+   * by all batch requests.
+   */
+  private int threads = 8;
+
+  public int getMaxCollections() {
+    return maxCollections;
+  }
+
+  public void setMaxCollections(final int maxCollections) {
+    this.maxCollections = maxCollections;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public void setThreads(final int threads) {
+    this.threads = threads;
+  }
+}
@@ -0,0 +1,71 @@
+package com.neverpile.fusion.configuration;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import com.neverpile.fusion.api.CollectionTypeValidator;
+
+/**
+ * Configuration of the bulk loading of collection type definitions.
+ */
+@Component
+@ConfigurationProperties("neverpile-fusion.collection-types")
+public class CollectionTypeLoadingConfiguration {
+  /**
+   * How to deal with collection types which cannot be parsed or fail validation, see
+   * {@link CollectionTypeValidator}.
+   */
+  public enum InvalidTypeHandling {
+    /**
+     * Log invalid types and leave them out, so that the remaining types are still available.
+     */
+    QUARANTINE,
+    /**
+     * Fail the initial load and thereby the application start-up if any type is invalid. Types
+     * which become invalid later on are quarantined.
+     */
+    FAIL
+  }
+
+  /**
+   * The number of threads loading and validating types. Zero means one per available processor.
+   */
+  private int parallelism = 0;
+
+  /**
+   * The maximum time to spend on loading all types. Types not loaded in time are treated as
+   * invalid.
+   */
+  private Duration timeout = Duration.ofSeconds(60);
+
+  /**
+   * How to deal with invalid types.
+   */
+  private InvalidTypeHandling invalidTypes = InvalidTypeHandling.QUARANTINE;
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  public void setParallelism(final int parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  public void setTimeout(final Duration timeout) {
+    this.timeout = timeout;
+  }
+
+  public InvalidTypeHandling getInvalidTypes() {
+    return invalidTypes;
+  }
+
+  public void setInvalidTypes(final InvalidTypeHandling invalidTypes) {
+    this.invalidTypes = invalidTypes;
+  }
+}
@@ -0,0 +1,79 @@
+package com.neverpile.fusion.configuration;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.NoneNestedConditions;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.model.rules.javascript.GraalJSLayoutBackend;
+import com.neverpile.fusion.model.rules.javascript.LayoutScriptBackend;
+import com.neverpile.fusion.model.rules.javascript.NashornLayoutBackend;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+
+/**
+ * Provide the {@link LayoutScriptBackend} selected via {@link LayoutEngineConfiguration#getBackend()}.
+ * The GraalJS backend requires the optional dependencies <code>org.graalvm.sdk:graal-sdk</code> and
+ * <code>org.graalvm.js:js</code>. If it is selected while they are missing, startup fails.
+ */
+@Configuration
+public class LayoutBackendConfiguration {
+  private static final String BACKEND_PROPERTY = "neverpile-fusion.layout-engine.backend";
+
+  private static final String POLYGLOT_CLASS = "org.graalvm.polyglot.Context";
+
+  private static final String GRAALJS_CLASS = "com.oracle.truffle.js.lang.JavaScriptLanguage";
+
+  @Bean
+  @ConditionalOnProperty(name = BACKEND_PROPERTY, havingValue = "nashorn", matchIfMissing = true)
+  public LayoutScriptBackend nashornLayoutBackend(final ObjectMapper objectMapper,
+      final LayoutEngineConfiguration config, final ObjectProvider<MeterRegistry> meterRegistry) {
+    return new NashornLayoutBackend(objectMapper, config, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+  }
+
+  @Configuration
+  @ConditionalOnClass(name = {
+      POLYGLOT_CLASS, GRAALJS_CLASS
+  })
+  @ConditionalOnProperty(name = BACKEND_PROPERTY, havingValue = "graaljs")
+  public static class GraalJSBackendConfiguration {
+    @Bean
+    public LayoutScriptBackend graalJSLayoutBackend(final ObjectMapper objectMapper,
+        final LayoutEngineConfiguration config, final ObjectProvider<MeterRegistry> meterRegistry) {
+      return new GraalJSLayoutBackend(objectMapper, config,
+          meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+  }
+
+  /**
+   * Fail with a clear message instead of an unsatisfied dependency on {@link LayoutScriptBackend} if
+   * the GraalJS backend is selected but not available.
+   */
+  @Configuration
+  @Conditional(GraalJSMissingCondition.class)
+  @ConditionalOnProperty(name = BACKEND_PROPERTY, havingValue = "graaljs")
+  public static class GraalJSMissingConfiguration {
+    @Bean
+    public LayoutScriptBackend graalJSLayoutBackend() {
+      throw new IllegalStateException("The layout engine backend 'graaljs' requires the dependencies "
+          + "org.graalvm.sdk:graal-sdk and org.graalvm.js:js on the classpath");
+    }
+  }
+
+  static class GraalJSMissingCondition extends NoneNestedConditions {
+    GraalJSMissingCondition() {
+      super(ConfigurationPhase.PARSE_CONFIGURATION);
+    }
+
+    @ConditionalOnClass(name = {
+        POLYGLOT_CLASS, GRAALJS_CLASS
+    })
+    static class GraalJSPresent {
+    }
+  }
+}
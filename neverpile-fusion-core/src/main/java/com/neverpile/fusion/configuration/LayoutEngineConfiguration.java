@@ -0,0 +1,462 @@
+package com.neverpile.fusion.configuration;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration of the view layout engine.
+ */
+@Component
+@ConfigurationProperties("neverpile-fusion.layout-engine")
+public class LayoutEngineConfiguration {
+  /**
+   * The JavaScript implementations available for the execution of layout rules.
+   */
+  public enum Backend {
+    /**
+     * The Nashorn engine bundled with the JDK.
+     */
+    NASHORN,
+    /**
+     * GraalVM JavaScript. Requires <code>org.graalvm.js:js</code> on the classpath.
+     */
+    GRAALJS
+  }
+
+  public static class PoolConfiguration {
+    /**
+     * The number of script engines in the pool, i.e. the maximum number of layouts that can be
+     * computed concurrently.
+     */
+    private int size = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The maximum time to wait for an engine to become available before a layout request fails.
+     */
+    private Duration borrowTimeout = Duration.ofSeconds(30);
+
+    /**
+     * The number of layouts after which an engine is discarded and replaced by a fresh one. Zero
+     * means that engines are reused indefinitely.
+     */
+    private int maxReuse = 0;
+
+    public int getSize() {
+      return size;
+    }
+
+    public void setSize(final int size) {
+      this.size = size;
+    }
+
+    public Duration getBorrowTimeout() {
+      return borrowTimeout;
+    }
+
+    public void setBorrowTimeout(final Duration borrowTimeout) {
+      this.borrowTimeout = borrowTimeout;
+    }
+
+    public int getMaxReuse() {
+      return maxReuse;
+    }
+
+    public void setMaxReuse(final int maxReuse) {
+      this.maxReuse = maxReuse;
+    }
+  }
+
+  public static class CacheConfiguration {
+    /**
+     * Whether to cache layouts of collection versions.
+     */
+    private boolean enabled = true;
+
+    /**
+     * The maximum number of layouts to keep.
+     */
+    private long maximumSize = 500;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public long getMaximumSize() {
+      return maximumSize;
+    }
+
+    public void setMaximumSize(final long maximumSize) {
+      this.maximumSize = maximumSize;
+    }
+  }
+
+  public static class ParallelViewsConfiguration {
+    /**
+     * Whether to lay out the views of a collection type in parallel. Each view is laid out in a scope
+     * of its own. In contrast to sequential layout, the rules of one view therefore never observe
+     * modifications made by the rules of another view. As every scope is seeded by executing the
+     * global rules, these are executed N+1 times for N views.
+     */
+    private boolean enabled = false;
+
+    /**
+     * The number of threads used to lay out views in parallel.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getThreads() {
+      return threads;
+    }
+
+    public void setThreads(final int threads) {
+      this.threads = threads;
+    }
+  }
+
+  /**
+   * Limits on the resources consumed by layout rules. By default, layouts and rule executions are
+   * limited in time and layouts in the number of nodes, so that a runaway rule can't occupy a
+   * request thread indefinitely. Statement limits are opt-in. Time and statement limits make the
+   * Nashorn backend instrument all rule code, which costs a call into the engine per loop iteration
+   * and function invocation.
+   */
+  public static class LimitsConfiguration {
+    /**
+     * The maximum time a layout may take. A zero duration disables the limit.
+     */
+    private Duration layoutTimeout = Duration.ofSeconds(60);
+
+    /**
+     * The maximum time a single rule execution may take. A zero duration disables the limit.
+     */
+    private Duration ruleTimeout = Duration.ofSeconds(10);
+
+    /**
+     * The maximum number of statements all rules of a layout may execute together. Zero means no
+     * limit. The Nashorn backend counts loop iterations and function invocations only, which bounds
+     * the work a rule can do just as well. Not supported by the GraalJS backend.
+     */
+    private long maxStatementsPerLayout = 0;
+
+    /**
+     * The maximum number of statements a single rule execution may execute. Zero means no limit. The
+     * Nashorn backend counts loop iterations and function invocations only.
+     */
+    private long maxStatementsPerRule = 0;
+
+    /**
+     * The maximum number of nodes the rules of a layout may create. Zero means no limit.
+     */
+    private int maxNodesPerLayout = 100_000;
+
+    /**
+     * The maximum number of nodes a single rule execution may create. Zero means no limit.
+     */
+    private int maxNodesPerRule = 0;
+
+    public Duration getLayoutTimeout() {
+      return layoutTimeout;
+    }
+
+    public void setLayoutTimeout(final Duration layoutTimeout) {
+      this.layoutTimeout = layoutTimeout;
+    }
+
+    public Duration getRuleTimeout() {
+      return ruleTimeout;
+    }
+
+    public void setRuleTimeout(final Duration ruleTimeout) {
+      this.ruleTimeout = ruleTimeout;
+    }
+
+    public long getMaxStatementsPerLayout() {
+      return maxStatementsPerLayout;
+    }
+
+    public void setMaxStatementsPerLayout(final long maxStatementsPerLayout) {
+      this.maxStatementsPerLayout = maxStatementsPerLayout;
+    }
+
+    public long getMaxStatementsPerRule() {
+      return maxStatementsPerRule;
+    }
+
+    public void setMaxStatementsPerRule(final long maxStatementsPerRule) {
+      this.maxStatementsPerRule = maxStatementsPerRule;
+    }
+
+    public int getMaxNodesPerLayout() {
+      return maxNodesPerLayout;
+    }
+
+    public void setMaxNodesPerLayout(final int maxNodesPerLayout) {
+      this.maxNodesPerLayout = maxNodesPerLayout;
+    }
+
+    public int getMaxNodesPerRule() {
+      return maxNodesPerRule;
+    }
+
+    public void setMaxNodesPerRule(final int maxNodesPerRule) {
+      this.maxNodesPerRule = maxNodesPerRule;
+    }
+  }
+
+  public static class ProfilingConfiguration {
+    /**
+     * Whether to publish the execution time of each rule as a Micrometer timer.
+     */
+    private boolean ruleTimers = true;
+
+    /**
+     * The execution time of a single rule invocation above which a warning is logged. A zero duration
+     * disables the warning.
+     */
+    private Duration slowRuleThreshold = Duration.ofMillis(500);
+
+    public boolean isRuleTimers() {
+      return ruleTimers;
+    }
+
+    public void setRuleTimers(final boolean ruleTimers) {
+      this.ruleTimers = ruleTimers;
+    }
+
+    public Duration getSlowRuleThreshold() {
+      return slowRuleThreshold;
+    }
+
+    public void setSlowRuleThreshold(final Duration slowRuleThreshold) {
+      this.slowRuleThreshold = slowRuleThreshold;
+    }
+  }
+
+  public static class IncrementalConfiguration {
+    /**
+     * Whether to lay out collections incrementally. The effects of the element rules on the view
+     * trees are recorded for every element. When a collection is laid out again, the recorded effects
+     * of unchanged elements are replayed and the element rules are only executed for added or
+     * modified elements. Global and tree rules are always executed.
+     * <p>
+     * Element rules must not depend on state established by rules executed for other elements, e.g.
+     * via global variables, or on the <code>versionTimestamp</code> and <code>dateModified</code> of
+     * the collection. Rules reading the view tree are supported.
+     */
+    private boolean enabled = false;
+
+    /**
+     * The maximum number of collections for which the recorded effects are kept.
+     */
+    private long maximumSize = 200;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public long getMaximumSize() {
+      return maximumSize;
+    }
+
+    public void setMaximumSize(final long maximumSize) {
+      this.maximumSize = maximumSize;
+    }
+  }
+
+  public static class BatchConfiguration {
+    /**
+     * The number of threads used to lay out the collections of a batch layout request. The threads
+     * are shared by all batch requests.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The maximum number of collections a single batch layout request may ask for.
+     */
+    private int maxCollections = 500;
+
+    public int getThreads() {
+      return threads;
+    }
+
+    public void setThreads(final int threads) {
+      this.threads = threads;
+    }
+
+    public int getMaxCollections() {
+      return maxCollections;
+    }
+
+    public void setMaxCollections(final int maxCollections) {
+      this.maxCollections = maxCollections;
+    }
+  }
+
+  public static class WarmupConfiguration {
+    /**
+     * Whether to compile the rules of all collection types and to lay out a synthetic collection of
+     * each type upon startup. The <code>layoutWarmup</code> health indicator reports
+     * <code>OUT_OF_SERVICE</code> until the warm-up is complete.
+     */
+    private boolean enabled = true;
+
+    /**
+     * The number of synthetic layouts computed per collection type.
+     */
+    private int layoutsPerType = 3;
+
+    /**
+     * The number of elements of the synthetic collections.
+     */
+    private int elements = 10;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getLayoutsPerType() {
+      return layoutsPerType;
+    }
+
+    public void setLayoutsPerType(final int layoutsPerType) {
+      this.layoutsPerType = layoutsPerType;
+    }
+
+    public int getElements() {
+      return elements;
+    }
+
+    public void setElements(final int elements) {
+      this.elements = elements;
+    }
+  }
+
+  /**
+   * The JavaScript implementation used to execute layout rules.
+   */
+  private Backend backend = Backend.NASHORN;
+
+  /**
+   * The maximum number of compiled rule scripts to keep. Compiled scripts are keyed by the
+   * collection type id, the rule name and the rule code.
+   */
+  private long compiledScriptCacheSize = 1000;
+
+  private PoolConfiguration pool = new PoolConfiguration();
+
+  private CacheConfiguration cache = new CacheConfiguration();
+
+  private ParallelViewsConfiguration parallelViews = new ParallelViewsConfiguration();
+
+  private LimitsConfiguration limits = new LimitsConfiguration();
+
+  private ProfilingConfiguration profiling = new ProfilingConfiguration();
+
+  private IncrementalConfiguration incremental = new IncrementalConfiguration();
+
+  private BatchConfiguration batch = new BatchConfiguration();
+
+  private WarmupConfiguration warmup = new WarmupConfiguration();
+
+  public Backend getBackend() {
+    return backend;
+  }
+
+  public void setBackend(final Backend backend) {
+    this.backend = backend;
+  }
+
+  public long getCompiledScriptCacheSize() {
+    return compiledScriptCacheSize;
+  }
+
+  public void setCompiledScriptCacheSize(final long compiledScriptCacheSize) {
+    this.compiledScriptCacheSize = compiledScriptCacheSize;
+  }
+
+  public PoolConfiguration getPool() {
+    return pool;
+  }
+
+  public void setPool(final PoolConfiguration pool) {
+    this.pool = pool;
+  }
+
+  public CacheConfiguration getCache() {
+    return cache;
+  }
+
+  public void setCache(final CacheConfiguration cache) {
+    this.cache = cache;
+  }
+
+  public ParallelViewsConfiguration getParallelViews() {
+    return parallelViews;
+  }
+
+  public void setParallelViews(final ParallelViewsConfiguration parallelViews) {
+    this.parallelViews = parallelViews;
+  }
+
+  public LimitsConfiguration getLimits() {
+    return limits;
+  }
+
+  public void setLimits(final LimitsConfiguration limits) {
+    this.limits = limits;
+  }
+
+  public ProfilingConfiguration getProfiling() {
+    return profiling;
+  }
+
+  public void setProfiling(final ProfilingConfiguration profiling) {
+    this.profiling = profiling;
+  }
+
+  public IncrementalConfiguration getIncremental() {
+    return incremental;
+  }
+
+  public void setIncremental(final IncrementalConfiguration incremental) {
+    this.incremental = incremental;
+  }
+
+  public BatchConfiguration getBatch() {
+    return batch;
+  }
+
+  public void setBatch(final BatchConfiguration batch) {
+    this.batch = batch;
+  }
+
+  public WarmupConfiguration getWarmup() {
+    return warmup;
+  }
+
+  public void setWarmup(final WarmupConfiguration warmup) {
+    this.warmup = warmup;
+  }
+}
@@ -1,26 +1,63 @@
 package com.neverpile.fusion.impl;
 
-import java.io.File;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.core.io.Resource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.neverpile.fusion.api.CollectionTypeService;
+import com.neverpile.fusion.api.CollectionTypeValidator;
 import com.neverpile.fusion.api.exception.NeverpileException;
+import com.neverpile.fusion.configuration.CollectionTypeLoadingConfiguration;
+import com.neverpile.fusion.configuration.CollectionTypeLoadingConfiguration.InvalidTypeHandling;
 import com.neverpile.fusion.model.CollectionType;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
 /**
  * An implementation of {@link CollectionTypeService} which pulls collection definitions from
  * <code>.json</code> or <code>.yaml</code> files residing in some spring {@link Resource} location.
@@ -33,39 +70,349 @@ import com.neverpile.fusion.model.CollectionType;
  * <code>neverpile-fusion.resource-path-collection-type-service.enabled=true</code>. The constructor
  * injection expects to beans of typ {@link ObjectMapper}, the default one for JSON, and one, with
  * the qualifier <code>yaml</code>, configured for YAML.
+ * <p>
+ * If the resource path denotes a directory in the file system, all collection types are parsed
+ * once into an in-memory index which serves both {@link #get(String)} and {@link #getAllTypes()}.
+ * Unless <code>neverpile-fusion.resource-path-collection-type-service.watch</code> is set to
+ * <code>false</code>, the directory is watched for changes and the index is rebuilt and swapped
+ * atomically whenever files are added, modified or removed. Files whose modification time and size
+ * didn't change are not parsed again. Other resource paths, e.g. ones pointing into a JAR, are
+ * immutable: types are parsed upon first access and cached.
+ * <p>
+ * The index is built in parallel, and every type is checked by all {@link CollectionTypeValidator}s,
+ * e.g. by compiling its rules. Types which can't be parsed or fail validation are quarantined:
+ * they are logged and left out of the index, see {@link #getQuarantinedTypes()}. Alternatively, the
+ * initial load can fail fast, see {@link CollectionTypeLoadingConfiguration}. If a modified file
+ * turns out to be invalid, the previous definition of the type is retained until the file is fixed.
+ * The time spent loading is published as the Micrometer timer
+ * <code>fusion.collection.types.load</code>, the number of available and quarantined types as the
+ * gauges <code>fusion.collection.types</code> and <code>fusion.collection.types.quarantined</code>.
+ * <p>
+ * The returned collection types are shared and must not be modified by callers.
  */
 @Component
 @ConditionalOnProperty(name = "neverpile-fusion.resource-path-collection-type-service.enabled", matchIfMissing = false, havingValue = "true")
 public class ResourcePathCollectionTypeService implements CollectionTypeService {
   private static final Logger LOGGER = LoggerFactory.getLogger(ResourcePathCollectionTypeService.class);
 
+  /**
+   * The suffixes of collection type definitions in the order of precedence.
+   */
+  private static final String[] SUFFIXES = {
+      ".yaml", ".yml", ".json"
+  };
+
+  /**
+   * The time to wait for further changes before rebuilding the index, so that bursts of changes,
+   * e.g. caused by editors writing temporary files, result in a single reload.
+   */
+  private static final long SETTLE_MILLIS = 100;
+
   private final Resource basePath;
   private final ObjectMapper jsonMapper;
   private final ObjectMapper yamlMapper;
+  private final boolean watch;
+  private final CollectionTypeLoadingConfiguration loading;
+  private final List<CollectionTypeValidator> validators;
+  private final Timer loadTimer;
+
+  /**
+   * The base directory or <code>null</code> if the base path isn't backed by the file system.
+   */
+  private final Path directory;
+
+  /**
+   * The index of collection types by id. <code>null</code> until loaded. Replaced as a whole upon
+   * reload.
+   */
+  private volatile Map<String, IndexEntry> index;
+
+  /**
+   * The reasons why types were left out of the index by id.
+   */
+  private volatile Map<String, String> quarantined = Collections.emptyMap();
+
+  /**
+   * The types retrieved from a base path not backed by the file system.
+   */
+  private final Map<String, Optional<CollectionType>> resolved = new ConcurrentHashMap<>();
+
+  private WatchService watchService;
 
   @Autowired
   public ResourcePathCollectionTypeService(
       @Value("${neverpile-fusion.resource-path-collection-type-service.base-path}") final Resource basePath,
-      final ObjectMapper jsonMapper, @Qualifier("yaml") final Supplier<ObjectMapper> yamlMapperSupplier) {
+      final ObjectMapper jsonMapper, @Qualifier("yaml") final Supplier<ObjectMapper> yamlMapperSupplier,
+      @Value("${neverpile-fusion.resource-path-collection-type-service.watch:true}") final boolean watch,
+      final CollectionTypeLoadingConfiguration loading, final ObjectProvider<CollectionTypeValidator> validators,
+      final ObjectProvider<MeterRegistry> meterRegistry) {
+    this(basePath, jsonMapper, yamlMapperSupplier, watch, loading,
+        validators.orderedStream().collect(Collectors.toList()),
+        meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+  }
+
+  public ResourcePathCollectionTypeService(final Resource basePath, final ObjectMapper jsonMapper,
+      final Supplier<ObjectMapper> yamlMapperSupplier, final boolean watch,
+      final CollectionTypeLoadingConfiguration loading, final List<CollectionTypeValidator> validators,
+      final MeterRegistry meterRegistry) {
     this.basePath = basePath;
     this.jsonMapper = jsonMapper;
     this.yamlMapper = yamlMapperSupplier.get();
+    this.watch = watch;
+    this.loading = loading;
+    this.validators = validators;
+    this.directory = resolveDirectory(basePath);
+
+    this.loadTimer = Timer.builder("fusion.collection.types.load") //
+        .description("time spent loading collection types") //
+        .register(meterRegistry);
+    Gauge.builder("fusion.collection.types", this, s -> null != s.index ? s.index.size() : 0) //
+        .description("number of available collection types") //
+        .register(meterRegistry);
+    Gauge.builder("fusion.collection.types.quarantined", this, s -> s.quarantined.size()) //
+        .description("number of collection types left out because they are invalid") //
+        .register(meterRegistry);
+  }
+
+  public ResourcePathCollectionTypeService(final Resource basePath, final ObjectMapper jsonMapper,
+      final Supplier<ObjectMapper> yamlMapperSupplier, final boolean watch) {
+    this(basePath, jsonMapper, yamlMapperSupplier, watch, new CollectionTypeLoadingConfiguration(),
+        Collections.emptyList(), Metrics.globalRegistry);
+  }
+
+  public ResourcePathCollectionTypeService(final Resource basePath, final ObjectMapper jsonMapper,
+      final Supplier<ObjectMapper> yamlMapperSupplier) {
+    this(basePath, jsonMapper, yamlMapperSupplier, true);
+  }
+
+  private static Path resolveDirectory(final Resource basePath) {
+    try {
+      return basePath.getFile().toPath();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Load the index and start watching the base directory for changes, if enabled.
+   *
+   * @throws NeverpileException if types are invalid and configured to fail fast
+   */
+  @PostConstruct
+  public void start() {
+    index();
+
+    if (!watch || null == directory || null != watchService)
+      return;
+
+    try {
+      watchService = directory.getFileSystem().newWatchService();
+      directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+    } catch (IOException e) {
+      LOGGER.warn("Can't watch collection type directory {} - changes won't be picked up", directory, e);
+      return;
+    }
+
+    Thread thread = new Thread(this::watch, "collection-type-watcher");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (null != watchService) {
+      try {
+        watchService.close();
+      } catch (IOException e) {
+        LOGGER.debug("Can't close watch service", e);
+      }
+    }
+  }
+
+  private void watch() {
+    try {
+      while (true) {
+        WatchKey key = watchService.take();
+        boolean valid = true;
+        do {
+          key.pollEvents();
+          valid &= key.reset();
+        } while (null != (key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)));
+
+        try {
+          reload();
+        } catch (RuntimeException e) {
+          LOGGER.warn("Can't reload collection types", e);
+        }
+
+        if (!valid) {
+          LOGGER.warn("Collection type directory {} is no longer accessible - changes won't be picked up", directory);
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ClosedWatchServiceException e) {
+      // stopped
+    }
+  }
+
+  private Map<String, IndexEntry> index() {
+    Map<String, IndexEntry> current = index;
+    if (null == current && null != directory) {
+      synchronized (this) {
+        if (null == index)
+          reload();
+        current = index;
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Rebuild the index from the base directory and swap it in. Does nothing if the base path isn't
+   * backed by the file system.
+   *
+   * @throws NeverpileException if this is the initial load and types are invalid and configured to
+   *           fail fast
+   */
+  public synchronized void reload() {
+    if (null == directory)
+      return;
+
+    long start = System.nanoTime();
+    try {
+      Map<String, IndexEntry> previous = null != index ? index : Collections.emptyMap();
+
+      List<String> ids = new ArrayList<>();
+      List<Callable<IndexEntry>> tasks = new ArrayList<>();
+      for (String id : listIds()) {
+        for (String suffix : SUFFIXES) {
+          Path file = directory.resolve(id + suffix);
+          if (Files.isReadable(file)) {
+            ids.add(id);
+            tasks.add(() -> load(file, previous.get(id)));
+            break;
+          }
+        }
+      }
+
+      List<Future<IndexEntry>> results = loadAll(tasks);
+
+      Map<String, IndexEntry> updated = new TreeMap<>();
+      Map<String, String> failures = new TreeMap<>();
+      for (int i = 0; i < ids.size(); i++) {
+        String id = ids.get(i);
+        try {
+          updated.put(id, results.get(i).get());
+        } catch (CancellationException e) {
+          fail(id, previous.get(id), "Timed out after " + loading.getTimeout(), updated, failures, null);
+        } catch (ExecutionException e) {
+          fail(id, previous.get(id), e.getCause().getMessage(), updated, failures, e.getCause());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new NeverpileException("Interrupted while loading collection types", e);
+        }
+      }
+
+      if (null == index && !failures.isEmpty() && loading.getInvalidTypes() == InvalidTypeHandling.FAIL)
+        throw new NeverpileException("Invalid collection types in " + directory + ": " + failures);
+
+      quarantined = Collections.unmodifiableMap(failures);
+      index = Collections.unmodifiableMap(updated);
+      LOGGER.info("Loaded {} collection types from {} in {} ms, {} quarantined", updated.size(), directory,
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failures.size());
+    } finally {
+      loadTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private List<Future<IndexEntry>> loadAll(final List<Callable<IndexEntry>> tasks) {
+    if (tasks.isEmpty())
+      return Collections.emptyList();
+
+    int threads = loading.getParallelism() > 0 ? loading.getParallelism() : Runtime.getRuntime().availableProcessors();
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("collection-type-loader-");
+    threadFactory.setDaemon(true);
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()), threadFactory);
+    try {
+      return executor.invokeAll(tasks, loading.getTimeout().toNanos(), TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new NeverpileException("Interrupted while loading collection types", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void fail(final String id, final IndexEntry previous, final String reason,
+      final Map<String, IndexEntry> updated, final Map<String, String> failures, final Throwable cause) {
+    if (null != previous) {
+      LOGGER.warn("Collection type {} is invalid - retaining its previous definition: {}", id, reason, cause);
+      updated.put(id, previous);
+    } else {
+      LOGGER.warn("Collection type {} is invalid - quarantining it: {}", id, reason, cause);
+      failures.put(id, reason);
+    }
+  }
+
+  private TreeSet<String> listIds() {
+    TreeSet<String> ids = new TreeSet<>();
+    if (!Files.isDirectory(directory))
+      return ids;
+
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+        f -> Files.isRegularFile(f) && f.getFileName().toString().matches(".*\\.(ya?ml|json)$"))) {
+      for (Path f : files)
+        ids.add(f.getFileName().toString().replaceFirst("\\.(ya?ml|json)$", ""));
+    } catch (IOException e) {
+      throw new NeverpileException("Can't list collection types", e);
+    }
+    return ids;
+  }
+
+  private IndexEntry load(final Path file, final IndexEntry previous) throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+    String stamp = file.getFileName() + "@" + attributes.lastModifiedTime() + "/" + attributes.size();
+
+    if (null != previous && previous.stamp.equals(stamp))
+      return previous;
+
+    String name = file.getFileName().toString();
+    CollectionType type = unmarshal(basePath.createRelative(name), name.endsWith(".json") ? jsonMapper : yamlMapper);
+    for (CollectionTypeValidator validator : validators)
+      validator.validate(type);
+
+    return new IndexEntry(stamp, type);
   }
 
   @Override
   public Optional<CollectionType> get(final String id) {
-    try {
-      Resource resource = basePath.createRelative(id + ".yaml");
-      if (resource.isReadable())
-        return unmarshal(resource, yamlMapper);
+    Map<String, IndexEntry> types = index();
+    if (null != types) {
+      IndexEntry entry = types.get(id);
+      return null != entry ? Optional.of(entry.type) : Optional.empty();
+    }
 
-      resource = basePath.createRelative(id + ".yml");
-      if (resource.isReadable())
-        return unmarshal(resource, yamlMapper);
+    return resolved.computeIfAbsent(id, this::resolve);
+  }
 
-      resource = basePath.createRelative(id + ".json");
-      if (resource.isReadable())
-        return unmarshal(resource, jsonMapper);
+  private Optional<CollectionType> resolve(final String id) {
+    try {
+      for (String suffix : SUFFIXES) {
+        Resource resource = basePath.createRelative(id + suffix);
+        if (resource.isReadable()) {
+          CollectionType type = unmarshal(resource, suffix.equals(".json") ? jsonMapper : yamlMapper);
+          try {
+            for (CollectionTypeValidator validator : validators)
+              validator.validate(type);
+          } catch (NeverpileException e) {
+            LOGGER.warn("Collection type {} is invalid - quarantining it: {}", id, e.getMessage(), e);
+            return Optional.empty();
+          }
+          return Optional.of(type);
+        }
+      }
 
       return Optional.empty();
     } catch (IOException e) {
@@ -73,9 +420,12 @@ public class ResourcePathCollectionTypeService implements CollectionTypeService
     }
   }
 
-  private Optional<CollectionType> unmarshal(final Resource resource, final ObjectMapper mapper) throws IOException {
-    CollectionType t = mapper.readValue(resource.getInputStream(), CollectionType.class);
-    
+  private CollectionType unmarshal(final Resource resource, final ObjectMapper mapper) throws IOException {
+    CollectionType t;
+    try (InputStream is = resource.getInputStream()) {
+      t = mapper.readValue(is, CollectionType.class);
+    }
+
     // make sure the ID is correct and matches the file name
     String idFromTileName = resource.getFilename().replaceFirst("\\.(ya?ml|json)$", "");
     if(!idFromTileName.equals(t.getId())) {
@@ -84,28 +434,28 @@ public class ResourcePathCollectionTypeService implements CollectionTypeService
       }
       t.setId(idFromTileName);
     }
-    
-    return Optional.of(t);
+
+    return t;
+  }
+
+  /**
+   * Return the types left out of the index because they are invalid.
+   *
+   * @return the reasons by collection type id
+   */
+  public Map<String, String> getQuarantinedTypes() {
+    return quarantined;
   }
 
   @Override
   public List<CollectionType> getAllTypes() {
-    try {
-      ArrayList<CollectionType> types = new ArrayList<>();
-      File[] list = basePath.getFile().listFiles(f -> f.isFile() && f.getName().matches(".*\\.(ya?ml|json)$"));
-      if (null != list)
-        for (File f : list) {
-          try {
-            unmarshal(basePath.createRelative(f.getName()),
-                f.getName().endsWith("json") ? jsonMapper : yamlMapper).ifPresent(types::add);
-          } catch (IOException e) {
-            LOGGER.info("Can't unmarshal Collection type {} - skipping it", f.getName(), e);
-          }
-        }
-      return types;
-    } catch (IOException e) {
-      throw new NeverpileException("Can't list collection types", e);
-    }
+    Map<String, IndexEntry> types = index();
+    if (null == types)
+      throw new NeverpileException("Can't list collection types: " + basePath + " is not a directory");
+
+    List<CollectionType> all = new ArrayList<>(types.size());
+    types.values().forEach(e -> all.add(e.type));
+    return all;
   }
 
   @Override
@@ -118,4 +468,17 @@ public class ResourcePathCollectionTypeService implements CollectionTypeService
     throw new UnsupportedOperationException("Collection types are supposed to be edited locally");
   }
 
+  private static final class IndexEntry {
+    /**
+     * The file name, modification time and size of the file the type was parsed from.
+     */
+    private final String stamp;
+
+    private final CollectionType type;
+
+    IndexEntry(final String stamp, final CollectionType type) {
+      this.stamp = stamp;
+      this.type = type;
+    }
+  }
 }
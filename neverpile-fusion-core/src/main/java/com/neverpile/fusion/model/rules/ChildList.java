@@ -0,0 +1,134 @@
+package com.neverpile.fusion.model.rules;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * The list of children of a {@link Node}. In addition to the ordered list of children, it maintains
+ * an index mapping names to the first child carrying the name, so that children can be looked up
+ * by name in constant time. The index is only built for lists of a certain size, smaller lists are
+ * scanned instead.
+ * <p>
+ * Appending a child keeps the index up to date, any other modification of the list discards it and
+ * it is rebuilt upon the next lookup. Renaming a child discards the index of the list it was last
+ * added to.
+ */
+final class ChildList extends AbstractList<Node> implements RandomAccess {
+  /**
+   * The size from which on lookups are served by the index.
+   */
+  static final int INDEX_THRESHOLD = 8;
+
+  private final ArrayList<Node> nodes;
+
+  private Map<String, Node> index;
+
+  ChildList() {
+    nodes = new ArrayList<>();
+  }
+
+  ChildList(final Collection<Node> children) {
+    nodes = new ArrayList<>(children);
+    nodes.forEach(this::adopt);
+  }
+
+  /**
+   * Return the first child with the given name.
+   *
+   * @param name the name, may be <code>null</code>
+   * @return the child or <code>null</code> if there is no child with the given name
+   */
+  Node find(final String name) {
+    if (nodes.size() < INDEX_THRESHOLD) {
+      for (Node n : nodes)
+        if (Objects.equals(name, n.getName()))
+          return n;
+      return null;
+    }
+
+    if (null == index) {
+      index = new HashMap<>(nodes.size() * 2);
+      for (Node n : nodes)
+        index.putIfAbsent(n.getName(), n);
+    }
+
+    return index.get(name);
+  }
+
+  /**
+   * Discard the index, e.g. because a child has been renamed.
+   */
+  void invalidate() {
+    index = null;
+  }
+
+  private void adopt(final Node child) {
+    if (null != child)
+      child.owner = this;
+  }
+
+  @Override
+  public Node get(final int i) {
+    return nodes.get(i);
+  }
+
+  @Override
+  public int size() {
+    return nodes.size();
+  }
+
+  @Override
+  public Node set(final int i, final Node child) {
+    Node previous = nodes.set(i, child);
+    adopt(child);
+    index = null;
+    return previous;
+  }
+
+  @Override
+  public void add(final int i, final Node child) {
+    nodes.add(i, child);
+    adopt(child);
+    modCount++;
+
+    if (null != index && i == nodes.size() - 1)
+      index.putIfAbsent(child.getName(), child);
+    else
+      index = null;
+  }
+
+  @Override
+  public Node remove(final int i) {
+    Node removed = nodes.remove(i);
+    modCount++;
+    index = null;
+    return removed;
+  }
+
+  @Override
+  protected void removeRange(final int fromIndex, final int toIndex) {
+    nodes.subList(fromIndex, toIndex).clear();
+    modCount++;
+    index = null;
+  }
+
+  @Override
+  public void clear() {
+    nodes.clear();
+    modCount++;
+    index = null;
+  }
+
+  @Override
+  public void sort(final Comparator<? super Node> c) {
+    nodes.sort(c);
+    modCount++;
+    index = null;
+  }
+}
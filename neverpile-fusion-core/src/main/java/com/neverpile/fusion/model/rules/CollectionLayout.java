@@ -24,6 +24,11 @@ public class CollectionLayout {
    */
   private Map<String, ViewLayout> viewLayouts = new HashMap<>();
 
+  /**
+   * The rule execution profile of this layout. Only present if profiling was requested.
+   */
+  private LayoutProfile profile;
+
   public String getCollectionTypeId() {
     return collectionTypeId;
   }
@@ -47,4 +52,12 @@ public class CollectionLayout {
   public void setViewLayouts(final Map<String, ViewLayout> viewLayouts) {
     this.viewLayouts = viewLayouts;
   }
+
+  public LayoutProfile getProfile() {
+    return profile;
+  }
+
+  public void setProfile(final LayoutProfile profile) {
+    this.profile = profile;
+  }
 }
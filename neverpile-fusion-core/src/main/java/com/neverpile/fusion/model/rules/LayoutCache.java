@@ -0,0 +1,210 @@
+package com.neverpile.fusion.model.rules;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration.CacheConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.CollectionType;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+
+/**
+ * A bounded cache of {@link CollectionLayout}s. A layout depends only on the collection version and
+ * the definition of the collection type. Cached layouts are therefore keyed by the collection id,
+ * its version timestamp and a hash of the collection type's content. Whenever a new content hash is
+ * observed for a type, all layouts cached for the previous definition of that type are evicted.
+ * <p>
+ * As the content of a collection is not inspected, only collection versions as they have been
+ * stored may be passed to the cache. Collections submitted for layout may carry modifications which
+ * have not been persisted yet and must bypass the cache.
+ * <p>
+ * Layouts in which a view failed are not cached, as the failure may be transient, e.g. a time limit
+ * exceeded under load.
+ * <p>
+ * Cached layouts are shared and must not be modified by callers.
+ * <p>
+ * Cache statistics like hits and misses are published as Micrometer <code>cache.*</code> meters
+ * tagged with <code>cache=fusion.layout.cache</code>.
+ */
+@Component
+public class LayoutCache {
+  private final ObjectMapper objectMapper;
+
+  private final boolean enabled;
+
+  private final Cache<LayoutKey, CollectionLayout> layouts;
+
+  private final Cache<CollectionType, String> typeHashes = CacheBuilder.newBuilder().weakKeys().build();
+
+  private final Map<String, String> currentTypeHashes = new ConcurrentHashMap<>();
+
+  @Autowired
+  public LayoutCache(final ObjectMapper objectMapper, final LayoutEngineConfiguration config,
+      final ObjectProvider<MeterRegistry> meterRegistry) {
+    this(objectMapper, config, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+  }
+
+  public LayoutCache(final ObjectMapper objectMapper, final LayoutEngineConfiguration config,
+      final MeterRegistry meterRegistry) {
+    this.objectMapper = objectMapper;
+
+    CacheConfiguration cacheConfig = config.getCache();
+    this.enabled = cacheConfig.isEnabled();
+    this.layouts = CacheBuilder.newBuilder() //
+        .maximumSize(cacheConfig.getMaximumSize()) //
+        .recordStats() //
+        .build();
+
+    GuavaCacheMetrics.monitor(meterRegistry, layouts, "fusion.layout.cache");
+  }
+
+  /**
+   * Return the layout of the given collection, computing it using the given supplier if there is no
+   * matching cached layout. Collections without id or version timestamp and layouts with failed views
+   * are never cached.
+   *
+   * @param collection the collection as it has been stored
+   * @param type the collection type
+   * @param layouter the supplier computing the layout
+   * @return the layout
+   */
+  public CollectionLayout get(final Collection collection, final CollectionType type,
+      final Supplier<CollectionLayout> layouter) {
+    if (!enabled || null == collection.getId() || null == collection.getVersionTimestamp())
+      return layouter.get();
+
+    LayoutKey key = createKey(collection, type);
+
+    CollectionLayout cached = layouts.getIfPresent(key);
+    if (null != cached)
+      return cached;
+
+    CollectionLayout layout = layouter.get();
+    if (!hasFailedViews(layout))
+      layouts.put(key, layout);
+    return layout;
+  }
+
+  private static boolean hasFailedViews(final CollectionLayout layout) {
+    return layout.getViewLayouts().values().stream().anyMatch(v -> null != v.getError());
+  }
+
+  /**
+   * Return the cached layout of the given collection, if there is one.
+   *
+   * @param collection the collection
+   * @param type the collection type
+   * @return the layout or <code>null</code> if no matching layout is cached
+   */
+  public CollectionLayout getIfPresent(final Collection collection, final CollectionType type) {
+    if (!enabled || null == collection.getId() || null == collection.getVersionTimestamp())
+      return null;
+
+    return layouts.getIfPresent(createKey(collection, type));
+  }
+
+  private LayoutKey createKey(final Collection collection, final CollectionType type) {
+    return new LayoutKey(type.getId(), getTypeHash(type), collection.getId(),
+        collection.getVersionTimestamp().toEpochMilli());
+  }
+
+  /**
+   * Return a tag identifying the layout of the given collection version. The tag changes whenever
+   * the collection version or the definition of the collection type changes and can therefore be
+   * used as an entity tag for the layout.
+   *
+   * @param collection the collection
+   * @param type the collection type
+   * @return the tag or <code>null</code> if the collection has no id or version timestamp
+   */
+  public String getVersionTag(final Collection collection, final CollectionType type) {
+    if (null == collection.getId() || null == collection.getVersionTimestamp())
+      return null;
+
+    return Hashing.murmur3_128().newHasher() //
+        .putString(collection.getId(), StandardCharsets.UTF_8) //
+        .putLong(collection.getVersionTimestamp().toEpochMilli()) //
+        .putString(getTypeHash(type), StandardCharsets.UTF_8) //
+        .hash().toString();
+  }
+
+  /**
+   * Evict all cached layouts of collections of the given type.
+   *
+   * @param typeId the collection type id
+   */
+  public void evictType(final String typeId) {
+    layouts.asMap().keySet().removeIf(k -> Objects.equals(k.typeId, typeId));
+  }
+
+  /**
+   * Evict all cached layouts.
+   */
+  public void evictAll() {
+    layouts.invalidateAll();
+  }
+
+  private String getTypeHash(final CollectionType type) {
+    String hash = typeHashes.asMap().computeIfAbsent(type, this::hash);
+
+    String previous = null != type.getId() ? currentTypeHashes.put(type.getId(), hash) : null;
+    if (null != previous && !previous.equals(hash))
+      evictType(type.getId());
+
+    return hash;
+  }
+
+  private String hash(final CollectionType type) {
+    try {
+      return Hashing.sha256().hashBytes(objectMapper.writeValueAsBytes(type)).toString();
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Can't serialize collection type " + type.getId(), e);
+    }
+  }
+
+  private static final class LayoutKey {
+    private final String typeId;
+    private final String typeHash;
+    private final String collectionId;
+    private final long versionTimestamp;
+
+    LayoutKey(final String typeId, final String typeHash, final String collectionId, final long versionTimestamp) {
+      this.typeId = typeId;
+      this.typeHash = typeHash;
+      this.collectionId = collectionId;
+      this.versionTimestamp = versionTimestamp;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(typeHash, collectionId, versionTimestamp);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj)
+        return true;
+      if (!(obj instanceof LayoutKey))
+        return false;
+      LayoutKey other = (LayoutKey) obj;
+      return versionTimestamp == other.versionTimestamp && Objects.equals(collectionId, other.collectionId)
+          && Objects.equals(typeHash, other.typeHash) && Objects.equals(typeId, other.typeId);
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package com.neverpile.fusion.model.rules;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * A breakdown of the time spent executing the rules of a layout. Profiles are only collected on
+ * request, as they are specific to a single layout computation.
+ */
+@JsonInclude(Include.NON_NULL)
+public class LayoutProfile {
+  /**
+   * The phases in which rules are executed.
+   */
+  public enum Phase {
+    /**
+     * Global rules, executed once per layout.
+     */
+    GLOBAL,
+    /**
+     * Element rules of a view, executed once per element.
+     */
+    ELEMENT,
+    /**
+     * Tree rules of a view, executed once per view.
+     */
+    TREE
+  }
+
+  /**
+   * The accumulated execution time of a single rule.
+   */
+  @JsonInclude(Include.NON_NULL)
+  public static class RuleTiming {
+    /**
+     * The view the rule belongs to. <code>null</code> for global rules.
+     */
+    private String view;
+
+    /**
+     * The rule name.
+     */
+    private String rule;
+
+    private Phase phase;
+
+    /**
+     * The number of times the rule was executed.
+     */
+    private long executions;
+
+    /**
+     * The total execution time in milliseconds.
+     */
+    private double totalMillis;
+
+    /**
+     * The execution time of the slowest single execution in milliseconds.
+     */
+    private double maxMillis;
+
+    public String getView() {
+      return view;
+    }
+
+    public void setView(final String view) {
+      this.view = view;
+    }
+
+    public String getRule() {
+      return rule;
+    }
+
+    public void setRule(final String rule) {
+      this.rule = rule;
+    }
+
+    public Phase getPhase() {
+      return phase;
+    }
+
+    public void setPhase(final Phase phase) {
+      this.phase = phase;
+    }
+
+    public long getExecutions() {
+      return executions;
+    }
+
+    public void setExecutions(final long executions) {
+      this.executions = executions;
+    }
+
+    public double getTotalMillis() {
+      return totalMillis;
+    }
+
+    public void setTotalMillis(final double totalMillis) {
+      this.totalMillis = totalMillis;
+    }
+
+    public double getMaxMillis() {
+      return maxMillis;
+    }
+
+    public void setMaxMillis(final double maxMillis) {
+      this.maxMillis = maxMillis;
+    }
+  }
+
+  /**
+   * The total time taken by the layout in milliseconds, including the overhead outside of rule
+   * execution.
+   */
+  private double totalMillis;
+
+  /**
+   * The timings of all executed rules, the most expensive first.
+   */
+  private List<RuleTiming> rules = new ArrayList<>();
+
+  public double getTotalMillis() {
+    return totalMillis;
+  }
+
+  public void setTotalMillis(final double totalMillis) {
+    this.totalMillis = totalMillis;
+  }
+
+  public List<RuleTiming> getRules() {
+    return rules;
+  }
+
+  public void setRules(final List<RuleTiming> rules) {
+    this.rules = rules;
+  }
+}
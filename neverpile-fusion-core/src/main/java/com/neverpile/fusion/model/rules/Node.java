@@ -1,34 +1,92 @@
 package com.neverpile.fusion.model.rules;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 import com.neverpile.fusion.model.Element;
 
 
 /**
  * A node of the view tree.
+ * <p>
+ * Most nodes of large trees are leaves without properties or visualizations. The containers for
+ * properties, visualizations and children are therefore only allocated once they are written to
+ * or obtained via their getters. Until then, empty properties and visualizations are represented
+ * by the shared empty map. Nodes are serialized by a dedicated {@link Serializer} which does not
+ * materialize them.
  */
 @JsonInclude(Include.NON_EMPTY)
+@JsonSerialize(using = Node.Serializer.class)
 public class Node {
+  /**
+   * Serializes nodes without allocating their lazily created containers. The output is the same as
+   * that of a bean serializer honoring the {@link JsonInclude} settings of this class. Properties
+   * added by subclasses are not serialized.
+   */
+  static final class Serializer extends StdSerializer<Node> {
+    private static final long serialVersionUID = 1L;
+
+    Serializer() {
+      super(Node.class);
+    }
+
+    @Override
+    public void serialize(final Node node, final JsonGenerator gen, final SerializerProvider provider)
+        throws IOException {
+      gen.writeStartObject(node);
+
+      if (!node.properties.isEmpty())
+        provider.defaultSerializeField("properties", node.properties, gen);
+      if (!node.visualization.isEmpty())
+        provider.defaultSerializeField("visualization", node.visualization, gen);
+      writeString("name", node.name, gen);
+      writeString("elementId", node.elementId, gen);
+
+      if (null != node.children && !node.children.isEmpty()) {
+        gen.writeArrayFieldStart("children");
+        for (Node child : node.children)
+          if (null != child)
+            serialize(child, gen, provider);
+          else
+            gen.writeNull();
+        gen.writeEndArray();
+      }
+
+      gen.writeBooleanField("initiallyExpanded", node.initiallyExpanded);
+      writeString("onDragoverExecutable", node.onDragoverExecutable, gen);
+      writeString("onDropExecutable", node.onDropExecutable, gen);
+
+      gen.writeEndObject();
+    }
+
+    private static void writeString(final String name, final String value, final JsonGenerator gen)
+        throws IOException {
+      if (null != value && !value.isEmpty())
+        gen.writeStringField(name, value);
+    }
+  }
 
   /**
    * Used-defined properties generated for this node. Properties can be anything and thus don't
    * follow a particular schema.
    */
-  private Map<String, Object> properties = new HashMap<>();
+  private Map<String, Object> properties = Collections.emptyMap();
 
   /**
    * A map of visualizations generated for this node. The key is the visualization type (e.g.
    * <code>html</code>), the value is the string representation of the visualization.
    */
-  private Map<String, String> visualization = new HashMap<>();
+  private Map<String, String> visualization = Collections.emptyMap();
 
   protected String name;
 
@@ -38,9 +96,14 @@ public class Node {
   private String elementId;
 
   /**
-   * The child nodes of this node.
+   * The child nodes of this node, indexed by name. <code>null</code> until the first child is added.
+   */
+  private ChildList children;
+
+  /**
+   * The list this node was last added to. Notified when the node is renamed.
    */
-  private List<Node> children = new ArrayList<>();
+  ChildList owner;
 
   /**
    * Whether the node shall be initially expanded when opening the view.
@@ -62,19 +125,23 @@ public class Node {
   }
 
   public Map<String, Object> getProperties() {
+    if (properties == Collections.EMPTY_MAP)
+      properties = new HashMap<>();
     return properties;
   }
 
   public void setProperties(final Map<String, Object> properties) {
-    this.properties = Objects.requireNonNull(properties, "properties");
+    this.properties = null != properties ? properties : Collections.emptyMap();
   }
 
   public Map<String, String> getVisualization() {
+    if (visualization == Collections.EMPTY_MAP)
+      visualization = new HashMap<>();
     return visualization;
   }
 
   public void setVisualization(final Map<String, String> visualization) {
-    this.visualization = visualization;
+    this.visualization = null != visualization ? visualization : Collections.emptyMap();
   }
 
   public Node withProperty(final String name, final Object value) {
@@ -93,30 +160,52 @@ public class Node {
 
   public void setName(final String name) {
     this.name = name;
+    if (null != owner)
+      owner.invalidate();
   }
 
   public List<Node> getChildren() {
+    return children();
+  }
+
+  private ChildList children() {
+    if (null == children)
+      children = new ChildList();
     return children;
   }
 
+  /**
+   * Replace the children of this node. The given list is copied.
+   *
+   * @param children the new children
+   */
   public void setChildren(final List<Node> children) {
-    this.children = Objects.requireNonNull(children, "children");
+    this.children = new ChildList(Objects.requireNonNull(children, "children"));
   }
 
   public Node createChild(final String name) {
-    Optional<Node> child = children.stream().filter(m -> Objects.equals(name, m.getName())).findFirst();
-    if (child.isPresent()) {
-      return child.get();
-    } else {
-      Node n = new Node();
-      n.setName(name);
-      children.add(n);
-      return n;
-    }
+    Node child = findChild(name);
+    if (null != child)
+      return child;
+
+    Node n = newChild();
+    n.setName(name);
+    children().add(n);
+    return n;
+  }
+
+  /**
+   * Create a new, empty child node. Subclasses may override this in order to create nodes of a
+   * specific type.
+   *
+   * @return the new node
+   */
+  protected Node newChild() {
+    return new Node();
   }
 
   public Node findChild(final String p) {
-    return children.stream().filter(m -> Objects.equals(p, m.getName())).findFirst().orElse(null);
+    return null != children ? children.find(p) : null;
   }
 
   public Node createPath(final String... nodePath) {
@@ -2,15 +2,17 @@ package com.neverpile.fusion.model.rules;
 
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.neverpile.fusion.model.rules.grouping.GroupingRule;
 import com.neverpile.fusion.model.rules.javascript.JavascriptRule;
 
 /**
- * Rules are used to generate view layouts from collection elements. There is currently just one concrete
- * rule implementation based on JavaScript: {@link JavascriptRule}.
+ * Rules are used to generate view layouts from collection elements. Rules are either based on
+ * JavaScript ({@link JavascriptRule}) or declarative and executed natively ({@link GroupingRule}).
  */
 @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "type")
 @JsonSubTypes({
     @com.fasterxml.jackson.annotation.JsonSubTypes.Type(value = JavascriptRule.class, name = "javascript"),
+    @com.fasterxml.jackson.annotation.JsonSubTypes.Type(value = GroupingRule.class, name = "grouping"),
 })
 public abstract class Rule {
   private String name;
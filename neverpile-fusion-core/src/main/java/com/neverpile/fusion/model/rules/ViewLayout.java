@@ -54,4 +54,12 @@ public class ViewLayout {
   public void setStructureTree(final Node root) {
     this.structureTree = root;
   }
+
+  public String getError() {
+    return error;
+  }
+
+  public void setError(final String error) {
+    this.error = error;
+  }
 }
@@ -0,0 +1,269 @@
+package com.neverpile.fusion.model.rules.grouping;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.InvalidPathException;
+import com.jayway.jsonpath.Option;
+import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.rules.Node;
+import com.neverpile.fusion.model.rules.RuleExecutionException;
+import com.neverpile.fusion.model.rules.grouping.GroupingRule.SortKey;
+
+/**
+ * The executable form of a {@link GroupingRule}. Selectors and templates are parsed once upon
+ * construction. Instances are immutable and thus thread-safe.
+ */
+public final class CompiledGroupingRule {
+  private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern(
+      "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+  private final ObjectMapper objectMapper;
+
+  private final Configuration configuration;
+
+  private final String name;
+
+  private final String[] path;
+
+  private final List<Selector> groupBy = new ArrayList<>();
+
+  private final String fallbackGroup;
+
+  private final List<Selector> sortBy = new ArrayList<>();
+
+  private final Comparator<Object[]> keyOrder;
+
+  private final boolean sortGroups;
+
+  private final Map<String, Template> groupVisualization = new LinkedHashMap<>();
+
+  private final Map<String, Template> elementVisualization = new LinkedHashMap<>();
+
+  /**
+   * Compile the given rule.
+   *
+   * @param rule the rule
+   * @param objectMapper the object mapper used to represent elements as JSON
+   * @throws RuleExecutionException if a selector or template is malformed
+   */
+  public CompiledGroupingRule(final GroupingRule rule, final ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+    this.configuration = Configuration.builder() //
+        .jsonProvider(new JacksonJsonNodeJsonProvider(objectMapper)) //
+        .options(Option.SUPPRESS_EXCEPTIONS) //
+        .build();
+    this.name = rule.getName();
+    this.path = null != rule.getPath() ? rule.getPath().toArray(new String[0]) : new String[0];
+    this.fallbackGroup = rule.getFallbackGroup();
+    this.sortGroups = rule.isSortGroups();
+
+    try {
+      if (null != rule.getGroupBy())
+        rule.getGroupBy().forEach(s -> groupBy.add(new Selector(s)));
+
+      Comparator<Object[]> order = null;
+      if (null != rule.getSortBy()) {
+        for (SortKey key : rule.getSortBy()) {
+          int i = sortBy.size();
+          sortBy.add(new Selector(key.getSelector()));
+
+          Comparator<Object[]> c = Comparator.comparing(k -> k[i], valueOrder(key.isDescending()));
+          order = null == order ? c : order.thenComparing(c);
+        }
+      }
+      this.keyOrder = order;
+
+      if (null != rule.getGroupVisualization())
+        rule.getGroupVisualization().forEach((type, t) -> groupVisualization.put(type, new Template(t, false)));
+      if (null != rule.getElementVisualization())
+        rule.getElementVisualization().forEach((type, t) -> elementVisualization.put(type, new Template(t, true)));
+    } catch (InvalidPathException | IllegalArgumentException e) {
+      throw new RuleExecutionException(name,
+          "Failed to compile grouping rule '" + name + "': " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Place the given element below its groups.
+   *
+   * @param element the element
+   * @param root the root node of the view tree
+   */
+  public void place(final Element element, final Node root) {
+    place(root.createPath(path), 0, null, parse(element), element);
+  }
+
+  private void place(final Node parent, final int level, final String group, final JsonNode document,
+      final Element element) {
+    if (level == groupBy.size()) {
+      Node n = parent.createElementNode(element);
+      elementVisualization.forEach((type, t) -> n.withVisualization(type, t.render(group, s -> text(document, s))));
+      return;
+    }
+
+    List<String> groups = new ArrayList<>();
+    collectValues(groupBy.get(level).select(document, configuration), groups);
+    if (groups.isEmpty() && null != fallbackGroup)
+      groups.add(fallbackGroup);
+
+    for (String g : groups) {
+      Node groupNode = parent.createChild(g);
+      groupVisualization.forEach((type, t) -> groupNode.withVisualization(type, t.render(g, null)));
+      place(groupNode, level + 1, g, document, element);
+    }
+  }
+
+  /**
+   * Sort the groups and the elements within them as requested by the rule.
+   *
+   * @param collection the collection being laid out
+   * @param root the root node of the view tree
+   */
+  public void sort(final Collection collection, final Node root) {
+    if (null == keyOrder && !sortGroups)
+      return;
+
+    Node base = root.findNode(path);
+    if (null != base)
+      sort(base, 0, new SortKeys(collection));
+  }
+
+  private void sort(final Node node, final int level, final SortKeys keys) {
+    if (level == groupBy.size()) {
+      if (null != keyOrder)
+        keys.sort(node.getChildren());
+      return;
+    }
+
+    if (sortGroups)
+      node.getChildren().sort(Comparator.comparing(Node::getName, Comparator.nullsLast(Comparator.naturalOrder())));
+
+    for (Node group : node.getChildren())
+      sort(group, level + 1, keys);
+  }
+
+  private JsonNode parse(final Element element) {
+    ObjectNode document = objectMapper.createObjectNode();
+    document.put("id", element.getId());
+    ArrayNode tags = document.putArray("tags");
+    if (null != element.getTags())
+      element.getTags().forEach(tags::add);
+    document.set("metadata", element.getMetadata());
+    document.put("dateCreated", format(element.getDateCreated()));
+    document.put("dateModified", format(element.getDateModified()));
+
+    return document;
+  }
+
+  private static String format(final Instant instant) {
+    return null != instant ? DATE_FORMAT.format(instant) : null;
+  }
+
+  private String text(final JsonNode document, final Selector selector) {
+    List<String> values = new ArrayList<>();
+    collectValues(selector.select(document, configuration), values);
+    return String.join(", ", values);
+  }
+
+  /**
+   * Collect the textual representations of the given selector result. Arrays yield their items,
+   * <code>null</code> and missing values yield nothing.
+   */
+  private static void collectValues(final Object result, final List<String> values) {
+    if (result instanceof JsonNode) {
+      JsonNode node = (JsonNode) result;
+      if (node.isArray())
+        node.forEach(item -> collectValues(item, values));
+      else if (node.isValueNode() && !node.isNull())
+        values.add(node.asText());
+      else if (node.isObject())
+        values.add(node.toString());
+    } else if (result instanceof Iterable) {
+      ((Iterable<?>) result).forEach(item -> collectValues(item, values));
+    } else if (null != result) {
+      values.add(result.toString());
+    }
+  }
+
+  /**
+   * Return the first value of the given selector result, as a number if it is numeric.
+   */
+  private static Object sortValue(final Object result) {
+    if (result instanceof JsonNode) {
+      JsonNode node = (JsonNode) result;
+      if (node.isArray())
+        return node.size() > 0 ? sortValue(node.get(0)) : null;
+      if (node.isNumber())
+        return node.numberValue();
+      if (node.isNull() || node.isMissingNode())
+        return null;
+      return node.isValueNode() ? node.asText() : node.toString();
+    }
+    return result;
+  }
+
+  /**
+   * Order sort values: numbers come before all other values and are compared numerically, the other
+   * values are compared by their string representation. Missing values come last in either direction.
+   */
+  private static Comparator<Object> valueOrder(final boolean descending) {
+    Comparator<Object> order = (a, b) -> {
+      boolean aIsNumber = a instanceof Number;
+      boolean bIsNumber = b instanceof Number;
+      if (aIsNumber != bIsNumber)
+        return aIsNumber ? -1 : 1;
+      return aIsNumber
+          ? Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue())
+          : a.toString().compareTo(b.toString());
+    };
+    return Comparator.nullsLast(descending ? order.reversed() : order);
+  }
+
+  /**
+   * The sort keys of the elements of a collection, computed upon first use.
+   */
+  private final class SortKeys {
+    private final Map<String, Element> elements = new HashMap<>();
+
+    private final Map<String, Object[]> keys = new HashMap<>();
+
+    SortKeys(final Collection collection) {
+      for (Element e : collection.getElements())
+        elements.putIfAbsent(e.getId(), e);
+    }
+
+    void sort(final List<Node> nodes) {
+      // nodes not referring to an element keep their position at the top
+      nodes.sort(Comparator.comparing(this::keysOf, Comparator.nullsFirst(keyOrder)));
+    }
+
+    private Object[] keysOf(final Node node) {
+      Element element = null != node.getElementId() ? elements.get(node.getElementId()) : null;
+      if (null == element)
+        return null;
+
+      return keys.computeIfAbsent(element.getId(), id -> {
+        JsonNode document = parse(element);
+        Object[] k = new Object[sortBy.size()];
+        for (int i = 0; i < k.length; i++)
+          k[i] = sortValue(sortBy.get(i).select(document, configuration));
+        return k;
+      });
+    }
+  }
+}
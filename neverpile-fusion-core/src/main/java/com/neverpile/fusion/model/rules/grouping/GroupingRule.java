@@ -0,0 +1,164 @@
+package com.neverpile.fusion.model.rules.grouping;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.neverpile.fusion.model.rules.Rule;
+
+/**
+ * A declarative element rule which places each element below one or more group nodes. It is
+ * executed natively, i.e. without the overhead of a script engine.
+ * <p>
+ * The groups, sort keys and visualization placeholders are specified using <em>selectors</em>:
+ * JsonPath expressions evaluated against a document describing the element. The document has the
+ * following members:
+ * <dl>
+ * <dt><code>id</code>
+ * <dd>the element id
+ * <dt><code>tags</code>
+ * <dd>the array of element tags
+ * <dt><code>metadata</code>
+ * <dd>the element metadata
+ * <dt><code>dateCreated</code>, <code>dateModified</code>
+ * <dd>the element dates, formatted like <code>2020-01-31T12:00:00.000Z</code> so that they sort
+ * chronologically
+ * </dl>
+ * For example, <code>$.tags[0]</code> groups elements by their first tag, while
+ * <code>$.tags[*]</code> places elements below a group for each of their tags.
+ * <p>
+ * Grouping rules can only be used as element rules. Sorting takes place once all element rules of a
+ * view have been applied and before the tree rules are executed.
+ */
+public class GroupingRule extends Rule {
+  /**
+   * A key by which the elements in a group are sorted.
+   */
+  public static class SortKey {
+    /**
+     * The selector of the value to sort by. Numbers are compared numerically, all other values by
+     * their textual representation. Elements without a value are sorted last.
+     */
+    private String selector;
+
+    /**
+     * Whether to sort in descending order.
+     */
+    private boolean descending;
+
+    public String getSelector() {
+      return selector;
+    }
+
+    public void setSelector(final String selector) {
+      this.selector = selector;
+    }
+
+    public boolean isDescending() {
+      return descending;
+    }
+
+    public void setDescending(final boolean descending) {
+      this.descending = descending;
+    }
+  }
+
+  /**
+   * The path of the node below which the groups are created. Empty to create them below the root.
+   */
+  private List<String> path = new ArrayList<>();
+
+  /**
+   * The selectors yielding the group names, one per level of grouping. An element is placed below
+   * each value a selector yields. Empty to place the elements directly below the node identified by
+   * the path.
+   */
+  private List<String> groupBy = new ArrayList<>();
+
+  /**
+   * The name of the group for elements for which a selector yields no value. If not set, such
+   * elements are not placed at all.
+   */
+  private String fallbackGroup;
+
+  /**
+   * The keys by which the elements within a group are sorted. Empty to keep them in the order of the
+   * collection.
+   */
+  private List<SortKey> sortBy = new ArrayList<>();
+
+  /**
+   * Whether to sort the groups by name.
+   */
+  private boolean sortGroups;
+
+  /**
+   * Visualization templates for the group nodes by visualization type. The placeholder
+   * <code>${group}</code> is replaced by the group name.
+   */
+  private Map<String, String> groupVisualization = new HashMap<>();
+
+  /**
+   * Visualization templates for the element nodes by visualization type. Placeholders of the form
+   * <code>${selector}</code> are replaced by the value of the selector, <code>${group}</code> by
+   * the name of the innermost group.
+   */
+  private Map<String, String> elementVisualization = new HashMap<>();
+
+  public List<String> getPath() {
+    return path;
+  }
+
+  public void setPath(final List<String> path) {
+    this.path = path;
+  }
+
+  public List<String> getGroupBy() {
+    return groupBy;
+  }
+
+  public void setGroupBy(final List<String> groupBy) {
+    this.groupBy = groupBy;
+  }
+
+  public String getFallbackGroup() {
+    return fallbackGroup;
+  }
+
+  public void setFallbackGroup(final String fallbackGroup) {
+    this.fallbackGroup = fallbackGroup;
+  }
+
+  public List<SortKey> getSortBy() {
+    return sortBy;
+  }
+
+  public void setSortBy(final List<SortKey> sortBy) {
+    this.sortBy = sortBy;
+  }
+
+  public boolean isSortGroups() {
+    return sortGroups;
+  }
+
+  public void setSortGroups(final boolean sortGroups) {
+    this.sortGroups = sortGroups;
+  }
+
+  public Map<String, String> getGroupVisualization() {
+    return groupVisualization;
+  }
+
+  public void setGroupVisualization(final Map<String, String> groupVisualization) {
+    this.groupVisualization = groupVisualization;
+  }
+
+  public Map<String, String> getElementVisualization() {
+    return elementVisualization;
+  }
+
+  public void setElementVisualization(final Map<String, String> elementVisualization) {
+    this.elementVisualization = elementVisualization;
+  }
+}
@@ -0,0 +1,76 @@
+package com.neverpile.fusion.model.rules.grouping;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+
+/**
+ * A selector of a {@link GroupingRule}. Selectors consisting of plain member and index steps, like
+ * <code>$.metadata.title</code> or <code>$.tags[0]</code>, are evaluated as a {@link JsonPointer}
+ * which is considerably cheaper than the general JsonPath evaluation used for all other selectors.
+ */
+final class Selector {
+  private static final Pattern STEP = Pattern.compile("\\.([A-Za-z_][A-Za-z0-9_]*)|\\['([^'\\\\]*)'\\]|\\[(\\d+)\\]");
+
+  private final JsonPointer pointer;
+
+  private final JsonPath path;
+
+  /**
+   * Compile the given selector.
+   *
+   * @param selector the selector
+   * @throws com.jayway.jsonpath.InvalidPathException if the selector is malformed
+   */
+  Selector(final String selector) {
+    this.pointer = toPointer(selector);
+    this.path = null == pointer ? JsonPath.compile(selector) : null;
+  }
+
+  /**
+   * Translate the given selector into a pointer, if it is simple enough. A trailing wildcard is
+   * dropped, as array results are expanded anyway.
+   */
+  private static JsonPointer toPointer(final String selector) {
+    String s = selector.trim();
+    if (s.endsWith("[*]"))
+      s = s.substring(0, s.length() - 3);
+    if (!s.startsWith("$"))
+      return null;
+
+    StringBuilder pointer = new StringBuilder();
+    Matcher m = STEP.matcher(s);
+    int pos = 1;
+    while (pos < s.length()) {
+      if (!m.find(pos) || m.start() != pos)
+        return null;
+
+      String step = null != m.group(1) ? m.group(1) : null != m.group(2) ? m.group(2) : m.group(3);
+      pointer.append('/').append(step.replace("~", "~0").replace("/", "~1"));
+      pos = m.end();
+    }
+
+    return JsonPointer.compile(pointer.toString());
+  }
+
+  /**
+   * Evaluate the selector.
+   *
+   * @param document the element document
+   * @param configuration the JsonPath configuration
+   * @return the result; either a {@link JsonNode}, <code>null</code> or, for general JsonPath
+   *         selectors, whatever the evaluation yields
+   */
+  Object select(final JsonNode document, final Configuration configuration) {
+    if (null != pointer) {
+      JsonNode result = document.at(pointer);
+      return result.isMissingNode() ? null : result;
+    }
+
+    return path.read(document, configuration);
+  }
+}
@@ -0,0 +1,76 @@
+package com.neverpile.fusion.model.rules.grouping;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A visualization template of a {@link GroupingRule}, parsed into literal text and placeholders.
+ */
+final class Template {
+  /**
+   * Marks the position of the <code>${group}</code> placeholder.
+   */
+  private static final Object GROUP = new Object();
+
+  private final List<Object> segments = new ArrayList<>();
+
+  /**
+   * Parse the given template.
+   *
+   * @param template the template text
+   * @param selectors whether placeholders may be selectors. If <code>false</code>, only the
+   *          <code>${group}</code> placeholder is supported.
+   * @throws IllegalArgumentException if the template is malformed
+   */
+  Template(final String template, final boolean selectors) {
+    int pos = 0;
+    while (pos < template.length()) {
+      int start = template.indexOf("${", pos);
+      if (start < 0) {
+        segments.add(template.substring(pos));
+        break;
+      }
+
+      int end = template.indexOf('}', start + 2);
+      if (end < 0)
+        throw new IllegalArgumentException("Unterminated placeholder in template: " + template);
+
+      if (start > pos)
+        segments.add(template.substring(pos, start));
+
+      String placeholder = template.substring(start + 2, end).trim();
+      if ("group".equals(placeholder))
+        segments.add(GROUP);
+      else if (selectors)
+        segments.add(new Selector(placeholder));
+      else
+        throw new IllegalArgumentException("Unsupported placeholder in template: ${" + placeholder + "}");
+
+      pos = end + 1;
+    }
+  }
+
+  /**
+   * Render the template.
+   *
+   * @param group the group name
+   * @param selector resolves selectors to their textual value
+   * @return the rendered text
+   */
+  String render(final String group, final Function<Selector, String> selector) {
+    if (segments.size() == 1 && segments.get(0) instanceof String)
+      return (String) segments.get(0);
+
+    StringBuilder sb = new StringBuilder();
+    for (Object segment : segments) {
+      if (segment == GROUP)
+        sb.append(group);
+      else if (segment instanceof Selector)
+        sb.append(selector.apply((Selector) segment));
+      else
+        sb.append(segment);
+    }
+    return sb.toString();
+  }
+}
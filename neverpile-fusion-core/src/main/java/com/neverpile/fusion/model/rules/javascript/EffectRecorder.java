@@ -0,0 +1,339 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.google.common.hash.HashCode;
+import com.neverpile.fusion.model.rules.Node;
+import com.neverpile.fusion.model.rules.javascript.ElementEffects.Effect;
+
+/**
+ * Records the {@link ElementEffects} of the element rules of a single view and replays the effects
+ * recorded during a previous layout instead of executing the rules, where possible. Elements are
+ * identified by a hash of their content, see {@link LayoutBaselines}.
+ * <p>
+ * Effects are recorded by the nodes of the view tree created by {@link #createRoot()}. Operations
+ * which cannot be replayed faithfully, like reading the tree, exposing the mutable state of a node
+ * or modifying the title visualization, mark the effects of the current element as untracked. The
+ * rules are then executed for that element in every layout.
+ * <p>
+ * Instances are not thread-safe.
+ */
+final class EffectRecorder {
+  private static final String[] ROOT_PATH = new String[0];
+
+  private final LayoutBudget budget;
+
+  private final Map<String, String> titleVisualization;
+
+  private Map<String, String> lastTitleVisualization;
+
+  private final List<HashCode> elementKeys;
+
+  private final Map<HashCode, ElementEffects> previous;
+
+  private final Map<HashCode, ElementEffects> recorded = new HashMap<>();
+
+  private List<Effect> current;
+
+  private boolean tracked;
+
+  private boolean replaying;
+
+  private int internal;
+
+  /**
+   * Create a recorder.
+   *
+   * @param budget the budget to which node creation is reported
+   * @param titleVisualization the title visualization of the layout
+   * @param elementKeys the content hashes of the elements of the collection by element index
+   * @param previous the effects recorded during a previous layout by content hash, may be empty
+   */
+  EffectRecorder(final LayoutBudget budget, final Map<String, String> titleVisualization,
+      final List<HashCode> elementKeys, final Map<HashCode, ElementEffects> previous) {
+    this.budget = budget;
+    this.titleVisualization = titleVisualization;
+    this.lastTitleVisualization = new HashMap<>(titleVisualization);
+    this.elementKeys = elementKeys;
+    this.previous = previous;
+  }
+
+  /**
+   * Create the root node of the view tree.
+   *
+   * @return the root node
+   */
+  Node createRoot() {
+    return new RecordingNode(this, null);
+  }
+
+  /**
+   * Replay the effects recorded for an element with the same content as the one at the given
+   * index, if there are any.
+   *
+   * @param elementIndex the element index
+   * @param root the root node
+   * @return <code>true</code> if effects were replayed, <code>false</code> if the rules must be
+   *         executed
+   */
+  boolean replay(final int elementIndex, final Node root) {
+    HashCode key = elementKeys.get(elementIndex);
+    ElementEffects effects = previous.get(key);
+    if (null == effects)
+      return false;
+
+    replaying = true;
+    try {
+      effects.replay(root);
+    } finally {
+      replaying = false;
+    }
+
+    recorded.put(key, effects);
+    return true;
+  }
+
+  /**
+   * Start recording the effects of the rules executed for an element.
+   */
+  void begin() {
+    current = new ArrayList<>();
+    tracked = true;
+  }
+
+  /**
+   * Finish recording the effects of the rules executed for the element at the given index.
+   *
+   * @param elementIndex the element index
+   */
+  void end(final int elementIndex) {
+    if (!titleVisualization.equals(lastTitleVisualization)) {
+      tracked = false;
+      lastTitleVisualization = new HashMap<>(titleVisualization);
+    }
+
+    if (tracked)
+      recorded.put(elementKeys.get(elementIndex), new ElementEffects(current));
+
+    current = null;
+  }
+
+  /**
+   * Return the effects recorded or replayed during this layout by content hash.
+   *
+   * @return the effects
+   */
+  Map<HashCode, ElementEffects> getRecorded() {
+    return recorded;
+  }
+
+  private boolean isRecording() {
+    return null != current && internal == 0;
+  }
+
+  private void record(final String[] path, final Consumer<Node> operation) {
+    if (isRecording())
+      current.add(new Effect(path, operation));
+  }
+
+  private void untracked() {
+    if (isRecording())
+      tracked = false;
+  }
+
+  private void nodeCreated() {
+    if (replaying)
+      budget.nodeReplayed();
+    else
+      budget.nodeCreated();
+  }
+
+  private static boolean isImmutable(final Object value) {
+    return null == value || value instanceof String || value instanceof Number || value instanceof Boolean
+        || value instanceof Character;
+  }
+
+  /**
+   * A node recording the operations performed on it.
+   */
+  private static final class RecordingNode extends Node {
+    private final EffectRecorder recorder;
+
+    private final String[] parentPath;
+
+    private String[] path;
+
+    RecordingNode(final EffectRecorder recorder, final String[] parentPath) {
+      this.recorder = recorder;
+      this.parentPath = parentPath;
+    }
+
+    private String[] path() {
+      if (null == parentPath)
+        return ROOT_PATH;
+
+      if (null == path) {
+        path = Arrays.copyOf(parentPath, parentPath.length + 1);
+        path[parentPath.length] = name;
+      }
+      return path;
+    }
+
+    @Override
+    protected Node newChild() {
+      recorder.nodeCreated();
+      return new RecordingNode(recorder, path());
+    }
+
+    @Override
+    public Node createChild(final String name) {
+      recorder.record(path(), n -> n.createChild(name));
+      recorder.internal++;
+      try {
+        return super.createChild(name);
+      } finally {
+        recorder.internal--;
+      }
+    }
+
+    @Override
+    public Node withProperty(final String name, final Object value) {
+      if (isImmutable(value))
+        recorder.record(path(), n -> n.withProperty(name, value));
+      else
+        recorder.untracked();
+
+      recorder.internal++;
+      try {
+        return super.withProperty(name, value);
+      } finally {
+        recorder.internal--;
+      }
+    }
+
+    @Override
+    public Node withVisualization(final String type, final String representation) {
+      recorder.record(path(), n -> n.withVisualization(type, representation));
+      recorder.internal++;
+      try {
+        return super.withVisualization(type, representation);
+      } finally {
+        recorder.internal--;
+      }
+    }
+
+    @Override
+    public void setElementId(final String elementId) {
+      recorder.record(path(), n -> n.setElementId(elementId));
+      super.setElementId(elementId);
+    }
+
+    @Override
+    public void setInitiallyExpanded(final boolean initiallyExpanded) {
+      recorder.record(path(), n -> n.setInitiallyExpanded(initiallyExpanded));
+      super.setInitiallyExpanded(initiallyExpanded);
+    }
+
+    @Override
+    public Node onDragover(final String executable) {
+      recorder.record(path(), n -> n.onDragover(executable));
+      return super.onDragover(executable);
+    }
+
+    @Override
+    public Node onDrop(final String executable) {
+      recorder.record(path(), n -> n.onDrop(executable));
+      return super.onDrop(executable);
+    }
+
+    @Override
+    public void setName(final String name) {
+      recorder.untracked();
+      super.setName(name);
+      path = null;
+    }
+
+    @Override
+    public void setProperties(final Map<String, Object> properties) {
+      recorder.untracked();
+      super.setProperties(properties);
+    }
+
+    @Override
+    public void setVisualization(final Map<String, String> visualization) {
+      recorder.untracked();
+      super.setVisualization(visualization);
+    }
+
+    @Override
+    public void setChildren(final List<Node> children) {
+      recorder.untracked();
+      super.setChildren(children);
+    }
+
+    @Override
+    public Map<String, Object> getProperties() {
+      recorder.untracked();
+      return super.getProperties();
+    }
+
+    @Override
+    public Map<String, String> getVisualization() {
+      recorder.untracked();
+      return super.getVisualization();
+    }
+
+    @Override
+    public String getName() {
+      recorder.untracked();
+      return super.getName();
+    }
+
+    @Override
+    public List<Node> getChildren() {
+      recorder.untracked();
+      return super.getChildren();
+    }
+
+    @Override
+    public Node findChild(final String p) {
+      recorder.untracked();
+      return super.findChild(p);
+    }
+
+    @Override
+    public Node findNode(final String... nodePath) {
+      recorder.untracked();
+      return super.findNode(nodePath);
+    }
+
+    @Override
+    public String getElementId() {
+      recorder.untracked();
+      return super.getElementId();
+    }
+
+    @Override
+    public boolean isInitiallyExpanded() {
+      recorder.untracked();
+      return super.isInitiallyExpanded();
+    }
+
+    @Override
+    public String getOnDragoverExecutable() {
+      recorder.untracked();
+      return super.getOnDragoverExecutable();
+    }
+
+    @Override
+    public String getOnDropExecutable() {
+      recorder.untracked();
+      return super.getOnDropExecutable();
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.neverpile.fusion.model.rules.Node;
+
+/**
+ * The effects the element rules of a view had on the view tree when they were executed for a
+ * single element. Every effect is an operation on a node identified by its path from the root.
+ * Replaying the effects in the recorded order has the same result as executing the rules again,
+ * provided that the rules executed for the preceding elements had the same effects, too.
+ */
+final class ElementEffects {
+  /**
+   * A single operation on a node of the view tree.
+   */
+  static final class Effect {
+    private final String[] path;
+    private final Consumer<Node> operation;
+
+    Effect(final String[] path, final Consumer<Node> operation) {
+      this.path = path;
+      this.operation = operation;
+    }
+  }
+
+  private final List<Effect> effects;
+
+  ElementEffects(final List<Effect> effects) {
+    this.effects = effects;
+  }
+
+  /**
+   * Replay the effects onto the view tree with the given root.
+   *
+   * @param root the root node
+   */
+  void replay(final Node root) {
+    for (Effect e : effects)
+      e.operation.accept(root.createPath(e.path));
+  }
+}
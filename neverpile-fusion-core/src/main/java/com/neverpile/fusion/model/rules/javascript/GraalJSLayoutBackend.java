@@ -0,0 +1,371 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.script.ScriptException;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.HostAccess;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.ResourceLimits;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration.LimitsConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.rules.CollectionLayout;
+import com.neverpile.fusion.model.rules.Node;
+import com.neverpile.fusion.model.rules.RuleExecutionException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * A {@link LayoutScriptBackend} based on GraalVM JavaScript. It requires
+ * <code>org.graalvm.js:js</code> on the classpath. When run on a stock JDK, scripts are executed by
+ * the interpreter only. Run on GraalVM or enable the JVMCI compiler to benefit from runtime
+ * compilation.
+ * <p>
+ * All contexts share a single polyglot {@link Engine} and a bounded cache of rule {@link Source}s
+ * keyed by collection type id, rule name and rule code. Code parsed for a source in one context is
+ * thereby reused by all other contexts. Contexts are pooled, see {@link GraalJSPooledContext}.
+ * <p>
+ * A context is replaced by a fresh one after each layout. The replacement is created on a background
+ * thread once the layout has completed, so that requests don't wait for the evaluation of the
+ * support library. The context only becomes available to the next layout once it has been renewed.
+ * <p>
+ * Contexts are run in Nashorn compatibility mode, so that rules can make use of the same Java
+ * interoperability features as with the {@link NashornLayoutBackend}, e.g. access to bean
+ * properties.
+ * <p>
+ * Statement limits per rule are enforced using the {@link ResourceLimits} of the contexts. Time
+ * limits are enforced by a watchdog thread which interrupts contexts that run past their deadline.
+ * Statement limits per layout are not supported.
+ */
+public class GraalJSLayoutBackend implements LayoutScriptBackend {
+  private static final Logger LOGGER = LoggerFactory.getLogger(GraalJSLayoutBackend.class);
+
+  private static final String LANGUAGE = "js";
+
+  private static final Duration INTERRUPT_TIMEOUT = Duration.ofSeconds(1);
+
+  private final ObjectMapper objectMapper;
+
+  private final Engine engine;
+
+  private final Cache<ScriptKey, Source> sources;
+
+  private final Source supportLibrary;
+
+  private final Source initElement;
+
+  private final ResourceLimits resourceLimits;
+
+  private final ScheduledExecutorService watchdog;
+
+  private final ExecutorService renewer;
+
+  private final ScriptEnginePool<GraalJSPooledContext> pool;
+
+  public GraalJSLayoutBackend(final ObjectMapper objectMapper, final LayoutEngineConfiguration config,
+      final MeterRegistry meterRegistry) {
+    this.objectMapper = objectMapper;
+
+    this.engine = Engine.newBuilder() //
+        .option("engine.WarnInterpreterOnly", "false") //
+        .build();
+
+    this.sources = CacheBuilder.newBuilder() //
+        .maximumSize(config.getCompiledScriptCacheSize()) //
+        .build();
+
+    this.supportLibrary = Source.newBuilder(LANGUAGE, SupportLibrary.getSource(), SupportLibrary.NAME).buildLiteral();
+    this.initElement = Source.newBuilder(LANGUAGE, "_initElement()", "initElement").buildLiteral();
+
+    LimitsConfiguration limits = config.getLimits();
+    if (limits.getMaxStatementsPerLayout() > 0)
+      LOGGER.warn("Statement limits per layout are not supported by the GraalJS layout backend");
+
+    // only count the statements of rules, not those of the support library
+    this.resourceLimits = limits.getMaxStatementsPerRule() > 0
+        ? ResourceLimits.newBuilder() //
+            .statementLimit(limits.getMaxStatementsPerRule(),
+                s -> !s.equals(supportLibrary) && !s.equals(initElement) && !s.isInternal()) //
+            .build()
+        : null;
+
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("layout-watchdog-");
+    threadFactory.setDaemon(true);
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, threadFactory);
+    executor.setRemoveOnCancelPolicy(true);
+    this.watchdog = executor;
+
+    int renewers = Math.max(1, config.getPool().getSize());
+    CustomizableThreadFactory renewerThreadFactory = new CustomizableThreadFactory("layout-context-renewal-");
+    renewerThreadFactory.setDaemon(true);
+    ThreadPoolExecutor renewalExecutor = new ThreadPoolExecutor(renewers, renewers, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), renewerThreadFactory);
+    renewalExecutor.allowCoreThreadTimeOut(true);
+    this.renewer = renewalExecutor;
+
+    this.pool = new ScriptEnginePool<>("graaljs", config.getPool(),
+        () -> new GraalJSPooledContext(this::createContext), meterRegistry);
+  }
+
+  private Context createContext() {
+    Context context = buildContext();
+
+    try {
+      context.eval(supportLibrary);
+    } catch (RuntimeException e) {
+      context.close();
+      throw new IllegalStateException("Can't initialize layout engine support library", e);
+    }
+
+    return context;
+  }
+
+  /**
+   * Build a bare context on the shared engine. All contexts of an engine must be configured alike.
+   */
+  private Context buildContext() {
+    Context.Builder builder = Context.newBuilder(LANGUAGE) //
+        .engine(engine) //
+        .allowHostAccess(HostAccess.ALL) //
+        .allowExperimentalOptions(true) //
+        .option("js.nashorn-compat", "true");
+    if (null != resourceLimits)
+      builder.resourceLimits(resourceLimits);
+
+    return builder.build();
+  }
+
+  @Override
+  public LayoutScriptScope openScope(final Collection collection, final CollectionLayout layout,
+      final LayoutBudget budget) throws RuleExecutionException {
+    GraalJSPooledContext pooledContext = pool.borrow();
+    try {
+      Value bindings = pooledContext.getContext().getBindings(LANGUAGE);
+
+      // intialize private bindings
+      bindings.putMember("_collection", collection);
+      bindings.putMember("_layout", layout);
+      bindings.putMember("_unwrapElement", GraalJSValueFactory.UNWRAP_ELEMENT);
+
+      // expose the collection to the scripting context
+      GraalJSValueFactory factory = new GraalJSValueFactory(objectMapper, bindings);
+      bindings.putMember("collection", factory.toHostObject(new JSCollection(collection, factory)));
+
+      return new Scope(pooledContext, bindings, budget);
+    } catch (RuntimeException e) {
+      release(pooledContext);
+      throw new RuleExecutionException("global", "Failed to initialize tree layout engine", e);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * As contexts share a single engine, parsing the rules in one pooled context also warms up the
+   * code cache used by all other contexts.
+   */
+  @Override
+  public void precompile(final CollectionType type, final List<JavascriptRule> rules)
+      throws RuleExecutionException {
+    GraalJSPooledContext pooledContext = pool.borrow();
+    try {
+      rules.forEach(rule -> parse(pooledContext, type, rule));
+    } finally {
+      release(pooledContext);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The rules are parsed in a scratch context which is discarded afterwards. As it shares the engine
+   * with the pooled contexts, the parsed code is nevertheless available to them.
+   */
+  @Override
+  public void validate(final CollectionType type, final List<JavascriptRule> rules) throws RuleExecutionException {
+    try (Context scratch = buildContext()) {
+      for (JavascriptRule rule : rules) {
+        try {
+          scratch.parse(getSource(new ScriptKey(type, rule), rule));
+        } catch (PolyglotException e) {
+          if (!e.isSyntaxError())
+            throw e;
+
+          throw new RuleExecutionException(rule.getName(),
+              "Failed to compile JavaScript-based rule '" + rule.getName() + "': " + e.getMessage(), e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Close all idle contexts and the shared engine.
+   */
+  public void close() {
+    watchdog.shutdownNow();
+    renewer.shutdownNow();
+    pool.close();
+    engine.close();
+  }
+
+  /**
+   * Renew the given context in the background and return it to the pool afterwards. If the renewal
+   * fails, the used context is discarded nevertheless and a fresh one is created when the pooled
+   * context is borrowed next.
+   */
+  private void release(final GraalJSPooledContext pooledContext) {
+    renewer.execute(() -> {
+      try {
+        pooledContext.renew();
+      } catch (RuntimeException e) {
+        LOGGER.warn("Can't renew layout context - retrying on next use", e);
+      }
+      pool.release(pooledContext);
+    });
+  }
+
+  private static void interrupt(final Context context) {
+    try {
+      context.interrupt(INTERRUPT_TIMEOUT);
+    } catch (TimeoutException | RuntimeException e) {
+      LOGGER.warn("Can't interrupt layout rule execution", e);
+    }
+  }
+
+  private Source getSource(final ScriptKey key, final JavascriptRule rule) {
+    return sources.asMap().computeIfAbsent(key,
+        k -> Source.newBuilder(LANGUAGE, rule.getScriptCode(), rule.getName()).buildLiteral());
+  }
+
+  private Value parse(final GraalJSPooledContext pooledContext, final CollectionType type,
+      final JavascriptRule rule) {
+    try {
+      return pooledContext.parse(new ScriptKey(type, rule), k -> getSource(k, rule));
+    } catch (PolyglotException e) {
+      if (!e.isSyntaxError())
+        throw e;
+
+      throw new RuleExecutionException(rule.getName(),
+          "Failed to compile JavaScript-based rule '" + rule.getName() + "': " + e.getMessage(), e);
+    }
+  }
+
+  private final class Scope implements LayoutScriptScope {
+    private final GraalJSPooledContext pooledContext;
+    private final Value bindings;
+    private final LayoutBudget budget;
+    private RuleExecutionException abortion;
+    private boolean closed;
+
+    Scope(final GraalJSPooledContext pooledContext, final Value bindings, final LayoutBudget budget) {
+      this.pooledContext = pooledContext;
+      this.bindings = bindings;
+      this.budget = budget;
+    }
+
+    @Override
+    public void setRoot(final Node root) {
+      if (null == abortion)
+        bindings.putMember("_root", root);
+    }
+
+    @Override
+    public void apply(final CollectionType type, final JavascriptRule rule) throws ScriptException {
+      checkAborted();
+
+      execute(parse(pooledContext, type, rule));
+    }
+
+    @Override
+    public void apply(final CollectionType type, final JavascriptRule rule, final int elementIndex)
+        throws ScriptException {
+      checkAborted();
+
+      Value script = parse(pooledContext, type, rule);
+
+      // intialize private bindings
+      bindings.putMember("_elementIndex", elementIndex);
+
+      // run per-element initialization
+      try {
+        pooledContext.getContext().eval(initElement);
+      } catch (PolyglotException e) {
+        throw toScriptException(e);
+      }
+
+      // run rule script
+      execute(script);
+    }
+
+    private void execute(final Value script) throws ScriptException {
+      Context context = pooledContext.getContext();
+      if (null != resourceLimits)
+        context.resetLimits();
+
+      long deadline = budget.getDeadline();
+      ScheduledFuture<?> interruption = deadline != Long.MAX_VALUE
+          ? watchdog.schedule(() -> interrupt(context), deadline - System.nanoTime(), TimeUnit.NANOSECONDS)
+          : null;
+      try {
+        script.executeVoid();
+      } catch (PolyglotException e) {
+        if (e.isResourceExhausted() && null != resourceLimits) {
+          // the context has been cancelled and is unusable from now on
+          abortion = budget.statementLimitReached();
+          throw abortion;
+        }
+
+        // interruptions by the watchdog
+        if (e.isInterrupted() || e.isCancelled())
+          budget.checkTime();
+
+        throw toScriptException(e);
+      } finally {
+        if (null != interruption)
+          interruption.cancel(false);
+      }
+    }
+
+    private void checkAborted() {
+      if (null != abortion)
+        throw new RuleExecutionException(abortion.getRuleName(), "Layout aborted: " + abortion.getMessage(),
+            abortion);
+    }
+
+    private ScriptException toScriptException(final PolyglotException e) {
+      ScriptException se = new ScriptException(e.getMessage());
+      se.initCause(e);
+      return se;
+    }
+
+    @Override
+    public void close() {
+      if (!closed) {
+        closed = true;
+        release(pooledContext);
+      }
+    }
+  }
+}
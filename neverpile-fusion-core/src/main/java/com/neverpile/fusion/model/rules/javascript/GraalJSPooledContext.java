@@ -0,0 +1,123 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+
+/**
+ * A GraalVM JavaScript {@link Context} managed by a {@link ScriptEnginePool}. The context is
+ * prepared with the scripting support library when it is created.
+ * <p>
+ * Unlike Nashorn, GraalVM JavaScript doesn't support the execution of scripts against separate
+ * global scopes within one context. To make sure that state defined by one layout's rules never
+ * leaks into another layout, each context is therefore used for a single layout only and replaced
+ * by a fresh one via {@link #renew()} afterwards. Contexts share a single engine, so that the code
+ * parsed in one context is reused by all others. The scripts used since the previous renewal are
+ * parsed again in the fresh context, so that the next layout finds them ready.
+ * <p>
+ * A used context is never handed out again: the context is discarded by {@link #renew()} even if
+ * no fresh one can be created. In that case, a fresh context is created on the next call to
+ * {@link #getContext()}.
+ * <p>
+ * Instances are not thread-safe. A context must only be used by the thread that borrowed it from
+ * the pool.
+ */
+final class GraalJSPooledContext implements ScriptEnginePool.PooledEngine {
+  private final Supplier<Context> contextFactory;
+
+  private final Map<ScriptKey, ParsedScript> parsedScripts = new HashMap<>();
+
+  private final Set<ScriptKey> usedScripts = new HashSet<>();
+
+  private Context context;
+
+  private int uses;
+
+  GraalJSPooledContext(final Supplier<Context> contextFactory) {
+    this.contextFactory = contextFactory;
+    this.context = contextFactory.get();
+  }
+
+  /**
+   * Return the current context, creating a fresh one if the previous renewal failed.
+   *
+   * @return the context
+   */
+  Context getContext() {
+    if (null == context)
+      context = contextFactory.get();
+    return context;
+  }
+
+  /**
+   * Return the parsed form of a script within the current context, parsing it if necessary.
+   *
+   * @param key the script key
+   * @param sourceProvider a function providing the source for a key
+   * @return the parsed script
+   */
+  Value parse(final ScriptKey key, final Function<ScriptKey, Source> sourceProvider) {
+    ParsedScript script = parsedScripts.get(key);
+    if (null == script) {
+      Source source = sourceProvider.apply(key);
+      script = new ParsedScript(source, getContext().parse(source));
+      parsedScripts.put(key, script);
+    }
+    usedScripts.add(key);
+    return script.value;
+  }
+
+  /**
+   * Discard the current context, replace it with a fresh one and parse the scripts used since the
+   * previous renewal within it. If this fails, the current context is discarded nevertheless.
+   */
+  void renew() {
+    Map<ScriptKey, Source> used = new HashMap<>();
+    usedScripts.forEach(key -> used.put(key, parsedScripts.get(key).source));
+    parsedScripts.clear();
+    usedScripts.clear();
+
+    discardContext();
+
+    context = contextFactory.get();
+    used.forEach((key, source) -> parsedScripts.put(key, new ParsedScript(source, context.parse(source))));
+  }
+
+  private void discardContext() {
+    if (null != context)
+      try {
+        context.close();
+      } finally {
+        context = null;
+      }
+  }
+
+  @Override
+  public int use() {
+    return ++uses;
+  }
+
+  @Override
+  public void close() {
+    parsedScripts.clear();
+    usedScripts.clear();
+    discardContext();
+  }
+
+  private static final class ParsedScript {
+    private final Source source;
+    private final Value value;
+
+    ParsedScript(final Source source, final Value value) {
+      this.source = source;
+      this.value = value;
+    }
+  }
+}
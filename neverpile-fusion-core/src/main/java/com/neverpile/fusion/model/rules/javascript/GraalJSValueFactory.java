@@ -0,0 +1,106 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.util.List;
+
+import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.proxy.ProxyArray;
+import org.graalvm.polyglot.proxy.ProxyExecutable;
+import org.graalvm.polyglot.proxy.ProxyObject;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.model.Element;
+
+/**
+ * A {@link JSValueFactory} for GraalVM JavaScript.
+ */
+class GraalJSValueFactory extends JSValueFactory {
+  /**
+   * Exposes a {@link JSHostObject} to GraalVM JavaScript scripts.
+   */
+  private static final class GraalJSHostObject implements ProxyObject {
+    private final JSHostObject hostObject;
+
+    GraalJSHostObject(final JSHostObject hostObject) {
+      this.hostObject = hostObject;
+    }
+
+    @Override
+    public Object getMember(final String key) {
+      return hostObject.getMember(key);
+    }
+
+    @Override
+    public Object getMemberKeys() {
+      return ProxyArray.fromArray(hostObject.keySet().toArray());
+    }
+
+    @Override
+    public boolean hasMember(final String key) {
+      return hostObject.hasMember(key);
+    }
+
+    @Override
+    public void putMember(final String key, final Value value) {
+      hostObject.setMember(key, value);
+    }
+  }
+
+  /**
+   * The implementation of <code>_unwrapElement</code>.
+   */
+  static final ProxyExecutable UNWRAP_ELEMENT = args -> unwrapElement(args.length > 0 ? args[0] : null);
+
+  private final Value objectConstructor;
+  private final Value arrayConstructor;
+  private final Value dateConstructor;
+
+  GraalJSValueFactory(final ObjectMapper objectMapper, final Value global) {
+    super(objectMapper);
+
+    this.objectConstructor = global.getMember("Object");
+    this.arrayConstructor = global.getMember("Array");
+    this.dateConstructor = global.getMember("Date");
+  }
+
+  /**
+   * Return the element backing an element of <code>collection.elements</code>.
+   *
+   * @param jsElement the script element
+   * @return the element
+   */
+  static Element unwrapElement(final Value jsElement) {
+    if (null == jsElement || !jsElement.isProxyObject()
+        || !(jsElement.asProxyObject() instanceof GraalJSHostObject))
+      throw new IllegalArgumentException("Not a collection element: " + jsElement);
+
+    return JSElement.unwrap(((GraalJSHostObject) jsElement.asProxyObject()).hostObject);
+  }
+
+  @Override
+  protected Object newObject() {
+    return objectConstructor.newInstance();
+  }
+
+  @Override
+  protected void setMember(final Object object, final String name, final Object value) {
+    ((Value) object).putMember(name, value);
+  }
+
+  @Override
+  protected Object newArray(final List<?> items) {
+    Value array = arrayConstructor.newInstance();
+    for (int i = 0; i < items.size(); i++)
+      array.setArrayElement(i, items.get(i));
+    return array;
+  }
+
+  @Override
+  protected Object newDate(final double millis) {
+    return dateConstructor.newInstance(millis);
+  }
+
+  @Override
+  Object toHostObject(final JSHostObject hostObject) {
+    return new GraalJSHostObject(hostObject);
+  }
+}
@@ -1,106 +1,71 @@
 package com.neverpile.fusion.model.rules.javascript;
 
-import java.util.ArrayList;
-import java.util.Date;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
+
+import com.neverpile.fusion.model.Collection;
 
 /**
- * This is a bridge class used to represent a collection within the JavaScript rule execution context. 
+ * This is a bridge class used to represent a collection within the JavaScript rule execution context.
+ * It exposes the same members as the JSON representation of a {@link Collection}, except that
+ * <code>dateCreated</code> and <code>dateModified</code> are JavaScript <code>Date</code>s.
+ * Members are materialized lazily upon first access.
  */
-public class JSCollection {
-  private String id;
-  
-  private Date versionTimestamp;
-
-  private String type;
-  
-  private List<JSElement> elements = new ArrayList<>();
-  
-  private Date dateCreated;
-  
-  private Date dateModified;
-  
-  private String createdBy;
-  
-  private Object metadata;
-  
-  public enum State {
-    Active,
-    Closed,
-    MarkedForDeletion
-  }
-  
-  private State state = State.Active;
-  
-  public String getId() {
-    return id;
-  }
-
-  public void setId(final String id) {
-    this.id = id;
-  }
-
-  public Date getVersionTimestamp() {
-    return versionTimestamp;
-  }
-
-  public void setVersionTimestamp(final Date modificationDate) {
-    this.versionTimestamp = modificationDate;
-  }
-
-  public String getType() {
-    return type;
-  }
-
-  public void setType(final String type) {
-    this.type = type;
-  }
-  
-  public State getState() {
-    return state;
-  }
-  
-  public void setState(final State state) {
-    this.state = state;
-  }
-
-  public List<JSElement> getElements() {
-    return elements;
-  }
-
-  public void setElements(final List<JSElement> elements) {
-    this.elements = elements;
-  }
-
-  public Date getDateCreated() {
-    return dateCreated;
-  }
-
-  public void setDateCreated(final Date creationDate) {
-    this.dateCreated = creationDate;
-  }
-  
-  public Date getDateModified() {
-    return dateModified;
-  }
-  
-  public void setDateModified(final Date dateModified) {
-    this.dateModified = dateModified;
-  }
-
-  public String getCreatedBy() {
-    return createdBy;
-  }
-
-  public void setCreatedBy(final String createdBy) {
-    this.createdBy = createdBy;
-  }
-
-  public Object getMetadata() {
-    return metadata;
-  }
-
-  public void setMetadata(final Object metadata) {
-    this.metadata = metadata;
+public class JSCollection extends JSHostObject {
+  private static final List<String> MEMBER_NAMES = Arrays.asList("id", "versionTimestamp", "typeId", "state",
+      "dateCreated", "dateModified", "createdBy", "metadata", "elements");
+
+  private final Collection collection;
+
+  private final JSValueFactory factory;
+
+  JSCollection(final Collection collection, final JSValueFactory factory) {
+    this.collection = collection;
+    this.factory = factory;
+  }
+
+  /**
+   * Return the collection backing this bridge object.
+   *
+   * @return the collection
+   */
+  public Collection getCollection() {
+    return collection;
+  }
+
+  @Override
+  protected List<String> getMemberNames() {
+    return MEMBER_NAMES;
+  }
+
+  @Override
+  protected Object materialize(final String name) {
+    switch (name){
+      case "id" :
+        return collection.getId();
+      case "versionTimestamp" :
+        return null != collection.getVersionTimestamp() ? collection.getVersionTimestamp().toString() : null;
+      case "typeId" :
+        return collection.getTypeId();
+      case "state" :
+        return null != collection.getState() ? collection.getState().name() : null;
+      case "dateCreated" :
+        return factory.toDate(collection.getDateCreated());
+      case "dateModified" :
+        return factory.toDate(collection.getDateModified());
+      case "createdBy" :
+        return collection.getCreatedBy();
+      case "metadata" :
+        return factory.toValue(collection.getMetadata());
+      case "elements" :
+        return null != collection.getElements()
+            ? factory.toArray(collection.getElements().stream() //
+                .map(e -> factory.toHostObject(new JSElement(e, factory))) //
+                .collect(Collectors.toList()))
+            : null;
+      default :
+        return null;
+    }
   }
 }
@@ -1,71 +1,75 @@
 package com.neverpile.fusion.model.rules.javascript;
 
-import java.util.Date;
+import java.util.Arrays;
 import java.util.List;
 
-import com.neverpile.fusion.model.spec.Specification;
+import com.neverpile.fusion.model.Element;
 
 /**
- * This is a bridge class used to represent a collection element within the JavaScript rule execution context. 
+ * This is a bridge class used to represent a collection element within the JavaScript rule execution
+ * context. It exposes the same members as the JSON representation of an {@link Element}, except that
+ * <code>dateCreated</code> and <code>dateModified</code> are JavaScript <code>Date</code>s. Members
+ * are materialized lazily upon first access.
  */
-public class JSElement {
-  private String id;
-  
-  private Date dateCreated;
+public class JSElement extends JSHostObject {
+  private static final List<String> MEMBER_NAMES = Arrays.asList("id", "dateCreated", "dateModified", "tags",
+      "metadata", "specification");
 
-  private Date dateModified;
+  private final Element element;
 
-  private List<String> tags;
-  
-  private Specification specification;
-  
-  private Object metadata;
-  
-  public String getId() {
-    return id;
-  }
-
-  public void setId(final String id) {
-    this.id = id;
-  }
-
-  public Date getDateCreated() {
-    return dateCreated;
-  }
-
-  public void setDateCreated(final Date creationDate) {
-    this.dateCreated = creationDate;
-  }
-
-  public Date getDateModified() {
-    return dateModified;
-  }
-
-  public void setDateModified(final Date modificationDate) {
-    this.dateModified = modificationDate;
-  }
-
-  public List<String> getTags() {
-    return tags;
-  }
+  private final JSValueFactory factory;
 
-  public void setTags(final List<String> tags) {
-    this.tags = tags;
+  JSElement(final Element element, final JSValueFactory factory) {
+    this.element = element;
+    this.factory = factory;
   }
 
-  public Specification getSpecification() {
-    return specification;
+  /**
+   * Return the element backing this bridge object.
+   *
+   * @return the element
+   */
+  public Element getElement() {
+    return element;
   }
 
-  public void setSpecification(final Specification specification) {
-    this.specification = specification;
+  /**
+   * Return the element backing the given host object. This is used to map elements passed to the
+   * scripting support library by rules back to the model.
+   *
+   * @param hostObject the host object
+   * @return the element
+   * @throws IllegalArgumentException if the given object is not an element host object
+   */
+  static Element unwrap(final JSHostObject hostObject) {
+    if (!(hostObject instanceof JSElement))
+      throw new IllegalArgumentException("Not a collection element: " + hostObject);
+
+    return ((JSElement) hostObject).getElement();
   }
 
-  public Object getMetadata() {
-    return metadata;
+  @Override
+  protected List<String> getMemberNames() {
+    return MEMBER_NAMES;
   }
 
-  public void setMetadata(final Object metadata) {
-    this.metadata = metadata;
+  @Override
+  protected Object materialize(final String name) {
+    switch (name){
+      case "id" :
+        return element.getId();
+      case "dateCreated" :
+        return factory.toDate(element.getDateCreated());
+      case "dateModified" :
+        return factory.toDate(element.getDateModified());
+      case "tags" :
+        return factory.toArray(element.getTags());
+      case "metadata" :
+        return factory.toValue(element.getMetadata());
+      case "specification" :
+        return factory.toValue(element.getSpecification());
+      default :
+        return null;
+    }
   }
 }
@@ -0,0 +1,63 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Base class for the bridge objects which expose model objects to the JavaScript rule execution
+ * context. Members are materialized as native JavaScript values upon first access and memoized
+ * afterwards, so that scripts observe stable object identities and may modify the values they
+ * obtain. Scripts may also add new members. Such modifications are visible to subsequent rules, but
+ * are never written back to the underlying model objects.
+ * <p>
+ * Host objects are independent of a particular script engine. They are made available to scripts
+ * using {@link JSValueFactory#toHostObject(JSHostObject)}.
+ */
+abstract class JSHostObject {
+  private final Map<String, Object> members = new HashMap<>();
+
+  /**
+   * Return the names of the members provided by this object, in the order they should be
+   * enumerated.
+   *
+   * @return the member names
+   */
+  protected abstract List<String> getMemberNames();
+
+  /**
+   * Materialize the member with the given name as a JavaScript value.
+   *
+   * @param name the member name, one of {@link #getMemberNames()}
+   * @return the JavaScript value
+   */
+  protected abstract Object materialize(String name);
+
+  Object getMember(final String name) {
+    if (members.containsKey(name))
+      return members.get(name);
+
+    if (!getMemberNames().contains(name))
+      return null;
+
+    Object value = materialize(name);
+    members.put(name, value);
+    return value;
+  }
+
+  boolean hasMember(final String name) {
+    return members.containsKey(name) || getMemberNames().contains(name);
+  }
+
+  void setMember(final String name, final Object value) {
+    members.put(name, value);
+  }
+
+  Set<String> keySet() {
+    Set<String> keys = new LinkedHashSet<>(getMemberNames());
+    keys.addAll(members.keySet());
+    return keys;
+  }
+}
@@ -0,0 +1,140 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Creates native JavaScript values within the global scope of a single layout. Values must be
+ * created using the constructors of that scope, so that they behave exactly like values created by
+ * the scripts themselves, e.g. with respect to <code>instanceof</code> checks and prototype
+ * extensions defined by the scripting support library. Subclasses implement the primitive
+ * operations for a particular script engine.
+ */
+abstract class JSValueFactory {
+  private final ObjectMapper objectMapper;
+
+  protected JSValueFactory(final ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+  }
+
+  /**
+   * Create a new, empty JavaScript object.
+   *
+   * @return the object
+   */
+  protected abstract Object newObject();
+
+  /**
+   * Set a member of an object created by {@link #newObject()}.
+   *
+   * @param object the object
+   * @param name the member name
+   * @param value the member value
+   */
+  protected abstract void setMember(Object object, String name, Object value);
+
+  /**
+   * Create a JavaScript array holding the given items.
+   *
+   * @param items the items
+   * @return the array
+   */
+  protected abstract Object newArray(List<?> items);
+
+  /**
+   * Create a JavaScript <code>Date</code>.
+   *
+   * @param millis the milliseconds since the epoch
+   * @return the date
+   */
+  protected abstract Object newDate(double millis);
+
+  /**
+   * Expose the given host object to scripts.
+   *
+   * @param hostObject the host object
+   * @return the script-facing representation of the host object
+   */
+  abstract Object toHostObject(JSHostObject hostObject);
+
+  /**
+   * Convert the given instant to a JavaScript <code>Date</code>.
+   *
+   * @param instant the instant, may be <code>null</code>
+   * @return the date or <code>null</code>
+   */
+  Object toDate(final Instant instant) {
+    return null != instant ? newDate(instant.toEpochMilli()) : null;
+  }
+
+  /**
+   * Convert the given list to a JavaScript array. The list items are used as-is.
+   *
+   * @param items the list, may be <code>null</code>
+   * @return the array or <code>null</code>
+   */
+  Object toArray(final List<?> items) {
+    return null != items ? newArray(items) : null;
+  }
+
+  /**
+   * Convert the given object to a JavaScript value using the same representation as its JSON
+   * serialization.
+   *
+   * @param value the object, may be <code>null</code>
+   * @return the JavaScript value
+   */
+  Object toValue(final Object value) {
+    return null != value ? toValue((JsonNode) objectMapper.valueToTree(value)) : null;
+  }
+
+  /**
+   * Convert the given JSON node to the equivalent JavaScript value.
+   *
+   * @param node the node, may be <code>null</code>
+   * @return the JavaScript value
+   */
+  Object toValue(final JsonNode node) {
+    if (null == node)
+      return null;
+
+    switch (node.getNodeType()){
+      case OBJECT :
+        Object object = newObject();
+        for (Iterator<Entry<String, JsonNode>> i = node.fields(); i.hasNext();) {
+          Entry<String, JsonNode> field = i.next();
+          setMember(object, field.getKey(), toValue(field.getValue()));
+        }
+        return object;
+
+      case ARRAY :
+        List<Object> items = new ArrayList<>(node.size());
+        for (JsonNode item : node)
+          items.add(toValue(item));
+        return newArray(items);
+
+      case STRING :
+        return node.textValue();
+
+      case BOOLEAN :
+        return node.booleanValue();
+
+      case NUMBER :
+        // JavaScript only knows doubles, but ints are handled more efficiently
+        return node.canConvertToInt() && node.isIntegralNumber() ? (Object) node.intValue() : (Object) node.doubleValue();
+
+      case NULL :
+      case MISSING :
+        return null;
+
+      default :
+        return node.asText();
+    }
+  }
+}
@@ -2,51 +2,205 @@ package com.neverpile.fusion.model.rules.javascript;
 
 import static java.util.function.Function.identity;
 
-import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
-import javax.script.Bindings;
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
+import javax.annotation.PreDestroy;
 import javax.script.ScriptException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.neverpile.fusion.api.CollectionTypeValidator;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration.IncrementalConfiguration;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration.LimitsConfiguration;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration.ParallelViewsConfiguration;
 import com.neverpile.fusion.model.Collection;
 import com.neverpile.fusion.model.CollectionType;
-import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.View;
 import com.neverpile.fusion.model.rules.CollectionLayout;
+import com.neverpile.fusion.model.rules.LayoutProfile;
+import com.neverpile.fusion.model.rules.LayoutProfile.Phase;
 import com.neverpile.fusion.model.rules.Node;
 import com.neverpile.fusion.model.rules.Rule;
 import com.neverpile.fusion.model.rules.RuleExecutionException;
 import com.neverpile.fusion.model.rules.ViewLayout;
+import com.neverpile.fusion.model.rules.grouping.CompiledGroupingRule;
+import com.neverpile.fusion.model.rules.grouping.GroupingRule;
+import com.neverpile.fusion.model.rules.javascript.LayoutBaselines.IncrementalLayout;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 
 /**
  * A JavaScript based layout engine. It can make use of {@link Rule} of the type
  * {@link JavascriptRule}.
+ * <p>
+ * Element rules of the type {@link GroupingRule} are executed natively within the same pipeline,
+ * see {@link CompiledGroupingRule}. They are placed in the view tree along with the nodes created by
+ * script based rules, and the groups they establish are sorted before the tree rules are applied.
+ * Layouts not involving any script based rule do not open a script scope at all.
+ * <p>
+ * The rules are executed by a {@link LayoutScriptBackend} selected via
+ * {@link LayoutEngineConfiguration#getBackend()}. The backend is responsible for the management of
+ * the script engines and for caching compiled rule code, see {@link NashornLayoutBackend} and
+ * {@link GraalJSLayoutBackend}.
+ * <p>
+ * Optionally, the views of a collection type can be laid out in parallel, see
+ * {@link LayoutEngineConfiguration#getParallelViews()}. Each view is then laid out using a scope of
+ * its own, which is seeded by applying the global rules to it. The global rules are thereby executed
+ * once per view in addition to their initial execution, i.e. N+1 times for N views.
+ * <p>
+ * The resources consumed by the rules are limited as configured via
+ * {@link LayoutEngineConfiguration#getLimits()}, see {@link LayoutBudget}. A rule exceeding a limit
+ * fails the view being laid out. Limits per layout apply to the layout as a whole, even if views are
+ * laid out in parallel.
+ * <p>
+ * The execution time of every rule is measured. The times are published as Micrometer timers, see
+ * {@link LayoutEngineConfiguration#getProfiling()}, and can be attached to the layout as a
+ * {@link LayoutProfile} upon request. Single rule executions exceeding the configured threshold are
+ * logged as warnings. When views are laid out in parallel, only the initial execution of the global
+ * rules is measured.
+ * <p>
+ * Optionally, collections are laid out incrementally, see
+ * {@link LayoutEngineConfiguration#getIncremental()}. The element rules are then only executed for
+ * elements which have been added or modified since the previous layout of the collection, the
+ * recorded effects of the rules are replayed for all other elements, see {@link EffectRecorder}.
  */
 @Component
-public class JavascriptViewLayoutEngine {
+public class JavascriptViewLayoutEngine implements CollectionTypeValidator {
   private static final Logger LOGGER = LoggerFactory.getLogger(JavascriptViewLayoutEngine.class);
 
+  private final LayoutScriptBackend backend;
+
+  private final LimitsConfiguration limits;
+
+  private final ExecutorService viewExecutor;
+
+  private final MeterRegistry meterRegistry;
+
+  private final long slowRuleThresholdNanos;
+
+  private final LayoutBaselines baselines;
+
   private final ObjectMapper objectMapper;
-  private final ScriptEngine engine;
+
+  private final Cache<GroupingRule, CompiledGroupingRule> groupingRules = CacheBuilder.newBuilder().weakKeys().build();
 
   @Autowired
-  public JavascriptViewLayoutEngine(final ObjectMapper objectMapper) {
+  public JavascriptViewLayoutEngine(final LayoutScriptBackend backend, final LayoutEngineConfiguration config,
+      final ObjectMapper objectMapper, final ObjectProvider<MeterRegistry> meterRegistry) {
+    this(backend, config, objectMapper, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+  }
+
+  public JavascriptViewLayoutEngine(final LayoutScriptBackend backend, final LayoutEngineConfiguration config,
+      final ObjectMapper objectMapper, final MeterRegistry meterRegistry) {
+    this.backend = backend;
+    this.limits = config.getLimits();
+    this.meterRegistry = config.getProfiling().isRuleTimers() ? meterRegistry : null;
+    this.slowRuleThresholdNanos = config.getProfiling().getSlowRuleThreshold().toNanos();
     this.objectMapper = objectMapper;
 
-    this.engine = new ScriptEngineManager().getEngineByName("JavaScript");
+    IncrementalConfiguration incremental = config.getIncremental();
+    this.baselines = incremental.isEnabled() ? new LayoutBaselines(objectMapper, incremental) : null;
+
+    ParallelViewsConfiguration parallelViews = config.getParallelViews();
+    if (parallelViews.isEnabled()) {
+      int threads = Math.max(1, parallelViews.getThreads());
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+          new ArrayBlockingQueue<>(threads * 16), new CustomizableThreadFactory("layout-view-"),
+          new ThreadPoolExecutor.CallerRunsPolicy());
+      executor.allowCoreThreadTimeOut(true);
+      this.viewExecutor = executor;
+    } else {
+      this.viewExecutor = null;
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (null != viewExecutor)
+      viewExecutor.shutdownNow();
+  }
+
+  /**
+   * Compile all global, element and tree rules of the given collection type ahead of their first
+   * execution, see {@link LayoutScriptBackend#precompile(CollectionType, List)}.
+   *
+   * @param type the collection type
+   * @return the number of rules of the type
+   * @throws RuleExecutionException if a rule cannot be compiled
+   */
+  public int precompile(final CollectionType type) throws RuleExecutionException {
+    List<Rule> rules = getRules(type);
+
+    List<JavascriptRule> scripts = compileGroupingRules(rules);
+    if (!scripts.isEmpty())
+      backend.precompile(type, scripts);
+
+    return rules.size();
+  }
+
+  /**
+   * Validate the given collection type by compiling its rules. In contrast to
+   * {@link #precompile(CollectionType)}, script based rules are compiled without involving the script
+   * engines used for layouts, see {@link LayoutScriptBackend#validate(CollectionType, List)}.
+   */
+  @Override
+  public void validate(final CollectionType type) throws RuleExecutionException {
+    List<JavascriptRule> scripts = compileGroupingRules(getRules(type));
+    if (!scripts.isEmpty())
+      backend.validate(type, scripts);
+  }
+
+  private static List<Rule> getRules(final CollectionType type) {
+    List<Rule> rules = new ArrayList<>(type.getGlobalRules());
+    type.getViews().forEach(v -> {
+      rules.addAll(v.getElementRules());
+      rules.addAll(v.getTreeRules());
+    });
+    return rules;
+  }
+
+  /**
+   * Compile the grouping rules among the given rules.
+   *
+   * @return the script based rules among the given rules
+   */
+  private List<JavascriptRule> compileGroupingRules(final List<Rule> rules) {
+    List<JavascriptRule> scripts = new ArrayList<>();
+    for (Rule rule : rules) {
+      if (rule instanceof GroupingRule)
+        compile((GroupingRule) rule);
+      else if (rule instanceof JavascriptRule && null != ((JavascriptRule) rule).getScriptCode())
+        scripts.add((JavascriptRule) rule);
+    }
+    return scripts;
   }
 
   /**
    * Create layouts for all views in the given collection type.
-   * 
+   *
    * @param collection the collection for which to generate layouts
    * @param type the collection type (must match the type of the collection)
    * @return a list of {@link ViewLayout}s. One for each defined view type.
@@ -54,98 +208,381 @@ public class JavascriptViewLayoutEngine {
    */
   public CollectionLayout layoutTree(final Collection collection, final CollectionType type)
       throws RuleExecutionException {
+    return layoutTree(collection, type, false);
+  }
 
+  /**
+   * Create layouts for all views in the given collection type, optionally recording a profile of the
+   * rule execution times.
+   *
+   * @param collection the collection for which to generate layouts
+   * @param type the collection type (must match the type of the collection)
+   * @param profile whether to attach a {@link LayoutProfile} to the returned layout
+   * @return a list of {@link ViewLayout}s. One for each defined view type.
+   * @throws RuleExecutionException if the rule execution fails
+   */
+  public CollectionLayout layoutTree(final Collection collection, final CollectionType type, final boolean profile)
+      throws RuleExecutionException {
+    return layoutTree(collection, type, null, profile);
+  }
+
+  /**
+   * Create layouts for the given views of the collection type, optionally recording a profile of
+   * the rule execution times. The global rules are always executed. Therefore, if no views are
+   * requested, the resulting layout carries just the title visualization.
+   *
+   * @param collection the collection for which to generate layouts
+   * @param type the collection type (must match the type of the collection)
+   * @param views the names of the views to lay out or <code>null</code> to lay out all views. Names
+   *          of views not defined by the type are ignored.
+   * @param profile whether to attach a {@link LayoutProfile} to the returned layout
+   * @return a list of {@link ViewLayout}s. One for each requested view.
+   * @throws RuleExecutionException if the rule execution fails
+   */
+  public CollectionLayout layoutTree(final Collection collection, final CollectionType type,
+      final Set<String> views, final boolean profile) throws RuleExecutionException {
+    List<View> selected = null == views ? type.getViews()
+        : type.getViews().stream().filter(v -> views.contains(v.getName())).collect(Collectors.toList());
+
+    long start = System.nanoTime();
+    RuleTimings timings = new RuleTimings();
+    IncrementalLayout incremental = null != baselines ? baselines.begin(collection, type) : null;
     try {
-      CollectionLayout layout = new CollectionLayout();
-      layout.setCollectionTypeId(type.getId());
-      
-      Bindings bindings = preparcollectionProcessingBindings(collection, layout);
+      CollectionLayout layout = null != viewExecutor && selected.size() > 1
+          ? layoutTreeInParallel(collection, type, selected, timings, incremental)
+          : layoutTreeSequentially(collection, type, selected, timings, incremental);
+
+      if (null != incremental)
+        incremental.complete();
+
+      if (profile)
+        layout.setProfile(timings.toProfile(System.nanoTime() - start));
+
+      return layout;
+    } finally {
+      if (null != meterRegistry)
+        timings.publish(meterRegistry, type.getId());
+    }
+  }
+
+  private CollectionLayout layoutTreeSequentially(final Collection collection, final CollectionType type,
+      final List<View> views, final RuleTimings timings, final IncrementalLayout incremental)
+      throws RuleExecutionException {
+    CollectionLayout layout = new CollectionLayout();
+    layout.setCollectionTypeId(type.getId());
+
+    LayoutBudget budget = new LayoutBudget(limits);
+    try (LayoutScriptScope scope = openScope(collection, type, views, layout, budget)) {
+      LayoutRun run = new LayoutRun(collection, type, layout, scope, budget, timings, incremental);
 
       // apply library rules
-      type.getGlobalRules().forEach(lib -> apply(bindings, (JavascriptRule) lib));
-      
-      layout.setViewLayouts(type.getViews().stream().map(view -> {
-        Node root = new Node();
-        root.setName("root");
-
-        // bind root node
-        bindings.put("_root", root);
-
-        try {
-          // apply node creation rules
-          collection.getElements().forEach(element -> view.getElementRules().forEach(
-              rule -> apply(bindings, (JavascriptRule) rule, collection, element)));
-
-          // apply tree rules
-          view.getTreeRules().forEach(rule -> apply(bindings, (JavascriptRule) rule));
-
-          return new ViewLayout(view.getName(), root);
-        } catch (Exception e) {
-          // don't throw
-          LOGGER.info("Failed to lay out view: {} for type {}", view.getName(), type.getName(), e);
-          return new ViewLayout(view.getName(), "Failed to lay out view: " + e.getMessage());
-        }
-      }).collect(Collectors.toMap(ViewLayout::getView, identity())));
-      
+      type.getGlobalRules().forEach(lib -> apply(run, null, lib));
+
+      layout.setViewLayouts(views.stream() //
+          .map(view -> layoutView(run, view)) //
+          .collect(Collectors.toMap(ViewLayout::getView, identity())));
+
       return layout;
-    } catch (ScriptException e) {
-      throw new RuleExecutionException("global", "Failed to initialize tree layout engine", e);
-    } catch (JsonProcessingException e) {
-      throw new RuleExecutionException("global", "Cannot convert collection to JSON", e);
     }
   }
 
-  private Bindings preparcollectionProcessingBindings(final Collection collection, final CollectionLayout layout)
-      throws ScriptException, JsonProcessingException {
-    Bindings bindings = engine.createBindings();
+  private CollectionLayout layoutTreeInParallel(final Collection collection, final CollectionType type,
+      final List<View> views, final RuleTimings timings, final IncrementalLayout incremental)
+      throws RuleExecutionException {
+    CollectionLayout layout = new CollectionLayout();
+    layout.setCollectionTypeId(type.getId());
 
-    // load scripting support
-    engine.eval(new InputStreamReader(getClass().getResourceAsStream("LayoutEngine.js")), bindings);
+    // apply library rules once up-front to obtain the title visualization and to fail early
+    LayoutBudget budget = new LayoutBudget(limits);
+    try (LayoutScriptScope scope = openScope(collection, type, Collections.emptyList(), layout, budget)) {
+      LayoutRun run = new LayoutRun(collection, type, layout, scope, budget, timings, incremental);
+      type.getGlobalRules().forEach(lib -> apply(run, null, lib));
+    }
 
-    // intialize private bindings
-    bindings.put("_collection", collection);
-    bindings.put("_layout", layout);
+    // each view records its timings separately, they are combined once the view is done
+    List<RuleTimings> viewTimings = new ArrayList<>();
+    List<Future<ViewLayout>> viewLayouts = new ArrayList<>();
+    for (View view : views) {
+      RuleTimings t = new RuleTimings();
+      viewTimings.add(t);
+      LayoutBudget viewBudget = budget.share();
+      viewLayouts.add(
+          viewExecutor.submit(() -> layoutViewInOwnScope(t, viewBudget, incremental, collection, type, view)));
+    }
 
-    // expose the collection as JSON to the scripting context
-    engine.eval("var collection = " + objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(collection),
-        bindings);
+    try {
+      Map<String, ViewLayout> results = new HashMap<>();
+      for (int i = 0; i < viewLayouts.size(); i++) {
+        ViewLayout viewLayout = viewLayouts.get(i).get();
+        results.put(viewLayout.getView(), viewLayout);
+        timings.addAll(viewTimings.get(i));
+      }
+      layout.setViewLayouts(results);
 
-    // run per-collection initialization
-    engine.eval("_initCollection()", bindings);
+      return layout;
+    } catch (InterruptedException e) {
+      viewLayouts.forEach(f -> f.cancel(true));
+      Thread.currentThread().interrupt();
+      throw new RuleExecutionException("global", "Interrupted while laying out views", e);
+    } catch (ExecutionException e) {
+      viewLayouts.forEach(f -> f.cancel(true));
+      throw new RuleExecutionException("global", "Failed to lay out views: " + e.getCause().getMessage(),
+          e.getCause());
+    }
+  }
+
+  /**
+   * Lay out the given view using a scope of its own. The scope is seeded with the state established
+   * by the global rules by applying them again. As they have already been measured, the repeated
+   * executions of the global rules are not recorded.
+   */
+  private ViewLayout layoutViewInOwnScope(final RuleTimings timings, final LayoutBudget budget,
+      final IncrementalLayout incremental, final Collection collection, final CollectionType type,
+      final View view) {
+    // the title visualization has already been established - use a throw-away layout
+    CollectionLayout layout = new CollectionLayout();
+    try (LayoutScriptScope scope = openScope(collection, type, Collections.singletonList(view), layout, budget)) {
+      // apply library rules
+      LayoutRun seed = new LayoutRun(collection, type, layout, scope, budget, null, incremental);
+      type.getGlobalRules().forEach(lib -> apply(seed, null, lib));
 
-    return bindings;
+      return layoutView(new LayoutRun(collection, type, layout, scope, budget, timings, incremental), view);
+    } catch (Exception e) {
+      // don't throw
+      LOGGER.info("Failed to lay out view: {} for type {}", view.getName(), type.getName(), e);
+      return new ViewLayout(view.getName(), "Failed to lay out view: " + e.getMessage());
+    }
   }
 
-  private void apply(final Bindings bindings, final JavascriptRule rule, final Collection collection,
-      final Element element) {
-    if (null == rule.getScriptCode())
-      return; // nothing to do
+  /**
+   * Open a scope for the global rules of the given type and the rules of the given views. If none of
+   * those is script based, the script backend is not involved at all.
+   */
+  private LayoutScriptScope openScope(final Collection collection, final CollectionType type,
+      final List<View> views, final CollectionLayout layout, final LayoutBudget budget) {
+    boolean scripted = isScripted(type.getGlobalRules()) || views.stream() //
+        .anyMatch(v -> isScripted(v.getElementRules()) || isScripted(v.getTreeRules()));
+
+    return scripted ? backend.openScope(collection, layout, budget) : NativeScope.INSTANCE;
+  }
+
+  private static boolean isScripted(final List<Rule> rules) {
+    return rules.stream().anyMatch(r -> r instanceof JavascriptRule && null != ((JavascriptRule) r).getScriptCode());
+  }
+
+  private ViewLayout layoutView(final LayoutRun run, final View view) {
+    EffectRecorder recorder = null != run.incremental
+        ? run.incremental.createRecorder(view.getName(), run.budget, run.layout.getTitleVisualization())
+        : null;
+
+    Node root = null != recorder ? recorder.createRoot() : run.budget.createRoot();
+    root.setName("root");
+
+    // bind root node
+    run.scope.setRoot(root);
 
     try {
-      // intialize private bindings
-      bindings.put("_elementIndex", collection.getElements().indexOf(element));
+      // apply node creation rules
+      int elementCount = run.collection.getElements().size();
+      for (int elementIndex = 0; elementIndex < elementCount; elementIndex++) {
+        if (null == recorder) {
+          applyElementRules(run, view, root, elementIndex);
+        } else if (!recorder.replay(elementIndex, root)) {
+          recorder.begin();
+          applyElementRules(run, view, root, elementIndex);
+          recorder.end(elementIndex);
+        }
+      }
+
+      if (null != recorder)
+        run.incremental.viewCompleted(view.getName(), recorder);
 
-      // run per-element initialization
-      engine.eval("_initElement()", bindings);
+      // sort the groups established by grouping rules
+      for (Rule rule : view.getElementRules())
+        if (rule instanceof GroupingRule)
+          applyGrouping(run, view, Phase.TREE, (GroupingRule) rule, g -> g.sort(run.collection, root));
 
-      // run rule script
-      engine.eval(rule.getScriptCode(), bindings);
+      // apply tree rules
+      view.getTreeRules().forEach(rule -> apply(run, view, rule));
+
+      return new ViewLayout(view.getName(), root);
     } catch (Exception e) {
+      // don't throw
+      LOGGER.info("Failed to lay out view: {} for type {}", view.getName(), run.type.getName(), e);
+      return new ViewLayout(view.getName(), "Failed to lay out view: " + e.getMessage());
+    }
+  }
+
+  private void applyElementRules(final LayoutRun run, final View view, final Node root, final int elementIndex) {
+    for (Rule rule : view.getElementRules()) {
+      if (rule instanceof GroupingRule)
+        applyGrouping(run, view, Phase.ELEMENT, (GroupingRule) rule,
+            g -> g.place(run.collection.getElements().get(elementIndex), root));
+      else
+        apply(run, view, (JavascriptRule) rule, elementIndex);
+    }
+  }
+
+  private void apply(final LayoutRun run, final View view, final JavascriptRule rule, final int elementIndex) {
+    if (null == rule.getScriptCode())
+      return; // nothing to do
+
+    run.budget.startRule(rule.getName());
+    long start = System.nanoTime();
+    try {
+      run.scope.apply(run.type, rule, elementIndex);
+    } catch (Exception e) {
+      checkBreach(run.budget, e);
+
       LOGGER.debug("Failed to execute JavaScript-based rule '{}'", rule.getName(), e);
       throw new RuleExecutionException(rule.getName(),
           "Failed to execute JavaScript-based rule '" + rule.getName() + "': " + e.getMessage(), e);
+    } finally {
+      recordExecution(run, view, Phase.ELEMENT, rule, System.nanoTime() - start);
     }
+    run.budget.endRule();
   }
 
-  public void apply(final Bindings bindings, final JavascriptRule rule) {
+  /**
+   * Apply a global rule if <code>view</code> is <code>null</code>, a tree rule of the given view
+   * otherwise.
+   */
+  private void apply(final LayoutRun run, final View view, final Rule r) {
+    if (r instanceof GroupingRule)
+      throw new RuleExecutionException(r.getName(),
+          "Grouping rule '" + r.getName() + "' can only be used as an element rule");
+
+    JavascriptRule rule = (JavascriptRule) r;
     if (null == rule.getScriptCode())
       return; // nothing to do
 
+    run.budget.startRule(rule.getName());
+    long start = System.nanoTime();
     try {
-      engine.eval(rule.getScriptCode(), bindings);
+      run.scope.apply(run.type, rule);
     } catch (Exception e) {
+      checkBreach(run.budget, e);
+
       throw new RuleExecutionException(rule.getName(),
           "Failed to execute JavaScript-based rule " + rule.getName() + ": " + e.getMessage(), e);
+    } finally {
+      recordExecution(run, view, null != view ? Phase.TREE : Phase.GLOBAL, rule, System.nanoTime() - start);
+    }
+    run.budget.endRule();
+  }
+
+  /**
+   * Execute the given action of a grouping rule. Grouping rules are executed natively, but are
+   * subject to the same limits and measurements as script based rules.
+   */
+  private void applyGrouping(final LayoutRun run, final View view, final Phase phase, final GroupingRule rule,
+      final Consumer<CompiledGroupingRule> action) {
+    run.budget.startRule(rule.getName());
+    long start = System.nanoTime();
+    try {
+      action.accept(compile(rule));
+    } catch (Exception e) {
+      checkBreach(run.budget, e);
+
+      LOGGER.debug("Failed to execute grouping rule '{}'", rule.getName(), e);
+      throw new RuleExecutionException(rule.getName(),
+          "Failed to execute grouping rule '" + rule.getName() + "': " + e.getMessage(), e);
+    } finally {
+      recordExecution(run, view, phase, rule, System.nanoTime() - start);
+    }
+    run.budget.endRule();
+  }
+
+  private CompiledGroupingRule compile(final GroupingRule rule) {
+    CompiledGroupingRule compiled = groupingRules.getIfPresent(rule);
+    if (null == compiled) {
+      compiled = new CompiledGroupingRule(rule, objectMapper);
+      groupingRules.put(rule, compiled);
+    }
+    return compiled;
+  }
+
+  private void recordExecution(final LayoutRun run, final View view, final Phase phase, final Rule rule,
+      final long nanos) {
+    if (null == run.timings)
+      return; // a repeated execution which has already been measured
+
+    String viewName = null != view ? view.getName() : null;
+    run.timings.record(phase, viewName, rule.getName(), nanos);
+
+    if (slowRuleThresholdNanos > 0 && nanos > slowRuleThresholdNanos)
+      LOGGER.warn("Slow {} rule '{}' in view '{}' of collection type '{}': took {} ms", phase.name().toLowerCase(),
+          rule.getName(), viewName, run.type.getId(), TimeUnit.NANOSECONDS.toMillis(nanos));
+  }
+
+  /**
+   * Rethrow the given exception if it is a {@link RuleExecutionException} or the breach of a limit if
+   * the exception was caused by one. Limit breaches may surface wrapped in script engine specific
+   * exceptions.
+   */
+  private static void checkBreach(final LayoutBudget budget, final Exception e) {
+    RuleExecutionException breach = budget.getBreach();
+    if (null != breach)
+      throw breach;
+
+    if (e instanceof RuleExecutionException)
+      throw (RuleExecutionException) e;
+  }
+
+  /**
+   * The scope used for layouts without script based rules.
+   */
+  private static final class NativeScope implements LayoutScriptScope {
+    private static final NativeScope INSTANCE = new NativeScope();
+
+    @Override
+    public void setRoot(final Node root) {
+      // nothing to bind
+    }
+
+    @Override
+    public void apply(final CollectionType type, final JavascriptRule rule) throws ScriptException {
+      throw new IllegalStateException("No script scope available for rule " + rule.getName());
+    }
+
+    @Override
+    public void apply(final CollectionType type, final JavascriptRule rule, final int elementIndex)
+        throws ScriptException {
+      throw new IllegalStateException("No script scope available for rule " + rule.getName());
+    }
+
+    @Override
+    public void close() {
+      // nothing to release
+    }
+  }
+
+  /**
+   * The state of the layout of a collection within a single scope.
+   */
+  private static final class LayoutRun {
+    private final Collection collection;
+    private final CollectionType type;
+    private final CollectionLayout layout;
+    private final LayoutScriptScope scope;
+    private final LayoutBudget budget;
+    /**
+     * The timings to record the rule executions in or <code>null</code> if they are not to be
+     * recorded.
+     */
+    private final RuleTimings timings;
+    private final IncrementalLayout incremental;
+
+    LayoutRun(final Collection collection, final CollectionType type, final CollectionLayout layout,
+        final LayoutScriptScope scope, final LayoutBudget budget, final RuleTimings timings,
+        final IncrementalLayout incremental) {
+      this.collection = collection;
+      this.type = type;
+      this.layout = layout;
+      this.scope = scope;
+      this.budget = budget;
+      this.timings = timings;
+      this.incremental = incremental;
     }
   }
 }
@@ -0,0 +1,163 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration.IncrementalConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.rules.RuleExecutionException;
+
+/**
+ * Keeps the {@link ElementEffects} recorded during the most recent layout of each collection, which
+ * serve as the baseline for laying out the next version of the collection incrementally.
+ * <p>
+ * Elements are matched by a hash of their JSON representation. A baseline can therefore be used
+ * for any version of a collection, as long as the collection type and the attributes of the
+ * collection visible to the rules, except for its <code>versionTimestamp</code> and
+ * <code>dateModified</code>, are unchanged.
+ */
+final class LayoutBaselines {
+  private static final HashFunction HASH = Hashing.murmur3_128();
+
+  private final ObjectMapper objectMapper;
+
+  private final Cache<String, Baseline> baselines;
+
+  private final Cache<CollectionType, HashCode> typeHashes = CacheBuilder.newBuilder().weakKeys().build();
+
+  /**
+   * The effects of the element rules of all views recorded for a collection.
+   */
+  private static final class Baseline {
+    private final HashCode typeHash;
+    private final HashCode attributesHash;
+    private final Map<String, Map<HashCode, ElementEffects>> views;
+
+    Baseline(final HashCode typeHash, final HashCode attributesHash,
+        final Map<String, Map<HashCode, ElementEffects>> views) {
+      this.typeHash = typeHash;
+      this.attributesHash = attributesHash;
+      this.views = views;
+    }
+  }
+
+  /**
+   * An incremental layout of a single collection version.
+   */
+  final class IncrementalLayout {
+    private final String collectionId;
+    private final HashCode typeHash;
+    private final HashCode attributesHash;
+    private final List<HashCode> elementKeys;
+    private final Baseline previous;
+    private final Map<String, Map<HashCode, ElementEffects>> recorded = new ConcurrentHashMap<>();
+
+    IncrementalLayout(final String collectionId, final HashCode typeHash, final HashCode attributesHash,
+        final List<HashCode> elementKeys, final Baseline previous) {
+      this.collectionId = collectionId;
+      this.typeHash = typeHash;
+      this.attributesHash = attributesHash;
+      this.elementKeys = elementKeys;
+      this.previous = previous;
+    }
+
+    /**
+     * Create a recorder for the element rules of the given view.
+     *
+     * @param view the view name
+     * @param budget the budget of the scope the view is laid out in
+     * @param titleVisualization the title visualization of the layout
+     * @return the recorder
+     */
+    EffectRecorder createRecorder(final String view, final LayoutBudget budget,
+        final Map<String, String> titleVisualization) {
+      Map<HashCode, ElementEffects> effects = null != previous ? previous.views.get(view) : null;
+      return new EffectRecorder(budget, titleVisualization, elementKeys,
+          null != effects ? effects : Collections.emptyMap());
+    }
+
+    /**
+     * Keep the effects recorded for the given view once all element rules have been executed
+     * successfully.
+     *
+     * @param view the view name
+     * @param recorder the recorder used for the view
+     */
+    void viewCompleted(final String view, final EffectRecorder recorder) {
+      recorded.put(view, recorder.getRecorded());
+    }
+
+    /**
+     * Make the recorded effects available as the baseline for subsequent layouts of the collection.
+     * The effects previously recorded for views which haven't been laid out this time remain valid.
+     */
+    void complete() {
+      if (null != previous)
+        previous.views.forEach(recorded::putIfAbsent);
+
+      baselines.put(collectionId, new Baseline(typeHash, attributesHash, recorded));
+    }
+  }
+
+  LayoutBaselines(final ObjectMapper objectMapper, final IncrementalConfiguration config) {
+    this.objectMapper = objectMapper;
+    this.baselines = CacheBuilder.newBuilder() //
+        .maximumSize(config.getMaximumSize()) //
+        .build();
+  }
+
+  /**
+   * Start the incremental layout of the given collection. Collections without id are laid out
+   * completely.
+   *
+   * @param collection the collection
+   * @param type the collection type
+   * @return the incremental layout or <code>null</code> if the collection has no id
+   */
+  IncrementalLayout begin(final Collection collection, final CollectionType type) {
+    if (null == collection.getId())
+      return null;
+
+    ObjectNode json = objectMapper.valueToTree(collection);
+    JsonNode elements = json.remove("elements");
+    json.remove("versionTimestamp");
+    json.remove("dateModified");
+
+    List<HashCode> elementKeys = new ArrayList<>(null != elements ? elements.size() : 0);
+    if (null != elements)
+      for (JsonNode e : elements)
+        elementKeys.add(hash(e));
+
+    HashCode typeHash = typeHashes.asMap().computeIfAbsent(type, this::hash);
+    HashCode attributesHash = hash(json);
+
+    Baseline previous = baselines.getIfPresent(collection.getId());
+    if (null != previous
+        && !(Objects.equals(previous.typeHash, typeHash) && Objects.equals(previous.attributesHash, attributesHash)))
+      previous = null;
+
+    return new IncrementalLayout(collection.getId(), typeHash, attributesHash, elementKeys, previous);
+  }
+
+  private HashCode hash(final Object value) {
+    try {
+      return HASH.hashBytes(objectMapper.writeValueAsBytes(value));
+    } catch (JsonProcessingException e) {
+      throw new RuleExecutionException("global", "Can't serialize " + value + " for incremental layout", e);
+    }
+  }
+}
@@ -0,0 +1,258 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration.LimitsConfiguration;
+import com.neverpile.fusion.model.rules.Node;
+import com.neverpile.fusion.model.rules.RuleExecutionException;
+
+/**
+ * Tracks the resources consumed by the rules executed in a single {@link LayoutScriptScope} and
+ * enforces the limits configured via {@link LimitsConfiguration}. Limits apply to the layout as a
+ * whole as well as to every single rule execution.
+ * <p>
+ * A breached limit is reported by throwing a {@link RuleExecutionException}. As scripts may catch
+ * the exception, the breach is also recorded and reported again by {@link #endRule()}. Once a
+ * layout limit has been breached, no further rules may be executed.
+ * <p>
+ * If a layout uses several scopes, e.g. when views are laid out in parallel, each scope uses a budget
+ * of its own obtained via {@link #share()}. The limits per layout then apply to all scopes together.
+ * <p>
+ * Instances are not thread-safe. The budgets sharing the limits per layout may be used by different
+ * threads, though.
+ */
+public final class LayoutBudget {
+  private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+  /**
+   * The resources consumed by all scopes of a layout.
+   */
+  private static final class LayoutUsage {
+    private final long deadline;
+    private final AtomicLong statements = new AtomicLong();
+    private final AtomicInteger nodes = new AtomicInteger();
+    private final AtomicReference<RuleExecutionException> breach = new AtomicReference<>();
+
+    LayoutUsage(final long deadline) {
+      this.deadline = deadline;
+    }
+  }
+
+  private final LimitsConfiguration limits;
+
+  private final LayoutUsage layout;
+
+  private long ruleDeadline = NO_DEADLINE;
+  private long ruleStatements;
+  private int ruleNodes;
+
+  private String ruleName = "global";
+
+  private RuleExecutionException ruleBreach;
+
+  public LayoutBudget(final LimitsConfiguration limits) {
+    this(limits, new LayoutUsage(deadline(System.nanoTime(), limits.getLayoutTimeout())));
+  }
+
+  private LayoutBudget(final LimitsConfiguration limits, final LayoutUsage layout) {
+    this.limits = limits;
+    this.layout = layout;
+  }
+
+  /**
+   * Create a budget for another scope of the same layout. The limits per layout apply to the
+   * resources consumed by both budgets together.
+   *
+   * @return the new budget
+   */
+  public LayoutBudget share() {
+    return new LayoutBudget(limits, layout);
+  }
+
+  /**
+   * Return whether the given limits require statements to be reported via {@link #statement()}.
+   *
+   * @param limits the limits
+   * @return <code>true</code> if statements must be reported
+   */
+  public static boolean requiresStatements(final LimitsConfiguration limits) {
+    return isEnabled(limits.getLayoutTimeout()) || isEnabled(limits.getRuleTimeout())
+        || limits.getMaxStatementsPerLayout() > 0 || limits.getMaxStatementsPerRule() > 0;
+  }
+
+  private static boolean isEnabled(final Duration timeout) {
+    return null != timeout && !timeout.isZero() && !timeout.isNegative();
+  }
+
+  private static long deadline(final long now, final Duration timeout) {
+    return isEnabled(timeout) ? now + timeout.toNanos() : NO_DEADLINE;
+  }
+
+  /**
+   * Start the execution of a rule.
+   *
+   * @param ruleName the name of the rule
+   * @throws RuleExecutionException if a layout limit has already been breached
+   */
+  public void startRule(final String ruleName) throws RuleExecutionException {
+    this.ruleName = ruleName;
+    this.ruleDeadline = deadline(System.nanoTime(), limits.getRuleTimeout());
+    this.ruleStatements = 0;
+    this.ruleNodes = 0;
+    this.ruleBreach = null;
+
+    checkTime();
+  }
+
+  /**
+   * Finish the execution of the current rule.
+   *
+   * @throws RuleExecutionException if a limit was breached during its execution
+   */
+  public void endRule() throws RuleExecutionException {
+    try {
+      checkTime();
+
+      RuleExecutionException breach = getBreach();
+      if (null != breach)
+        throw breach;
+    } finally {
+      ruleDeadline = NO_DEADLINE;
+    }
+  }
+
+  /**
+   * Record the execution of a statement.
+   *
+   * @throws RuleExecutionException if a statement or time limit has been breached
+   */
+  public void statement() throws RuleExecutionException {
+    long layoutStatements = layout.statements.incrementAndGet();
+    ruleStatements++;
+
+    if (limits.getMaxStatementsPerRule() > 0 && ruleStatements > limits.getMaxStatementsPerRule())
+      throw ruleBreach("the limit of " + limits.getMaxStatementsPerRule() + " statements per rule");
+    if (limits.getMaxStatementsPerLayout() > 0 && layoutStatements > limits.getMaxStatementsPerLayout())
+      throw layoutBreach("the limit of " + limits.getMaxStatementsPerLayout() + " statements per layout");
+
+    checkTime();
+  }
+
+  /**
+   * Record the creation of a node.
+   *
+   * @throws RuleExecutionException if a node limit has been breached
+   */
+  public void nodeCreated() throws RuleExecutionException {
+    int layoutNodes = layout.nodes.incrementAndGet();
+    ruleNodes++;
+
+    if (limits.getMaxNodesPerRule() > 0 && ruleNodes > limits.getMaxNodesPerRule())
+      throw ruleBreach("the limit of " + limits.getMaxNodesPerRule() + " nodes per rule");
+    if (limits.getMaxNodesPerLayout() > 0 && layoutNodes > limits.getMaxNodesPerLayout())
+      throw layoutBreach("the limit of " + limits.getMaxNodesPerLayout() + " nodes per layout");
+  }
+
+  /**
+   * Record the creation of a node by replaying the recorded effects of element rules, see
+   * {@link EffectRecorder}. As no rule is executed, only the limit per layout applies.
+   *
+   * @throws RuleExecutionException if the node limit per layout has been breached
+   */
+  void nodeReplayed() throws RuleExecutionException {
+    int layoutNodes = layout.nodes.incrementAndGet();
+
+    if (limits.getMaxNodesPerLayout() > 0 && layoutNodes > limits.getMaxNodesPerLayout())
+      throw layoutBreach("the limit of " + limits.getMaxNodesPerLayout() + " nodes per layout");
+  }
+
+  /**
+   * Check whether a time limit has been breached.
+   *
+   * @throws RuleExecutionException if a time limit has been breached
+   */
+  public void checkTime() throws RuleExecutionException {
+    RuleExecutionException layoutBreach = layout.breach.get();
+    if (null != layoutBreach)
+      throw layoutBreach;
+
+    long now = System.nanoTime();
+    if (now - layout.deadline >= 0 && layout.deadline != NO_DEADLINE)
+      throw layoutBreach("the time limit of " + limits.getLayoutTimeout() + " per layout");
+    if (now - ruleDeadline >= 0 && ruleDeadline != NO_DEADLINE)
+      throw ruleBreach("the time limit of " + limits.getRuleTimeout() + " per rule");
+  }
+
+  /**
+   * Report that the script engine aborted the current rule because its statement limit has been
+   * reached. Used by backends which enforce statement limits natively.
+   *
+   * @return the exception describing the breach
+   */
+  public RuleExecutionException statementLimitReached() {
+    return ruleBreach("the limit of " + limits.getMaxStatementsPerRule() + " statements per rule");
+  }
+
+  /**
+   * Return the earliest deadline of the current rule execution as a {@link System#nanoTime()}
+   * value. Backends which cannot check time limits during script execution use this to interrupt the
+   * script engine.
+   *
+   * @return the deadline or {@link Long#MAX_VALUE} if there is none
+   */
+  public long getDeadline() {
+    return Math.min(layout.deadline, ruleDeadline);
+  }
+
+  /**
+   * Return the breach of a limit recorded during the execution of the current rule, if any.
+   *
+   * @return the breach or <code>null</code>
+   */
+  public RuleExecutionException getBreach() {
+    RuleExecutionException layoutBreach = layout.breach.get();
+    return null != layoutBreach ? layoutBreach : ruleBreach;
+  }
+
+  /**
+   * Create a root node for a view which reports the creation of descendant nodes to this budget.
+   *
+   * @return the root node
+   */
+  public Node createRoot() {
+    return new BudgetedNode(this);
+  }
+
+  private RuleExecutionException ruleBreach(final String limit) {
+    if (null == ruleBreach)
+      ruleBreach = new RuleExecutionException(ruleName, "Rule '" + ruleName + "' exceeded " + limit);
+    return ruleBreach;
+  }
+
+  private RuleExecutionException layoutBreach(final String limit) {
+    // only the first breach is reported, even if it occurred in another scope
+    layout.breach.compareAndSet(null,
+        new RuleExecutionException(ruleName, "Layout aborted in rule '" + ruleName + "' after exceeding " + limit));
+    return layout.breach.get();
+  }
+
+  /**
+   * A node reporting the creation of child nodes to a budget.
+   */
+  private static final class BudgetedNode extends Node {
+    private final LayoutBudget budget;
+
+    BudgetedNode(final LayoutBudget budget) {
+      this.budget = budget;
+    }
+
+    @Override
+    protected Node newChild() {
+      budget.nodeCreated();
+      return new BudgetedNode(budget);
+    }
+  }
+}
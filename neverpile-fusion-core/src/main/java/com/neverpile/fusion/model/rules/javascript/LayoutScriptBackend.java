@@ -0,0 +1,66 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.util.List;
+
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.rules.CollectionLayout;
+import com.neverpile.fusion.model.rules.RuleExecutionException;
+
+/**
+ * A service provider interface for the JavaScript implementations used by the
+ * {@link JavascriptViewLayoutEngine}. A backend is responsible for the management of the underlying
+ * script engines and for caching compiled rule code.
+ */
+public interface LayoutScriptBackend {
+  /**
+   * Open a new scope in which the rules for the layout of the given collection are executed. The
+   * scope must be populated with the scripting support library <code>LayoutEngine.js</code> and
+   * expose the following variables:
+   * <ul>
+   * <li><code>collection</code> - the collection as a JavaScript object with the same structure as
+   * its JSON representation, except that dates are JavaScript <code>Date</code>s</li>
+   * <li><code>_collection</code> - the collection itself</li>
+   * <li><code>_layout</code> - the layout under construction</li>
+   * <li><code>_unwrapElement</code> - a function mapping an element of
+   * <code>collection.elements</code> back to the element model object</li>
+   * </ul>
+   * The rules executed in a scope must not observe any state left behind by other scopes. The caller
+   * must close the scope after use.
+   * <p>
+   * The backend must enforce the time and statement limits of the given budget while a rule is being
+   * executed, either by reporting statements via {@link LayoutBudget#statement()} or by aborting the
+   * script engine once {@link LayoutBudget#getDeadline()} has passed.
+   *
+   * @param collection the collection to lay out
+   * @param layout the layout under construction
+   * @param budget the budget of the rules executed in the scope
+   * @return the scope
+   * @throws RuleExecutionException if the scope could not be initialized
+   */
+  LayoutScriptScope openScope(Collection collection, CollectionLayout layout, LayoutBudget budget)
+      throws RuleExecutionException;
+
+  /**
+   * Compile the given rules ahead of their first execution so that subsequent layouts find them in
+   * the backend's caches. Backends caching compiled code per script engine compile the rules using a
+   * single engine, just like a layout would, so that concurrent layouts are not held up. The other
+   * engines compile the rules upon their first use.
+   *
+   * @param type the collection type the rules belong to
+   * @param rules the rules
+   * @throws RuleExecutionException if a rule cannot be compiled
+   */
+  void precompile(CollectionType type, List<JavascriptRule> rules) throws RuleExecutionException;
+
+  /**
+   * Verify that the given rules compile. In contrast to
+   * {@link #precompile(CollectionType, List)}, the engines used for layouts are not involved, so that
+   * validation never holds up layouts. Implementations must support concurrent calls.
+   *
+   * @param type the collection type the rules belong to
+   * @param rules the rules
+   * @throws RuleExecutionException if a rule cannot be compiled
+   */
+  void validate(CollectionType type, List<JavascriptRule> rules) throws RuleExecutionException;
+}
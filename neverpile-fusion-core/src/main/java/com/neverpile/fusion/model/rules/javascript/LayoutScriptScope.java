@@ -0,0 +1,49 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import javax.script.ScriptException;
+
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.rules.Node;
+import com.neverpile.fusion.model.rules.RuleExecutionException;
+
+/**
+ * A scope in which the rules for the layout of a single collection are executed. Scopes are
+ * obtained from a {@link LayoutScriptBackend}. They are not thread-safe.
+ */
+public interface LayoutScriptScope extends AutoCloseable {
+  /**
+   * Bind the root node of the view currently being laid out to <code>_root</code>.
+   *
+   * @param root the root node
+   */
+  void setRoot(Node root);
+
+  /**
+   * Execute a global or tree rule.
+   *
+   * @param type the collection type the rule belongs to
+   * @param rule the rule
+   * @throws ScriptException if the rule fails
+   * @throws RuleExecutionException if the rule cannot be compiled
+   */
+  void apply(CollectionType type, JavascriptRule rule) throws ScriptException, RuleExecutionException;
+
+  /**
+   * Execute an element rule for the element at the given position. Before the rule is executed, the
+   * element is bound to <code>element</code> and its tags to <code>tags</code>.
+   *
+   * @param type the collection type the rule belongs to
+   * @param rule the rule
+   * @param elementIndex the index of the element within the collection
+   * @throws ScriptException if the rule fails
+   * @throws RuleExecutionException if the rule cannot be compiled
+   */
+  void apply(CollectionType type, JavascriptRule rule, int elementIndex)
+      throws ScriptException, RuleExecutionException;
+
+  /**
+   * Release the resources held by this scope.
+   */
+  @Override
+  void close();
+}
@@ -0,0 +1,189 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.api.CollectionTypeService;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration.WarmupConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.Element;
+
+/**
+ * Warms up the {@link JavascriptViewLayoutEngine} once the application is ready, so that the first
+ * layouts after a deployment don't pay for rule compilation and JIT warm-up. For every collection
+ * type provided by {@link CollectionTypeService#getAllTypes()}, all rules are compiled, see
+ * {@link JavascriptViewLayoutEngine#precompile(CollectionType)}, and a synthetic collection of the
+ * type is laid out a number of times. Like a layout, each of these steps occupies a single pooled
+ * script engine only, so that traffic served meanwhile is not held up. The warm-up is configured via
+ * {@link LayoutEngineConfiguration#getWarmup()} and runs on a background thread.
+ * <p>
+ * As a {@link HealthIndicator}, the warm-up reports <code>OUT_OF_SERVICE</code> until it is
+ * complete. Include <code>layoutWarmup</code> in the readiness health group to keep traffic away
+ * from an instance until then. Types whose rules fail to compile or whose synthetic layout fails
+ * are logged and listed in the health details, but don't prevent the warm-up from completing.
+ */
+@Component
+public class LayoutWarmup implements HealthIndicator {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LayoutWarmup.class);
+
+  private final JavascriptViewLayoutEngine engine;
+
+  private final ObjectProvider<CollectionTypeService> collectionTypeService;
+
+  private final ObjectMapper objectMapper;
+
+  private final WarmupConfiguration config;
+
+  private final Map<String, String> failures = new TreeMap<>();
+
+  private volatile boolean complete;
+
+  private volatile int types;
+
+  private volatile int rules;
+
+  private volatile int layouts;
+
+  private volatile Duration duration;
+
+  public LayoutWarmup(final JavascriptViewLayoutEngine engine,
+      final ObjectProvider<CollectionTypeService> collectionTypeService, final ObjectMapper objectMapper,
+      final LayoutEngineConfiguration config) {
+    this.engine = engine;
+    this.collectionTypeService = collectionTypeService;
+    this.objectMapper = objectMapper;
+    this.config = config.getWarmup();
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!config.isEnabled())
+      return;
+
+    Thread thread = new Thread(this::warmUp, "layout-warmup");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Perform the warm-up on the calling thread.
+   */
+  public void warmUp() {
+    Instant start = Instant.now();
+    try {
+      CollectionTypeService service = collectionTypeService.getIfAvailable();
+      List<CollectionType> all = null != service ? service.getAllTypes() : Collections.emptyList();
+
+      for (CollectionType type : all) {
+        warmUp(type);
+        types++;
+      }
+    } catch (RuntimeException e) {
+      LOGGER.warn("Can't warm up the layout engine", e);
+      fail("*", e);
+    } finally {
+      duration = Duration.between(start, Instant.now());
+      complete = true;
+    }
+
+    LOGGER.info("Layout engine warm-up complete: {} collection types, {} rules, {} layouts in {} ms", types, rules,
+        layouts, duration.toMillis());
+  }
+
+  private void warmUp(final CollectionType type) {
+    try {
+      rules += engine.precompile(type);
+    } catch (RuntimeException e) {
+      LOGGER.warn("Can't compile the rules of collection type {}", type.getId(), e);
+      fail(type.getId(), e);
+      return;
+    }
+
+    Collection collection = createSyntheticCollection(type);
+    for (int i = 0; i < config.getLayoutsPerType(); i++) {
+      try {
+        // failures of single views are logged by the engine - rules may well fail on made-up content
+        engine.layoutTree(collection, type);
+        layouts++;
+      } catch (RuntimeException e) {
+        LOGGER.info("Synthetic layout of collection type {} failed", type.getId(), e);
+        fail(type.getId(), e);
+        return;
+      }
+    }
+  }
+
+  private synchronized void fail(final String typeId, final Exception e) {
+    failures.put(typeId, e.getMessage());
+  }
+
+  /**
+   * Create a collection of the given type without id, so that it bypasses incremental layout.
+   */
+  private Collection createSyntheticCollection(final CollectionType type) {
+    Instant now = Instant.now();
+
+    Collection collection = new Collection();
+    collection.setTypeId(type.getId());
+    collection.setMetadata(objectMapper.createObjectNode());
+    collection.setDateCreated(now);
+    collection.setDateModified(now);
+
+    List<String> tags = type.getPermittedTags();
+    for (int i = 0; i < config.getElements(); i++) {
+      Element e = new Element();
+      e.setId("warmup-" + i);
+      e.setMetadata(objectMapper.createObjectNode());
+      e.setDateCreated(now);
+      e.setDateModified(now);
+      if (null != tags && !tags.isEmpty())
+        e.getTags().add(tags.get(i % tags.size()));
+      collection.getElements().add(e);
+    }
+
+    return collection;
+  }
+
+  /**
+   * Return whether the warm-up is complete.
+   *
+   * @return <code>true</code> if complete
+   */
+  public boolean isComplete() {
+    return complete;
+  }
+
+  @Override
+  public Health health() {
+    if (!config.isEnabled())
+      return Health.up().withDetail("warmup", "disabled").build();
+
+    Health.Builder health = complete ? Health.up() : Health.outOfService();
+    health.withDetail("types", types).withDetail("rules", rules).withDetail("layouts", layouts);
+    if (complete)
+      health.withDetail("duration", duration.toMillis() + "ms");
+
+    synchronized (this) {
+      if (!failures.isEmpty())
+        health.withDetail("failures", new TreeMap<>(failures));
+    }
+
+    return health.build();
+  }
+}
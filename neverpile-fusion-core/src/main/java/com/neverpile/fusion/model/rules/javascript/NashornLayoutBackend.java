@@ -0,0 +1,151 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.script.Bindings;
+import javax.script.CompiledScript;
+import javax.script.ScriptException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.rules.CollectionLayout;
+import com.neverpile.fusion.model.rules.Node;
+import com.neverpile.fusion.model.rules.RuleExecutionException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.nashorn.api.tree.Diagnostic;
+import jdk.nashorn.api.tree.Parser;
+
+/**
+ * A {@link LayoutScriptBackend} based on the Nashorn engine bundled with the JDK.
+ * <p>
+ * Layouts are computed using a pool of script engines so that concurrent layout requests neither
+ * block each other nor interfere with each other's state. The pool is configured via
+ * {@link LayoutEngineConfiguration#getPool()}. Rule code is compiled only once per engine and the
+ * resulting {@link CompiledScript}s are cached by collection type id, rule name and rule code.
+ * <p>
+ * As Nashorn scripts can't be interrupted, time and statement limits are enforced by instrumenting
+ * the rule code, see {@link StatementCounter}.
+ */
+public class NashornLayoutBackend implements LayoutScriptBackend {
+  private final ObjectMapper objectMapper;
+
+  private final ScriptEnginePool<NashornPooledEngine> pool;
+
+  public NashornLayoutBackend(final ObjectMapper objectMapper, final LayoutEngineConfiguration config,
+      final MeterRegistry meterRegistry) {
+    this.objectMapper = objectMapper;
+
+    boolean countStatements = LayoutBudget.requiresStatements(config.getLimits());
+
+    this.pool = new ScriptEnginePool<>("nashorn", config.getPool(),
+        () -> new NashornPooledEngine(config.getCompiledScriptCacheSize(), countStatements), meterRegistry);
+  }
+
+  @Override
+  public LayoutScriptScope openScope(final Collection collection, final CollectionLayout layout,
+      final LayoutBudget budget) throws RuleExecutionException {
+    NashornPooledEngine engine = pool.borrow();
+    try {
+      // create a fresh scope pre-populated with the scripting support
+      Bindings bindings = engine.createBindings(NashornValueFactory.statementFunction(budget));
+
+      // intialize private bindings
+      bindings.put("_collection", collection);
+      bindings.put("_layout", layout);
+      bindings.put("_unwrapElement", NashornValueFactory.UNWRAP_ELEMENT);
+
+      // expose the collection to the scripting context
+      NashornValueFactory factory = new NashornValueFactory(objectMapper, bindings);
+      bindings.put("collection", factory.toHostObject(new JSCollection(collection, factory)));
+
+      return new Scope(engine, bindings);
+    } catch (ScriptException | RuntimeException e) {
+      pool.release(engine);
+      throw new RuleExecutionException("global", "Failed to initialize tree layout engine", e);
+    }
+  }
+
+  @Override
+  public void precompile(final CollectionType type, final List<JavascriptRule> rules)
+      throws RuleExecutionException {
+    NashornPooledEngine engine = pool.borrow();
+    try {
+      rules.forEach(rule -> engine.compile(type, rule));
+    } finally {
+      pool.release(engine);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The rules are only parsed, which requires no script engine and detects the same errors as their
+   * compilation.
+   */
+  @Override
+  @SuppressWarnings("removal")
+  public void validate(final CollectionType type, final List<JavascriptRule> rules) throws RuleExecutionException {
+    for (JavascriptRule rule : rules) {
+      List<Diagnostic> errors = new ArrayList<>();
+      Parser.create().parse(rule.getName(), rule.getScriptCode(), errors::add);
+      if (!errors.isEmpty())
+        throw new RuleExecutionException(rule.getName(),
+            "Failed to compile JavaScript-based rule '" + rule.getName() + "': " + errors.get(0).getMessage());
+    }
+  }
+
+  /**
+   * Close all idle engines.
+   */
+  public void close() {
+    pool.close();
+  }
+
+  private final class Scope implements LayoutScriptScope {
+    private final NashornPooledEngine engine;
+    private final Bindings bindings;
+    private boolean closed;
+
+    Scope(final NashornPooledEngine engine, final Bindings bindings) {
+      this.engine = engine;
+      this.bindings = bindings;
+    }
+
+    @Override
+    public void setRoot(final Node root) {
+      bindings.put("_root", root);
+    }
+
+    @Override
+    public void apply(final CollectionType type, final JavascriptRule rule) throws ScriptException {
+      engine.compile(type, rule).eval(bindings);
+    }
+
+    @Override
+    public void apply(final CollectionType type, final JavascriptRule rule, final int elementIndex)
+        throws ScriptException {
+      CompiledScript script = engine.compile(type, rule);
+
+      // intialize private bindings
+      bindings.put("_elementIndex", elementIndex);
+
+      // run per-element initialization
+      engine.getInitElementScript().eval(bindings);
+
+      // run rule script
+      script.eval(bindings);
+    }
+
+    @Override
+    public void close() {
+      if (!closed) {
+        closed = true;
+        pool.release(engine);
+      }
+    }
+  }
+}
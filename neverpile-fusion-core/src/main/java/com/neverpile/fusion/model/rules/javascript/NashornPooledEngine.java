@@ -0,0 +1,112 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.util.concurrent.ExecutionException;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.rules.RuleExecutionException;
+
+/**
+ * A Nashorn {@link ScriptEngine} managed by a {@link ScriptEnginePool} together with the scripts
+ * compiled for it. {@link CompiledScript}s are bound to the engine that compiled them, therefore each
+ * pooled engine maintains its own cache of compiled rule scripts.
+ * <p>
+ * The scripting support library is compiled once per engine. Each layout evaluates the compiled
+ * library into a fresh set of {@link Bindings} obtained from {@link #createBindings(Object)}, so that state
+ * defined by one layout's rules never leaks into another layout.
+ * <p>
+ * If requested, rule code is instrumented using {@link StatementCounter} before it is compiled.
+ * <p>
+ * Instances are not thread-safe. An engine must only be used by the thread that borrowed it from
+ * the pool.
+ */
+final class NashornPooledEngine implements ScriptEnginePool.PooledEngine {
+  private final ScriptEngine engine;
+  private final Compilable compiler;
+
+  private final Cache<ScriptKey, CompiledScript> compiledScripts;
+
+  private final boolean countStatements;
+
+  private final CompiledScript supportLibraryScript;
+  private final CompiledScript initElementScript;
+  private final CompiledScript protectStatementFunctionScript;
+
+  private int uses;
+
+  NashornPooledEngine(final long compiledScriptCacheSize, final boolean countStatements) {
+    this.countStatements = countStatements;
+    this.engine = new ScriptEngineManager().getEngineByName("JavaScript");
+    this.compiler = (Compilable) engine;
+
+    this.compiledScripts = CacheBuilder.newBuilder() //
+        .maximumSize(compiledScriptCacheSize) //
+        .build();
+
+    try {
+      this.supportLibraryScript = compiler.compile(SupportLibrary.getSource());
+      this.initElementScript = compiler.compile("_initElement()");
+      this.protectStatementFunctionScript = compiler.compile("Object.defineProperty(this, '"
+          + StatementCounter.FUNCTION_NAME + "', { writable: false, enumerable: false, configurable: false })");
+    } catch (ScriptException e) {
+      throw new IllegalStateException("Can't compile layout engine support scripts", e);
+    }
+  }
+
+  /**
+   * Create a new, empty scope for a single layout and populate it with the scripting support
+   * library and the given function to be called by instrumented rule code, see
+   * {@link StatementCounter}. The function can't be replaced by rule code.
+   *
+   * @param statementFunction the function to be called by instrumented rule code
+   * @return the new bindings
+   * @throws ScriptException if the support library fails to initialize
+   */
+  Bindings createBindings(final Object statementFunction) throws ScriptException {
+    Bindings bindings = engine.createBindings();
+
+    supportLibraryScript.eval(bindings);
+
+    bindings.put(StatementCounter.FUNCTION_NAME, statementFunction);
+    protectStatementFunctionScript.eval(bindings);
+
+    return bindings;
+  }
+
+  CompiledScript getInitElementScript() {
+    return initElementScript;
+  }
+
+  @Override
+  public int use() {
+    return ++uses;
+  }
+
+  /**
+   * Return the compiled form of the given rule, compiling it if it isn't already cached.
+   *
+   * @param type the collection type the rule belongs to
+   * @param rule the rule
+   * @return the compiled script
+   * @throws RuleExecutionException if the rule code cannot be compiled
+   */
+  CompiledScript compile(final CollectionType type, final JavascriptRule rule) {
+    try {
+      return compiledScripts.get(new ScriptKey(type, rule), () -> compiler.compile(
+          countStatements ? StatementCounter.instrument(rule.getScriptCode()) : rule.getScriptCode()));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw new RuleExecutionException(rule.getName(),
+          "Failed to compile JavaScript-based rule '" + rule.getName() + "': " + e.getCause().getMessage(),
+          e.getCause());
+    }
+  }
+}
@@ -0,0 +1,166 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.script.Bindings;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.model.Element;
+
+import jdk.nashorn.api.scripting.AbstractJSObject;
+import jdk.nashorn.api.scripting.JSObject;
+
+/**
+ * A {@link JSValueFactory} for Nashorn.
+ */
+@SuppressWarnings("removal")
+class NashornValueFactory extends JSValueFactory {
+  /**
+   * Exposes a {@link JSHostObject} to Nashorn scripts.
+   */
+  private static final class NashornHostObject extends AbstractJSObject {
+    private final JSHostObject hostObject;
+
+    NashornHostObject(final JSHostObject hostObject) {
+      this.hostObject = hostObject;
+    }
+
+    @Override
+    public Object getMember(final String name) {
+      return hostObject.getMember(name);
+    }
+
+    @Override
+    public boolean hasMember(final String name) {
+      return hostObject.hasMember(name);
+    }
+
+    @Override
+    public void setMember(final String name, final Object value) {
+      hostObject.setMember(name, value);
+    }
+
+    @Override
+    public Set<String> keySet() {
+      return hostObject.keySet();
+    }
+
+    @Override
+    public java.util.Collection<Object> values() {
+      List<Object> values = new ArrayList<>();
+      for (String name : keySet())
+        values.add(getMember(name));
+      return values;
+    }
+
+    @Override
+    public String getClassName() {
+      return "Object";
+    }
+  }
+
+  /**
+   * The implementation of <code>_unwrapElement</code>.
+   */
+  private static final class UnwrapElementFunction extends AbstractJSObject {
+    @Override
+    public Object call(final Object thiz, final Object... args) {
+      return unwrapElement(args.length > 0 ? args[0] : null);
+    }
+
+    @Override
+    public boolean isFunction() {
+      return true;
+    }
+  }
+
+  static final JSObject UNWRAP_ELEMENT = new UnwrapElementFunction();
+
+  /**
+   * The implementation of the function reporting statements to a {@link LayoutBudget}, see
+   * {@link StatementCounter}.
+   */
+  private static final class StatementFunction extends AbstractJSObject {
+    private final LayoutBudget budget;
+
+    StatementFunction(final LayoutBudget budget) {
+      this.budget = budget;
+    }
+
+    @Override
+    public Object call(final Object thiz, final Object... args) {
+      budget.statement();
+      return null;
+    }
+
+    @Override
+    public boolean isFunction() {
+      return true;
+    }
+  }
+
+  private final JSObject objectConstructor;
+  private final JSObject arrayConstructor;
+  private final JSObject dateConstructor;
+
+  NashornValueFactory(final ObjectMapper objectMapper, final Bindings global) {
+    super(objectMapper);
+
+    this.objectConstructor = (JSObject) global.get("Object");
+    this.arrayConstructor = (JSObject) global.get("Array");
+    this.dateConstructor = (JSObject) global.get("Date");
+  }
+
+  /**
+   * Create the function reporting statements to the given budget.
+   *
+   * @param budget the budget
+   * @return the function
+   */
+  static Object statementFunction(final LayoutBudget budget) {
+    return new StatementFunction(budget);
+  }
+
+  /**
+   * Return the element backing an element of <code>collection.elements</code>.
+   *
+   * @param jsElement the script element
+   * @return the element
+   */
+  static Element unwrapElement(final Object jsElement) {
+    if (!(jsElement instanceof NashornHostObject))
+      throw new IllegalArgumentException("Not a collection element: " + jsElement);
+
+    return JSElement.unwrap(((NashornHostObject) jsElement).hostObject);
+  }
+
+  @Override
+  protected Object newObject() {
+    return objectConstructor.newObject();
+  }
+
+  @Override
+  protected void setMember(final Object object, final String name, final Object value) {
+    ((JSObject) object).setMember(name, value);
+  }
+
+  @Override
+  protected Object newArray(final List<?> items) {
+    JSObject array = (JSObject) arrayConstructor.newObject();
+    for (int i = 0; i < items.size(); i++)
+      array.setSlot(i, items.get(i));
+    return array;
+  }
+
+  @Override
+  protected Object newDate(final double millis) {
+    return dateConstructor.newObject(millis);
+  }
+
+  @Override
+  Object toHostObject(final JSHostObject hostObject) {
+    return new NashornHostObject(hostObject);
+  }
+}
@@ -0,0 +1,125 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.neverpile.fusion.model.rules.LayoutProfile;
+import com.neverpile.fusion.model.rules.LayoutProfile.Phase;
+import com.neverpile.fusion.model.rules.LayoutProfile.RuleTiming;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Accumulates the execution times of the rules of a single layout. Instances are not thread-safe:
+ * every scope records into an instance of its own, which are combined using
+ * {@link #addAll(RuleTimings)} once the scopes are done.
+ * <p>
+ * The accumulated times are published as Micrometer timer <code>fusion.layout.rule</code> tagged
+ * with the collection <code>type</code>, the <code>view</code>, the <code>rule</code> name and the
+ * <code>phase</code>. Each layout contributes one sample per rule: the total time spent in the rule.
+ * Global rules are tagged with <code>view=none</code>.
+ */
+final class RuleTimings {
+  static final String TIMER_NAME = "fusion.layout.rule";
+
+  private static final String NONE = "none";
+
+  private final Map<Key, Timing> timings = new LinkedHashMap<>();
+
+  /**
+   * Record a single rule execution.
+   *
+   * @param phase the phase in which the rule was executed
+   * @param view the view name or <code>null</code> for global rules
+   * @param rule the rule name
+   * @param nanos the execution time in nanoseconds
+   */
+  void record(final Phase phase, final String view, final String rule, final long nanos) {
+    timings.computeIfAbsent(new Key(phase, view, rule), k -> new Timing()).add(1, nanos, nanos);
+  }
+
+  void addAll(final RuleTimings other) {
+    other.timings.forEach((key, timing) -> timings.computeIfAbsent(key, k -> new Timing()) //
+        .add(timing.executions, timing.totalNanos, timing.maxNanos));
+  }
+
+  void publish(final MeterRegistry registry, final String typeId) {
+    timings.forEach((key, timing) -> Timer.builder(TIMER_NAME) //
+        .description("The time spent executing a layout rule per layout") //
+        .tag("type", null != typeId ? typeId : NONE) //
+        .tag("view", null != key.view ? key.view : NONE) //
+        .tag("rule", null != key.rule ? key.rule : NONE) //
+        .tag("phase", key.phase.name().toLowerCase()) //
+        .register(registry) //
+        .record(timing.totalNanos, TimeUnit.NANOSECONDS));
+  }
+
+  LayoutProfile toProfile(final long totalNanos) {
+    LayoutProfile profile = new LayoutProfile();
+    profile.setTotalMillis(toMillis(totalNanos));
+    profile.setRules(timings.entrySet().stream() //
+        .sorted(Comparator.comparingLong(e -> -e.getValue().totalNanos)) //
+        .map(e -> {
+          RuleTiming t = new RuleTiming();
+          t.setView(e.getKey().view);
+          t.setRule(e.getKey().rule);
+          t.setPhase(e.getKey().phase);
+          t.setExecutions(e.getValue().executions);
+          t.setTotalMillis(toMillis(e.getValue().totalNanos));
+          t.setMaxMillis(toMillis(e.getValue().maxNanos));
+          return t;
+        }) //
+        .collect(Collectors.toList()));
+    return profile;
+  }
+
+  private static double toMillis(final long nanos) {
+    return nanos / 1e6;
+  }
+
+  private static final class Key {
+    private final Phase phase;
+    private final String view;
+    private final String rule;
+    private final int hash;
+
+    Key(final Phase phase, final String view, final String rule) {
+      this.phase = phase;
+      this.view = view;
+      this.rule = rule;
+      this.hash = Objects.hash(phase, view, rule);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj)
+        return true;
+      if (!(obj instanceof Key))
+        return false;
+      Key other = (Key) obj;
+      return phase == other.phase && Objects.equals(view, other.view) && Objects.equals(rule, other.rule);
+    }
+  }
+
+  private static final class Timing {
+    private long executions;
+    private long totalNanos;
+    private long maxNanos;
+
+    void add(final long executions, final long totalNanos, final long maxNanos) {
+      this.executions += executions;
+      this.totalNanos += totalNanos;
+      this.maxNanos = Math.max(this.maxNanos, maxNanos);
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration.PoolConfiguration;
+import com.neverpile.fusion.model.rules.RuleExecutionException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * A fixed-size pool of script engines. All engines are created and warmed up when the pool is
+ * constructed. Callers must return every borrowed engine via {@link #release(PooledEngine)}.
+ * <p>
+ * The pool exposes the following metrics, tagged with the name of the backend:
+ * <ul>
+ * <li><code>fusion.layout.engine.pool.wait</code> - the time spent waiting for an engine</li>
+ * <li><code>fusion.layout.engine.pool.timeouts</code> - the number of borrow attempts that timed
+ * out</li>
+ * <li><code>fusion.layout.engine.pool.size</code> - the number of engines in the pool</li>
+ * <li><code>fusion.layout.engine.pool.active</code> - the number of engines currently in use</li>
+ * <li><code>fusion.layout.engine.pool.utilisation</code> - the ratio of active engines to the pool
+ * size</li>
+ * </ul>
+ */
+class ScriptEnginePool<E extends ScriptEnginePool.PooledEngine> {
+  /**
+   * An engine managed by a {@link ScriptEnginePool}.
+   */
+  interface PooledEngine {
+    /**
+     * Record a use of this engine.
+     *
+     * @return the number of times this engine has been used so far
+     */
+    int use();
+
+    /**
+     * Release the resources held by this engine once it has been removed from the pool.
+     */
+    default void close() {
+      // nothing to do by default
+    }
+  }
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ScriptEnginePool.class);
+
+  private final Supplier<E> engineFactory;
+  private final int size;
+  private final Duration borrowTimeout;
+  private final int maxReuse;
+
+  private final BlockingQueue<E> idle;
+  private final AtomicInteger active = new AtomicInteger();
+
+  private final Timer waitTimer;
+  private final Counter timeouts;
+
+  ScriptEnginePool(final String backend, final PoolConfiguration poolConfig, final Supplier<E> engineFactory,
+      final MeterRegistry meterRegistry) {
+    this.engineFactory = engineFactory;
+    this.size = Math.max(1, poolConfig.getSize());
+    this.borrowTimeout = poolConfig.getBorrowTimeout();
+    this.maxReuse = poolConfig.getMaxReuse();
+
+    this.idle = new ArrayBlockingQueue<>(size);
+    for (int i = 0; i < size; i++)
+      idle.add(engineFactory.get());
+
+    this.waitTimer = Timer.builder("fusion.layout.engine.pool.wait") //
+        .description("time spent waiting for a layout script engine") //
+        .tag("backend", backend) //
+        .register(meterRegistry);
+    this.timeouts = Counter.builder("fusion.layout.engine.pool.timeouts") //
+        .description("number of layout requests which timed out waiting for a script engine") //
+        .tag("backend", backend) //
+        .register(meterRegistry);
+    Gauge.builder("fusion.layout.engine.pool.size", () -> size) //
+        .description("number of layout script engines") //
+        .tag("backend", backend) //
+        .register(meterRegistry);
+    Gauge.builder("fusion.layout.engine.pool.active", active, AtomicInteger::get) //
+        .description("number of layout script engines in use") //
+        .tag("backend", backend) //
+        .register(meterRegistry);
+    Gauge.builder("fusion.layout.engine.pool.utilisation", active, a -> (double) a.get() / size) //
+        .description("ratio of layout script engines in use") //
+        .tag("backend", backend) //
+        .register(meterRegistry);
+  }
+
+  /**
+   * Borrow an engine from the pool, waiting at most for the configured borrow timeout.
+   *
+   * @return the engine
+   * @throws RuleExecutionException if no engine became available in time
+   */
+  E borrow() throws RuleExecutionException {
+    E engine;
+
+    long start = System.nanoTime();
+    try {
+      engine = idle.poll(borrowTimeout.toNanos(), NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuleExecutionException("global", "Interrupted while waiting for a layout engine", e);
+    } finally {
+      waitTimer.record(System.nanoTime() - start, NANOSECONDS);
+    }
+
+    if (null == engine) {
+      timeouts.increment();
+      throw new RuleExecutionException("global", "Timed out after " + borrowTimeout + " waiting for a layout engine");
+    }
+
+    active.incrementAndGet();
+    return engine;
+  }
+
+  /**
+   * Return a previously borrowed engine to the pool. Engines which have reached the configured reuse
+   * limit are replaced by a fresh engine.
+   *
+   * @param engine the engine to return
+   */
+  void release(final E engine) {
+    E next = engine;
+    if (engine.use() >= maxReuse && maxReuse > 0) {
+      try {
+        next = engineFactory.get();
+        engine.close();
+      } catch (RuntimeException e) {
+        LOGGER.warn("Can't create replacement layout engine - continuing to use the existing one", e);
+      }
+    }
+
+    active.decrementAndGet();
+    idle.add(next);
+  }
+
+  /**
+   * Close all idle engines. Engines in use at this time are not affected.
+   */
+  void close() {
+    E engine;
+    while (null != (engine = idle.poll()))
+      engine.close();
+  }
+
+  int getSize() {
+    return size;
+  }
+}
@@ -0,0 +1,42 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.util.Objects;
+
+import com.neverpile.fusion.model.CollectionType;
+
+/**
+ * The key under which compiled rule scripts are cached.
+ */
+final class ScriptKey {
+  private final String typeId;
+  private final String ruleName;
+  private final String scriptCode;
+  private final int hash;
+
+  ScriptKey(final CollectionType type, final JavascriptRule rule) {
+    this(type.getId(), rule.getName(), rule.getScriptCode());
+  }
+
+  ScriptKey(final String typeId, final String ruleName, final String scriptCode) {
+    this.typeId = typeId;
+    this.ruleName = ruleName;
+    this.scriptCode = scriptCode;
+    this.hash = Objects.hash(typeId, ruleName, scriptCode);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj)
+      return true;
+    if (!(obj instanceof ScriptKey))
+      return false;
+    ScriptKey other = (ScriptKey) obj;
+    return hash == other.hash && Objects.equals(typeId, other.typeId) && Objects.equals(ruleName, other.ruleName)
+        && Objects.equals(scriptCode, other.scriptCode);
+  }
+}
@@ -0,0 +1,211 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import jdk.nashorn.api.tree.BlockTree;
+import jdk.nashorn.api.tree.CatchTree;
+import jdk.nashorn.api.tree.CompilationUnitTree;
+import jdk.nashorn.api.tree.Diagnostic;
+import jdk.nashorn.api.tree.DoWhileLoopTree;
+import jdk.nashorn.api.tree.ExpressionTree;
+import jdk.nashorn.api.tree.ForInLoopTree;
+import jdk.nashorn.api.tree.ForLoopTree;
+import jdk.nashorn.api.tree.FunctionCallTree;
+import jdk.nashorn.api.tree.FunctionDeclarationTree;
+import jdk.nashorn.api.tree.FunctionExpressionTree;
+import jdk.nashorn.api.tree.IdentifierTree;
+import jdk.nashorn.api.tree.Parser;
+import jdk.nashorn.api.tree.SimpleTreeVisitorES5_1;
+import jdk.nashorn.api.tree.Tree;
+import jdk.nashorn.api.tree.VariableTree;
+import jdk.nashorn.api.tree.WhileLoopTree;
+import jdk.nashorn.api.tree.WithTree;
+
+/**
+ * Instruments rule code for execution by Nashorn so that it reports its progress to a
+ * {@link LayoutBudget}. Nashorn offers no way to interrupt a running script. Therefore a call to
+ * the function <code>_statement()</code> is inserted at the start of every loop body and every
+ * function body. Since a script can only run for an unbounded time by means of loops or recursion,
+ * this allows the statement and time limits to be enforced. Loop bodies consisting of a single
+ * statement are wrapped in a block along with the call, so that the meaning of the code is retained,
+ * e.g. the association of an <code>else</code> with its <code>if</code>.
+ * <p>
+ * The limits must not depend on the rule code behaving. The backend therefore defines
+ * <code>_statement</code> as a non-writable, non-configurable global, and code which could shadow
+ * it is rejected: code referring to or declaring the name <code>_statement</code> as well as
+ * <code>with</code> statements and direct calls to <code>eval</code>.
+ * <p>
+ * The inserted code doesn't contain line breaks, so that line numbers reported in error messages
+ * remain valid.
+ */
+@SuppressWarnings("removal")
+final class StatementCounter {
+  static final String FUNCTION_NAME = "_statement";
+
+  private static final String BLOCK_PROLOGUE = FUNCTION_NAME + "();";
+  private static final String STATEMENT_PROLOGUE = "{" + FUNCTION_NAME + "(); ";
+  private static final String STATEMENT_EPILOGUE = " }";
+
+  private static final class Insertion {
+    private final int position;
+    private final String text;
+
+    /**
+     * The order of insertions at the same position: the braces closing the inner of several nested
+     * statements come first, opening braces last.
+     */
+    private final long rank;
+
+    Insertion(final long position, final String text, final long rank) {
+      this.position = (int) position;
+      this.text = text;
+      this.rank = rank;
+    }
+  }
+
+  private StatementCounter() {
+  }
+
+  /**
+   * Instrument the given code. Code which can't be parsed is returned as-is, so that the usual
+   * compilation error is reported for it.
+   *
+   * @param code the script code
+   * @return the instrumented code
+   * @throws IllegalArgumentException if the code could evade the instrumentation
+   */
+  static String instrument(final String code) {
+    List<Diagnostic> errors = new ArrayList<>();
+    CompilationUnitTree unit = Parser.create().parse("rule", code, errors::add);
+    if (null == unit || !errors.isEmpty())
+      return code;
+
+    List<Insertion> insertions = new ArrayList<>();
+    unit.accept(new SimpleTreeVisitorES5_1<Void, Void>() {
+      /**
+       * Instrument a loop or function body. The end of a single statement body must include its
+       * terminating semicolon, if any.
+       */
+      private void instrumentBody(final Tree body, final long end) {
+        // the parser wraps some statements in synthetic blocks, e.g. for loops declaring variables
+        if (body instanceof BlockTree && code.charAt((int) body.getStartPosition()) == '{') {
+          // blocks start with the opening brace - insert after it
+          insertions.add(new Insertion(body.getStartPosition() + 1, BLOCK_PROLOGUE, Long.MAX_VALUE));
+        } else { // wrap single statements in a block
+          insertions.add(new Insertion(body.getStartPosition(), STATEMENT_PROLOGUE, Long.MAX_VALUE));
+          insertions.add(new Insertion(end, STATEMENT_EPILOGUE, -body.getStartPosition()));
+        }
+      }
+
+      private void checkName(final ExpressionTree name) {
+        if (name instanceof IdentifierTree && FUNCTION_NAME.equals(((IdentifierTree) name).getName()))
+          throw new IllegalArgumentException("The name '" + FUNCTION_NAME + "' is reserved");
+      }
+
+      @Override
+      public Void visitIdentifier(final IdentifierTree node, final Void r) {
+        checkName(node);
+        return super.visitIdentifier(node, r);
+      }
+
+      @Override
+      public Void visitVariable(final VariableTree node, final Void r) {
+        checkName(node.getBinding());
+        return super.visitVariable(node, r);
+      }
+
+      @Override
+      public Void visitCatch(final CatchTree node, final Void r) {
+        checkName(node.getParameter());
+        return super.visitCatch(node, r);
+      }
+
+      @Override
+      public Void visitWith(final WithTree node, final Void r) {
+        throw new IllegalArgumentException("'with' statements are not supported");
+      }
+
+      @Override
+      public Void visitFunctionCall(final FunctionCallTree node, final Void r) {
+        ExpressionTree function = node.getFunctionSelect();
+        if (function instanceof IdentifierTree && "eval".equals(((IdentifierTree) function).getName()))
+          throw new IllegalArgumentException("Direct calls to 'eval' are not supported");
+        return super.visitFunctionCall(node, r);
+      }
+
+      @Override
+      public Void visitWhileLoop(final WhileLoopTree node, final Void r) {
+        // the body is the last part of the loop statement
+        instrumentBody(node.getStatement(), node.getEndPosition());
+        return super.visitWhileLoop(node, r);
+      }
+
+      @Override
+      public Void visitDoWhileLoop(final DoWhileLoopTree node, final Void r) {
+        instrumentBody(node.getStatement(), terminatedEnd(code, node.getStatement()));
+        return super.visitDoWhileLoop(node, r);
+      }
+
+      @Override
+      public Void visitForLoop(final ForLoopTree node, final Void r) {
+        instrumentBody(node.getStatement(), node.getEndPosition());
+        return super.visitForLoop(node, r);
+      }
+
+      @Override
+      public Void visitForInLoop(final ForInLoopTree node, final Void r) {
+        instrumentBody(node.getStatement(), node.getEndPosition());
+        return super.visitForInLoop(node, r);
+      }
+
+      @Override
+      public Void visitFunctionDeclaration(final FunctionDeclarationTree node, final Void r) {
+        checkName(node.getName());
+        node.getParameters().forEach(this::checkName);
+        instrumentBody(node.getBody(), node.getEndPosition());
+        return super.visitFunctionDeclaration(node, r);
+      }
+
+      @Override
+      public Void visitFunctionExpression(final FunctionExpressionTree node, final Void r) {
+        checkName(node.getName());
+        node.getParameters().forEach(this::checkName);
+        instrumentBody(node.getBody(), node.getEndPosition());
+        return super.visitFunctionExpression(node, r);
+      }
+    }, null);
+
+    if (insertions.isEmpty())
+      return code;
+
+    insertions.sort(Comparator.<Insertion> comparingInt(i -> i.position).thenComparingLong(i -> i.rank));
+
+    StringBuilder sb = new StringBuilder(code.length() + insertions.size() * STATEMENT_PROLOGUE.length());
+    int pos = 0;
+    for (Insertion insertion : insertions) {
+      sb.append(code, pos, insertion.position).append(insertion.text);
+      pos = insertion.position;
+    }
+    sb.append(code, pos, code.length());
+
+    return sb.toString();
+  }
+
+  /**
+   * Return the end of the given statement including the semicolon terminating it. The positions
+   * reported by the parser exclude the semicolon terminating e.g. an expression statement.
+   */
+  private static long terminatedEnd(final String code, final Tree statement) {
+    int end = (int) statement.getEndPosition();
+    if (end > 0 && code.charAt(end - 1) == ';')
+      return end;
+
+    int pos = end;
+    while (pos < code.length() && Character.isWhitespace(code.charAt(pos)))
+      pos++;
+
+    return pos < code.length() && code.charAt(pos) == ';' ? pos + 1 : end;
+  }
+}
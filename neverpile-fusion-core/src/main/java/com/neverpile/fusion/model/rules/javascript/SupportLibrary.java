@@ -0,0 +1,33 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.util.StreamUtils;
+
+/**
+ * Holds the source of the scripting support library <code>LayoutEngine.js</code> which is read from
+ * the classpath once and shared by all {@link LayoutScriptBackend}s.
+ */
+final class SupportLibrary {
+  static final String NAME = "LayoutEngine.js";
+
+  private static final String SOURCE = load();
+
+  private SupportLibrary() {
+  }
+
+  static String getSource() {
+    return SOURCE;
+  }
+
+  private static String load() {
+    try (InputStream is = SupportLibrary.class.getResourceAsStream(NAME)) {
+      return StreamUtils.copyToString(is, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't load layout engine support library", e);
+    }
+  }
+}
@@ -7,6 +7,7 @@ import java.time.Instant;
 import java.util.Objects;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -16,6 +17,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
@@ -38,6 +40,11 @@ import io.micrometer.core.annotation.Timed;
  * A REST resource providing access to collections. It is backed by a {@link CollectionService}
  * implementation. For details see the OpenAPI specification in
  * /neverpile-fusion-core/src/main/resources/com/neverpile/fusion/fusion-core.yaml.
+ * <p>
+ * Modifications may be made conditional on the current collection version via
+ * <code>If-Match</code>, see {@link CollectionVersionPrecondition}. The precondition is evaluated
+ * after the modification has been authorized. The loaded version becomes the expected version of
+ * the save, so that a concurrent modification is detected as a version conflict.
  */
 @RestController
 @RequestMapping(path = "/api/v1/collections/{collectionID}", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -59,7 +66,8 @@ public class CollectionElementResource {
   }, value = "fusion.collection.create")
   @ResponseStatus(HttpStatus.CREATED)
   public ResponseEntity<Element> createElement(@PathVariable("collectionID") final String collectionId,
-      @RequestBody final Element element, final Principal principal) throws URISyntaxException {
+      @RequestBody final Element element, final Principal principal,
+      @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) final String ifMatch) throws URISyntaxException {
     if (element.getId() != null) {
       if (!idGenerationStrategy.validateCollectionId(element.getId()))
         throw new NotAcceptableException("Invalid id: " + element.getId());
@@ -81,6 +89,8 @@ public class CollectionElementResource {
     if (!collectionAuthorizationService.authorizeCollectionAction(collection, CoreActions.UPDATE))
       throw new PermissionDeniedException();
 
+    CollectionVersionPrecondition.check(ifMatch, collectionId, collection.getVersionTimestamp());
+
     Collection saved = doSave(collection, principal);
 
     Element created = saved.getElements().stream().filter(
@@ -122,7 +132,8 @@ public class CollectionElementResource {
   }, value = "fusion.collection.create")
   @ResponseStatus(HttpStatus.OK)
   public ResponseEntity<Element> updateElement(@PathVariable("collectionID") final String collectionId,
-      @PathVariable("elementID") final String elementId, @RequestBody final Element element, final Principal principal)
+      @PathVariable("elementID") final String elementId, @RequestBody final Element element, final Principal principal,
+      @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) final String ifMatch)
       throws URISyntaxException {
     if (element.getId() != null) {
       if (!Objects.equals(element.getId(), elementId))
@@ -146,6 +157,8 @@ public class CollectionElementResource {
     if (!collectionAuthorizationService.authorizeCollectionAction(collection, CoreActions.UPDATE))
       throw new PermissionDeniedException();
 
+    CollectionVersionPrecondition.check(ifMatch, collectionId, collection.getVersionTimestamp());
+
     Element updated = doSave(collection, principal).getElements().stream().filter(
         e -> element.getId().equals(e.getId())).findFirst().orElseThrow();
 
@@ -161,7 +174,8 @@ public class CollectionElementResource {
   }, value = "fusion.collection.create")
   @ResponseStatus(HttpStatus.NO_CONTENT)
   public ResponseEntity<?> deleteElement(@PathVariable("collectionID") final String collectionId,
-      @PathVariable("elementID") final String elementId, final Principal principal)
+      @PathVariable("elementID") final String elementId, final Principal principal,
+      @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) final String ifMatch)
           throws URISyntaxException {
     Collection collection = collectionService.getCurrent(collectionId).orElseThrow(
         () -> new NotFoundException("Collection not found"));
@@ -172,6 +186,8 @@ public class CollectionElementResource {
     
     if (!collectionAuthorizationService.authorizeCollectionAction(collection, CoreActions.UPDATE))
       throw new PermissionDeniedException();
+
+    CollectionVersionPrecondition.check(ifMatch, collectionId, collection.getVersionTimestamp());
     
     Collection saved = collectionService.save(collection);
     
@@ -4,14 +4,24 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.Principal;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.AnnotatedElementUtils;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -20,17 +30,24 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.neverpile.common.authorization.api.CoreActions;
 import com.neverpile.fusion.api.CollectionIdStrategy;
+import com.neverpile.fusion.api.CollectionSaveResult;
 import com.neverpile.fusion.api.CollectionService;
 import com.neverpile.fusion.api.CollectionTypeService;
 import com.neverpile.fusion.api.exception.PermissionDeniedException;
 import com.neverpile.fusion.authorization.CollectionAuthorizationService;
+import com.neverpile.fusion.configuration.CollectionBatchConfiguration;
 import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.rest.exception.ApiException;
 import com.neverpile.fusion.rest.exception.NotAcceptableException;
 import com.neverpile.fusion.rest.exception.NotFoundException;
 import com.neverpile.urlcrypto.PreSignedUrlEnabled;
@@ -41,10 +58,126 @@ import io.micrometer.core.annotation.Timed;
  * A REST resource providing access to collections. It is backed by a {@link CollectionService}
  * implementation. For details see the OpenAPI specification in
  * /neverpile-fusion-core/src/main/resources/com/neverpile/fusion/fusion-core.yaml.
+ * <p>
+ * Collection versions are served with a strong <code>ETag</code> derived from the collection id and
+ * the version timestamp and with the version timestamp as <code>Last-Modified</code>. Conditional
+ * requests carrying <code>If-None-Match</code> or <code>If-Modified-Since</code> are answered with
+ * <code>304 Not Modified</code> without transferring the collection. As authorization policies may
+ * depend on the collection's content, the collection is nevertheless loaded and authorized exactly
+ * like for an unconditional request. Thus a <code>304</code> is never returned for versions which
+ * don't exist or may not be retrieved.
+ * <p>
+ * Updates may be made conditional on the current version via <code>If-Match</code>, see
+ * {@link CollectionVersionPrecondition}. Like conditional retrievals, the precondition is only
+ * evaluated once the request has been authorized.
+ * <p>
+ * The current versions of many collections can be retrieved with a single multi-get request. The
+ * collections are retrieved via {@link CollectionService#getCurrent(java.util.Collection)} and
+ * authorized one by one. Collections which are missing or may not be retrieved are reported by a
+ * result carrying the status the equivalent single request would have produced.
+ * <p>
+ * Likewise, many collections can be created or updated with a single batch request. The requested
+ * collections are validated and authorized one by one, but saved together via
+ * {@link CollectionService#saveAll(List)}. The outcome is reported per collection.
  */
 @RestController
 @RequestMapping(path = "/api/v1/collections", produces = MediaType.APPLICATION_JSON_VALUE)
 public class CollectionResource {
+  /**
+   * A request to retrieve the current versions of a number of collections.
+   */
+  public static class MultiGetRequest {
+    private List<String> collectionIds;
+
+    public List<String> getCollectionIds() {
+      return collectionIds;
+    }
+
+    public void setCollectionIds(final List<String> collectionIds) {
+      this.collectionIds = collectionIds;
+    }
+  }
+
+  /**
+   * A request to create or update a number of collections.
+   */
+  public static class BatchSaveRequest {
+    /**
+     * The collections to save. Collections without an id are created with a generated id.
+     */
+    private List<Collection> collections;
+
+    public List<Collection> getCollections() {
+      return collections;
+    }
+
+    public void setCollections(final List<Collection> collections) {
+      this.collections = collections;
+    }
+  }
+
+  /**
+   * The outcome for a single collection of a batch request.
+   */
+  @JsonInclude(Include.NON_NULL)
+  public static class BatchCollectionResult {
+    private String collectionId;
+
+    /**
+     * The HTTP status code the equivalent single request would have produced.
+     */
+    private int status;
+
+    /**
+     * The reason of the failure if the collection could not be processed.
+     */
+    private String error;
+
+    private Collection collection;
+
+    public BatchCollectionResult() {
+    }
+
+    public BatchCollectionResult(final String collectionId, final int status, final String error,
+        final Collection collection) {
+      this.collectionId = collectionId;
+      this.status = status;
+      this.error = error;
+      this.collection = collection;
+    }
+
+    public String getCollectionId() {
+      return collectionId;
+    }
+
+    public void setCollectionId(final String collectionId) {
+      this.collectionId = collectionId;
+    }
+
+    public int getStatus() {
+      return status;
+    }
+
+    public void setStatus(final int status) {
+      this.status = status;
+    }
+
+    public String getError() {
+      return error;
+    }
+
+    public void setError(final String error) {
+      this.error = error;
+    }
+
+    public Collection getCollection() {
+      return collection;
+    }
+
+    public void setCollection(final Collection collection) {
+      this.collection = collection;
+    }
+  }
 
   @Autowired
   private CollectionService collectionService;
@@ -58,44 +191,97 @@ public class CollectionResource {
   @Autowired
   private CollectionAuthorizationService collectionAuthorizationService;
 
+  @Autowired
+  private CollectionBatchConfiguration batchConfig;
+
   @PreSignedUrlEnabled
   @GetMapping(value = "{collectionID}")
   @Timed(description = "get collection (current version)", extraTags = {
       "operation", "retrieve", "target", "collection"
   }, value = "fusion.collection.get")
-  public Collection getCurrent(@PathVariable("collectionID") final String collectionId) {
-    Collection collection = collectionService.getCurrent(collectionId).orElseThrow(
-        () -> new NotFoundException("Collection not found"));
+  public Collection getCurrent(@PathVariable("collectionID") final String collectionId, final WebRequest request) {
+    Collection collection = loadCurrent(collectionId);
 
     if (!collectionAuthorizationService.authorizeCollectionAction(collection, CoreActions.GET))
       throw new PermissionDeniedException();
 
+    if (checkNotModified(request, collectionId, collection.getVersionTimestamp()))
+      return null;
+
     return collection;
   }
 
+  private Collection loadCurrent(final String collectionId) {
+    return collectionService.getCurrent(collectionId).orElseThrow(() -> new NotFoundException("Collection not found"));
+  }
+
+  /**
+   * Check the preconditions of the given request against the given collection version and set the
+   * <code>ETag</code> and <code>Last-Modified</code> headers accordingly.
+   */
+  private static boolean checkNotModified(final WebRequest request, final String collectionId,
+      final Instant versionTimestamp) {
+    if (null == versionTimestamp)
+      return false;
+
+    return request.checkNotModified(CollectionVersionTag.of(collectionId, versionTimestamp),
+        versionTimestamp.toEpochMilli());
+  }
+
   @PreSignedUrlEnabled
   @GetMapping(value = "{collectionID}/history/{versionTimestamp}")
   @Timed(description = "get collection (version specified by timestamp)", extraTags = {
       "operation", "retrieve", "target", "collection"
   }, value = "fusion.collection.get-version")
   public Collection getVersion(@PathVariable("collectionID") final String collectionId,
-      @PathVariable("versionTimestamp") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) final Instant versionTimestamp) {
+      @PathVariable("versionTimestamp") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) final Instant versionTimestamp,
+      final WebRequest request) {
     Collection collection = collectionService.getVersion(collectionId, versionTimestamp).orElseThrow(
         () -> new NotFoundException("Collection not found"));
 
     if (!collectionAuthorizationService.authorizeCollectionAction(collection, CoreActions.GET))
       throw new PermissionDeniedException();
 
+    if (checkNotModified(request, collectionId, versionTimestamp))
+      return null;
+
     return collection;
   }
 
+  @PostMapping(value = "multi-get", consumes = MediaType.APPLICATION_JSON_VALUE)
+  @Timed(description = "get collections (current versions)", extraTags = {
+      "operation", "retrieve", "target", "collection"
+  }, value = "fusion.collection.multi-get")
+  public List<BatchCollectionResult> multiGet(@RequestBody final MultiGetRequest request) {
+    if (null == request.getCollectionIds() || request.getCollectionIds().isEmpty())
+      throw new NotAcceptableException("No collection ids given");
+    if (request.getCollectionIds().size() > batchConfig.getMaxCollections())
+      throw new NotAcceptableException(
+          "Too many collections, at most " + batchConfig.getMaxCollections() + " may be retrieved at once");
+
+    Set<String> collectionIds = new LinkedHashSet<>(request.getCollectionIds());
+    Map<String, Collection> current = collectionService.getCurrent(collectionIds);
+
+    List<BatchCollectionResult> results = new ArrayList<>(collectionIds.size());
+    for (String collectionId : collectionIds) {
+      Collection collection = current.get(collectionId);
+      if (null == collection)
+        results.add(new BatchCollectionResult(collectionId, 404, "Collection not found", null));
+      else if (!collectionAuthorizationService.authorizeCollectionAction(collection, CoreActions.GET))
+        results.add(new BatchCollectionResult(collectionId, 403, "Permission denied", null));
+      else
+        results.add(new BatchCollectionResult(collectionId, 200, null, collection));
+    }
+    return results;
+  }
+
   @PreSignedUrlEnabled
   @GetMapping(value = "{collectionID}/history")
   @Timed(description = "get version list", extraTags = {
       "operation", "retrieve", "target", "collection-version-list"
   }, value = "fusion.collection.get-version-list")
   public List<Date> getVersionList(@PathVariable("collectionID") final String collectionId) {
-    if (!collectionAuthorizationService.authorizeCollectionAction(getCurrent(collectionId), CoreActions.GET))
+    if (!collectionAuthorizationService.authorizeCollectionAction(loadCurrent(collectionId), CoreActions.GET))
       throw new PermissionDeniedException();
 
     return collectionService.getVersions(collectionId).stream().map(i -> Date.from(i)).collect(Collectors.toList());
@@ -126,11 +312,104 @@ public class CollectionResource {
         .body(saved);
   }
 
+  @PostMapping(value = "batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+  @Timed(description = "save collections (batch)", extraTags = {
+      "operation", "store", "target", "collection"
+  }, value = "fusion.collection.save-batch")
+  public List<BatchCollectionResult> saveBatch(@RequestBody final BatchSaveRequest request, final Principal principal) {
+    List<Collection> collections = request.getCollections();
+    if (null == collections || collections.isEmpty())
+      throw new NotAcceptableException("No collections given");
+    if (collections.size() > batchConfig.getMaxCollections())
+      throw new NotAcceptableException(
+          "Too many collections, at most " + batchConfig.getMaxCollections() + " may be saved at once");
+
+    BatchCollectionResult[] results = new BatchCollectionResult[collections.size()];
+
+    // generate the missing ids at once - collections with generated ids are new
+    Iterator<String> newIds = idGenerationStrategy.createCollectionIds(
+        (int) collections.stream().filter(c -> null == c.getId()).count()).iterator();
+    Set<String> generatedIds = new HashSet<>();
+
+    // validate
+    Map<String, Boolean> knownTypes = new HashMap<>();
+    Set<String> ids = new HashSet<>();
+    for (int i = 0; i < results.length; i++) {
+      Collection collection = collections.get(i);
+      try {
+        if (collection.getId() != null) {
+          if (!idGenerationStrategy.validateCollectionId(collection.getId()))
+            throw new NotAcceptableException("Invalid id: " + collection.getId());
+        } else {
+          collection.setId(newIds.next());
+          generatedIds.add(collection.getId());
+        }
+
+        if (!ids.add(collection.getId()))
+          throw new NotAcceptableException("Duplicate id: " + collection.getId());
+
+        beforeSave(collection, principal, knownTypes);
+      } catch (ApiException e) {
+        results[i] = new BatchCollectionResult(collection.getId(), e.getCode(), e.getMessage(), null);
+      }
+    }
+
+    // authorize - only the collections with provided ids may exist already
+    ids.removeAll(generatedIds);
+    Set<String> existingIds = ids.isEmpty() ? ids : collectionService.getCurrentVersionTimestamps(ids).keySet();
+
+    List<Collection> toBeSaved = new ArrayList<>(collections.size());
+    List<Integer> toBeSavedIndices = new ArrayList<>(collections.size());
+    for (int i = 0; i < results.length; i++) {
+      if (null != results[i])
+        continue;
+
+      Collection collection = collections.get(i);
+      if (!collectionAuthorizationService.authorizeCollectionAction(collection,
+          existingIds.contains(collection.getId()) ? CoreActions.UPDATE : CoreActions.CREATE)) {
+        results[i] = new BatchCollectionResult(collection.getId(), 403, "Permission denied", null);
+        continue;
+      }
+
+      toBeSaved.add(collection);
+      toBeSavedIndices.add(i);
+    }
+
+    // save
+    if (!toBeSaved.isEmpty()) {
+      List<CollectionSaveResult> saved = collectionService.saveAll(toBeSaved);
+      for (int j = 0; j < saved.size(); j++) {
+        CollectionSaveResult result = saved.get(j);
+        results[toBeSavedIndices.get(j)] = result.isSaved()
+            ? new BatchCollectionResult(result.getCollection().getId(), 201, null, result.getCollection())
+            : new BatchCollectionResult(result.getCollection().getId(), statusOf(result.getFailure()),
+                result.getFailure().getMessage(), null);
+      }
+    }
+
+    return Arrays.asList(results);
+  }
+
+  /**
+   * Return the HTTP status code the given exception would have produced for a single request.
+   */
+  private static int statusOf(final RuntimeException e) {
+    if (e instanceof ApiException)
+      return ((ApiException) e).getCode();
+
+    ResponseStatus status = AnnotatedElementUtils.findMergedAnnotation(e.getClass(), ResponseStatus.class);
+    return null != status ? status.code().value() : HttpStatus.INTERNAL_SERVER_ERROR.value();
+  }
+
   private void beforeSave(final Collection collection, Principal principal) {
+    beforeSave(collection, principal, new HashMap<>());
+  }
+
+  private void beforeSave(final Collection collection, Principal principal, final Map<String, Boolean> knownTypes) {
     // validate collection
     if(collection.getTypeId() == null)
       throw new NotAcceptableException("Type id is missing");
-    if(collectionTypeService.get(collection.getTypeId()).isEmpty())
+    if(!knownTypes.computeIfAbsent(collection.getTypeId(), t -> collectionTypeService.get(t).isPresent()))
       throw new NotAcceptableException("No such collection type");
       
     Instant now = Instant.now();
@@ -168,7 +447,8 @@ public class CollectionResource {
   }, value = "fusion.collection.save")
   @ResponseStatus(HttpStatus.CREATED)
   public Collection createOrUpdate(@PathVariable("collectionID") final String collectionId,
-      @RequestBody final Collection collection, final Principal principal) {
+      @RequestBody final Collection collection, final Principal principal,
+      @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) final String ifMatch) {
     // collection id in JSON must match the one in the path or be null
     if (collection.getId() != null) {
       if (!Objects.equals(collectionId, collection.getId()))
@@ -183,6 +463,14 @@ public class CollectionResource {
     if (!collectionAuthorizationService.authorizeCollectionAction(collection, existing.isPresent() ? CoreActions.UPDATE : CoreActions.CREATE))
       throw new PermissionDeniedException();
 
+    // save against the version matched by If-Match unless the collection specifies one
+    Instant matchedVersion = CollectionVersionPrecondition.check(ifMatch, collectionId,
+        existing.map(Collection::getVersionTimestamp).orElse(null));
+    if (null == collection.getVersionTimestamp())
+      collection.setVersionTimestamp(matchedVersion);
+    else
+      CollectionVersionPrecondition.checkMatchedVersion(matchedVersion, collection);
+
     return collectionService.save(collection);
   }
 }
@@ -0,0 +1,73 @@
+package com.neverpile.fusion.rest;
+
+import java.time.Instant;
+
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.rest.exception.PreconditionFailedException;
+
+/**
+ * Evaluates <code>If-Match</code> preconditions of requests modifying a collection against the
+ * entity tag of the current collection version (see {@link CollectionResource}).
+ * <p>
+ * Handlers must evaluate the precondition only after the request has been authorized. Otherwise the
+ * outcome of the precondition would tell unauthorized callers whether the collection exists and,
+ * as entity tags are derived deterministically from the version timestamp, which version is the
+ * current one. A failed precondition is answered with <code>412 Precondition Failed</code> without
+ * an <code>ETag</code>.
+ */
+final class CollectionVersionPrecondition {
+  private CollectionVersionPrecondition() {
+    // static only
+  }
+
+  /**
+   * Evaluate the given <code>If-Match</code> header value against the current version of a
+   * collection.
+   *
+   * @param ifMatch the <code>If-Match</code> header value or <code>null</code> if the request
+   *          carries no precondition
+   * @param collectionId the collection id
+   * @param currentVersion the current version timestamp or <code>null</code> if the collection
+   *          doesn't exist
+   * @return the matched version timestamp or <code>null</code> if the request carries no
+   *         precondition
+   * @throws PreconditionFailedException if the precondition fails
+   */
+  static Instant check(final String ifMatch, final String collectionId, final Instant currentVersion) {
+    if (null == ifMatch)
+      return null;
+
+    if (null == currentVersion
+        || !matches(ifMatch, "\"" + CollectionVersionTag.of(collectionId, currentVersion) + "\""))
+      throw new PreconditionFailedException("Collection version is not the current one");
+
+    return currentVersion;
+  }
+
+  /**
+   * Evaluate an <code>If-Match</code> header value using the strong comparison, i.e. weak tags never
+   * match.
+   */
+  private static boolean matches(final String ifMatch, final String currentTag) {
+    for (String tag : ifMatch.split(",")) {
+      tag = tag.trim();
+      if (tag.equals("*") || tag.equals(currentTag))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Verify that a collection submitted by the client claims the version matched by the request's
+   * precondition.
+   *
+   * @param matchedVersion the matched version or <code>null</code> if the request carries no
+   *          precondition
+   * @param collection the submitted collection
+   * @throws PreconditionFailedException if the collection claims a different version
+   */
+  static void checkMatchedVersion(final Instant matchedVersion, final Collection collection) {
+    if (null != matchedVersion && !matchedVersion.equals(collection.getVersionTimestamp()))
+      throw new PreconditionFailedException("Collection version is not the current one");
+  }
+}
@@ -0,0 +1,31 @@
+package com.neverpile.fusion.rest;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Derives entity tags for collection versions. As collection versions are immutable, a version is
+ * fully identified by the collection id and the version timestamp, which therefore make for a
+ * strong entity tag.
+ */
+final class CollectionVersionTag {
+  private CollectionVersionTag() {
+    // static only
+  }
+
+  /**
+   * Return the entity tag, without quotes, of the given collection version.
+   *
+   * @param collectionId the collection id
+   * @param versionTimestamp the version timestamp
+   * @return the tag
+   */
+  static String of(final String collectionId, final Instant versionTimestamp) {
+    return Hashing.murmur3_128().newHasher() //
+        .putString(collectionId, StandardCharsets.UTF_8) //
+        .putLong(versionTimestamp.toEpochMilli()) //
+        .hash().toString();
+  }
+}
@@ -1,18 +1,58 @@
 package com.neverpile.fusion.rest;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextCallable;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.common.authorization.api.CoreActions;
+import com.neverpile.fusion.api.CollectionService;
 import com.neverpile.fusion.api.CollectionTypeService;
+import com.neverpile.fusion.api.exception.PermissionDeniedException;
+import com.neverpile.fusion.authorization.CollectionAuthorizationService;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration.BatchConfiguration;
 import com.neverpile.fusion.model.Collection;
 import com.neverpile.fusion.model.CollectionType;
 import com.neverpile.fusion.model.rules.CollectionLayout;
+import com.neverpile.fusion.model.rules.LayoutCache;
 import com.neverpile.fusion.model.rules.javascript.JavascriptViewLayoutEngine;
+import com.neverpile.fusion.rest.exception.ApiException;
+import com.neverpile.fusion.rest.exception.NotAcceptableException;
 import com.neverpile.fusion.rest.exception.NotFoundException;
 
 import io.micrometer.core.annotation.Timed;
@@ -20,28 +60,296 @@ import io.micrometer.core.annotation.Timed;
 /**
  * A REST resource providing view layout services. While certain client implementations may be able
  * to perform view layout generation on their own, this service can be used by clients which cannot.
+ * <p>
+ * Collections held by the {@link CollectionService} can be laid out by their id, optionally for a
+ * specific version. The layouts of stored collections carry an entity tag which identifies the
+ * collection version and the definition of its type, so that clients can use conditional requests
+ * to avoid retrieving unchanged layouts.
+ * <p>
+ * Many stored collections can be laid out with a single batch request. The collections are laid out
+ * in parallel and the results are streamed back as newline delimited JSON in the order in which
+ * they complete.
  */
 @RestController
 @RequestMapping(path = "/api/v1/layout", produces = {
     MediaType.APPLICATION_JSON_VALUE
 })
 public class ViewLayoutResource {
+  public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+  /**
+   * A request to lay out a number of stored collections.
+   */
+  public static class BatchLayoutRequest {
+    /**
+     * The ids of the collections to lay out. The current version of each collection is laid out.
+     */
+    private List<String> collectionIds;
+
+    /**
+     * The names of the views to lay out or <code>null</code> to lay out all views. If empty, just the
+     * title visualizations are generated.
+     */
+    private Set<String> views;
+
+    public List<String> getCollectionIds() {
+      return collectionIds;
+    }
+
+    public void setCollectionIds(final List<String> collectionIds) {
+      this.collectionIds = collectionIds;
+    }
+
+    public Set<String> getViews() {
+      return views;
+    }
+
+    public void setViews(final Set<String> views) {
+      this.views = views;
+    }
+  }
+
+  /**
+   * The outcome of laying out a single collection of a batch layout request.
+   */
+  @JsonInclude(Include.NON_NULL)
+  public static class BatchLayoutResult {
+    private String collectionId;
+
+    /**
+     * The HTTP status code the equivalent single layout request would have produced.
+     */
+    private int status;
+
+    /**
+     * The reason of the failure if the collection could not be laid out.
+     */
+    private String error;
+
+    private CollectionLayout layout;
+
+    public BatchLayoutResult() {
+    }
+
+    public BatchLayoutResult(final String collectionId, final int status, final String error,
+        final CollectionLayout layout) {
+      this.collectionId = collectionId;
+      this.status = status;
+      this.error = error;
+      this.layout = layout;
+    }
+
+    public String getCollectionId() {
+      return collectionId;
+    }
+
+    public void setCollectionId(final String collectionId) {
+      this.collectionId = collectionId;
+    }
+
+    public int getStatus() {
+      return status;
+    }
+
+    public void setStatus(final int status) {
+      this.status = status;
+    }
+
+    public String getError() {
+      return error;
+    }
+
+    public void setError(final String error) {
+      this.error = error;
+    }
+
+    public CollectionLayout getLayout() {
+      return layout;
+    }
+
+    public void setLayout(final CollectionLayout layout) {
+      this.layout = layout;
+    }
+  }
+
+  @Autowired
+  private CollectionService collectionService;
 
   @Autowired
   private CollectionTypeService collectionTypeService;
 
+  @Autowired
+  private CollectionAuthorizationService collectionAuthorizationService;
+
   @Autowired
   private JavascriptViewLayoutEngine engine;
 
+  @Autowired
+  private LayoutCache layoutCache;
+
+  @Autowired
+  private LayoutEngineConfiguration config;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  private ThreadPoolExecutor batchExecutor;
+
+  @PostConstruct
+  public void init() {
+    int threads = Math.max(1, config.getBatch().getThreads());
+    batchExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(threads * 16), new CustomizableThreadFactory("layout-batch-"),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+    batchExecutor.allowCoreThreadTimeOut(true);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    batchExecutor.shutdownNow();
+  }
+
   @PostMapping(value = "{typeId}", consumes = MediaType.APPLICATION_JSON_VALUE)
   @Timed(description = "get collection type by id", extraTags = {
       "operation", "layout", "target", "collection"
   }, value = "fusion.collection.layout")
-  public CollectionLayout layout(@PathVariable("typeId") final String id, @RequestBody final Collection collection) {
+  public CollectionLayout layout(@PathVariable("typeId") final String id, @RequestBody final Collection collection,
+      @RequestParam(name = "profile", defaultValue = "false") final boolean profile) {
     CollectionType type = collectionTypeService.get(id).orElseThrow(
         () -> new NotFoundException("Collection type not found: " + id));
 
-    return engine.layoutTree(collection, type);
+    // the submitted collection may carry unsaved modifications and must therefore bypass the cache
+    return engine.layoutTree(collection, type, profile);
+  }
+
+  @GetMapping("collections/{collectionID}")
+  @Timed(description = "lay out stored collection (current version)", extraTags = {
+      "operation", "layout", "target", "collection"
+  }, value = "fusion.collection.layout-stored")
+  public CollectionLayout layoutCurrent(@PathVariable("collectionID") final String collectionId,
+      @RequestParam(name = "profile", defaultValue = "false") final boolean profile, final WebRequest request) {
+    return layoutStored(collectionService.getCurrent(collectionId), profile, request);
+  }
+
+  @GetMapping("collections/{collectionID}/history/{versionTimestamp}")
+  @Timed(description = "lay out stored collection (version specified by timestamp)", extraTags = {
+      "operation", "layout", "target", "collection"
+  }, value = "fusion.collection.layout-stored-version")
+  public CollectionLayout layoutVersion(@PathVariable("collectionID") final String collectionId,
+      @PathVariable("versionTimestamp") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) final Instant versionTimestamp,
+      @RequestParam(name = "profile", defaultValue = "false") final boolean profile, final WebRequest request) {
+    return layoutStored(collectionService.getVersion(collectionId, versionTimestamp), profile, request);
+  }
+
+  @PostMapping(value = "collections", consumes = MediaType.APPLICATION_JSON_VALUE, produces = APPLICATION_NDJSON_VALUE)
+  @Timed(description = "lay out stored collections (batch)", extraTags = {
+      "operation", "layout", "target", "collection"
+  }, value = "fusion.collection.layout-batch")
+  public ResponseEntity<StreamingResponseBody> layoutBatch(@RequestBody final BatchLayoutRequest batch) {
+    BatchConfiguration batchConfig = config.getBatch();
+    if (null == batch.getCollectionIds() || batch.getCollectionIds().isEmpty())
+      throw new NotAcceptableException("No collection ids given");
+    if (batch.getCollectionIds().size() > batchConfig.getMaxCollections())
+      throw new NotAcceptableException(
+          "Too many collections, at most " + batchConfig.getMaxCollections() + " may be laid out at once");
+
+    Set<String> collectionIds = new LinkedHashSet<>(batch.getCollectionIds());
+    Set<String> views = batch.getViews();
+
+    // the tasks are submitted from the request thread so that they inherit its security context
+    CompletionService<BatchLayoutResult> completionService = new ExecutorCompletionService<>(batchExecutor);
+    List<Future<BatchLayoutResult>> pending = new ArrayList<>(collectionIds.size());
+    for (String collectionId : collectionIds)
+      pending.add(completionService.submit(
+          new DelegatingSecurityContextCallable<>(() -> layoutBatchItem(collectionId, views))));
+
+    StreamingResponseBody body = out -> {
+      try {
+        for (int i = 0; i < pending.size(); i++)
+          writeBatchResult(out, completionService.take().get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while laying out collections", e);
+      } catch (ExecutionException e) {
+        throw new IOException("Failed to lay out collections", e.getCause());
+      } finally {
+        // don't waste effort on layouts nobody is going to receive anymore
+        pending.forEach(f -> f.cancel(true));
+      }
+    };
+
+    return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE)).body(body);
+  }
+
+  private void writeBatchResult(final OutputStream out, final BatchLayoutResult result) throws IOException {
+    out.write(objectMapper.writeValueAsBytes(result));
+    out.write('\n');
+    out.flush();
+  }
+
+  private BatchLayoutResult layoutBatchItem(final String collectionId, final Set<String> views) {
+    try {
+      Collection collection = collectionService.getCurrent(collectionId).orElseThrow(
+          () -> new NotFoundException("Collection not found"));
+
+      if (!collectionAuthorizationService.authorizeCollectionAction(collection, CoreActions.GET))
+        throw new PermissionDeniedException();
+
+      CollectionType type = collectionTypeService.get(collection.getTypeId()).orElseThrow(
+          () -> new NotFoundException("Collection type not found: " + collection.getTypeId()));
+
+      return new BatchLayoutResult(collectionId, 200, null, layout(collection, type, views));
+    } catch (ApiException e) {
+      return new BatchLayoutResult(collectionId, e.getCode(), e.getMessage(), null);
+    } catch (PermissionDeniedException e) {
+      return new BatchLayoutResult(collectionId, 403, "Permission denied", null);
+    } catch (RuntimeException e) {
+      return new BatchLayoutResult(collectionId, 500, e.getMessage(), null);
+    }
+  }
+
+  private CollectionLayout layout(final Collection collection, final CollectionType type, final Set<String> views) {
+    if (null == views)
+      return layoutCache.get(collection, type, () -> engine.layoutTree(collection, type));
+
+    // a cached full layout is cheaper to trim than laying out the requested views
+    CollectionLayout cached = layoutCache.getIfPresent(collection, type);
+    if (null == cached)
+      return engine.layoutTree(collection, type, views, false);
+
+    CollectionLayout trimmed = new CollectionLayout();
+    trimmed.setCollectionTypeId(cached.getCollectionTypeId());
+    trimmed.setTitleVisualization(cached.getTitleVisualization());
+    trimmed.setViewLayouts(cached.getViewLayouts().entrySet().stream() //
+        .filter(e -> views.contains(e.getKey())) //
+        .collect(Collectors.toMap(e -> e.getKey(), e -> e.getValue())));
+    return trimmed;
+  }
+
+  private CollectionLayout layoutStored(final Optional<Collection> stored, final boolean profile,
+      final WebRequest request) {
+    Collection collection = stored.orElseThrow(() -> new NotFoundException("Collection not found"));
+
+    if (!collectionAuthorizationService.authorizeCollectionAction(collection, CoreActions.GET))
+      throw new PermissionDeniedException();
+
+    CollectionType type = collectionTypeService.get(collection.getTypeId()).orElseThrow(
+        () -> new NotFoundException("Collection type not found: " + collection.getTypeId()));
+
+    // answer conditional requests without laying out the collection
+    String versionTag = layoutCache.getVersionTag(collection, type);
+    if (!profile && null != versionTag && request.checkNotModified(versionTag))
+      return null;
+
+    return layout(collection, type, profile);
+  }
+
+  private CollectionLayout layout(final Collection collection, final CollectionType type, final boolean profile) {
+    // a profile describes a particular layout computation and must therefore bypass the cache
+    if (profile)
+      return engine.layoutTree(collection, type, true);
+
+    return layoutCache.get(collection, type, () -> engine.layoutTree(collection, type));
   }
 
 }
@@ -1,9 +1,3 @@
-// init the collection related global variables
-function _initCollection() {
-  _cd(collection);
-  collection.elements.forEach(_cd);
-}
-
 // init the element-related global variables
 function _initElement() {
   // declare those in global scope
@@ -11,10 +5,9 @@ function _initElement() {
   tags = element.tags;
 }
 
-// convert dates to "real" dates of collection and element objects
-function _cd(o) {
-  o.dateCreated = new Date(o.dateCreated);
-  o.dateModified = new Date(o.dateModified);
+// map a JS element to the Java element backing it - _unwrapElement is provided by the backend
+function _javaElement(e) {
+  return _unwrapElement(e);
 }
 
 // wrap a Java Node object so that the withProperty method replaces the JS element with the java one  
@@ -22,10 +15,10 @@ function _wrapNode(n) {
   var wrapper = {
     // wrap the withElement method to replace the JS element with the Java one
     withElement: function (e) {
-      return n.withElement(_collection.elements.get(collection.elements.indexOf(e)));
+      return n.withElement(_javaElement(e));
     },
     createElementNode: function (e) {
-      return _wrapNode(n.createElementNode(_collection.elements.get(collection.elements.indexOf(e))));
+      return _wrapNode(n.createElementNode(_javaElement(e)));
     },
     withProperty: function (k, v) {
       n.withProperty(k, v);
@@ -41,12 +34,14 @@ function _wrapNode(n) {
     },
     initiallyExpanded: function () { n.initiallyExpanded(); return wrapper; },
     initiallyCollapsed: function () { n.initiallyCollapsed(); return wrapper; },
-    properties: n.properties,
-    children: n.children,
     onDragover: function (executable) { n.onDragover(executable); return wrapper; },
     onDrop: function (executable) { n.onDrop(executable); return wrapper; }
   };
 
+  // expose the node state lazily, so that reading it can be detected by incremental layouts
+  Object.defineProperty(wrapper, 'properties', { get: function () { return n.properties; }, enumerable: true });
+  Object.defineProperty(wrapper, 'children', { get: function () { return n.children; }, enumerable: true });
+
   return wrapper;
 }
 
@@ -69,12 +64,12 @@ function withNode(f) {
 function createElementNode(e) {
   var path = Array.prototype.slice.call(arguments).slice(1);
   return _root.createPath(path).createElementNode(
-    _collection.elements.get(collection.elements.indexOf(e))
+    _javaElement(e)
   );
 }
 function putNodeProperty(n, v) {
   var path = Array.prototype.slice.call(arguments).slice(2);
-  _root.createPath(path).getProperties().put(n, v);
+  _root.createPath(path).withProperty(n, v);
 }
 function titleVsualization(k, v) {
   _layout.getTitleVisualization().put(k, v);
@@ -0,0 +1,41 @@
+package com.neverpile.fusion.configuration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.context.FilteredClassLoader;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import com.neverpile.fusion.model.rules.javascript.GraalJSLayoutBackend;
+import com.neverpile.fusion.model.rules.javascript.LayoutScriptBackend;
+import com.neverpile.fusion.model.rules.javascript.NashornLayoutBackend;
+
+public class LayoutBackendConfigurationTest {
+  private final ApplicationContextRunner contextRunner = new ApplicationContextRunner() //
+      .withConfiguration(AutoConfigurations.of(JacksonAutoConfiguration.class)) //
+      .withUserConfiguration(LayoutEngineConfiguration.class, LayoutBackendConfiguration.class);
+
+  @Test
+  public void testThat_nashornIsTheDefaultBackend() {
+    contextRunner.run(context -> assertThat(context).getBean(LayoutScriptBackend.class) //
+        .isInstanceOf(NashornLayoutBackend.class));
+  }
+
+  @Test
+  public void testThat_graalJSBackendCanBeSelected() {
+    contextRunner.withPropertyValues("neverpile-fusion.layout-engine.backend=graaljs") //
+        .run(context -> assertThat(context).getBean(LayoutScriptBackend.class) //
+            .isInstanceOf(GraalJSLayoutBackend.class));
+  }
+
+  @Test
+  public void testThat_missingGraalJSDependenciesAreReported() {
+    contextRunner.withPropertyValues("neverpile-fusion.layout-engine.backend=graaljs") //
+        .withClassLoader(new FilteredClassLoader("com.oracle.truffle.js")) //
+        .run(context -> assertThat(context).hasFailed() //
+            .getFailure().hasRootCauseInstanceOf(IllegalStateException.class) //
+            .hasStackTraceContaining("requires the dependencies org.graalvm.sdk:graal-sdk and org.graalvm.js:js"));
+  }
+}
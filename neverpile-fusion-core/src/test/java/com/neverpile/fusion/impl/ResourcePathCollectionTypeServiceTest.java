@@ -2,29 +2,43 @@ package com.neverpile.fusion.impl;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.springframework.util.StreamUtils.copyToString;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.BooleanSupplier;
 import java.util.function.Supplier;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.api.CollectionTypeValidator;
+import com.neverpile.fusion.api.exception.NeverpileException;
+import com.neverpile.fusion.configuration.CollectionTypeLoadingConfiguration;
+import com.neverpile.fusion.configuration.CollectionTypeLoadingConfiguration.InvalidTypeHandling;
 import com.neverpile.fusion.configuration.JacksonConfiguration;
 import com.neverpile.fusion.model.CollectionType;
 import com.neverpile.fusion.model.EditableMetadata;
 import com.neverpile.fusion.model.View;
 import com.neverpile.fusion.model.rules.javascript.JavascriptRule;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 @ExtendWith(SpringExtension.class)
 @SpringBootTest(webEnvironment = WebEnvironment.NONE, classes = {
     JacksonAutoConfiguration.class, JacksonConfiguration.class, ResourcePathCollectionTypeService.class
@@ -54,6 +68,166 @@ public class ResourcePathCollectionTypeServiceTest {
     verifyTestType(service.get("aYamlCollectionType"));
   }
 
+  @Test
+  public void testThat_allTypesAreServedFromTheIndex() {
+    assertThat(service.getAllTypes()).extracting(CollectionType::getId) //
+        .containsExactly("aJsonCollectionType", "aYamlCollectionType");
+    assertThat(service.get("aYamlCollectionType").get()).isSameAs(service.get("aYamlCollectionType").get());
+    assertThat(service.get("doesNotExist")).isEmpty();
+  }
+
+  @Test
+  public void testThat_changesArePickedUp(@TempDir final Path directory) throws Exception {
+    writeType(directory.resolve("aType.yaml"), "A type");
+
+    ResourcePathCollectionTypeService watching = createService(directory, true);
+    try {
+      assertThat(watching.get("aType").get().getName()).isEqualTo("A type");
+
+      writeType(directory.resolve("anotherType.json"), "Another type");
+      await(() -> watching.get("anotherType").isPresent());
+      assertThat(watching.getAllTypes()).hasSize(2);
+
+      writeType(directory.resolve("aType.yaml"), "A modified type");
+      await(() -> watching.get("aType").get().getName().equals("A modified type"));
+
+      Files.delete(directory.resolve("anotherType.json"));
+      await(() -> !watching.get("anotherType").isPresent());
+      assertThat(watching.getAllTypes()).hasSize(1);
+    } finally {
+      watching.stop();
+    }
+  }
+
+  @Test
+  public void testThat_unchangedTypesAreRetainedOnReload(@TempDir final Path directory) throws Exception {
+    writeType(directory.resolve("aType.yaml"), "A type");
+    ResourcePathCollectionTypeService s = createService(directory, false);
+    CollectionType before = s.get("aType").get();
+
+    writeType(directory.resolve("anotherType.yaml"), "Another type");
+    s.reload();
+
+    assertThat(s.get("aType").get()).isSameAs(before);
+    assertThat(s.get("anotherType")).isPresent();
+  }
+
+  @Test
+  public void testThat_brokenTypeRetainsPreviousDefinition(@TempDir final Path directory) throws Exception {
+    writeType(directory.resolve("aType.yaml"), "A type");
+    ResourcePathCollectionTypeService s = createService(directory, false);
+    assertThat(s.get("aType")).isPresent();
+
+    Files.write(directory.resolve("aType.yaml"), "views: [ {".getBytes(UTF_8));
+    Files.write(directory.resolve("aBrokenType.yaml"), "views: [ {".getBytes(UTF_8));
+    s.reload();
+
+    assertThat(s.get("aType").get().getName()).isEqualTo("A type");
+    assertThat(s.get("aBrokenType")).isEmpty();
+    assertThat(s.getQuarantinedTypes()).containsOnlyKeys("aBrokenType");
+  }
+
+  @Test
+  public void testThat_invalidTypesAreQuarantined(@TempDir final Path directory) throws Exception {
+    for (int i = 0; i < 50; i++)
+      writeType(directory.resolve("type" + i + ".yaml"), i % 10 == 0 ? "Invalid" : "Type " + i);
+    Files.write(directory.resolve("aBrokenType.yaml"), "views: [ {".getBytes(UTF_8));
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    CollectionTypeLoadingConfiguration loading = new CollectionTypeLoadingConfiguration();
+    loading.setParallelism(4);
+    ResourcePathCollectionTypeService s = createService(directory, loading, rejectInvalid(), meterRegistry);
+
+    assertThat(s.getAllTypes()).hasSize(45);
+    assertThat(s.get("type0")).isEmpty();
+    assertThat(s.get("type1")).isPresent();
+    assertThat(s.getQuarantinedTypes()).hasSize(6).containsKey("aBrokenType").containsEntry("type10",
+        "Invalid type type10");
+
+    assertThat(meterRegistry.get("fusion.collection.types").gauge().value()).isEqualTo(45);
+    assertThat(meterRegistry.get("fusion.collection.types.quarantined").gauge().value()).isEqualTo(6);
+    assertThat(meterRegistry.get("fusion.collection.types.load").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  public void testThat_invalidTypesFailFastIfConfigured(@TempDir final Path directory) throws Exception {
+    writeType(directory.resolve("aType.yaml"), "A type");
+    writeType(directory.resolve("anInvalidType.yaml"), "Invalid");
+
+    CollectionTypeLoadingConfiguration loading = new CollectionTypeLoadingConfiguration();
+    loading.setInvalidTypes(InvalidTypeHandling.FAIL);
+
+    assertThatThrownBy(() -> createService(directory, loading, rejectInvalid(), new SimpleMeterRegistry())) //
+        .isInstanceOf(NeverpileException.class) //
+        .hasMessageContaining("anInvalidType");
+  }
+
+  @Test
+  public void testThat_typesBecomingInvalidRetainPreviousDefinition(@TempDir final Path directory)
+      throws Exception {
+    writeType(directory.resolve("aType.yaml"), "A type");
+
+    CollectionTypeLoadingConfiguration loading = new CollectionTypeLoadingConfiguration();
+    loading.setInvalidTypes(InvalidTypeHandling.FAIL);
+    ResourcePathCollectionTypeService s = createService(directory, loading, rejectInvalid(),
+        new SimpleMeterRegistry());
+
+    writeType(directory.resolve("aType.yaml"), "Invalid");
+    s.reload();
+
+    assertThat(s.get("aType").get().getName()).isEqualTo("A type");
+    assertThat(s.getQuarantinedTypes()).isEmpty();
+  }
+
+  private static List<CollectionTypeValidator> rejectInvalid() {
+    return Collections.singletonList(t -> {
+      if ("Invalid".equals(t.getName()))
+        throw new NeverpileException("Invalid type " + t.getId());
+    });
+  }
+
+  private ResourcePathCollectionTypeService createService(final Path directory,
+      final CollectionTypeLoadingConfiguration loading, final List<CollectionTypeValidator> validators,
+      final SimpleMeterRegistry meterRegistry) {
+    ResourcePathCollectionTypeService s = new ResourcePathCollectionTypeService(
+        new FileSystemResource(directory.toFile().getAbsolutePath() + "/"), jsonMapper, yamlMapper, false, loading,
+        validators, meterRegistry);
+    s.start();
+    return s;
+  }
+
+  @Test
+  public void testThat_yamlTakesPrecedenceOverJson(@TempDir final Path directory) throws Exception {
+    writeType(directory.resolve("aType.json"), "From JSON");
+    writeType(directory.resolve("aType.yaml"), "From YAML");
+
+    ResourcePathCollectionTypeService s = createService(directory, false);
+    assertThat(s.get("aType").get().getName()).isEqualTo("From YAML");
+    assertThat(s.getAllTypes()).hasSize(1);
+  }
+
+  private ResourcePathCollectionTypeService createService(final Path directory, final boolean watch) {
+    ResourcePathCollectionTypeService s = new ResourcePathCollectionTypeService(
+        new FileSystemResource(directory.toFile().getAbsolutePath() + "/"), jsonMapper, yamlMapper, watch);
+    s.start();
+    return s;
+  }
+
+  private void writeType(final Path file, final String name) throws IOException {
+    CollectionType t = new CollectionType();
+    t.setName(name);
+    ObjectMapper mapper = file.toString().endsWith(".json") ? jsonMapper : yamlMapper.get();
+    Files.write(file, mapper.writeValueAsBytes(t));
+  }
+
+  private static void await(final BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 20000;
+    while (!condition.getAsBoolean()) {
+      assertThat(System.currentTimeMillis()).as("condition met in time").isLessThan(deadline);
+      Thread.sleep(50);
+    }
+  }
+
   @Test
   public void testThat_collectionTypeCanBeMarshalledToJson() throws IOException {
     assertThat(jsonMapper.writerWithDefaultPrettyPrinter().writeValueAsString(makeTestType())) //
@@ -0,0 +1,134 @@
+package com.neverpile.fusion.model.rules;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.View;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class LayoutCacheTest {
+  private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+  private SimpleMeterRegistry meterRegistry;
+
+  private LayoutCache cache;
+
+  private AtomicInteger layoutCount;
+
+  @BeforeEach
+  public void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    cache = new LayoutCache(objectMapper, new LayoutEngineConfiguration(), meterRegistry);
+    layoutCount = new AtomicInteger();
+  }
+
+  @Test
+  public void testThat_layoutOfSameVersionIsCached() {
+    CollectionType t = createType("Default");
+
+    CollectionLayout first = layout(createCollection(1), t);
+    CollectionLayout second = layout(createCollection(1), t);
+
+    assertThat(second).isSameAs(first);
+    assertThat(layoutCount).hasValue(1);
+    assertThat(meterRegistry.get("cache.gets").tag("cache", "fusion.layout.cache").tag("result", "hit").functionCounter().count()) //
+        .isEqualTo(1);
+    assertThat(meterRegistry.get("cache.gets").tag("cache", "fusion.layout.cache").tag("result", "miss").functionCounter().count()) //
+        .isEqualTo(1);
+  }
+
+  @Test
+  public void testThat_differentVersionsAreLaidOutSeparately() {
+    CollectionType t = createType("Default");
+
+    layout(createCollection(1), t);
+    layout(createCollection(2), t);
+
+    assertThat(layoutCount).hasValue(2);
+  }
+
+  @Test
+  public void testThat_typeChangeEvictsLayouts() {
+    layout(createCollection(1), createType("Default"));
+    layout(createCollection(1), createType("Changed"));
+    layout(createCollection(1), createType("Default"));
+
+    assertThat(layoutCount).hasValue(3);
+  }
+
+  @Test
+  public void testThat_layoutsWithFailedViewsAreNotCached() {
+    CollectionType t = createType("Default");
+
+    Collection c = createCollection(1);
+    cache.get(c, t, () -> {
+      layoutCount.incrementAndGet();
+      CollectionLayout layout = new CollectionLayout();
+      layout.getViewLayouts().put("Default", new ViewLayout("Default", "Failed to lay out view: timeout"));
+      return layout;
+    });
+    layout(c, t);
+    layout(c, t);
+
+    assertThat(layoutCount).hasValue(2);
+  }
+
+  @Test
+  public void testThat_collectionsWithoutVersionAreNotCached() {
+    CollectionType t = createType("Default");
+
+    Collection c = createCollection(1);
+    c.setVersionTimestamp(null);
+
+    layout(c, t);
+    layout(c, t);
+
+    assertThat(layoutCount).hasValue(2);
+  }
+
+  private CollectionLayout layout(final Collection collection, final CollectionType type) {
+    return cache.get(collection, type, () -> {
+      layoutCount.incrementAndGet();
+      CollectionLayout layout = new CollectionLayout();
+      layout.setCollectionTypeId(type.getId());
+      return layout;
+    });
+  }
+
+  private CollectionType createType(final String viewName) {
+    CollectionType t = new CollectionType();
+    t.setId("aType");
+
+    View v = new View();
+    v.setName(viewName);
+    t.getViews().add(v);
+
+    return t;
+  }
+
+  private Collection createCollection(final long version) {
+    Collection c = new Collection();
+    c.setId("aCollection");
+    c.setTypeId("aType");
+    c.setVersionTimestamp(Instant.ofEpochMilli(version));
+    c.setMetadata(objectMapper.createObjectNode().put("foo", "bar"));
+
+    Element e = new Element();
+    e.setId("anElement");
+    e.getTags().add("foo");
+    c.getElements().add(e);
+
+    return c;
+  }
+}
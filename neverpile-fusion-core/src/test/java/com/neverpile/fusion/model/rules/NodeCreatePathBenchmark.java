@@ -0,0 +1,97 @@
+package com.neverpile.fusion.model.rules;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the construction of view trees via {@link Node#createPath(String...)}, the way element
+ * rules build them. Run via {@link #main(String[])}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NodeCreatePathBenchmark {
+  /**
+   * A flat tree: all elements are placed below a single group node.
+   */
+  @State(Scope.Benchmark)
+  public static class WideTree {
+    @Param({
+        "100", "1000", "10000"
+    })
+    int elements;
+
+    String[][] paths;
+
+    @Setup
+    public void setup() {
+      paths = new String[elements][];
+      for (int i = 0; i < elements; i++)
+        paths[i] = new String[]{
+            "Elements", "e" + i
+        };
+    }
+  }
+
+  /**
+   * A tree grouping 10000 elements in several levels. The fan-out doubles with every level.
+   */
+  @State(Scope.Benchmark)
+  public static class DeepTree {
+    @Param({
+        "2", "4", "8"
+    })
+    int depth;
+
+    String[][] paths;
+
+    @Setup
+    public void setup() {
+      paths = new String[10000][];
+      for (int i = 0; i < paths.length; i++) {
+        String[] path = new String[depth];
+        for (int level = 0; level < depth - 1; level++)
+          path[level] = "g" + level + "." + (i % (2 << level));
+        path[depth - 1] = "e" + i;
+        paths[i] = path;
+      }
+    }
+  }
+
+  @Benchmark
+  public Node wideTree(final WideTree tree) {
+    return build(tree.paths);
+  }
+
+  @Benchmark
+  public Node deepTree(final DeepTree tree) {
+    return build(tree.paths);
+  }
+
+  private static Node build(final String[][] paths) {
+    Node root = new Node();
+    for (String[] path : paths)
+      root.createPath(path);
+    return root;
+  }
+
+  public static void main(final String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(NodeCreatePathBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,82 @@
+package com.neverpile.fusion.model.rules;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Measures the construction and serialization of a layout with a view tree of 50000 nodes. Run via
+ * {@link #main(String[])}, preferably with <code>-prof gc</code> to observe the allocation rate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NodeSerializationBenchmark {
+  static final int GROUPS = 500;
+
+  static final int ELEMENTS_PER_GROUP = 99;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private CollectionLayout layout;
+
+  @Setup
+  public void setup() {
+    layout = createLayout();
+  }
+
+  /**
+   * Create a layout whose tree groups 49500 element nodes in 500 groups, i.e. consists of 50002
+   * nodes. Like element rules typically do, only the group nodes carry a visualization.
+   *
+   * @return the layout
+   */
+  static CollectionLayout createLayout() {
+    ViewLayout view = new ViewLayout("Default", new Node());
+
+    for (int g = 0; g < GROUPS; g++) {
+      Node group = view.getStructureTree().createPath("Elements", "Group " + g);
+      group.withVisualization("html", "<b>Group " + g + "</b>");
+      for (int e = 0; e < ELEMENTS_PER_GROUP; e++)
+        group.createChild("e" + g + "." + e).setElementId("e" + g + "." + e);
+    }
+
+    CollectionLayout layout = new CollectionLayout();
+    layout.setCollectionTypeId("aType");
+    layout.getTitleVisualization().put("text", "A collection");
+    layout.getViewLayouts().put("Default", view);
+    return layout;
+  }
+
+  @Benchmark
+  public CollectionLayout build() {
+    return createLayout();
+  }
+
+  @Benchmark
+  public byte[] serialize() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(layout);
+  }
+
+  public static void main(final String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(NodeSerializationBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,187 @@
+package com.neverpile.fusion.model.rules;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class NodeTest {
+  private static final int WIDTH = ChildList.INDEX_THRESHOLD * 4;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  public void testThat_createChildReturnsExistingChild() {
+    Node root = createWideNode();
+
+    for (int i = 0; i < WIDTH; i++)
+      assertThat(root.createChild("c" + i)).isSameAs(root.getChildren().get(i));
+
+    assertThat(root.getChildren()).hasSize(WIDTH);
+    assertThat(root.findChild("unknown")).isNull();
+  }
+
+  @Test
+  public void testThat_createPathBuildsNestedNodes() {
+    Node root = new Node();
+
+    Node leaf = root.createPath("a", "b", "c");
+
+    assertThat(root.createPath("a", "b", "c")).isSameAs(leaf);
+    assertThat(root.findNode("a", "b", "c")).isSameAs(leaf);
+    assertThat(root.findNode("a", "x")).isNull();
+  }
+
+  @Test
+  public void testThat_lookupReflectsModificationsOfChildList() {
+    Node root = createWideNode();
+    List<Node> children = root.getChildren();
+
+    // removal
+    Node removed = children.remove(3);
+    assertThat(root.findChild("c3")).isNull();
+    assertThat(root.createChild("c3")).isNotSameAs(removed);
+
+    // removal via iterator
+    for (Iterator<Node> i = children.iterator(); i.hasNext();)
+      if ("c5".equals(i.next().getName()))
+        i.remove();
+    assertThat(root.findChild("c5")).isNull();
+
+    // replacement
+    Node replacement = new Node();
+    replacement.setName("replacement");
+    Node replaced = children.set(0, replacement);
+    assertThat(root.findChild("replacement")).isSameAs(replacement);
+    assertThat(root.findChild(replaced.getName())).isNull();
+
+    // insertion with duplicate name: the first child with a name wins
+    Node duplicate = new Node();
+    duplicate.setName("c7");
+    children.add(0, duplicate);
+    assertThat(root.findChild("c7")).isSameAs(duplicate);
+
+    // clear
+    children.clear();
+    assertThat(root.findChild("c7")).isNull();
+  }
+
+  @Test
+  public void testThat_lookupReflectsRenamedChildren() {
+    Node root = createWideNode();
+    Node child = root.findChild("c10");
+
+    child.setName("renamed");
+
+    assertThat(root.findChild("c10")).isNull();
+    assertThat(root.findChild("renamed")).isSameAs(child);
+    assertThat(root.createChild("renamed")).isSameAs(child);
+  }
+
+  @Test
+  public void testThat_sortingPreservesLookup() {
+    Node root = createWideNode();
+
+    root.getChildren().sort(Comparator.comparing(Node::getName).reversed());
+
+    assertThat(root.getChildren().get(0).getName()).isEqualTo("c9");
+    for (int i = 0; i < WIDTH; i++)
+      assertThat(root.findChild("c" + i).getName()).isEqualTo("c" + i);
+  }
+
+  @Test
+  public void testThat_setChildrenIsIndexed() {
+    List<Node> children = new ArrayList<>();
+    for (int i = 0; i < WIDTH; i++) {
+      Node n = new Node();
+      n.setName("c" + i);
+      children.add(n);
+    }
+
+    Node root = new Node();
+    root.setChildren(children);
+
+    assertThat(root.findChild("c20")).isSameAs(children.get(20));
+    assertThat(root.createChild("c20")).isSameAs(children.get(20));
+    assertThat(root.getChildren()).hasSize(WIDTH);
+  }
+
+  @Test
+  public void testThat_jsonFormIsUnchanged() throws Exception {
+    Node root = new Node();
+    root.createPath("a", "b").setElementId("e1");
+    root.createPath("a", "c");
+    root.createChild("d").withProperty("p", 1);
+
+    JSONAssert.assertEquals("{\"initiallyExpanded\": false, \"children\": [" //
+        + "{\"name\": \"a\", \"initiallyExpanded\": false, \"children\": [" //
+        + "{\"name\": \"b\", \"initiallyExpanded\": false, \"elementId\": \"e1\"}," //
+        + "{\"name\": \"c\", \"initiallyExpanded\": false}]}," //
+        + "{\"name\": \"d\", \"initiallyExpanded\": false, \"properties\": {\"p\": 1}}" //
+        + "]}", objectMapper.writeValueAsString(root), true);
+
+    Node read = objectMapper.readValue(objectMapper.writeValueAsString(root), Node.class);
+    assertThat(read.findNode("a", "b").getElementId()).isEqualTo("e1");
+    assertThat(read.createPath("a", "c")).isSameAs(read.findNode("a", "c"));
+  }
+
+  @Test
+  public void testThat_allPropertiesAreSerializedInBeanOrder() throws Exception {
+    Node n = new Node();
+    n.setName("n");
+    n.setElementId("e");
+    n.withProperty("p", Arrays.asList(1, "x")).withProperty("q", null);
+    n.withVisualization("html", "<b>");
+    n.onDragover("d").onDrop("o").initiallyExpanded();
+    n.createChild("");
+
+    assertThat(objectMapper.writeValueAsString(n)).isEqualTo("{\"properties\":{\"p\":[1,\"x\"],\"q\":null}," //
+        + "\"visualization\":{\"html\":\"<b>\"},\"name\":\"n\",\"elementId\":\"e\"," //
+        + "\"children\":[{\"initiallyExpanded\":false}],\"initiallyExpanded\":true," //
+        + "\"onDragoverExecutable\":\"d\",\"onDropExecutable\":\"o\"}");
+  }
+
+  @Test
+  public void testThat_emptyContainersAreModifiable() {
+    Node n = new Node();
+
+    assertThat(n.getProperties()).isEmpty();
+    n.getProperties().put("p", 1);
+    n.getVisualization().put("html", "<b>");
+    n.getChildren().add(new Node());
+
+    assertThat(n.getProperties()).containsEntry("p", 1);
+    assertThat(n.getVisualization()).containsEntry("html", "<b>");
+    assertThat(n.getChildren()).hasSize(1);
+
+    // other nodes are not affected
+    assertThat(new Node().getProperties()).isEmpty();
+  }
+
+  @Test
+  public void testThat_nullMapsAreTreatedAsEmpty() {
+    Node n = new Node();
+    n.setProperties(null);
+    n.setVisualization(null);
+
+    n.withProperty("p", 1).withVisualization("html", "<b>");
+
+    assertThat(n.getProperties()).containsEntry("p", 1);
+    assertThat(n.getVisualization()).containsEntry("html", "<b>");
+  }
+
+  private Node createWideNode() {
+    Node root = new Node();
+    for (int i = 0; i < WIDTH; i++)
+      root.createChild("c" + i);
+    return root;
+  }
+}
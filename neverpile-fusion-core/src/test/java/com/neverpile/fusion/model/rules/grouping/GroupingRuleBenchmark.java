@@ -0,0 +1,140 @@
+package com.neverpile.fusion.model.rules.grouping;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.View;
+import com.neverpile.fusion.model.rules.CollectionLayout;
+import com.neverpile.fusion.model.rules.Rule;
+import com.neverpile.fusion.model.rules.grouping.GroupingRule.SortKey;
+import com.neverpile.fusion.model.rules.javascript.JavascriptRule;
+import com.neverpile.fusion.model.rules.javascript.JavascriptViewLayoutEngine;
+import com.neverpile.fusion.model.rules.javascript.NashornLayoutBackend;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Compares a {@link GroupingRule} grouping 1000 elements by their first tag and sorting them by
+ * creation date with the equivalent script rule. Run via {@link #main(String[])}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GroupingRuleBenchmark {
+  private static final int ELEMENTS = 1000;
+
+  private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+  private NashornLayoutBackend backend;
+
+  private JavascriptViewLayoutEngine engine;
+
+  private Collection collection;
+
+  private CollectionType groupingType;
+
+  private CollectionType scriptType;
+
+  @Setup
+  public void setup() {
+    LayoutEngineConfiguration config = new LayoutEngineConfiguration();
+    config.getPool().setSize(1);
+    config.getCache().setEnabled(false);
+    backend = new NashornLayoutBackend(objectMapper, config, new SimpleMeterRegistry());
+    engine = new JavascriptViewLayoutEngine(backend, config, objectMapper, new SimpleMeterRegistry());
+
+    collection = new Collection();
+    collection.setId("aCollection");
+    collection.setTypeId("aType");
+    for (int i = 0; i < ELEMENTS; i++) {
+      Element e = new Element();
+      e.setId("e" + i);
+      e.setDateCreated(Instant.ofEpochSecond(1000 + i));
+      e.setTags(Arrays.asList("tag" + i % 20));
+      e.setMetadata(objectMapper.createObjectNode().put("title", "Element " + i));
+      collection.getElements().add(e);
+    }
+
+    GroupingRule grouping = new GroupingRule();
+    grouping.setName("By tag");
+    grouping.getGroupBy().add("$.tags[0]");
+    grouping.setFallbackGroup("Untagged");
+    SortKey key = new SortKey();
+    key.setSelector("$.dateCreated");
+    key.setDescending(true);
+    grouping.getSortBy().add(key);
+    grouping.getElementVisualization().put("html", "${$.metadata.title}");
+    groupingType = createType(grouping, null);
+
+    JavascriptRule script = new JavascriptRule();
+    script.setName("By tag");
+    script.setScriptCode("createNode(element.tags.length > 0 ? element.tags[0] : 'Untagged', element.id)" //
+        + "  .withElement(element)" //
+        + "  .withVisualization('html', element.metadata.title);");
+    JavascriptRule sort = new JavascriptRule();
+    sort.setName("Sort");
+    sort.setScriptCode("findNode().children.forEach(function(group) {" //
+        + "  group.children.sort(function(a, b) {" //
+        + "    return b.elementId.substring(1) - a.elementId.substring(1);" //
+        + "  });" //
+        + "});");
+    scriptType = createType(script, sort);
+  }
+
+  @TearDown
+  public void teardown() {
+    backend.close();
+  }
+
+  private static CollectionType createType(final Rule elementRule, final Rule treeRule) {
+    CollectionType t = new CollectionType();
+    t.setId("aType");
+
+    View v = new View();
+    v.setName("Default");
+    v.getElementRules().add(elementRule);
+    if (null != treeRule)
+      v.getTreeRules().add(treeRule);
+    t.getViews().add(v);
+
+    return t;
+  }
+
+  @Benchmark
+  public CollectionLayout grouping() {
+    return engine.layoutTree(collection, groupingType);
+  }
+
+  @Benchmark
+  public CollectionLayout script() {
+    return engine.layoutTree(collection, scriptType);
+  }
+
+  public static void main(final String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(GroupingRuleBenchmark.class.getSimpleName()).build()).run();
+  }
+}
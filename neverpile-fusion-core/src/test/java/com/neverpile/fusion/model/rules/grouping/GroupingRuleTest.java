@@ -0,0 +1,299 @@
+package com.neverpile.fusion.model.rules.grouping;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.View;
+import com.neverpile.fusion.model.rules.CollectionLayout;
+import com.neverpile.fusion.model.rules.Node;
+import com.neverpile.fusion.model.rules.RuleExecutionException;
+import com.neverpile.fusion.model.rules.grouping.GroupingRule.SortKey;
+import com.neverpile.fusion.model.rules.javascript.JavascriptRule;
+import com.neverpile.fusion.model.rules.javascript.JavascriptViewLayoutEngine;
+import com.neverpile.fusion.model.rules.javascript.NashornLayoutBackend;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class GroupingRuleTest {
+  private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+  private NashornLayoutBackend backend;
+
+  private JavascriptViewLayoutEngine engine;
+
+  @BeforeEach
+  public void setup() {
+    LayoutEngineConfiguration config = new LayoutEngineConfiguration();
+    config.getPool().setSize(1);
+    backend = new NashornLayoutBackend(objectMapper, config, new SimpleMeterRegistry());
+    engine = new JavascriptViewLayoutEngine(backend, config, objectMapper, new SimpleMeterRegistry());
+  }
+
+  @AfterEach
+  public void teardown() {
+    backend.close();
+  }
+
+  @Test
+  public void testThat_elementsAreGroupedByFirstTagAndSorted() throws Exception {
+    GroupingRule rule = createRule("By tag", "$.tags[0]");
+    rule.setPath(Arrays.asList("Tags"));
+    rule.setFallbackGroup("Untagged");
+    rule.setSortGroups(true);
+    rule.getSortBy().add(sortKey("$.dateCreated", true));
+    rule.getGroupVisualization().put("html", "<b>${group}</b>");
+    rule.getElementVisualization().put("html", "${$.metadata.title} (${group})");
+
+    Node tags = layout(rule).findNode("Tags");
+
+    assertThat(names(tags)).containsExactly("Untagged", "a", "b");
+    assertThat(names(tags.findChild("a"))).containsExactly("e4", "e2", "e0");
+    assertThat(names(tags.findChild("b"))).containsExactly("e1");
+    assertThat(names(tags.findChild("Untagged"))).containsExactly("e3");
+
+    assertThat(tags.findChild("a").getVisualization()).containsEntry("html", "<b>a</b>");
+    assertThat(tags.findNode("a", "e2").getElementId()).isEqualTo("e2");
+    assertThat(tags.findNode("a", "e2").getVisualization()).containsEntry("html", "Element 2 (a)");
+  }
+
+  @Test
+  public void testThat_elementsArePlacedBelowEachValue() throws Exception {
+    GroupingRule rule = createRule("By tag", "$.tags[*]");
+
+    Node root = layout(rule);
+
+    assertThat(names(root)).containsExactly("a", "b", "c");
+    assertThat(names(root.findChild("a"))).containsExactly("e0", "e2", "e4");
+    assertThat(names(root.findChild("b"))).containsExactly("e1", "e4");
+    assertThat(names(root.findChild("c"))).containsExactly("e4");
+  }
+
+  @Test
+  public void testThat_elementsCanBeGroupedByMetadataInSeveralLevels() throws Exception {
+    GroupingRule rule = createRule("By metadata", "$.metadata.parity", "$.metadata.bucket");
+    rule.setSortGroups(true);
+    rule.getSortBy().add(sortKey("$.metadata.rank", false));
+
+    Node root = layout(rule);
+
+    assertThat(names(root)).containsExactly("even", "odd");
+    assertThat(names(root.findChild("even"))).containsExactly("0", "1");
+    assertThat(names(root.findNode("even", "0"))).containsExactly("e4", "e0");
+    assertThat(names(root.findNode("even", "1"))).containsExactly("e2");
+    assertThat(names(root.findNode("odd", "0"))).containsExactly("e1");
+    assertThat(names(root.findNode("odd", "1"))).containsExactly("e3");
+  }
+
+  @Test
+  public void testThat_mixedNumericAndTextualSortValuesAreOrderedConsistently() throws Exception {
+    GroupingRule rule = createRule("All", "$.metadata.parity");
+    rule.getSortBy().add(sortKey("$.metadata.value", false));
+
+    // even elements have numeric values, odd ones textual ones, e40 has none
+    Collection c = createCollection();
+    c.getElements().clear();
+    List<Integer> order = IntStream.rangeClosed(0, 40).boxed().collect(Collectors.toList());
+    Collections.shuffle(order, new Random(42));
+    for (int i : order) {
+      Element e = new Element();
+      e.setId("e" + i);
+      ObjectNode metadata = objectMapper.createObjectNode().put("parity", "all");
+      if (i < 40 && i % 2 == 0)
+        metadata.put("value", i);
+      else if (i < 40)
+        metadata.put("value", String.valueOf(i));
+      e.setMetadata(metadata);
+      c.getElements().add(e);
+    }
+
+    CollectionLayout layout = engine.layoutTree(c, createType(rule));
+    assertThat(error(layout)).isEmpty();
+    Node all = layout.getViewLayouts().get("Default").getStructureTree().findChild("all");
+
+    // numbers first in numeric order, then text in lexical order, then missing values
+    List<String> expected = new ArrayList<>();
+    IntStream.range(0, 20).forEach(i -> expected.add("e" + 2 * i));
+    IntStream.range(0, 20).mapToObj(i -> String.valueOf(2 * i + 1)).sorted().forEach(v -> expected.add("e" + v));
+    expected.add("e40");
+    assertThat(names(all)).containsExactlyElementsOf(expected);
+  }
+
+  @Test
+  public void testThat_generalSelectorsAreSupported() throws Exception {
+    GroupingRule rule = createRule("Deep", "$..parity");
+    rule.getElementVisualization().put("html", "${$.tags[?(@ != 'a')]}");
+
+    Node root = layout(rule);
+
+    assertThat(names(root)).containsExactly("even", "odd");
+    assertThat(names(root.findChild("even"))).containsExactly("e0", "e2", "e4");
+    assertThat(root.findNode("even", "e4").getVisualization()).containsEntry("html", "b, c");
+  }
+
+  @Test
+  public void testThat_groupingRulesCanBeMixedWithScriptRules() throws Exception {
+    CollectionType t = createType(createRule("By tag", "$.tags[0]"));
+
+    JavascriptRule script = new JavascriptRule();
+    script.setName("All");
+    script.setScriptCode("createNode('All', element.id).withElement(element);");
+    t.getViews().get(0).getElementRules().add(script);
+
+    JavascriptRule tree = new JavascriptRule();
+    tree.setName("Count");
+    tree.setScriptCode("findNode('a').withProperty('count', findNode('a').children.size());");
+    t.getViews().get(0).getTreeRules().add(tree);
+
+    Node root = engine.layoutTree(createCollection(), t).getViewLayouts().get("Default").getStructureTree();
+
+    assertThat(names(root)).containsExactly("a", "All", "b");
+    assertThat(names(root.findChild("All"))).hasSize(5);
+    assertThat(root.findChild("a").getProperties()).containsEntry("count", 3);
+  }
+
+  @Test
+  public void testThat_groupingRuleMatchesEquivalentScript() throws Exception {
+    GroupingRule rule = createRule("By tag", "$.tags[0]");
+    rule.setFallbackGroup("Untagged");
+    rule.getElementVisualization().put("html", "${$.metadata.title}");
+
+    JavascriptRule script = new JavascriptRule();
+    script.setName("By tag");
+    script.setScriptCode("createNode(element.tags.length > 0 ? element.tags[0] : 'Untagged', element.id)" //
+        + "  .withElement(element)" //
+        + "  .withVisualization('html', element.metadata.title);");
+
+    Collection c = createCollection();
+    CollectionLayout grouped = engine.layoutTree(c, createType(rule));
+    CollectionLayout scripted = engine.layoutTree(c, createType(script));
+
+    JSONAssert.assertEquals(objectMapper.writeValueAsString(scripted), objectMapper.writeValueAsString(grouped),
+        true);
+  }
+
+  @Test
+  public void testThat_groupingRuleIsReadFromJson() throws Exception {
+    CollectionType t = objectMapper.readValue("{\"id\": \"aType\", \"views\": [{\"name\": \"Default\", " //
+        + "\"elementRules\": [{\"type\": \"grouping\", \"name\": \"By tag\", \"groupBy\": [\"$.tags[0]\"], " //
+        + "\"sortBy\": [{\"selector\": \"$.dateCreated\", \"descending\": true}]}]}]}", CollectionType.class);
+
+    assertThat(t.getViews().get(0).getElementRules().get(0)).isInstanceOf(GroupingRule.class);
+
+    Node root = engine.layoutTree(createCollection(), t).getViewLayouts().get("Default").getStructureTree();
+    assertThat(names(root.findChild("a"))).containsExactly("e4", "e2", "e0");
+  }
+
+  @Test
+  public void testThat_malformedSelectorFailsView() {
+    CollectionLayout layout = engine.layoutTree(createCollection(), createType(createRule("Broken", "$..")));
+
+    assertThat(error(layout)).startsWith(
+        "Failed to lay out view: Failed to compile grouping rule 'Broken'");
+  }
+
+  @Test
+  public void testThat_groupingRuleCannotBeUsedAsGlobalRule() {
+    CollectionType t = createType();
+    t.getGlobalRules().add(createRule("By tag", "$.tags[0]"));
+
+    assertThatThrownBy(() -> engine.layoutTree(createCollection(), t)) //
+        .isInstanceOf(RuleExecutionException.class) //
+        .hasMessage("Grouping rule 'By tag' can only be used as an element rule");
+  }
+
+  private Node layout(final GroupingRule rule) {
+    CollectionLayout layout = engine.layoutTree(createCollection(), createType(rule));
+    assertThat(error(layout)).isEmpty();
+    return layout.getViewLayouts().get("Default").getStructureTree();
+  }
+
+  private String error(final CollectionLayout layout) {
+    return objectMapper.valueToTree(layout.getViewLayouts().get("Default")).path("error").asText();
+  }
+
+  private static List<String> names(final Node node) {
+    return node.getChildren().stream().map(Node::getName).collect(Collectors.toList());
+  }
+
+  private static GroupingRule createRule(final String name, final String... groupBy) {
+    GroupingRule rule = new GroupingRule();
+    rule.setName(name);
+    rule.setGroupBy(new ArrayList<>(Arrays.asList(groupBy)));
+    return rule;
+  }
+
+  private static SortKey sortKey(final String selector, final boolean descending) {
+    SortKey key = new SortKey();
+    key.setSelector(selector);
+    key.setDescending(descending);
+    return key;
+  }
+
+  private static CollectionType createType(final com.neverpile.fusion.model.rules.Rule... elementRules) {
+    CollectionType t = new CollectionType();
+    t.setId("aType");
+
+    View v = new View();
+    v.setName("Default");
+    v.getElementRules().addAll(Arrays.asList(elementRules));
+    t.getViews().add(v);
+
+    return t;
+  }
+
+  /**
+   * Create a collection of five elements: e0, e2 and e4 are tagged "a", e1 is tagged "b", e3 has no
+   * tags and e4 is additionally tagged "b" and "c". Elements are created at increasing dates.
+   */
+  private Collection createCollection() {
+    Collection c = new Collection();
+    c.setId("aCollection");
+    c.setTypeId("aType");
+
+    String[][] tags = {
+        {
+            "a"
+        }, {
+            "b"
+        }, {
+            "a"
+        }, {}, {
+            "a", "b", "c"
+        }
+    };
+    for (int i = 0; i < tags.length; i++) {
+      Element e = new Element();
+      e.setId("e" + i);
+      e.setDateCreated(Instant.ofEpochSecond(1000 + i));
+      e.setTags(new ArrayList<>(Arrays.asList(tags[i])));
+      e.setMetadata(objectMapper.createObjectNode() //
+          .put("title", "Element " + i) //
+          .put("parity", i % 2 == 0 ? "even" : "odd") //
+          .put("bucket", (i / 2) % 2) //
+          .put("rank", 10 - i));
+      c.getElements().add(e);
+    }
+
+    return c;
+  }
+}
@@ -0,0 +1,20 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+
+import com.neverpile.fusion.configuration.JacksonConfiguration;
+
+/**
+ * Runs the {@link LayoutEngineTest}s using the {@link GraalJSLayoutBackend}.
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.NONE, classes = {
+    JacksonAutoConfiguration.class, JacksonConfiguration.class, JavascriptViewLayoutEngine.class
+}, properties = "neverpile-fusion.layout-engine.backend=graaljs")
+public class GraalJSLayoutEngineTest extends LayoutEngineTest {
+  @Override
+  protected String getExpectedTestLayout() {
+    return "test-layout-graaljs.json";
+  }
+}
@@ -0,0 +1,15 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Runs the {@link LayoutLimitsTest}s using the {@link GraalJSLayoutBackend}.
+ */
+public class GraalJSLayoutLimitsTest extends LayoutLimitsTest {
+  @Override
+  protected LayoutScriptBackend createBackend(final LayoutEngineConfiguration config) {
+    return new GraalJSLayoutBackend(objectMapper, config, new SimpleMeterRegistry());
+  }
+}
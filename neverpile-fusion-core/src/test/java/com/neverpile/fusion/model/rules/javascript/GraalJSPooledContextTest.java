@@ -0,0 +1,63 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class GraalJSPooledContextTest {
+  private final Engine engine = Engine.newBuilder().option("engine.WarnInterpreterOnly", "false").build();
+
+  private final AtomicBoolean failing = new AtomicBoolean();
+
+  @AfterEach
+  public void teardown() {
+    engine.close();
+  }
+
+  private Context createContext() {
+    if (failing.get())
+      throw new IllegalStateException("Can't create context");
+    return Context.newBuilder("js").engine(engine).build();
+  }
+
+  @Test
+  public void testThat_renewalReplacesTheContext() {
+    GraalJSPooledContext pooledContext = new GraalJSPooledContext(this::createContext);
+    try {
+      pooledContext.getContext().eval("js", "var leak = 1;");
+
+      pooledContext.renew();
+
+      assertThat(pooledContext.getContext().eval("js", "typeof leak").asString()).isEqualTo("undefined");
+    } finally {
+      pooledContext.close();
+    }
+  }
+
+  @Test
+  public void testThat_usedContextIsDiscardedIfRenewalFails() {
+    GraalJSPooledContext pooledContext = new GraalJSPooledContext(this::createContext);
+    try {
+      Context used = pooledContext.getContext();
+      used.eval("js", "var leak = 1;");
+
+      failing.set(true);
+      assertThatThrownBy(pooledContext::renew).isInstanceOf(IllegalStateException.class);
+      assertThatThrownBy(pooledContext::getContext).isInstanceOf(IllegalStateException.class);
+
+      // the next use retries the renewal
+      failing.set(false);
+      Context fresh = pooledContext.getContext();
+      assertThat(fresh).isNotSameAs(used);
+      assertThat(fresh.eval("js", "typeof leak").asString()).isEqualTo("undefined");
+    } finally {
+      pooledContext.close();
+    }
+  }
+}
@@ -0,0 +1,245 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.View;
+import com.neverpile.fusion.model.rules.CollectionLayout;
+import com.neverpile.fusion.model.rules.LayoutProfile.Phase;
+import com.neverpile.fusion.model.rules.LayoutProfile.RuleTiming;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class IncrementalLayoutTest {
+  private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+  private NashornLayoutBackend backend;
+
+  private JavascriptViewLayoutEngine incrementalEngine;
+
+  private JavascriptViewLayoutEngine fullEngine;
+
+  @BeforeEach
+  public void setup() {
+    LayoutEngineConfiguration config = new LayoutEngineConfiguration();
+    config.getPool().setSize(1);
+    backend = new NashornLayoutBackend(objectMapper, config, new SimpleMeterRegistry());
+
+    fullEngine = new JavascriptViewLayoutEngine(backend, config, objectMapper, new SimpleMeterRegistry());
+
+    LayoutEngineConfiguration incrementalConfig = new LayoutEngineConfiguration();
+    incrementalConfig.getIncremental().setEnabled(true);
+    incrementalEngine = new JavascriptViewLayoutEngine(backend, incrementalConfig, objectMapper,
+        new SimpleMeterRegistry());
+  }
+
+  @AfterEach
+  public void teardown() {
+    backend.close();
+  }
+
+  @Test
+  public void testThat_incrementalLayoutMatchesFullLayout() throws Exception {
+    CollectionType t = LayoutEngineTest.makeTestType();
+    Collection c = LayoutEngineTest.createTestCollection(objectMapper);
+
+    assertEquivalentLayouts(c, t);
+
+    // add an element
+    Element added = createElement("added", 1, "yada", "foo");
+    c.getElements().add(added);
+    assertEquivalentLayouts(c, t);
+
+    // modify an element
+    ((ObjectNode) added.getMetadata()).put("foo", "modified");
+    assertEquivalentLayouts(c, t);
+
+    // remove the element which created a shared node first
+    c.getElements().remove(0);
+    assertEquivalentLayouts(c, t);
+
+    // reorder the elements
+    Collections.reverse(c.getElements());
+    assertEquivalentLayouts(c, t);
+
+    // the collection metadata is visible to the rules
+    c.setMetadata(objectMapper.createObjectNode().put("title", "changed"));
+    assertEquivalentLayouts(c, t);
+  }
+
+  @Test
+  public void testThat_elementRulesAreOnlyExecutedForChangedElements() throws Exception {
+    CollectionType t = createType();
+    Collection c = createCollection(100);
+
+    assertThat(elementRuleExecutions(c, t)).isEqualTo(200);
+
+    // an unmodified collection doesn't require any element rule executions
+    c.setVersionTimestamp(Instant.ofEpochMilli(2));
+    c.setDateModified(Instant.ofEpochMilli(2));
+    assertThat(elementRuleExecutions(c, t)).isZero();
+
+    c.getElements().add(50, createElement("added", 50, "tag3"));
+    assertThat(elementRuleExecutions(c, t)).isEqualTo(2);
+
+    c.getElements().get(10).getTags().add("another tag");
+    assertThat(elementRuleExecutions(c, t)).isEqualTo(2);
+
+    c.getElements().remove(20);
+    assertThat(elementRuleExecutions(c, t)).isZero();
+
+    assertEquivalentLayouts(c, t);
+  }
+
+  @Test
+  public void testThat_changedTypeRequiresFullLayout() throws Exception {
+    CollectionType t = createType();
+    Collection c = createCollection(10);
+
+    assertThat(elementRuleExecutions(c, t)).isEqualTo(20);
+
+    CollectionType changed = createType();
+    ((JavascriptRule) changed.getViews().get(0).getElementRules().get(0)).setScriptCode(
+        "createNode('Buckets', 'Changed bucket ' + element.metadata.bucket).withElement(element);");
+    assertThat(elementRuleExecutions(c, changed)).isEqualTo(20);
+
+    assertEquivalentLayouts(c, changed);
+  }
+
+  @Test
+  public void testThat_rulesReadingTheTreeAreAlwaysExecuted() throws Exception {
+    CollectionType t = createType();
+    JavascriptRule position = new JavascriptRule();
+    position.setName("Position");
+    position.setScriptCode("var count = 0;" //
+        + "withNode(function(n) { count = n.children.size(); }, 'Positions');" //
+        + "createNode('Positions', element.id).withProperty('position', count);");
+    t.getViews().get(0).getElementRules().add(position);
+
+    Collection c = createCollection(10);
+    assertThat(elementRuleExecutions(c, t)).isEqualTo(30);
+
+    // effects are tracked per element - all rules are executed for elements reading the tree
+    c.getElements().remove(0);
+    assertThat(elementRuleExecutions(c, t)).isEqualTo(27);
+
+    assertEquivalentLayouts(c, t);
+  }
+
+  @Test
+  public void testThat_viewsAreLaidOutIncrementallyInParallel() throws Exception {
+    LayoutEngineConfiguration config = new LayoutEngineConfiguration();
+    config.getIncremental().setEnabled(true);
+    config.getParallelViews().setEnabled(true);
+    incrementalEngine = new JavascriptViewLayoutEngine(backend, config, objectMapper, new SimpleMeterRegistry());
+
+    try {
+      CollectionType t = createType();
+      View other = new View();
+      other.setName("Other");
+      other.getElementRules().addAll(t.getViews().get(0).getElementRules());
+      t.getViews().add(other);
+
+      Collection c = createCollection(10);
+      assertThat(elementRuleExecutions(c, t)).isEqualTo(40);
+
+      c.getElements().add(createElement("added", 3, "tag1"));
+      assertThat(elementRuleExecutions(c, t)).isEqualTo(4);
+
+      assertEquivalentLayouts(c, t);
+    } finally {
+      incrementalEngine.shutdown();
+    }
+  }
+
+  private void assertEquivalentLayouts(final Collection c, final CollectionType t) throws Exception {
+    String expected = objectMapper.writeValueAsString(fullEngine.layoutTree(c, t));
+    String actual = objectMapper.writeValueAsString(incrementalEngine.layoutTree(c, t));
+
+    JSONAssert.assertEquals(expected, actual, JSONCompareMode.STRICT);
+  }
+
+  private long elementRuleExecutions(final Collection c, final CollectionType t) {
+    CollectionLayout layout = incrementalEngine.layoutTree(c, t, true);
+
+    layout.getViewLayouts().values().forEach(v -> assertThat(v.getStructureTree()).isNotNull());
+
+    return layout.getProfile().getRules().stream() //
+        .filter(r -> r.getPhase() == Phase.ELEMENT) //
+        .mapToLong(RuleTiming::getExecutions) //
+        .sum();
+  }
+
+  private CollectionType createType() {
+    CollectionType t = new CollectionType();
+    t.setId("anIncrementalType");
+
+    View v = new View();
+    v.setName("Default");
+    t.getViews().add(v);
+
+    JavascriptRule r1 = new JavascriptRule();
+    r1.setName("Put elements into buckets");
+    r1.setScriptCode("createNode('Buckets', 'Bucket ' + element.metadata.bucket)" //
+        + "  .withElement(element)" //
+        + "  .withProperty('last', element.id);");
+    v.getElementRules().add(r1);
+
+    JavascriptRule r2 = new JavascriptRule();
+    r2.setName("Put elements under nodes by their tags");
+    r2.setScriptCode("tags.forEach(function(t) {" //
+        + "  createNode('By tag', t, element.id)" //
+        + "    .withProperty('date', element.dateCreated.getTime())" //
+        + "    .initiallyExpanded();" //
+        + "});");
+    v.getElementRules().add(r2);
+
+    JavascriptRule tr = new JavascriptRule();
+    tr.setName("Sort tags");
+    tr.setScriptCode("withNode(function(n) {" //
+        + "  n.children.sort(function(a, b) { return a.name < b.name ? -1 : a.name > b.name ? 1 : 0; });" //
+        + "}, 'By tag');");
+    v.getTreeRules().add(tr);
+
+    return t;
+  }
+
+  private Collection createCollection(final int size) {
+    Collection c = new Collection();
+    c.setId("anIncrementalCollection");
+    c.setTypeId("anIncrementalType");
+    c.setVersionTimestamp(Instant.ofEpochMilli(1));
+    c.setDateModified(Instant.ofEpochMilli(1));
+
+    for (int i = 0; i < size; i++)
+      c.getElements().add(createElement("element" + i, i, "tag" + (i % 7)));
+
+    return c;
+  }
+
+  private Element createElement(final String id, final int i, final String... tags) {
+    Element e = new Element();
+    e.setId(id);
+    e.setDateCreated(Instant.ofEpochMilli(i));
+    e.setDateModified(Instant.ofEpochMilli(i));
+    e.setTags(new ArrayList<>(Arrays.asList(tags)));
+    e.setMetadata(objectMapper.createObjectNode().put("bucket", i % 5).put("foo", "bar" + i));
+    return e;
+  }
+}
@@ -0,0 +1,124 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.CollectionType;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Compares the layout throughput of the {@link NashornLayoutBackend} and the
+ * {@link GraalJSLayoutBackend} using the rules of the {@link LayoutEngineTest}. The results are
+ * reported only, as the relative performance depends heavily on the JVM. On a stock JDK GraalVM
+ * JavaScript runs in interpreter mode.
+ */
+public class LayoutBackendThroughputIT {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LayoutBackendThroughputIT.class);
+
+  private static final int THREADS = 4;
+
+  private static final long WARMUP_MILLIS = 5000;
+
+  private static final long MEASUREMENT_MILLIS = 10000;
+
+  private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+  @Test
+  public void testThat_backendsYieldIdenticalLayouts() throws Exception {
+    LayoutEngineConfiguration config = new LayoutEngineConfiguration();
+    CollectionType t = LayoutEngineTest.makeTestType();
+    Collection c = LayoutEngineTest.createTestCollection(objectMapper);
+
+    NashornLayoutBackend nashorn = new NashornLayoutBackend(objectMapper, config, new SimpleMeterRegistry());
+    GraalJSLayoutBackend graalJS = new GraalJSLayoutBackend(objectMapper, config, new SimpleMeterRegistry());
+    try {
+      String expected = objectMapper.writeValueAsString(
+          new JavascriptViewLayoutEngine(nashorn, config, objectMapper, new SimpleMeterRegistry()).layoutTree(c, t) //
+              .getViewLayouts().get("Default"));
+      String actual = objectMapper.writeValueAsString(
+          new JavascriptViewLayoutEngine(graalJS, config, objectMapper, new SimpleMeterRegistry()).layoutTree(c, t) //
+              .getViewLayouts().get("Default"));
+
+      JSONAssert.assertEquals(expected, actual, JSONCompareMode.STRICT);
+    } finally {
+      nashorn.close();
+      graalJS.close();
+    }
+  }
+
+  @Test
+  public void testThat_throughputIsReported() throws Exception {
+    LayoutEngineConfiguration config = new LayoutEngineConfiguration();
+    config.getPool().setSize(THREADS);
+
+    NashornLayoutBackend nashorn = new NashornLayoutBackend(objectMapper, config, new SimpleMeterRegistry());
+    try {
+      LOGGER.info("Nashorn throughput with {} threads: {} layouts/s", THREADS,
+          measureThroughput(new JavascriptViewLayoutEngine(nashorn, config, objectMapper, new SimpleMeterRegistry())));
+    } finally {
+      nashorn.close();
+    }
+
+    GraalJSLayoutBackend graalJS = new GraalJSLayoutBackend(objectMapper, config, new SimpleMeterRegistry());
+    try {
+      LOGGER.info("GraalJS throughput with {} threads: {} layouts/s", THREADS,
+          measureThroughput(new JavascriptViewLayoutEngine(graalJS, config, objectMapper, new SimpleMeterRegistry())));
+    } finally {
+      graalJS.close();
+    }
+  }
+
+  private double measureThroughput(final JavascriptViewLayoutEngine engine) throws Exception {
+    CollectionType t = LayoutEngineTest.makeTestType();
+    Collection c = LayoutEngineTest.createTestCollection(objectMapper);
+
+    runFor(engine, t, c, WARMUP_MILLIS);
+    long layouts = runFor(engine, t, c, MEASUREMENT_MILLIS);
+
+    assertThat(layouts).isPositive();
+
+    return layouts * 1000d / MEASUREMENT_MILLIS;
+  }
+
+  private long runFor(final JavascriptViewLayoutEngine engine, final CollectionType t, final Collection c,
+      final long millis) throws Exception {
+    long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<Long>> results = new ArrayList<>();
+      for (int i = 0; i < THREADS; i++)
+        results.add(executor.submit(() -> {
+          long count = 0;
+          while (System.nanoTime() < end) {
+            engine.layoutTree(c, t);
+            count++;
+          }
+          return count;
+        }));
+
+      long total = 0;
+      for (Future<Long> f : results)
+        total += f.get();
+      return total;
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -1,9 +1,16 @@
 package com.neverpile.fusion.model.rules.javascript;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.json.JSONException;
 import org.junit.jupiter.api.Test;
@@ -26,6 +33,7 @@ import com.neverpile.fusion.model.CollectionType;
 import com.neverpile.fusion.model.Element;
 import com.neverpile.fusion.model.View;
 import com.neverpile.fusion.model.rules.CollectionLayout;
+import com.neverpile.fusion.model.rules.Node;
 import com.neverpile.fusion.model.spec.Artifact;
 
 @ExtendWith(SpringExtension.class)
@@ -113,16 +121,119 @@ public class LayoutEngineTest {
   @Test
   public void performTestLayout() throws JSONException, IOException {
     CollectionType t = makeTestType();
-    CollectionLayout root = engine.layoutTree(createTestCollection(), t);
+    CollectionLayout root = engine.layoutTree(createTestCollection(objectMapper), t);
 
     String s = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(root);
 
     JSONAssert.assertEquals(s,
-        StreamUtils.copyToString(getClass().getResourceAsStream("test-layout.json"), StandardCharsets.UTF_8),
+        StreamUtils.copyToString(LayoutEngineTest.class.getResourceAsStream(getExpectedTestLayout()),
+            StandardCharsets.UTF_8),
         JSONCompareMode.LENIENT);
   }
 
-  private CollectionType makeTestType() {
+  @Test
+  public void testThat_repeatedLayoutsYieldIdenticalResults() throws JSONException, IOException {
+    CollectionType t = makeTestType();
+
+    String first = objectMapper.writeValueAsString(engine.layoutTree(createTestCollection(objectMapper), t));
+    String second = objectMapper.writeValueAsString(engine.layoutTree(createTestCollection(objectMapper), t));
+
+    JSONAssert.assertEquals(first, second, JSONCompareMode.STRICT);
+  }
+
+  @Test
+  public void testThat_concurrentLayoutsYieldIdenticalResults() throws Exception {
+    CollectionType t = makeTestType();
+
+    String expected = objectMapper.writeValueAsString(engine.layoutTree(createTestCollection(objectMapper), t));
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 64; i++)
+        results.add(executor.submit(() -> objectMapper.writeValueAsString(engine.layoutTree(createTestCollection(objectMapper), t))));
+
+      for (Future<String> result : results)
+        JSONAssert.assertEquals(expected, result.get(), JSONCompareMode.STRICT);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testThat_globalsDoNotLeakBetweenLayouts() {
+    CollectionType t = makeTestType();
+
+    JavascriptRule leak = new JavascriptRule();
+    leak.setName("define a global");
+    leak.setScriptCode("var leakedGlobal = 'leaked';");
+    t.getGlobalRules().add(leak);
+
+    engine.layoutTree(createTestCollection(objectMapper), t);
+
+    t.getGlobalRules().clear();
+    JavascriptRule use = new JavascriptRule();
+    use.setName("use the global");
+    use.setScriptCode("createNode(typeof leakedGlobal);");
+    t.getViews().get(1).getElementRules().set(0, use);
+
+    CollectionLayout layout = engine.layoutTree(createTestCollection(objectMapper), t);
+
+    assertThat(layout.getViewLayouts().get("Error").getStructureTree().getChildren()) //
+        .extracting("name").containsExactly("undefined");
+  }
+
+  @Test
+  public void testThat_collectionIsExposedLikeItsJsonRepresentation() {
+    CollectionType t = makeTestType();
+
+    Collection c = createTestCollection(objectMapper);
+    c.setMetadata(objectMapper.createObjectNode().put("foo", "bar").set("nested",
+        objectMapper.createObjectNode().put("number", 42).set("list", objectMapper.createArrayNode().add(1.5).add("x"))));
+
+    JavascriptRule probe = new JavascriptRule();
+    probe.setName("probe the collection");
+    probe.setScriptCode("createNode(collection.id, collection.typeId, collection.state, collection.versionTimestamp,"
+        + " '' + collection.dateCreated.getTime(), JSON.stringify(collection.metadata),"
+        + " element.specification.type + ':' + element.specification.contentURI,"
+        + " '' + Array.isArray(element.tags) + Array.isArray(collection.elements));");
+    t.getViews().get(1).getElementRules().set(0, probe);
+
+    CollectionLayout layout = engine.layoutTree(c, t);
+
+    Node n = layout.getViewLayouts().get("Error").getStructureTree().findNode("anId", "aCollectionType",
+        "Active", "1970-01-01T00:00:00.001Z", "1", "{\"foo\":\"bar\",\"nested\":{\"number\":42,\"list\":[1.5,\"x\"]}}",
+        "artifact:text:collection:from://some/where1", "truetrue");
+    assertThat(n).isNotNull();
+  }
+
+  @Test
+  public void testThat_uncompilableElementRuleYieldsViewError() {
+    CollectionType t = makeTestType();
+
+    JavascriptRule broken = new JavascriptRule();
+    broken.setName("This rule doesn't compile");
+    broken.setScriptCode("createNode('foo'");
+    t.getViews().get(1).getElementRules().set(0, broken);
+
+    CollectionLayout layout = engine.layoutTree(createTestCollection(objectMapper), t);
+
+    assertThat(layout.getViewLayouts().get("Default").getStructureTree().getChildren()).isNotEmpty();
+    assertThat(objectMapper.valueToTree(layout.getViewLayouts().get("Error")).path("error").asText()) //
+        .startsWith("Failed to lay out view: Failed to compile JavaScript-based rule 'This rule doesn't compile'");
+  }
+
+  /**
+   * Return the name of the resource holding the expected result of {@link #performTestLayout()}.
+   * Error messages may differ between script engines.
+   *
+   * @return the resource name
+   */
+  protected String getExpectedTestLayout() {
+    return "test-layout.json";
+  }
+
+  static CollectionType makeTestType() {
     CollectionType t = new CollectionType();
 
     t.setId("aCollectionType");
@@ -190,7 +301,7 @@ public class LayoutEngineTest {
     return t;
   }
 
-  private Collection createTestCollection() {
+  static Collection createTestCollection(final ObjectMapper objectMapper) {
     Collection f = new Collection();
     f.setId("anId");
     f.setVersionTimestamp(Instant.ofEpochMilli(1));
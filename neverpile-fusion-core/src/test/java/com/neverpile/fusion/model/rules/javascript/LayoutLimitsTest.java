@@ -0,0 +1,233 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration.LimitsConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.View;
+import com.neverpile.fusion.model.rules.CollectionLayout;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class LayoutLimitsTest {
+  protected final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+  private LayoutEngineConfiguration config;
+
+  private LimitsConfiguration limits;
+
+  private LayoutScriptBackend backend;
+
+  @BeforeEach
+  public void setup() {
+    config = new LayoutEngineConfiguration();
+    config.getPool().setSize(1);
+
+    limits = config.getLimits();
+    limits.setLayoutTimeout(Duration.ZERO);
+    limits.setRuleTimeout(Duration.ZERO);
+  }
+
+  @AfterEach
+  public void teardown() throws Exception {
+    if (backend instanceof AutoCloseable)
+      ((AutoCloseable) backend).close();
+  }
+
+  protected LayoutScriptBackend createBackend(final LayoutEngineConfiguration config) {
+    return new NashornLayoutBackend(objectMapper, config, new SimpleMeterRegistry());
+  }
+
+  @Test
+  public void testThat_timeAndNodeLimitsAreEnabledByDefault() {
+    LimitsConfiguration defaults = new LayoutEngineConfiguration().getLimits();
+
+    assertThat(defaults.getLayoutTimeout()).isPositive();
+    assertThat(defaults.getRuleTimeout()).isPositive();
+    assertThat(defaults.getMaxNodesPerLayout()).isPositive();
+    assertThat(LayoutBudget.requiresStatements(defaults)).isTrue();
+
+    // statement limits are opt-in
+    assertThat(defaults.getMaxStatementsPerLayout()).isZero();
+    assertThat(defaults.getMaxStatementsPerRule()).isZero();
+  }
+
+  @Test
+  public void testThat_endlessLoopIsAbortedByRuleTimeout() {
+    limits.setRuleTimeout(Duration.ofMillis(200));
+
+    CollectionLayout layout = layout(createType("Loop forever", "while (true) {}"));
+
+    assertThat(layout.getViewLayouts().get("Limited").getStructureTree()).isNull();
+    assertThat(error(layout, "Limited")).isEqualTo(
+        "Failed to lay out view: Rule 'Loop forever' exceeded the time limit of PT0.2S per rule");
+    assertThat(layout.getViewLayouts().get("Unlimited").getStructureTree().getChildren()).hasSize(3);
+  }
+
+  @Test
+  public void testThat_limitsCantBeDisabledByRuleCode() {
+    limits.setRuleTimeout(Duration.ofMillis(200));
+
+    CollectionLayout layout = layout(createType("Loop forever",
+        "this['_statement'] = function() {};"
+            + " try { Object.defineProperty(this, '_statement', { value: function() {} }); } catch (e) { }"
+            + " while (true) {}"));
+
+    assertThat(error(layout, "Limited")).isEqualTo(
+        "Failed to lay out view: Rule 'Loop forever' exceeded the time limit of PT0.2S per rule");
+    assertThat(layout.getViewLayouts().get("Unlimited").getStructureTree().getChildren()).hasSize(3);
+  }
+
+  @Test
+  public void testThat_endlessLoopIsAbortedByLayoutTimeout() {
+    limits.setLayoutTimeout(Duration.ofMillis(200));
+
+    CollectionLayout layout = layout(createType("Loop forever", "for (;;);"));
+
+    assertThat(error(layout, "Limited")).startsWith(
+        "Failed to lay out view: Layout aborted in rule 'Loop forever' after exceeding the time limit of PT0.2S per layout");
+    assertThat(error(layout, "Unlimited")).startsWith("Failed to lay out view: Layout aborted");
+  }
+
+  @Test
+  public void testThat_endlessLoopIsAbortedByStatementLimit() {
+    limits.setMaxStatementsPerRule(10000);
+
+    CollectionLayout layout = layout(createType("Loop forever", "var i = 0; do i++; while (true);"));
+
+    assertThat(error(layout, "Limited")).isEqualTo(
+        "Failed to lay out view: Rule 'Loop forever' exceeded the limit of 10000 statements per rule");
+  }
+
+  @Test
+  public void testThat_nodeCreationIsLimitedPerRule() {
+    limits.setMaxNodesPerRule(100);
+
+    CollectionLayout layout = layout(createType("Create many nodes",
+        "for (var i = 0; i < 1000; i++) createNode('Nodes', 'Node ' + i);"));
+
+    assertThat(error(layout, "Limited")).isEqualTo(
+        "Failed to lay out view: Rule 'Create many nodes' exceeded the limit of 100 nodes per rule");
+    assertThat(layout.getViewLayouts().get("Unlimited").getStructureTree().getChildren()).hasSize(3);
+  }
+
+  @Test
+  public void testThat_nodeCreationIsLimitedPerLayout() {
+    limits.setMaxNodesPerLayout(3);
+
+    CollectionLayout layout = layout(createType("Create a node per element", "createNode('Elements', element.id);"));
+
+    assertThat(error(layout, "Limited")).isEqualTo(
+        "Failed to lay out view: Layout aborted in rule 'Create a node per element' after exceeding the limit of 3 nodes per layout");
+    assertThat(error(layout, "Unlimited")).isEqualTo(error(layout, "Limited"));
+  }
+
+  @Test
+  public void testThat_layoutLimitsApplyToViewsLaidOutInParallelTogether() {
+    config.getParallelViews().setEnabled(true);
+    config.getParallelViews().setThreads(2);
+    config.getPool().setSize(3);
+    limits.setMaxNodesPerLayout(4);
+
+    // each view stays within the limit on its own
+    backend = createBackend(config);
+    JavascriptViewLayoutEngine engine = new JavascriptViewLayoutEngine(backend, config, objectMapper,
+        new SimpleMeterRegistry());
+    try {
+      CollectionLayout layout = engine.layoutTree(createCollection(),
+          createType("Create an element node", "createElementNode(element);"));
+
+      assertThat(Arrays.asList(error(layout, "Limited"), error(layout, "Unlimited"))) //
+          .anyMatch(e -> e.startsWith("Failed to lay out view: Layout aborted")) //
+          .anyMatch(e -> e.endsWith("after exceeding the limit of 4 nodes per layout"));
+    } finally {
+      engine.shutdown();
+    }
+  }
+
+  @Test
+  public void testThat_limitBreachesCannotBeSwallowedByRules() {
+    limits.setRuleTimeout(Duration.ofMillis(200));
+
+    CollectionLayout layout = layout(createType("Swallow errors",
+        "while (true) { try { while (true) {} } catch (e) {} }"));
+
+    assertThat(error(layout, "Limited")).isEqualTo(
+        "Failed to lay out view: Rule 'Swallow errors' exceeded the time limit of PT0.2S per rule");
+  }
+
+  @Test
+  public void testThat_rulesWithinLimitsAreUnaffected() {
+    limits.setRuleTimeout(Duration.ofSeconds(10));
+    limits.setMaxStatementsPerRule(10000);
+    limits.setMaxNodesPerRule(10);
+
+    CollectionLayout layout = layout(createType("Count",
+        "var n = 0; element.tags.forEach(function(t) { n++; }); createNode('Counts', element.id + ':' + n);"));
+
+    assertThat(layout.getViewLayouts().get("Limited").getStructureTree().findNode("Counts").getChildren()) //
+        .extracting("name").containsExactly("e0:2", "e1:2", "e2:2");
+  }
+
+  private CollectionLayout layout(final CollectionType type) {
+    backend = createBackend(config);
+    return new JavascriptViewLayoutEngine(backend, config, objectMapper, new SimpleMeterRegistry()) //
+        .layoutTree(createCollection(), type);
+  }
+
+  private String error(final CollectionLayout layout, final String view) {
+    return objectMapper.valueToTree(layout.getViewLayouts().get(view)).path("error").asText();
+  }
+
+  private CollectionType createType(final String ruleName, final String scriptCode) {
+    CollectionType t = new CollectionType();
+    t.setId("aLimitedType");
+
+    View limited = new View();
+    limited.setName("Limited");
+    JavascriptRule r = new JavascriptRule();
+    r.setName(ruleName);
+    r.setScriptCode(scriptCode);
+    limited.getElementRules().add(r);
+    t.getViews().add(limited);
+
+    View unlimited = new View();
+    unlimited.setName("Unlimited");
+    JavascriptRule r2 = new JavascriptRule();
+    r2.setName("Well-behaved");
+    r2.setScriptCode("createElementNode(element);");
+    unlimited.getElementRules().add(r2);
+    t.getViews().add(unlimited);
+
+    return t;
+  }
+
+  private Collection createCollection() {
+    Collection c = new Collection();
+    c.setId("aLimitedCollection");
+    c.setTypeId("aLimitedType");
+    c.setVersionTimestamp(Instant.ofEpochMilli(1));
+
+    for (int i = 0; i < 3; i++) {
+      Element e = new Element();
+      e.setId("e" + i);
+      e.getTags().add("foo");
+      e.getTags().add("bar");
+      c.getElements().add(e);
+    }
+
+    return c;
+  }
+}
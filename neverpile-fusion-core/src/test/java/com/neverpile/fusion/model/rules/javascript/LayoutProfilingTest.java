@@ -0,0 +1,193 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.View;
+import com.neverpile.fusion.model.rules.CollectionLayout;
+import com.neverpile.fusion.model.rules.LayoutProfile.Phase;
+import com.neverpile.fusion.model.rules.LayoutProfile.RuleTiming;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class LayoutProfilingTest {
+  private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+  private LayoutEngineConfiguration config;
+
+  private SimpleMeterRegistry meterRegistry;
+
+  private NashornLayoutBackend backend;
+
+  @BeforeEach
+  public void setup() {
+    config = new LayoutEngineConfiguration();
+    config.getPool().setSize(1);
+    meterRegistry = new SimpleMeterRegistry();
+  }
+
+  @AfterEach
+  public void teardown() {
+    if (null != backend)
+      backend.close();
+  }
+
+  @Test
+  public void testThat_ruleTimersAreTaggedByTypeViewAndRule() {
+    createEngine().layoutTree(createCollection(), createType());
+
+    Timer elementRule = meterRegistry.get(RuleTimings.TIMER_NAME) //
+        .tag("type", "aProfiledType").tag("view", "Default").tag("rule", "Element").tag("phase", "element") //
+        .timer();
+    assertThat(elementRule.count()).isEqualTo(1);
+    assertThat(elementRule.totalTime(TimeUnit.NANOSECONDS)).isGreaterThan(0);
+
+    assertThat(meterRegistry.get(RuleTimings.TIMER_NAME) //
+        .tag("view", "none").tag("rule", "Global").tag("phase", "global").timer().count()).isEqualTo(1);
+    assertThat(meterRegistry.get(RuleTimings.TIMER_NAME) //
+        .tag("view", "Default").tag("rule", "Tree").tag("phase", "tree").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  public void testThat_ruleTimersCanBeDisabled() {
+    config.getProfiling().setRuleTimers(false);
+
+    createEngine().layoutTree(createCollection(), createType());
+
+    assertThat(meterRegistry.find(RuleTimings.TIMER_NAME).timers()).isEmpty();
+  }
+
+  @Test
+  public void testThat_profileIsOnlyAttachedOnRequest() {
+    JavascriptViewLayoutEngine engine = createEngine();
+
+    assertThat(engine.layoutTree(createCollection(), createType()).getProfile()).isNull();
+    assertThat(objectMapper.valueToTree(engine.layoutTree(createCollection(), createType())).has("profile")).isFalse();
+
+    CollectionLayout layout = engine.layoutTree(createCollection(), createType(), true);
+
+    assertThat(layout.getProfile().getTotalMillis()).isGreaterThan(0);
+    assertThat(layout.getProfile().getRules()) //
+        .extracting(RuleTiming::getRule, RuleTiming::getView, RuleTiming::getPhase, RuleTiming::getExecutions) //
+        .containsExactlyInAnyOrder( //
+            tuple("Global", null, Phase.GLOBAL, 1L), //
+            tuple("Element", "Default", Phase.ELEMENT, 5L), //
+            tuple("Tree", "Default", Phase.TREE, 1L));
+
+    // the slow rule comes first
+    assertThat(layout.getProfile().getRules().get(0).getRule()).isEqualTo("Tree");
+
+    JsonNode json = objectMapper.valueToTree(layout);
+    assertThat(json.path("profile").path("rules").get(0).path("phase").asText()).isEqualTo("TREE");
+    assertThat(json.path("profile").path("rules").get(0).has("view")).isTrue();
+  }
+
+  @Test
+  public void testThat_parallelLayoutProfileCoversAllViews() {
+    config.getParallelViews().setEnabled(true);
+    config.getParallelViews().setThreads(2);
+    config.getPool().setSize(3);
+
+    CollectionType type = createType();
+    View other = new View();
+    other.setName("Other");
+    JavascriptRule r = new JavascriptRule();
+    r.setName("Element");
+    r.setScriptCode("createElementNode(element);");
+    other.getElementRules().add(r);
+    type.getViews().add(other);
+
+    JavascriptViewLayoutEngine engine = createEngine();
+    try {
+      CollectionLayout layout = engine.layoutTree(createCollection(), type, true);
+
+      assertThat(layout.getProfile().getRules()) //
+          .filteredOn(t -> t.getPhase() == Phase.ELEMENT) //
+          .extracting(RuleTiming::getView, RuleTiming::getExecutions) //
+          .containsExactlyInAnyOrder( //
+              tuple("Default", 5L), //
+              tuple("Other", 5L));
+
+      // the global rules re-applied to seed the scopes of the views are not recorded
+      assertThat(layout.getProfile().getRules()) //
+          .filteredOn(t -> t.getPhase() == Phase.GLOBAL) //
+          .extracting(RuleTiming::getRule, RuleTiming::getExecutions) //
+          .containsExactly(tuple("Global", 1L));
+    } finally {
+      engine.shutdown();
+    }
+  }
+
+  @Test
+  public void testThat_failingRulesAreTimed() {
+    CollectionType type = createType();
+    ((JavascriptRule) type.getViews().get(0).getTreeRules().get(0)).setScriptCode("barf();");
+
+    CollectionLayout layout = createEngine().layoutTree(createCollection(), type, true);
+
+    assertThat(layout.getViewLayouts().get("Default").getStructureTree()).isNull();
+    assertThat(layout.getProfile().getRules()) //
+        .filteredOn(t -> "Tree".equals(t.getRule())) //
+        .extracting(RuleTiming::getExecutions).containsExactly(1L);
+  }
+
+  private JavascriptViewLayoutEngine createEngine() {
+    backend = new NashornLayoutBackend(objectMapper, config, new SimpleMeterRegistry());
+    return new JavascriptViewLayoutEngine(backend, config, objectMapper, meterRegistry);
+  }
+
+  private CollectionType createType() {
+    CollectionType t = new CollectionType();
+    t.setId("aProfiledType");
+
+    JavascriptRule global = new JavascriptRule();
+    global.setName("Global");
+    global.setScriptCode("var prefix = 'Element ';");
+    t.getGlobalRules().add(global);
+
+    View v = new View();
+    v.setName("Default");
+    t.getViews().add(v);
+
+    JavascriptRule element = new JavascriptRule();
+    element.setName("Element");
+    element.setScriptCode("createNode(prefix + element.id).withElement(element);");
+    v.getElementRules().add(element);
+
+    JavascriptRule tree = new JavascriptRule();
+    tree.setName("Tree");
+    tree.setScriptCode("var until = Date.now() + 200; while (Date.now() < until) {}");
+    v.getTreeRules().add(tree);
+
+    return t;
+  }
+
+  private Collection createCollection() {
+    Collection c = new Collection();
+    c.setId("aProfiledCollection");
+    c.setTypeId("aProfiledType");
+    c.setVersionTimestamp(Instant.ofEpochMilli(1));
+
+    for (int i = 0; i < 5; i++) {
+      Element e = new Element();
+      e.setId("e" + i);
+      c.getElements().add(e);
+    }
+
+    return c;
+  }
+}
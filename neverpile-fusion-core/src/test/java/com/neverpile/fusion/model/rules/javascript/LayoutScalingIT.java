@@ -0,0 +1,126 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.configuration.JacksonConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.Collection.State;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.View;
+import com.neverpile.fusion.model.rules.CollectionLayout;
+
+/**
+ * Regression benchmark verifying that the layout time grows linearly with the number of elements in
+ * a collection.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = WebEnvironment.NONE, classes = {
+    JacksonAutoConfiguration.class, JacksonConfiguration.class, JavascriptViewLayoutEngine.class
+})
+public class LayoutScalingIT {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LayoutScalingIT.class);
+
+  private static final int BUCKETS = 20;
+
+  @Autowired
+  ObjectMapper objectMapper;
+
+  @Autowired
+  JavascriptViewLayoutEngine engine;
+
+  @Test
+  public void testThat_layoutScalesLinearlyWithElementCount() {
+    CollectionType t = makeType();
+
+    // warm up
+    for (int i = 0; i < 10; i++)
+      engine.layoutTree(createCollection(2000), t);
+
+    Map<Integer, Double> nanosPerElement = new LinkedHashMap<>();
+    for (int size : Arrays.asList(100, 1000, 5000, 20000)) {
+      Collection c = createCollection(size);
+
+      long best = Long.MAX_VALUE;
+      for (int i = 0; i < 3; i++) {
+        long start = System.nanoTime();
+        CollectionLayout layout = engine.layoutTree(c, t);
+        best = Math.min(best, System.nanoTime() - start);
+
+        assertThat(layout.getViewLayouts().get("Default").getStructureTree().findNode("Buckets").getChildren()) //
+            .hasSize(Math.min(size, BUCKETS));
+      }
+
+      nanosPerElement.put(size, (double) best / size);
+    }
+
+    LOGGER.info("Layout time per element by collection size [ns]: {}", nanosPerElement);
+
+    // allow for plenty of noise - quadratic behaviour would yield a factor of about 20
+    assertThat(nanosPerElement.get(20000)).isLessThan(4 * nanosPerElement.get(1000));
+  }
+
+  private CollectionType makeType() {
+    CollectionType t = new CollectionType();
+    t.setId("aScalingType");
+
+    View v = new View();
+    v.setName("Default");
+    t.getViews().add(v);
+
+    JavascriptRule r1 = new JavascriptRule();
+    r1.setName("Put elements into buckets");
+    r1.setScriptCode("createNode('Buckets', 'Bucket ' + element.metadata.bucket)" //
+        + "  .withElement(element)" //
+        + "  .withProperty('last', element.id);");
+    v.getElementRules().add(r1);
+
+    JavascriptRule r2 = new JavascriptRule();
+    r2.setName("Put elements under nodes by their first tag");
+    r2.setScriptCode("createNode('By tag', tags[0])" //
+        + "  .withElement(element)" //
+        + "  .withProperty('date', element.dateCreated.getTime());");
+    v.getElementRules().add(r2);
+
+    return t;
+  }
+
+  private Collection createCollection(final int size) {
+    Collection c = new Collection();
+    c.setId("aScalingCollection");
+    c.setTypeId("aScalingType");
+    c.setState(State.Active);
+    c.setVersionTimestamp(Instant.ofEpochMilli(1));
+    c.setDateCreated(Instant.ofEpochMilli(1));
+    c.setDateModified(Instant.ofEpochMilli(1));
+    c.setCreatedBy("user");
+
+    for (int i = 0; i < size; i++) {
+      Element e = new Element();
+      e.setId("element" + i);
+      e.setDateCreated(Instant.ofEpochMilli(i));
+      e.setDateModified(Instant.ofEpochMilli(i));
+      e.setTags(Arrays.asList("tag" + (i % BUCKETS)));
+      e.setMetadata(objectMapper.createObjectNode().put("bucket", i % BUCKETS));
+      c.getElements().add(e);
+    }
+
+    return c;
+  }
+}
@@ -0,0 +1,211 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.api.CollectionTypeService;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.View;
+import com.neverpile.fusion.model.rules.CollectionLayout;
+import com.neverpile.fusion.model.rules.RuleExecutionException;
+import com.neverpile.fusion.model.rules.grouping.GroupingRule;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class LayoutWarmupTest {
+  private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+  private LayoutEngineConfiguration config;
+
+  private NashornLayoutBackend backend;
+
+  private JavascriptViewLayoutEngine engine;
+
+  private CollectionTypeService collectionTypeService;
+
+  @BeforeEach
+  public void setup() {
+    config = new LayoutEngineConfiguration();
+    config.getPool().setSize(2);
+    backend = new NashornLayoutBackend(objectMapper, config, new SimpleMeterRegistry());
+    engine = new JavascriptViewLayoutEngine(backend, config, objectMapper, new SimpleMeterRegistry());
+    collectionTypeService = mock(CollectionTypeService.class);
+  }
+
+  @AfterEach
+  public void teardown() {
+    backend.close();
+  }
+
+  @Test
+  public void testThat_warmupCompilesRulesAndLaysOutEachType() {
+    when(collectionTypeService.getAllTypes()).thenReturn(
+        Arrays.asList(createType("aType", "createNode('By tag', tags[0]).withElement(element);"),
+            createType("anotherType", "createNode('All', element.id).withElement(element);")));
+
+    LayoutWarmup warmup = createWarmup();
+    assertThat(warmup.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+
+    warmup.warmUp();
+
+    Health health = warmup.health();
+    assertThat(warmup.isComplete()).isTrue();
+    assertThat(health.getStatus()).isEqualTo(Status.UP);
+    assertThat(health.getDetails()).containsEntry("types", 2).containsEntry("rules", 6).containsEntry("layouts", 6);
+    assertThat(health.getDetails()).doesNotContainKey("failures");
+  }
+
+  @Test
+  public void testThat_brokenTypesAreReportedButDontPreventReadiness() {
+    when(collectionTypeService.getAllTypes()).thenReturn(
+        Arrays.asList(createType("aBrokenType", "createNode('By tag', "),
+            createType("aType", "createNode('All', element.id).withElement(element);")));
+
+    LayoutWarmup warmup = createWarmup();
+    warmup.warmUp();
+
+    Health health = warmup.health();
+    assertThat(health.getStatus()).isEqualTo(Status.UP);
+    assertThat(health.getDetails()).containsEntry("layouts", 3).containsKey("failures");
+    assertThat(health.getDetails().get("failures").toString()).contains("aBrokenType",
+        "Failed to compile JavaScript-based rule 'Element'");
+  }
+
+  @Test
+  public void testThat_unavailableTypeServiceCompletesWarmup() {
+    LayoutWarmup warmup = new LayoutWarmup(engine, new StaticListableBeanFactory(Collections.emptyMap()) //
+        .getBeanProvider(CollectionTypeService.class), objectMapper, config);
+    warmup.warmUp();
+
+    assertThat(warmup.health().getStatus()).isEqualTo(Status.UP);
+    assertThat(warmup.health().getDetails()).containsEntry("types", 0);
+  }
+
+  @Test
+  public void testThat_disabledWarmupReportsUp() {
+    config.getWarmup().setEnabled(false);
+
+    assertThat(createWarmup().health().getStatus()).isEqualTo(Status.UP);
+  }
+
+  @Test
+  public void testThat_precompileFailsForMalformedRules() {
+    assertThatThrownBy(() -> engine.precompile(createType("aBrokenType", "createNode("))) //
+        .isInstanceOf(RuleExecutionException.class) //
+        .hasMessageStartingWith("Failed to compile JavaScript-based rule 'Element'");
+  }
+
+  @Test
+  public void testThat_precompileCompilesGroupingRules() {
+    CollectionType t = createType("aType", null);
+    GroupingRule rule = new GroupingRule();
+    rule.setName("Broken");
+    rule.getGroupBy().add("$..");
+    t.getViews().get(0).getElementRules().add(rule);
+
+    assertThatThrownBy(() -> engine.precompile(t)) //
+        .isInstanceOf(RuleExecutionException.class) //
+        .hasMessageStartingWith("Failed to compile grouping rule 'Broken'");
+  }
+
+  @Test
+  public void testThat_precompileDoesNotWaitForEnginesInUse() {
+    backend.close();
+    config.getPool().setBorrowTimeout(Duration.ofMillis(100));
+    backend = new NashornLayoutBackend(objectMapper, config, new SimpleMeterRegistry());
+    engine = new JavascriptViewLayoutEngine(backend, config, objectMapper, new SimpleMeterRegistry());
+
+    // a layout in progress occupies one of the two engines
+    try (LayoutScriptScope scope = backend.openScope(new Collection(), new CollectionLayout(),
+        new LayoutBudget(config.getLimits()))) {
+      assertThat(engine.precompile(createType("aType", "createNode('All', element.id);"))).isEqualTo(3);
+    }
+  }
+
+  @Test
+  public void testThat_validationDoesNotUseThePooledEngines() throws Exception {
+    backend.close();
+    config.getPool().setBorrowTimeout(Duration.ofMillis(100));
+    backend = new NashornLayoutBackend(objectMapper, config, new SimpleMeterRegistry());
+    engine = new JavascriptViewLayoutEngine(backend, config, objectMapper, new SimpleMeterRegistry());
+
+    // layouts in progress occupy both engines
+    try (LayoutScriptScope scope1 = backend.openScope(new Collection(), new CollectionLayout(),
+        new LayoutBudget(config.getLimits()));
+        LayoutScriptScope scope2 = backend.openScope(new Collection(), new CollectionLayout(),
+            new LayoutBudget(config.getLimits()))) {
+      engine.validate(createType("aType", "createNode('All', element.id);"));
+
+      assertThatThrownBy(() -> engine.validate(createType("aBrokenType", "createNode("))) //
+          .isInstanceOf(RuleExecutionException.class) //
+          .hasMessageStartingWith("Failed to compile JavaScript-based rule 'Element'");
+    }
+  }
+
+  @Test
+  public void testThat_graalJSValidationRejectsMalformedRules() throws Exception {
+    GraalJSLayoutBackend graalBackend = new GraalJSLayoutBackend(objectMapper, config, new SimpleMeterRegistry());
+    try {
+      JavascriptViewLayoutEngine graalEngine = new JavascriptViewLayoutEngine(graalBackend, config, objectMapper,
+          new SimpleMeterRegistry());
+
+      graalEngine.validate(createType("aType", "createNode('All', element.id);"));
+
+      assertThatThrownBy(() -> graalEngine.validate(createType("aBrokenType", "createNode("))) //
+          .isInstanceOf(RuleExecutionException.class) //
+          .hasMessageStartingWith("Failed to compile JavaScript-based rule 'Element'");
+    } finally {
+      graalBackend.close();
+    }
+  }
+
+  private LayoutWarmup createWarmup() {
+    return new LayoutWarmup(engine,
+        new StaticListableBeanFactory(Collections.singletonMap("collectionTypeService", collectionTypeService)) //
+            .getBeanProvider(CollectionTypeService.class),
+        objectMapper, config);
+  }
+
+  private static CollectionType createType(final String id, final String elementRuleCode) {
+    CollectionType t = new CollectionType();
+    t.setId(id);
+    t.setPermittedTags(Arrays.asList("foo", "bar"));
+
+    JavascriptRule global = new JavascriptRule();
+    global.setName("Global");
+    global.setScriptCode("titleVsualization('text', 'A collection');");
+    t.getGlobalRules().add(global);
+
+    View v = new View();
+    v.setName("Default");
+    if (null != elementRuleCode) {
+      JavascriptRule element = new JavascriptRule();
+      element.setName("Element");
+      element.setScriptCode(elementRuleCode);
+      v.getElementRules().add(element);
+    }
+    JavascriptRule tree = new JavascriptRule();
+    tree.setName("Tree");
+    tree.setScriptCode("findNode();");
+    v.getTreeRules().add(tree);
+    t.getViews().add(v);
+
+    return t;
+  }
+}
@@ -0,0 +1,16 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+
+import com.neverpile.fusion.configuration.JacksonConfiguration;
+
+/**
+ * Runs the {@link LayoutEngineTest}s with views being laid out in parallel.
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.NONE, classes = {
+    JacksonAutoConfiguration.class, JacksonConfiguration.class, JavascriptViewLayoutEngine.class
+}, properties = "neverpile-fusion.layout-engine.parallel-views.enabled=true")
+public class ParallelLayoutEngineTest extends LayoutEngineTest {
+}
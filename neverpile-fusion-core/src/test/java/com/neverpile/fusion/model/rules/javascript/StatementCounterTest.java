@@ -0,0 +1,87 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import javax.script.Bindings;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import org.junit.jupiter.api.Test;
+
+public class StatementCounterTest {
+  private final ScriptEngine engine = new ScriptEngineManager().getEngineByName("JavaScript");
+
+  @Test
+  public void testThat_loopAndFunctionBodiesAreInstrumented() {
+    assertThat(StatementCounter.instrument("while (x) { x--; }")).isEqualTo("while (x) {_statement(); x--; }");
+    assertThat(StatementCounter.instrument("while (x) x--;")).isEqualTo("while (x) {_statement(); x--; }");
+    assertThat(StatementCounter.instrument("function f() { return 1; }"))
+        .isEqualTo("function f() {_statement(); return 1; }");
+    assertThat(StatementCounter.instrument("var y = 1;")).isEqualTo("var y = 1;");
+  }
+
+  @Test
+  public void testThat_instrumentedCodeBehavesLikeTheOriginal() throws ScriptException {
+    String code = "var r = [];" //
+        + "var x = 3; while (x) x--;" //
+        + "do x++; while (x < 2);" //
+        + "for (var i = 0; i < 2; i++) if (i) r.push('a'); else r.push('b');" //
+        + "for (var k in {p: 1, q: 2}) { r.push(k); }" //
+        + "for (;;) break;" //
+        + "while (false);" //
+        + "function f(n) { return n ? f(n - 1) + 1 : 0; }" //
+        + "[1, 2].forEach(function(v) { r.push(v); });" //
+        + "r.push(x, f(3)); r.join(',')";
+
+    assertThat(eval(StatementCounter.instrument(code))).isEqualTo(eval(code)).isEqualTo("b,a,p,q,1,2,2,3");
+  }
+
+  @Test
+  public void testThat_elseBranchesKeepTheirIf() throws ScriptException {
+    String code = "var r = [];" //
+        + "function g(a, b) { if (a) while (b) b = false; else r.push('else'); }" //
+        + "g(false, true); g(true, true);" //
+        + "if (false) for (var i = 0; i < 1; i++) for (var j = 0; j < 1; j++) r.push('loop'); else r.push('nested');" //
+        + "if (true) do r.push('do'); while (false) ; else r.push('never');" //
+        + "r.join(',')";
+
+    assertThat(eval(StatementCounter.instrument(code))).isEqualTo(eval(code)).isEqualTo("else,nested,do");
+  }
+
+  @Test
+  public void testThat_statementsAreCounted() throws ScriptException {
+    Bindings bindings = engine.createBindings();
+    engine.eval("var count = 0; function _statement() { count++; }", bindings);
+    engine.eval(StatementCounter.instrument("for (var i = 0; i < 10; i++) { }"), bindings);
+
+    assertThat(bindings.get("count")).isEqualTo(10);
+  }
+
+  @Test
+  public void testThat_codeWhichCouldShadowTheHookIsRejected() {
+    for (String code : new String[]{
+        "_statement = function() {};", "var _statement;", "function _statement() {}",
+        "function f(_statement) { while (true) {} }", "(function _statement() {})",
+        "try { } catch (_statement) { }", "with ({ _statement: 1 }) { }", "eval('var x = 1');"
+    })
+      assertThatThrownBy(() -> StatementCounter.instrument(code)).as(code) //
+          .isInstanceOf(IllegalArgumentException.class);
+
+    // member accesses can't shadow the hook
+    assertThat(StatementCounter.instrument("x._statement = 1; this.eval('1');"))
+        .isEqualTo("x._statement = 1; this.eval('1');");
+  }
+
+  @Test
+  public void testThat_invalidCodeIsNotModified() {
+    assertThat(StatementCounter.instrument("while (x) {")).isEqualTo("while (x) {");
+  }
+
+  private Object eval(final String code) throws ScriptException {
+    Bindings bindings = engine.createBindings();
+    bindings.put("_statement", engine.eval("(function() {})"));
+    return engine.eval(code, bindings);
+  }
+}
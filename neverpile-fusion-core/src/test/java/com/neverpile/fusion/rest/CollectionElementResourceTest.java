@@ -2,6 +2,8 @@ package com.neverpile.fusion.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 import java.time.Instant;
 import java.util.Optional;
@@ -41,7 +43,9 @@ public class CollectionElementResourceTest extends AbstractRestAssuredTest {
   private static final String F = "aCollection";
 
   @TestConfiguration
-  @Import(CollectionElementResource.class)
+  @Import({
+      CollectionElementResource.class
+  })
   public static class ServiceConfig {
 
   }
@@ -281,6 +285,112 @@ public class CollectionElementResourceTest extends AbstractRestAssuredTest {
     // @formatter:on
   }
 
+  @Test
+  public void testThat_modificationsWithStaleVersionAreRejected() throws Exception {
+    // @formatter:off
+    Instant current = Instant.ofEpochMilli(2000);
+    BDDMockito.when(mockCollectionService.getCurrent(C)).thenAnswer(i -> {
+      Collection c = createTestCollection();
+      c.setVersionTimestamp(current);
+      return Optional.of(c);
+    });
+
+    String stale = "\"" + CollectionVersionTag.of(C, Instant.ofEpochMilli(1000)) + "\"";
+    String expected = "\"" + CollectionVersionTag.of(C, current) + "\"";
+
+    RestAssured.given()
+        .body(new Element()).contentType(ContentType.JSON)
+        .header("If-Match", stale)
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .post("/api/v1/collections/{c}/elements", C)
+      .then()
+        .statusCode(412)
+        .header("ETag", Matchers.nullValue());
+
+    RestAssured.given()
+        .body(new Element()).contentType(ContentType.JSON)
+        .header("If-Match", stale)
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .put("/api/v1/collections/{c}/elements/element-a", C)
+      .then()
+        .statusCode(412);
+
+    RestAssured.given()
+        .header("If-Match", stale)
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .delete("/api/v1/collections/{c}/elements/element-a", C)
+      .then()
+        .statusCode(412);
+
+    // weak tags never match
+    RestAssured.given()
+        .header("If-Match", "W/" + expected)
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .delete("/api/v1/collections/{c}/elements/element-a", C)
+      .then()
+        .statusCode(412);
+
+    verify(mockCollectionService, never()).save(any());
+    // @formatter:on
+  }
+
+  @Test
+  public void testThat_conditionalModificationOfMissingCollectionYields404() throws Exception {
+    // @formatter:off
+    RestAssured.given()
+        .header("If-Match", "*")
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .delete("/api/v1/collections/{c}/elements/element-a", "doesNotExist")
+      .then()
+        .statusCode(404);
+    // @formatter:on
+  }
+
+  @Test
+  public void testThat_modificationsWithMatchingVersionAreSavedAgainstThatVersion() throws Exception {
+    // @formatter:off
+    Instant current = Instant.ofEpochMilli(2000);
+    Collection c = createTestCollection();
+    c.setVersionTimestamp(current);
+    BDDMockito.when(mockCollectionService.getCurrent(C)).thenReturn(Optional.of(c));
+
+    ArgumentCaptor<Collection> storedCollectionC = ArgumentCaptor.forClass(Collection.class);
+    BDDMockito
+      .given(mockCollectionService.save(storedCollectionC.capture()))
+      .willAnswer(i -> {
+        Collection collection = i.getArgument(0);
+        collection.setDateModified(Instant.now());
+        return collection;
+      });
+
+    RestAssured.given()
+        .header("If-Match", "\"foo\", \"" + CollectionVersionTag.of(C, current) + "\"")
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .delete("/api/v1/collections/{c}/elements/element-a", C)
+      .then()
+        .statusCode(204);
+
+    assertThat(storedCollectionC.getValue().getVersionTimestamp()).isEqualTo(current);
+    assertThat(storedCollectionC.getValue().getElements()).hasSize(1);
+
+    // once the collection has been modified, the tag no longer matches
+    c.setVersionTimestamp(Instant.ofEpochMilli(3000));
+    RestAssured.given()
+        .header("If-Match", "\"" + CollectionVersionTag.of(C, current) + "\"")
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .delete("/api/v1/collections/{c}/elements/element-b", C)
+      .then()
+        .statusCode(412);
+    // @formatter:on
+  }
+
   private Collection createTestCollection() throws JsonProcessingException {
     Collection collection = new Collection();
 
@@ -1,15 +1,29 @@
 package com.neverpile.fusion.rest;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNotNull;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
+import org.hamcrest.Matchers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -25,11 +39,14 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.neverpile.common.authorization.api.CoreActions;
 import com.neverpile.fusion.api.CollectionIdStrategy;
+import com.neverpile.fusion.api.CollectionSaveResult;
 import com.neverpile.fusion.api.CollectionService;
 import com.neverpile.fusion.api.CollectionTypeService;
 import com.neverpile.fusion.authorization.CollectionAuthorizationService;
+import com.neverpile.fusion.configuration.CollectionBatchConfiguration;
 import com.neverpile.fusion.model.Collection;
 import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.Element;
 
 import io.restassured.RestAssured;
 import io.restassured.http.ContentType;
@@ -40,7 +57,9 @@ public class CollectionServiceAuthorizationTest extends AbstractRestAssuredTest
   private static final String F = "aCollection";
 
   @TestConfiguration
-  @Import(CollectionResource.class)
+  @Import({
+      CollectionResource.class, CollectionElementResource.class, CollectionBatchConfiguration.class
+  })
   public static class ServiceConfig {
 
   }
@@ -147,6 +166,68 @@ public class CollectionServiceAuthorizationTest extends AbstractRestAssuredTest
     return collection;
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testThat_authorizationOnBatchSaveIsVerifiedPerCollection() throws Exception {
+    // @formatter:off
+    Collection existing = createTestCollection();
+    existing.setId("existing");
+    Collection created = createTestCollection();
+    created.setId("created");
+
+    given(mockCollectionService.getCurrentVersionTimestamps(anyCollection()))
+      .willReturn(Collections.singletonMap("existing", Instant.now()));
+    given(mockCollectionService.saveAll(anyList())).willAnswer(i -> ((List<Collection>) i.getArgument(0))
+        .stream().map(CollectionSaveResult::saved).collect(Collectors.toList()));
+
+    // updates are permitted, creations aren't
+    given(collectionAuthorizationService.authorizeCollectionAction(any(), eq(CoreActions.UPDATE))).willReturn(true);
+    given(collectionAuthorizationService.authorizeCollectionAction(any(), eq(CoreActions.CREATE))).willReturn(false);
+
+    RestAssured
+      .given()
+        .accept(ContentType.JSON)
+        .body(Collections.singletonMap("collections", Arrays.asList(existing, created))).contentType(ContentType.JSON)
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .post("/api/v1/collections/batch")
+      .then()
+        .statusCode(200)
+        .body("collectionId", Matchers.contains("existing", "created"))
+        .body("status", Matchers.contains(201, 403));
+    // @formatter:on
+  }
+
+  @Test
+  public void testThat_authorizationOnMultiGetIsVerifiedPerCollection() throws Exception {
+    // @formatter:off
+    Map<String, Collection> current = new LinkedHashMap<>();
+    for (String id : new String[]{"allowed", "denied"}) {
+      Collection c = createTestCollection();
+      c.setId(id);
+      current.put(id, c);
+    }
+    given(mockCollectionService.getCurrent(anyCollection())).willReturn(current);
+
+    given(collectionAuthorizationService.authorizeCollectionAction(any(), any())).willReturn(false);
+    given(collectionAuthorizationService.authorizeCollectionAction(argThat(c -> "allowed".equals(c.getId())),
+        eq(CoreActions.GET))).willReturn(true);
+
+    RestAssured
+      .given()
+        .accept(ContentType.JSON)
+        .body("{\"collectionIds\": [\"allowed\", \"denied\"]}").contentType(ContentType.JSON)
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .post("/api/v1/collections/multi-get")
+      .then()
+        .statusCode(200)
+        .body("status", Matchers.contains(200, 403))
+        .body("[0].collection.typeId", Matchers.equalTo("foo"))
+        .body("[1].collection", Matchers.nullValue());
+    // @formatter:on
+  }
+
   @Test
   public void testThat_authorizationOnRetrieveIsVerified() throws Exception {
     // @formatter:off
@@ -182,4 +263,94 @@ public class CollectionServiceAuthorizationTest extends AbstractRestAssuredTest
         .statusCode(403);
     // @formatter:on
   }
+
+  @Test
+  public void testThat_authorizationOnConditionalRetrieveIsVerified() throws Exception {
+    // @formatter:off
+    Instant version = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    String etag = CollectionVersionTag.of(F, version);
+
+    given(mockCollectionService.getCurrent(F)).willAnswer(a -> Optional.of(createTestCollection(version)));
+    given(mockCollectionService.getCurrentVersionTimestamp(F)).willReturn(Optional.of(version));
+    given(mockCollectionService.getVersion(F, version)).willAnswer(a -> Optional.of(createTestCollection(version)));
+
+    // deny
+    given(collectionAuthorizationService.authorizeCollectionAction(any(), any())).willReturn(false);
+
+    RestAssured
+      .given()
+        .accept(ContentType.JSON)
+        .header("If-None-Match", etag)
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .get("/api/v1/collections/{id}", F)
+      .then()
+        .statusCode(403)
+        .header("ETag", Matchers.nullValue());
+
+    RestAssured
+      .given()
+        .accept(ContentType.JSON)
+        .header("If-None-Match", etag)
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .get("/api/v1/collections/{id}/history/{then}", F, version.toString())
+      .then()
+        .statusCode(403)
+        .header("ETag", Matchers.nullValue());
+
+    verify(collectionAuthorizationService, times(2)).authorizeCollectionAction(isNotNull(), eq(CoreActions.GET));
+    // @formatter:on
+  }
+
+  @Test
+  public void testThat_preconditionsAreEvaluatedAfterAuthorization() throws Exception {
+    // @formatter:off
+    Instant version = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    given(mockCollectionService.getCurrent(F)).willAnswer(a -> Optional.of(createTestCollection(version)));
+
+    // deny
+    given(collectionAuthorizationService.authorizeCollectionAction(any(), any())).willReturn(false);
+
+    // the outcome of the precondition must not be discernible
+    for (String ifMatch : new String[]{
+        "*", "\"" + CollectionVersionTag.of(F, version) + "\"", "\"" + CollectionVersionTag.of(F, version.minusMillis(1)) + "\""
+    }) {
+      RestAssured
+        .given()
+          .accept(ContentType.JSON)
+          .body(createTestCollection()).contentType(ContentType.JSON)
+          .header("If-Match", ifMatch)
+          .auth().preemptive().basic("user", "password")
+        .when()
+          .put("/api/v1/collections/{id}", F)
+        .then()
+          .statusCode(403);
+
+      RestAssured
+        .given()
+          .header("If-Match", ifMatch)
+          .auth().preemptive().basic("user", "password")
+        .when()
+          .delete("/api/v1/collections/{id}/elements/{element}", F, "anElement")
+        .then()
+          .statusCode(403);
+    }
+
+    verify(mockCollectionService, never()).save(any());
+    // @formatter:on
+  }
+
+  private Collection createTestCollection(final Instant version) throws JsonProcessingException {
+    Collection collection = createTestCollection();
+    collection.setId(F);
+    collection.setVersionTimestamp(version);
+
+    Element element = new Element();
+    element.setId("anElement");
+    collection.getElements().add(element);
+
+    return collection;
+  }
 }
@@ -4,9 +4,24 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.hamcrest.Matchers;
@@ -27,8 +42,11 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.neverpile.fusion.api.CollectionIdStrategy;
+import com.neverpile.fusion.api.CollectionSaveResult;
 import com.neverpile.fusion.api.CollectionService;
 import com.neverpile.fusion.api.CollectionTypeService;
+import com.neverpile.fusion.api.exception.VersionMismatchException;
+import com.neverpile.fusion.configuration.CollectionBatchConfiguration;
 import com.neverpile.fusion.model.Collection;
 import com.neverpile.fusion.model.CollectionType;
 
@@ -41,7 +59,9 @@ public class CollectionServiceTest extends AbstractRestAssuredTest {
   private static final String F = "aCollection";
 
   @TestConfiguration
-  @Import(CollectionResource.class)
+  @Import({
+      CollectionResource.class, CollectionBatchConfiguration.class
+  })
   public static class ServiceConfig {
 
   }
@@ -318,4 +338,331 @@ public class CollectionServiceTest extends AbstractRestAssuredTest {
     // verify returned document
     assertThat(returnedDoss.getId()).isEqualTo(F);
   }
+
+  @Test
+  public void testThat_unchangedCollectionIsNotTransferredAgain() throws Exception {
+    // @formatter:off
+    Instant version = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    BDDMockito
+      .given(mockCollectionService.getCurrent(F))
+      .willAnswer((a) -> {
+        Collection f = createTestCollection();
+        f.setId(F);
+        f.setVersionTimestamp(version);
+        return Optional.of(f);
+      });
+    BDDMockito
+      .given(mockCollectionService.getCurrentVersionTimestamp(F))
+      .willReturn(Optional.of(version));
+
+    String etag = RestAssured.given()
+        .accept(ContentType.JSON)
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .get("/api/v1/collections/{id}", F)
+      .then()
+        .statusCode(200)
+        .header("ETag", Matchers.startsWith("\""))
+        .header("Last-Modified", Matchers.notNullValue())
+        .extract().header("ETag");
+
+    RestAssured.given()
+        .accept(ContentType.JSON)
+        .header("If-None-Match", etag)
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .get("/api/v1/collections/{id}", F)
+      .then()
+        .statusCode(304)
+        .header("ETag", etag)
+        .body(Matchers.emptyString());
+
+    // same for If-Modified-Since
+    RestAssured.given()
+        .accept(ContentType.JSON)
+        .header("If-Modified-Since", DateTimeFormatter.RFC_1123_DATE_TIME.format(version.atOffset(ZoneOffset.UTC)))
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .get("/api/v1/collections/{id}", F)
+      .then()
+        .statusCode(304);
+    // @formatter:on
+  }
+
+  @Test
+  public void testThat_modifiedCollectionIsTransferredAgain() throws Exception {
+    // @formatter:off
+    Instant version = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    Instant newerVersion = version.plusSeconds(1);
+
+    BDDMockito
+      .given(mockCollectionService.getCurrent(F))
+      .willAnswer((a) -> {
+        Collection f = createTestCollection();
+        f.setId(F);
+        f.setVersionTimestamp(newerVersion);
+        return Optional.of(f);
+      });
+    BDDMockito
+      .given(mockCollectionService.getCurrentVersionTimestamp(F))
+      .willReturn(Optional.of(newerVersion));
+
+    String newEtag = RestAssured.given()
+        .accept(ContentType.JSON)
+        .header("If-None-Match", etag(version))
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .get("/api/v1/collections/{id}", F)
+      .then()
+        .statusCode(200)
+        .body("id", equalTo(F))
+        .extract().header("ETag");
+
+    assertThat(newEtag).isEqualTo(etag(newerVersion));
+    // @formatter:on
+  }
+
+  @Test
+  public void testThat_unchangedCollectionVersionIsNotTransferredAgain() throws Exception {
+    // @formatter:off
+    Instant version = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    BDDMockito
+      .given(mockCollectionService.getVersion(F, version))
+      .willAnswer((a) -> {
+        Collection f = createTestCollection();
+        f.setId(F);
+        f.setVersionTimestamp(version);
+        return Optional.of(f);
+      });
+
+    RestAssured.given()
+        .accept(ContentType.JSON)
+        .header("If-None-Match", etag(version))
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .get("/api/v1/collections/{id}/history/{then}", F, version.toString())
+      .then()
+        .statusCode(304)
+        .header("ETag", etag(version))
+        .body(Matchers.emptyString());
+    // @formatter:on
+  }
+
+  @Test
+  public void testThat_conditionalRetrievalOfMissingVersionYields404() throws Exception {
+    // @formatter:off
+    Instant version = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    RestAssured.given()
+        .accept(ContentType.JSON)
+        .header("If-None-Match", "*")
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .get("/api/v1/collections/{id}/history/{then}", F, version.toString())
+      .then()
+        .statusCode(404);
+
+    RestAssured.given()
+        .accept(ContentType.JSON)
+        .header("If-Modified-Since", DateTimeFormatter.RFC_1123_DATE_TIME.format(version.atOffset(ZoneOffset.UTC)))
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .get("/api/v1/collections/{id}/history/{then}", F, version.toString())
+      .then()
+        .statusCode(404);
+
+    RestAssured.given()
+        .accept(ContentType.JSON)
+        .header("If-None-Match", "*")
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .get("/api/v1/collections/{id}", "doesNotExist")
+      .then()
+        .statusCode(404);
+    // @formatter:on
+  }
+
+  @Test
+  public void testThat_updateIsConditionalOnIfMatch() throws Exception {
+    // @formatter:off
+    Instant version = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    BDDMockito
+      .given(mockCollectionService.getCurrent(F))
+      .willAnswer((a) -> {
+        Collection f = createTestCollection();
+        f.setId(F);
+        f.setVersionTimestamp(version);
+        return Optional.of(f);
+      });
+    ArgumentCaptor<Collection> storedCollectionC = ArgumentCaptor.forClass(Collection.class);
+    BDDMockito
+      .given(mockCollectionService.save(storedCollectionC.capture()))
+      .willAnswer(i -> i.getArgument(0));
+
+    // stale version
+    RestAssured.given()
+        .accept(ContentType.JSON)
+        .body(createTestCollection()).contentType(ContentType.JSON)
+        .header("If-Match", etag(version.minusSeconds(1)))
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .put("/api/v1/collections/{id}", F)
+      .then()
+        .statusCode(412)
+        .header("ETag", Matchers.nullValue());
+
+    verify(mockCollectionService, never()).save(any());
+
+    // nonexistent collection
+    RestAssured.given()
+        .accept(ContentType.JSON)
+        .body(createTestCollection()).contentType(ContentType.JSON)
+        .header("If-Match", "*")
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .put("/api/v1/collections/{id}", "doesNotExist")
+      .then()
+        .statusCode(412);
+
+    // the matched version becomes the expected version of the save
+    RestAssured.given()
+        .accept(ContentType.JSON)
+        .body(createTestCollection()).contentType(ContentType.JSON)
+        .header("If-Match", etag(version))
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .put("/api/v1/collections/{id}", F)
+      .then()
+        .statusCode(201);
+
+    assertThat(storedCollectionC.getValue().getVersionTimestamp()).isEqualTo(version);
+    // @formatter:on
+  }
+
+  @Test
+  public void testThat_multiGetReportsMissingCollectionsInline() throws Exception {
+    // @formatter:off
+    Collection c = createTestCollection();
+    c.setId(F);
+    BDDMockito
+      .given(mockCollectionService.getCurrent(anyCollection()))
+      .willReturn(Collections.singletonMap(F, c));
+
+    RestAssured.given()
+        .accept(ContentType.JSON)
+        .body("{\"collectionIds\": [\"doesNotExist\", \"" + F + "\", \"doesNotExist\"]}").contentType(ContentType.JSON)
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .post("/api/v1/collections/multi-get")
+      .then()
+        .statusCode(200)
+        .body("collectionId", Matchers.contains("doesNotExist", F))
+        .body("status", Matchers.contains(404, 200))
+        .body("[0].error", equalTo("Collection not found"))
+        .body("[1].collection.id", equalTo(F));
+
+    // the ids are retrieved in a single call, without duplicates
+    verify(mockCollectionService).getCurrent(new LinkedHashSet<>(Arrays.asList("doesNotExist", F)));
+    // @formatter:on
+  }
+
+  @Test
+  public void testThat_multiGetRejectsEmptyAndOversizedRequests() throws Exception {
+    // @formatter:off
+    RestAssured.given()
+        .accept(ContentType.JSON)
+        .body("{\"collectionIds\": []}").contentType(ContentType.JSON)
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .post("/api/v1/collections/multi-get")
+      .then()
+        .statusCode(HttpStatus.NOT_ACCEPTABLE.value());
+
+    String[] ids = new String[501];
+    Arrays.fill(ids, F);
+    RestAssured.given()
+        .accept(ContentType.JSON)
+        .body(Collections.singletonMap("collectionIds", ids)).contentType(ContentType.JSON)
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .post("/api/v1/collections/multi-get")
+      .then()
+        .statusCode(HttpStatus.NOT_ACCEPTABLE.value())
+        .body("message", containsString("Too many collections"));
+    // @formatter:on
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testThat_collectionsCanBeSavedInBatch() throws Exception {
+    // @formatter:off
+    AtomicInteger idGenerator = new AtomicInteger(1);
+    BDDMockito
+      .given(idGenerationStrategy.createCollectionIds(anyInt()))
+      .willAnswer(i -> IntStream.range(0, i.getArgument(0))
+          .mapToObj(n -> "generated" + idGenerator.getAndIncrement()).collect(Collectors.toList()));
+    BDDMockito.when(mockCollectionTypeService.get("iDontExist")).thenReturn(Optional.empty());
+
+    Collection existing = createTestCollection();
+    existing.setId("existing");
+    BDDMockito
+      .given(mockCollectionService.getCurrentVersionTimestamps(anyCollection()))
+      .willReturn(Collections.singletonMap("existing", Instant.now()));
+
+    ArgumentCaptor<List<Collection>> savedC = ArgumentCaptor.forClass(List.class);
+    BDDMockito
+      .given(mockCollectionService.saveAll(savedC.capture()))
+      .willAnswer(i -> {
+        List<Collection> collections = i.getArgument(0);
+        return collections.stream().map(c -> {
+          if (c.getId().equals("conflicting"))
+            return CollectionSaveResult.failed(c, new VersionMismatchException("Version conflict", "1", "2"));
+          c.setVersionTimestamp(Instant.now());
+          return CollectionSaveResult.saved(c);
+        }).collect(Collectors.toList());
+      });
+
+    Collection noType = createTestCollection();
+    noType.setTypeId(null);
+    Collection unknownType = createTestCollection();
+    unknownType.setTypeId("iDontExist");
+    Collection duplicate = createTestCollection();
+    duplicate.setId("existing");
+    Collection conflicting = createTestCollection();
+    conflicting.setId("conflicting");
+
+    RestAssured.given()
+        .accept(ContentType.JSON)
+        .body(Collections.singletonMap("collections", Arrays.asList(createTestCollection(), existing, noType,
+            unknownType, duplicate, conflicting))).contentType(ContentType.JSON)
+        .auth().preemptive().basic("user", "password")
+      .when()
+        .post("/api/v1/collections/batch")
+      .then()
+        .statusCode(200)
+        .body("collectionId", Matchers.contains("generated1", "existing", "generated2", "generated3", "existing",
+            "conflicting"))
+        .body("status", Matchers.contains(201, 201, 406, 406, 406, 409))
+        .body("[0].collection.versionTimestamp", Matchers.notNullValue())
+        .body("[0].collection.createdBy", equalTo("user"))
+        .body("[2].error", containsString("Type id is missing"))
+        .body("[3].error", containsString("No such collection type"))
+        .body("[4].error", containsString("Duplicate id"))
+        .body("[5].error", containsString("Version conflict"));
+
+    // ids, existing collections and saving are all dealt with in bulk
+    verify(idGenerationStrategy).createCollectionIds(3);
+    verify(mockCollectionService).getCurrentVersionTimestamps(new HashSet<>(Arrays.asList("existing", "conflicting")));
+    verify(mockCollectionService).saveAll(anyList());
+    assertThat(savedC.getValue()).extracting(Collection::getId).containsExactly("generated1", "existing",
+        "conflicting");
+    // @formatter:on
+  }
+
+  private static String etag(final Instant version) {
+    return "\"" + CollectionVersionTag.of(F, version) + "\"";
+  }
 }
@@ -0,0 +1,401 @@
+package com.neverpile.fusion.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.api.CollectionService;
+import com.neverpile.fusion.api.CollectionTypeService;
+import com.neverpile.fusion.authorization.CollectionAuthorizationService;
+import com.neverpile.fusion.configuration.LayoutBackendConfiguration;
+import com.neverpile.fusion.configuration.LayoutEngineConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.View;
+import com.neverpile.fusion.model.rules.LayoutCache;
+import com.neverpile.fusion.model.rules.javascript.JavascriptRule;
+import com.neverpile.fusion.model.rules.javascript.JavascriptViewLayoutEngine;
+import com.neverpile.fusion.rest.ViewLayoutResource.BatchLayoutResult;
+
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = "server.error.include-message=always")
+public class ViewLayoutResourceTest extends AbstractRestAssuredTest {
+  private static final String C = "aCollectionId";
+
+  private static final Instant V1 = Instant.ofEpochMilli(1000);
+
+  private static final Instant V2 = Instant.ofEpochMilli(2000);
+
+  @TestConfiguration
+  @Import({
+      ViewLayoutResource.class, JavascriptViewLayoutEngine.class, LayoutCache.class, LayoutEngineConfiguration.class,
+      LayoutBackendConfiguration.class
+  })
+  public static class ServiceConfig {
+
+  }
+
+  @MockBean
+  CollectionService mockCollectionService;
+
+  @MockBean
+  CollectionTypeService mockCollectionTypeService;
+
+  @MockBean
+  CollectionAuthorizationService collectionAuthorizationService;
+
+  @Autowired
+  ObjectMapper objectMapper;
+
+  @BeforeEach
+  public void reset() {
+    given(mockCollectionTypeService.get("aType")).willReturn(Optional.of(createType()));
+    given(mockCollectionService.getCurrent(C)).willAnswer(i -> Optional.of(createCollection(V2, "e1", "e2")));
+    given(mockCollectionService.getVersion(C, V1)).willAnswer(i -> Optional.of(createCollection(V1, "e1")));
+    given(collectionAuthorizationService.authorizeCollectionAction(any(), any())).willReturn(true);
+  }
+
+  @Test
+  public void testThat_currentVersionCanBeLaidOut() throws Exception {
+    // @formatter:off
+    RestAssured.given()
+      .accept(ContentType.JSON)
+      .auth().preemptive().basic("user", "password")
+    .when()
+      .get("/api/v1/layout/collections/{id}", C)
+    .then()
+      .statusCode(200)
+      .header("ETag", Matchers.notNullValue())
+      .body("collectionTypeId", Matchers.equalTo("aType"))
+      .body("viewLayouts.Default.structureTree.children[0].name", Matchers.equalTo("Elements"))
+      .body("viewLayouts.Default.structureTree.children[0].children.name", Matchers.contains("e1", "e2"))
+      .body("profile", Matchers.nullValue());
+    // @formatter:on
+  }
+
+  @Test
+  public void testThat_versionCanBeLaidOut() throws Exception {
+    // @formatter:off
+    RestAssured.given()
+      .accept(ContentType.JSON)
+      .auth().preemptive().basic("user", "password")
+    .when()
+      .get("/api/v1/layout/collections/{id}/history/{version}", C, V1.toString())
+    .then()
+      .statusCode(200)
+      .body("viewLayouts.Default.structureTree.children[0].children.name", Matchers.contains("e1"));
+    // @formatter:on
+  }
+
+  @Test
+  public void testThat_unchangedLayoutIsNotTransferredAgain() throws Exception {
+    // @formatter:off
+    String current = RestAssured.given()
+      .accept(ContentType.JSON)
+      .auth().preemptive().basic("user", "password")
+    .when()
+      .get("/api/v1/layout/collections/{id}", C)
+    .then()
+      .statusCode(200)
+      .extract().header("ETag");
+
+    RestAssured.given()
+      .accept(ContentType.JSON)
+      .header("If-None-Match", current)
+      .auth().preemptive().basic("user", "password")
+    .when()
+      .get("/api/v1/layout/collections/{id}", C)
+    .then()
+      .statusCode(304)
+      .header("ETag", current);
+
+    // another version yields another tag
+    String old = RestAssured.given()
+      .accept(ContentType.JSON)
+      .header("If-None-Match", current)
+      .auth().preemptive().basic("user", "password")
+    .when()
+      .get("/api/v1/layout/collections/{id}/history/{version}", C, V1.toString())
+    .then()
+      .statusCode(200)
+      .extract().header("ETag");
+    // @formatter:on
+
+    assertThat(old).isNotEqualTo(current);
+  }
+
+  @Test
+  public void testThat_changedTypeInvalidatesTag() throws Exception {
+    // @formatter:off
+    String before = RestAssured.given()
+      .accept(ContentType.JSON)
+      .auth().preemptive().basic("user", "password")
+    .when()
+      .get("/api/v1/layout/collections/{id}", C)
+    .then()
+      .statusCode(200)
+      .extract().header("ETag");
+
+    CollectionType changed = createType();
+    ((JavascriptRule) changed.getViews().get(0).getElementRules().get(0)).setScriptCode(
+        "createNode('Changed', element.id);");
+    given(mockCollectionTypeService.get("aType")).willReturn(Optional.of(changed));
+
+    RestAssured.given()
+      .accept(ContentType.JSON)
+      .header("If-None-Match", before)
+      .auth().preemptive().basic("user", "password")
+    .when()
+      .get("/api/v1/layout/collections/{id}", C)
+    .then()
+      .statusCode(200)
+      .header("ETag", Matchers.not(before))
+      .body("viewLayouts.Default.structureTree.children[0].name", Matchers.equalTo("Changed"));
+    // @formatter:on
+  }
+
+  @Test
+  public void testThat_unsavedModificationsAreNotServedFromCache() throws Exception {
+    // @formatter:off
+    RestAssured.given()
+      .accept(ContentType.JSON)
+      .auth().preemptive().basic("user", "password")
+    .when()
+      .get("/api/v1/layout/collections/{id}", C)
+    .then()
+      .statusCode(200)
+      .body("viewLayouts.Default.structureTree.children[0].children.name", Matchers.contains("e1", "e2"));
+
+    // same id and version, but with an element added
+    RestAssured.given()
+      .contentType(ContentType.JSON)
+      .accept(ContentType.JSON)
+      .body(objectMapper.writeValueAsString(createCollection(V2, "e1", "e2", "e3")))
+      .auth().preemptive().basic("user", "password")
+    .when()
+      .post("/api/v1/layout/{typeId}", "aType")
+    .then()
+      .statusCode(200)
+      .body("viewLayouts.Default.structureTree.children[0].children.name", Matchers.contains("e1", "e2", "e3"));
+    // @formatter:on
+  }
+
+  @Test
+  public void testThat_profileCanBeRequested() throws Exception {
+    // @formatter:off
+    RestAssured.given()
+      .accept(ContentType.JSON)
+      .auth().preemptive().basic("user", "password")
+    .when()
+      .get("/api/v1/layout/collections/{id}?profile=true", C)
+    .then()
+      .statusCode(200)
+      .header("ETag", Matchers.nullValue())
+      .body("profile.rules[0].rule", Matchers.equalTo("Elements"))
+      .body("profile.rules[0].executions", Matchers.equalTo(2));
+    // @formatter:on
+  }
+
+  @Test
+  public void testThat_layoutRequiresPermissionToGetTheCollection() throws Exception {
+    given(collectionAuthorizationService.authorizeCollectionAction(any(), any())).willReturn(false);
+
+    // @formatter:off
+    RestAssured.given()
+      .accept(ContentType.JSON)
+      .auth().preemptive().basic("user", "password")
+    .when()
+      .get("/api/v1/layout/collections/{id}", C)
+    .then()
+      .statusCode(403);
+    // @formatter:on
+  }
+
+  @Test
+  public void testThat_layoutOfUnknownCollectionYieldsNotFound() throws Exception {
+    // @formatter:off
+    RestAssured.given()
+      .accept(ContentType.JSON)
+      .auth().preemptive().basic("user", "password")
+    .when()
+      .get("/api/v1/layout/collections/{id}", "unknown")
+    .then()
+      .statusCode(404);
+    // @formatter:on
+  }
+
+  @Test
+  public void testThat_collectionsCanBeLaidOutInBatch() throws Exception {
+    givenBatchCollections();
+
+    Map<String, BatchLayoutResult> results = layoutBatch("{\"collectionIds\": [\"c1\", \"c2\", \"c1\"]}");
+
+    assertThat(results).containsOnlyKeys("c1", "c2");
+    assertThat(results.get("c1").getStatus()).isEqualTo(200);
+    assertThat(results.get("c1").getLayout().getTitleVisualization()).containsEntry("text", "Title of c1");
+    assertThat(results.get("c1").getLayout().getViewLayouts()).containsOnlyKeys("Default", "Other");
+    assertThat(results.get("c2").getLayout().getViewLayouts().get("Default").getStructureTree().getChildren().get(
+        0).getChildren()).extracting("name").containsExactly("e1");
+  }
+
+  @Test
+  public void testThat_batchLayoutCanBeRestrictedToViews() throws Exception {
+    givenBatchCollections();
+
+    Map<String, BatchLayoutResult> results = layoutBatch(
+        "{\"collectionIds\": [\"c1\", \"c2\"], \"views\": [\"Other\"]}");
+
+    assertThat(results.get("c1").getLayout().getViewLayouts()).containsOnlyKeys("Other");
+    assertThat(results.get("c2").getLayout().getViewLayouts()).containsOnlyKeys("Other");
+
+    // a cached full layout is trimmed to the requested views
+    layoutBatch("{\"collectionIds\": [\"c1\"]}");
+    results = layoutBatch("{\"collectionIds\": [\"c1\"], \"views\": [\"Default\"]}");
+    assertThat(results.get("c1").getLayout().getViewLayouts()).containsOnlyKeys("Default");
+  }
+
+  @Test
+  public void testThat_batchLayoutCanProduceTitlesOnly() throws Exception {
+    givenBatchCollections();
+
+    Map<String, BatchLayoutResult> results = layoutBatch("{\"collectionIds\": [\"c1\", \"c2\"], \"views\": []}");
+
+    assertThat(results.get("c1").getLayout().getTitleVisualization()).containsEntry("text", "Title of c1");
+    assertThat(results.get("c1").getLayout().getViewLayouts()).isEmpty();
+    assertThat(results.get("c2").getLayout().getTitleVisualization()).containsEntry("text", "Title of c2");
+    assertThat(results.get("c2").getLayout().getViewLayouts()).isEmpty();
+  }
+
+  @Test
+  public void testThat_batchLayoutReportsFailuresPerCollection() throws Exception {
+    givenBatchCollections();
+    given(collectionAuthorizationService.authorizeCollectionAction(any(), any())).willAnswer(
+        i -> !"c2".equals(i.getArgument(0, Collection.class).getId()));
+
+    Map<String, BatchLayoutResult> results = layoutBatch(
+        "{\"collectionIds\": [\"c1\", \"c2\", \"unknown\"]}");
+
+    assertThat(results.get("c1").getStatus()).isEqualTo(200);
+    assertThat(results.get("c2").getStatus()).isEqualTo(403);
+    assertThat(results.get("c2").getLayout()).isNull();
+    assertThat(results.get("unknown").getStatus()).isEqualTo(404);
+    assertThat(results.get("unknown").getError()).isEqualTo("Collection not found");
+  }
+
+  @Test
+  public void testThat_batchLayoutRequiresCollectionIds() throws Exception {
+    // @formatter:off
+    RestAssured.given()
+      .contentType(ContentType.JSON)
+      .body("{\"collectionIds\": []}")
+      .auth().preemptive().basic("user", "password")
+    .when()
+      .post("/api/v1/layout/collections")
+    .then()
+      .statusCode(406);
+    // @formatter:on
+  }
+
+  private void givenBatchCollections() {
+    CollectionType t = createType();
+
+    View other = new View();
+    other.setName("Other");
+    t.getViews().add(other);
+
+    JavascriptRule title = new JavascriptRule();
+    title.setName("Title");
+    title.setScriptCode("titleVsualization('text', 'Title of ' + collection.id);");
+    t.getGlobalRules().add(title);
+
+    given(mockCollectionTypeService.get("aType")).willReturn(Optional.of(t));
+    given(mockCollectionService.getCurrent("c1")).willAnswer(
+        i -> Optional.of(createCollection("c1", V2, "e1", "e2")));
+    given(mockCollectionService.getCurrent("c2")).willAnswer(i -> Optional.of(createCollection("c2", V1, "e1")));
+  }
+
+  private Map<String, BatchLayoutResult> layoutBatch(final String request) throws Exception {
+    // @formatter:off
+    String body = RestAssured.given()
+      .contentType(ContentType.JSON)
+      .body(request)
+      .auth().preemptive().basic("user", "password")
+    .when()
+      .post("/api/v1/layout/collections")
+    .then()
+      .statusCode(200)
+      .contentType("application/x-ndjson")
+      .extract().asString();
+    // @formatter:on
+
+    return Arrays.stream(body.split("\n")).map(l -> {
+      try {
+        return objectMapper.readValue(l, BatchLayoutResult.class);
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    }).collect(Collectors.toMap(BatchLayoutResult::getCollectionId, Function.identity()));
+  }
+
+  private CollectionType createType() {
+    CollectionType t = new CollectionType();
+    t.setId("aType");
+
+    View v = new View();
+    v.setName("Default");
+    t.getViews().add(v);
+
+    JavascriptRule r = new JavascriptRule();
+    r.setName("Elements");
+    r.setScriptCode("createNode('Elements', element.id).withElement(element);");
+    v.getElementRules().add(r);
+
+    return t;
+  }
+
+  private Collection createCollection(final Instant version, final String... elementIds) {
+    return createCollection(C, version, elementIds);
+  }
+
+  private Collection createCollection(final String collectionId, final Instant version,
+      final String... elementIds) {
+    Collection c = new Collection();
+    c.setId(collectionId);
+    c.setTypeId("aType");
+    c.setVersionTimestamp(version);
+    c.setDateModified(version);
+
+    for (String id : elementIds) {
+      Element e = new Element();
+      e.setId(id);
+      e.setDateCreated(version);
+      c.getElements().add(e);
+    }
+
+    return c;
+  }
+}
@@ -4,14 +4,26 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.time.Clock;
 import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
 import com.fasterxml.jackson.core.JsonParseException;
@@ -29,11 +41,16 @@ import com.neverpile.eureka.client.metadata.MetadataFacetBuilder;
 import com.neverpile.fusion.api.CollectionService;
 import com.neverpile.fusion.api.exception.NeverpileException;
 import com.neverpile.fusion.api.exception.VersionMismatchException;
+import com.neverpile.fusion.configuration.CollectionBatchConfiguration;
 import com.neverpile.fusion.model.Collection;
 
 /**
  * An implementation of {@link CollectionService} which persists collections to neverpile eureka
  * repository. The repository must be configured with multi-versioning enabled.
+ * <p>
+ * As eureka cannot retrieve many documents with a single request, the collections requested via
+ * {@link #getCurrent(java.util.Collection)} and the version timestamps requested via
+ * {@link #getCurrentVersionTimestamps(java.util.Collection)} are retrieved in parallel.
  */
 @Component
 public class EurekaCollectionService implements CollectionService {
@@ -44,13 +61,24 @@ public class EurekaCollectionService implements CollectionService {
   private final NeverpileEurekaClient client;
   private final ObjectMapper objectMapper;
   private final Clock clock;
+  private final ThreadPoolExecutor fetchExecutor;
 
   @Autowired
   public EurekaCollectionService(final ObjectMapper objectMapper, final NeverpileEurekaClient client,
-      final Clock clock) {
+      final Clock clock, final CollectionBatchConfiguration batchConfig) {
     this.objectMapper = objectMapper;
     this.client = client;
     this.clock = clock;
+
+    int threads = Math.max(1, batchConfig.getThreads());
+    fetchExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+        new CustomizableThreadFactory("eureka-collection-fetch-"));
+    fetchExecutor.allowCoreThreadTimeOut(true);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    fetchExecutor.shutdownNow();
   }
 
   @Override
@@ -82,6 +110,43 @@ public class EurekaCollectionService implements CollectionService {
     }
   }
 
+  @Override
+  public Map<String, Collection> getCurrent(final java.util.Collection<String> ids) {
+    return fetchAll(ids, this::getCurrent);
+  }
+
+  @Override
+  public Map<String, Instant> getCurrentVersionTimestamps(final java.util.Collection<String> ids) {
+    return fetchAll(ids, this::getCurrentVersionTimestamp);
+  }
+
+  /**
+   * Fetch something for each of the given ids in parallel.
+   */
+  private <T> Map<String, T> fetchAll(final java.util.Collection<String> ids,
+      final Function<String, Optional<T>> fetch) {
+    Map<String, Future<Optional<T>>> pending = new LinkedHashMap<>();
+    for (String id : new LinkedHashSet<>(ids))
+      pending.put(id, fetchExecutor.submit(() -> fetch.apply(id)));
+
+    try {
+      Map<String, T> current = new LinkedHashMap<>();
+      for (Map.Entry<String, Future<Optional<T>>> e : pending.entrySet())
+        e.getValue().get().ifPresent(c -> current.put(e.getKey(), c));
+      return current;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new NeverpileException("Interrupted while retrieving collections", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+      throw new NeverpileException("Failed to retrieve collections", e.getCause());
+    } finally {
+      // don't leave fetches running if one of them failed
+      pending.values().forEach(f -> f.cancel(true));
+    }
+  }
+
   @Override
   public Optional<Collection> getVersion(final String id, final Instant versionTimestamp) {
     try {
@@ -104,6 +169,19 @@ public class EurekaCollectionService implements CollectionService {
     }
   }
 
+  @Override
+  public Optional<Instant> getCurrentVersionTimestamp(final String id) {
+    try {
+      // the document version is the version of the collection, see getCurrent()
+      return client.documentService().getDocument(id).map(Document::getVersionTimestamp);
+    } catch (ClientException e) {
+      // malformed ids, see getCurrent()
+      if (e.getCode() == 400)
+        return Optional.empty();
+      throw e;
+    }
+  }
+
   @Override
   public List<Instant> getVersions(final String id) {
     return client.documentService().getVersions(id);
@@ -13,6 +13,7 @@ import java.time.Instant;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -42,6 +43,7 @@ import com.neverpile.eureka.client.EurekaClient;
 import com.neverpile.eureka.client.core.NeverpileEurekaClient;
 import com.neverpile.eureka.util.EnableNeverpileEurekaSpringApplication;
 import com.neverpile.fusion.api.exception.VersionMismatchException;
+import com.neverpile.fusion.configuration.CollectionBatchConfiguration;
 import com.neverpile.fusion.configuration.FusionModelMapperConfiguration;
 import com.neverpile.fusion.configuration.JacksonConfiguration;
 import com.neverpile.fusion.eureka.EurekaCollectionServiceTest.TestSecurityConfig;
@@ -103,7 +105,12 @@ public class EurekaCollectionServiceTest {
   @BeforeEach
   public void init() {
     client = EurekaClient.builder().baseURL("http://localhost:" + port + "/").build();
-    collectionService = new EurekaCollectionService(objectMapper, client, clock);
+    collectionService = new EurekaCollectionService(objectMapper, client, clock, new CollectionBatchConfiguration());
+  }
+
+  @AfterEach
+  public void shutdownCollectionService() {
+    collectionService.shutdown();
   }
 
   @Test
@@ -280,6 +287,26 @@ public class EurekaCollectionServiceTest {
     assertThat(old.getCreatedBy()).isEqualTo("user");
   }
 
+  @Test
+  public void testThat_manyCollectionsCanBeRetrievedAtOnce() {
+    when(clock.instant()).thenReturn(Instant.ofEpochMilli(1));
+
+    Collection c1 = createTestCollection();
+    c1.setId(UUID.randomUUID().toString());
+    collectionService.save(c1);
+
+    Collection c2 = createTestCollection();
+    c2.setId(UUID.randomUUID().toString());
+    collectionService.save(c2);
+
+    String missing = UUID.randomUUID().toString();
+
+    Map<String, Collection> current = collectionService.getCurrent(Arrays.asList(c2.getId(), missing, c1.getId()));
+    assertThat(current).containsOnlyKeys(c2.getId(), c1.getId());
+    assertThat(current.keySet()).containsExactly(c2.getId(), c1.getId());
+    assertThat(current.get(c1.getId()).getVersionTimestamp()).isEqualTo(Instant.ofEpochMilli(1));
+  }
+
   private Collection createTestCollection() {
     Collection f = new Collection();
     f.setTypeId("aCollectionType");
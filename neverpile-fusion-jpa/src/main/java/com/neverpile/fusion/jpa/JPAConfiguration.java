@@ -1,5 +1,6 @@
 package com.neverpile.fusion.jpa;
 
+import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -10,6 +11,18 @@ import org.springframework.stereotype.Component;
 public class JPAConfiguration {
   private ChronoUnit timestampResolution = ChronoUnit.MILLIS;
 
+  /**
+   * The interval at which collection types modified by other nodes are picked up. Zero disables
+   * polling.
+   */
+  private Duration collectionTypePollInterval = Duration.ofSeconds(5);
+
+  /**
+   * The number of collections saved per transaction when saving many collections at once. Also the
+   * JDBC batch size used by Hibernate unless configured otherwise.
+   */
+  private int batchSize = 100;
+
   public ChronoUnit getTimestampResolution() {
     return timestampResolution;
   }
@@ -17,4 +30,20 @@ public class JPAConfiguration {
   public void setTimestampResolution(final ChronoUnit timestampResolution) {
     this.timestampResolution = timestampResolution;
   }
+
+  public Duration getCollectionTypePollInterval() {
+    return collectionTypePollInterval;
+  }
+
+  public void setCollectionTypePollInterval(final Duration collectionTypePollInterval) {
+    this.collectionTypePollInterval = collectionTypePollInterval;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize(final int batchSize) {
+    this.batchSize = batchSize;
+  }
 }
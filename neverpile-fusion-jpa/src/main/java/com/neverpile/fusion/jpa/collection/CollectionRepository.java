@@ -19,9 +19,22 @@ public interface CollectionRepository extends CrudRepository<CollectionEntity, I
       + "(select max(m.versionTimestamp) from CollectionEntity m where m.id = ?1 group by m.id)")
   Optional<CollectionEntity> findCurrent(String id);
 
+  @Query("select distinct f from CollectionEntity f left join fetch f.elements where f.id in ?1 and f.versionTimestamp = "
+      + "(select max(m.versionTimestamp) from CollectionEntity m where m.id = f.id)")
+  List<CollectionEntity> findAllCurrent(java.util.Collection<String> ids);
+
   @Query("select f.versionTimestamp from CollectionEntity f where f.id = ?1 order by versionTimestamp asc")
   List<Instant> findVersions(String id);
 
   @Query("select max(m.versionTimestamp) from CollectionEntity m where m.id = ?1 group by m.id")
   Optional<Instant> findCurrentVersion(String id);
+
+  /**
+   * Find the current version timestamps of the collections with the given ids.
+   * 
+   * @param ids the collection ids
+   * @return pairs of collection id and current version timestamp
+   */
+  @Query("select m.id, max(m.versionTimestamp) from CollectionEntity m where m.id in ?1 group by m.id")
+  List<Object[]> findCurrentVersions(java.util.Collection<String> ids);
 }
@@ -3,16 +3,31 @@ package com.neverpile.fusion.jpa.collection;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.neverpile.fusion.api.CollectionSaveResult;
 import com.neverpile.fusion.api.CollectionService;
 import com.neverpile.fusion.api.exception.VersionMismatchException;
 import com.neverpile.fusion.api.exception.VersionNotFoundException;
@@ -21,21 +36,39 @@ import com.neverpile.fusion.model.Collection;
 
 /**
  * An implementation of {@link CollectionService} which persists collections to a SQL database via JPA.
+ * <p>
+ * Collections saved via {@link #saveAll(List)} are saved in chunks of
+ * {@link JPAConfiguration#getBatchSize()} collections, each chunk in its own transaction. The
+ * version checks of a chunk take a single query and its inserts are sent as JDBC batches. Should a
+ * chunk fail as a whole, e.g. because of a concurrent modification, its collections are saved one
+ * by one so that the failure is attributed to the collection(s) causing it.
  */
 @Component
 public class JPACollectionService implements CollectionService {
+  /**
+   * The maximum number of ids per query. Some databases limit the number of expressions in an
+   * <code>IN</code> list to 1000.
+   */
+  private static final int MAX_IDS_PER_QUERY = 1000;
+
   private final CollectionRepository repository;
   private final ModelMapper modelMapper;
   private final Clock clock;
   private final JPAConfiguration config;
+  private final TransactionTemplate transactionTemplate;
+
+  @PersistenceContext
+  private EntityManager entityManager;
 
   @Autowired
   public JPACollectionService(final CollectionRepository repository, final ModelMapper modelMapper, final Clock clock,
-      final JPAConfiguration config) {
+      final JPAConfiguration config, final PlatformTransactionManager transactionManager) {
     this.repository = repository;
     this.modelMapper = modelMapper;
     this.clock = clock;
     this.config = config;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
   }
 
   @Override
@@ -43,12 +76,46 @@ public class JPACollectionService implements CollectionService {
     return repository.findCurrent(id).map(e -> modelMapper.map(e, Collection.class));
   }
 
+  @Override
+  public Map<String, Collection> getCurrent(final java.util.Collection<String> ids) {
+    List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+
+    Map<String, Collection> found = new LinkedHashMap<>();
+    for (int i = 0; i < distinctIds.size(); i += MAX_IDS_PER_QUERY)
+      repository.findAllCurrent(distinctIds.subList(i, Math.min(i + MAX_IDS_PER_QUERY, distinctIds.size()))) //
+          .forEach(e -> found.put(e.getId(), modelMapper.map(e, Collection.class)));
+
+    // restore the order of the given ids
+    Map<String, Collection> current = new LinkedHashMap<>();
+    distinctIds.stream().filter(found::containsKey).forEach(id -> current.put(id, found.get(id)));
+    return current;
+  }
+
   @Override
   public Optional<Collection> getVersion(final String id, final Instant versionTimestamp) {
     return findByIdAndVersionTimestamp(id, versionTimestamp) //
         .map(e -> modelMapper.map(e, Collection.class));
   }
 
+  @Override
+  public Optional<Instant> getCurrentVersionTimestamp(final String id) {
+    return repository.findCurrentVersion(id);
+  }
+
+  @Override
+  public Map<String, Instant> getCurrentVersionTimestamps(final java.util.Collection<String> ids) {
+    List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+
+    Map<String, Instant> found = new HashMap<>();
+    for (int i = 0; i < distinctIds.size(); i += MAX_IDS_PER_QUERY)
+      found.putAll(findCurrentVersions(distinctIds.subList(i, Math.min(i + MAX_IDS_PER_QUERY, distinctIds.size()))));
+
+    // restore the order of the given ids
+    Map<String, Instant> current = new LinkedHashMap<>();
+    distinctIds.stream().filter(found::containsKey).forEach(id -> current.put(id, found.get(id)));
+    return current;
+  }
+
   @Override
   public List<Instant> getVersions(final String id) {
     return repository.findVersions(id);
@@ -60,6 +127,123 @@ public class JPACollectionService implements CollectionService {
     Objects.requireNonNull(collection.getId(), "Collection id");
 
     Optional<Instant> currentVersion = repository.findCurrentVersion(collection.getId());
+    checkVersion(collection, currentVersion);
+
+    // invent a version time stamp now and truncate it to a resolution the database can handle
+    Instant newVersionTimestamp = clock.instant().truncatedTo(config.getTimestampResolution());
+    collection.setVersionTimestamp(newVersionTimestamp);
+
+    checkClock(currentVersion, newVersionTimestamp);
+
+    // perform save
+    Collection saved = modelMapper.map(repository.save(modelMapper.map(collection, CollectionEntity.class)),
+        Collection.class);
+
+    // Verify version after save, so we don't have to specify isolation SERIALIZABLE
+    Instant mostRecentVersionAfterSave = repository.findCurrentVersion(collection.getId()).orElseThrow(
+        () -> new VersionNotFoundException("Did not find saved version", newVersionTimestamp.toString()));
+    if (!mostRecentVersionAfterSave.equals(newVersionTimestamp))
+      throw new VersionMismatchException("Version conflict saving new Version", newVersionTimestamp.toString(),
+          mostRecentVersionAfterSave.toString());
+
+    return saved;
+  }
+
+  @Override
+  public List<CollectionSaveResult> saveAll(final List<Collection> newVersions) {
+    CollectionSaveResult[] results = new CollectionSaveResult[newVersions.size()];
+
+    int chunkSize = Math.max(1, Math.min(config.getBatchSize(), MAX_IDS_PER_QUERY));
+    for (int start = 0; start < newVersions.size(); start += chunkSize) {
+      List<Collection> chunk = newVersions.subList(start, Math.min(start + chunkSize, newVersions.size()));
+      Instant[] expectedVersions = chunk.stream().map(Collection::getVersionTimestamp).toArray(Instant[]::new);
+
+      List<CollectionSaveResult> chunkResults;
+      try {
+        chunkResults = transactionTemplate.execute(status -> saveChunk(chunk));
+      } catch (RuntimeException e) {
+        // the chunk has been rolled back - save its collections one by one
+        chunkResults = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+          Collection collection = chunk.get(i);
+          collection.setVersionTimestamp(expectedVersions[i]);
+          chunkResults.add(saveSingle(collection));
+        }
+      }
+
+      for (int i = 0; i < chunkResults.size(); i++)
+        results[start + i] = chunkResults.get(i);
+    }
+
+    return Arrays.asList(results);
+  }
+
+  private CollectionSaveResult saveSingle(final Collection collection) {
+    try {
+      return CollectionSaveResult.saved(transactionTemplate.execute(status -> save(collection)));
+    } catch (RuntimeException e) {
+      return CollectionSaveResult.failed(collection, e);
+    }
+  }
+
+  /**
+   * Save a chunk of collections within the current transaction. Collections failing the version
+   * checks are reported as failed, while failures of the inserts and conflicts detected afterwards
+   * fail the chunk as a whole.
+   */
+  private List<CollectionSaveResult> saveChunk(final List<Collection> chunk) {
+    Set<String> ids = new HashSet<>();
+    chunk.stream().map(Collection::getId).filter(Objects::nonNull).forEach(ids::add);
+
+    Map<String, Instant> currentVersions = findCurrentVersions(ids);
+
+    // invent a version time stamp now and truncate it to a resolution the database can handle
+    Instant newVersionTimestamp = clock.instant().truncatedTo(config.getTimestampResolution());
+
+    List<CollectionSaveResult> results = new ArrayList<>(chunk.size());
+    Set<String> saved = new HashSet<>();
+    for (Collection collection : chunk) {
+      try {
+        Objects.requireNonNull(collection.getId(), "Collection id");
+
+        // a second version of the same collection would conflict with the first one
+        if (saved.contains(collection.getId()))
+          throw new VersionMismatchException("Failed to save collection: it occurs more than once in the batch",
+              newVersionTimestamp.toString(), String.valueOf(collection.getVersionTimestamp()));
+
+        Optional<Instant> currentVersion = Optional.ofNullable(currentVersions.get(collection.getId()));
+        checkVersion(collection, currentVersion);
+        checkClock(currentVersion, newVersionTimestamp);
+      } catch (VersionMismatchException | NullPointerException e) {
+        results.add(CollectionSaveResult.failed(collection, e));
+        continue;
+      }
+
+      collection.setVersionTimestamp(newVersionTimestamp);
+      entityManager.persist(modelMapper.map(collection, CollectionEntity.class));
+      saved.add(collection.getId());
+      results.add(CollectionSaveResult.saved(collection));
+    }
+
+    // send the inserts, then verify the versions as in save()
+    entityManager.flush();
+    findCurrentVersions(saved).forEach((id, mostRecentVersionAfterSave) -> {
+      if (!mostRecentVersionAfterSave.equals(newVersionTimestamp))
+        throw new VersionMismatchException("Version conflict saving new Version", newVersionTimestamp.toString(),
+            mostRecentVersionAfterSave.toString());
+    });
+
+    return results;
+  }
+
+  private Map<String, Instant> findCurrentVersions(final java.util.Collection<String> ids) {
+    Map<String, Instant> currentVersions = new HashMap<>();
+    if (!ids.isEmpty())
+      repository.findCurrentVersions(ids).forEach(r -> currentVersions.put((String) r[0], (Instant) r[1]));
+    return currentVersions;
+  }
+
+  private void checkVersion(final Collection collection, final Optional<Instant> currentVersion) {
     if (collection.getVersionTimestamp() != null) {
       if (currentVersion.isPresent()) {
         // saving new version with version timestamp set to the current one
@@ -80,28 +264,13 @@ public class JPACollectionService implements CollectionService {
          */
       }
     }
+  }
 
-    // invent a version time stamp now and truncate it to a resolution the database can handle
-    Instant newVersionTimestamp = clock.instant().truncatedTo(config.getTimestampResolution());
-    collection.setVersionTimestamp(newVersionTimestamp);
-
+  private void checkClock(final Optional<Instant> currentVersion, final Instant newVersionTimestamp) {
     // detect backwards-running clock
     if (currentVersion.isPresent() && !isBeforeWithinPrecision(currentVersion.get(), newVersionTimestamp))
       throw new VersionMismatchException("Detected clock running backwards during save", newVersionTimestamp.toString(),
           currentVersion.get().toString());
-
-    // perform save
-    Collection saved = modelMapper.map(repository.save(modelMapper.map(collection, CollectionEntity.class)),
-        Collection.class);
-
-    // Verify version after save, so we don't have to specify isolation SERIALIZABLE
-    Instant mostRecentVersionAfterSave = repository.findCurrentVersion(collection.getId()).orElseThrow(
-        () -> new VersionNotFoundException("Did not find saved version", newVersionTimestamp.toString()));
-    if (!mostRecentVersionAfterSave.equals(newVersionTimestamp))
-      throw new VersionMismatchException("Version conflict saving new Version", newVersionTimestamp.toString(),
-          mostRecentVersionAfterSave.toString());
-
-    return saved;
   }
 
   private boolean isBeforeWithinPrecision(Instant time1, Instant time2) {
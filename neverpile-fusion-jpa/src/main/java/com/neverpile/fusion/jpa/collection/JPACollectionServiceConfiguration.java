@@ -1,6 +1,9 @@
 package com.neverpile.fusion.jpa.collection;
 
+import org.hibernate.cfg.AvailableSettings;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
@@ -14,5 +17,18 @@ import com.neverpile.fusion.jpa.JPAConfiguration;
 @EntityScan(basePackageClasses = CollectionEntity.class)
 @Import(JPAConfiguration.class)
 public class JPACollectionServiceConfiguration {
-
+  /**
+   * Enable JDBC batching of the inserts issued when saving many collections at once, unless the
+   * application configures batching itself.
+   * 
+   * @param config the JPA configuration
+   * @return the customizer
+   */
+  @Bean
+  public HibernatePropertiesCustomizer collectionBatchingCustomizer(final JPAConfiguration config) {
+    return properties -> {
+      properties.putIfAbsent(AvailableSettings.STATEMENT_BATCH_SIZE, String.valueOf(config.getBatchSize()));
+      properties.putIfAbsent(AvailableSettings.ORDER_INSERTS, "true");
+    };
+  }
 }
@@ -0,0 +1,60 @@
+package com.neverpile.fusion.jpa.type;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+/**
+ * The entity definition representing a collection type in the database. The type definition is
+ * stored as a JSON document. Deleted types are retained as tombstones, so that the deletion can be
+ * observed via the revision.
+ */
+@Entity
+@Table(name = "collection_types")
+public class CollectionTypeEntity {
+  @Id
+  private String id;
+
+  /**
+   * The revision of the last modification of this type, see {@link RevisionCounterEntity}.
+   */
+  private long revision;
+
+  private boolean deleted;
+
+  @Lob
+  private String definition;
+
+  public String getId() {
+    return id;
+  }
+
+  public void setId(final String id) {
+    this.id = id;
+  }
+
+  public long getRevision() {
+    return revision;
+  }
+
+  public void setRevision(final long revision) {
+    this.revision = revision;
+  }
+
+  public boolean isDeleted() {
+    return deleted;
+  }
+
+  public void setDeleted(final boolean deleted) {
+    this.deleted = deleted;
+  }
+
+  public String getDefinition() {
+    return definition;
+  }
+
+  public void setDefinition(final String definition) {
+    this.definition = definition;
+  }
+}
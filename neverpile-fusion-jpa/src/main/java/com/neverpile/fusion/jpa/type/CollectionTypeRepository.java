@@ -0,0 +1,15 @@
+package com.neverpile.fusion.jpa.type;
+
+import java.util.List;
+
+import org.springframework.data.repository.CrudRepository;
+
+/**
+ * A spring CRUD repository for collection types.
+ */
+public interface CollectionTypeRepository extends CrudRepository<CollectionTypeEntity, String> {
+
+  List<CollectionTypeEntity> findByRevisionGreaterThan(long revision);
+
+  List<CollectionTypeEntity> findByDeletedFalse();
+}
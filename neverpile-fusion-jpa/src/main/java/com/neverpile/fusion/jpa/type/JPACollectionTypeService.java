@@ -0,0 +1,233 @@
+package com.neverpile.fusion.jpa.type;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.api.CollectionTypeService;
+import com.neverpile.fusion.api.CollectionTypeValidator;
+import com.neverpile.fusion.api.exception.NeverpileException;
+import com.neverpile.fusion.jpa.JPAConfiguration;
+import com.neverpile.fusion.model.CollectionType;
+
+/**
+ * An implementation of {@link CollectionTypeService} which persists collection types to a SQL
+ * database via JPA.
+ * <p>
+ * Reads are served from an in-process copy of all types and never touch the database. Every
+ * modification increments a revision counter and stamps the modified type with the new revision.
+ * Each node polls the counter at the interval configured via
+ * {@link JPAConfiguration#getCollectionTypePollInterval()} and, if it has changed, fetches only the
+ * types modified since the revision it knows. Local modifications are visible immediately.
+ * <p>
+ * Types are checked by all {@link CollectionTypeValidator}s before they are saved. The returned
+ * collection types are shared and must not be modified by callers.
+ */
+@Component
+public class JPACollectionTypeService implements CollectionTypeService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(JPACollectionTypeService.class);
+
+  private static final String REVISION_COUNTER = "collection-types";
+
+  private final CollectionTypeRepository repository;
+  private final RevisionCounterRepository counterRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final ObjectMapper objectMapper;
+  private final ObjectProvider<CollectionTypeValidator> validators;
+  private final JPAConfiguration config;
+
+  /**
+   * The known types by id. Replaced as a whole upon refresh.
+   */
+  private volatile Map<String, CollectionType> types = Collections.emptyMap();
+
+  /**
+   * The revision the known types reflect or <code>-1</code> if they haven't been loaded yet.
+   */
+  private volatile long revision = -1;
+
+  private ScheduledExecutorService poller;
+
+  @Autowired
+  public JPACollectionTypeService(final CollectionTypeRepository repository,
+      final RevisionCounterRepository counterRepository, final PlatformTransactionManager transactionManager,
+      final ObjectMapper objectMapper, final ObjectProvider<CollectionTypeValidator> validators,
+      final JPAConfiguration config) {
+    this.repository = repository;
+    this.counterRepository = counterRepository;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.objectMapper = objectMapper;
+    this.validators = validators;
+    this.config = config;
+  }
+
+  /**
+   * Create the revision counter if necessary and start polling for modifications, if enabled.
+   */
+  @PostConstruct
+  public void start() {
+    try {
+      transactionTemplate.execute(status -> counterRepository.findById(REVISION_COUNTER) //
+          .orElseGet(() -> counterRepository.save(new RevisionCounterEntity(REVISION_COUNTER))));
+    } catch (DataIntegrityViolationException e) {
+      // created concurrently by another node
+    }
+
+    if (config.getCollectionTypePollInterval().isZero() || config.getCollectionTypePollInterval().isNegative())
+      return;
+
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("collection-type-poller-");
+    threadFactory.setDaemon(true);
+    poller = Executors.newSingleThreadScheduledExecutor(threadFactory);
+
+    long interval = config.getCollectionTypePollInterval().toMillis();
+    poller.scheduleWithFixedDelay(() -> {
+      try {
+        refresh();
+      } catch (RuntimeException e) {
+        LOGGER.warn("Can't refresh collection types", e);
+      }
+    }, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (null != poller)
+      poller.shutdownNow();
+  }
+
+  @Override
+  public Optional<CollectionType> get(final String id) {
+    return Optional.ofNullable(loaded().get(id));
+  }
+
+  @Override
+  public List<CollectionType> getAllTypes() {
+    return new ArrayList<>(loaded().values());
+  }
+
+  private Map<String, CollectionType> loaded() {
+    if (revision < 0)
+      refresh();
+    return types;
+  }
+
+  /**
+   * Pick up the modifications made since the last refresh. Does nothing but read the revision
+   * counter if there are none.
+   */
+  public synchronized void refresh() {
+    long current = counterRepository.findRevision(REVISION_COUNTER).orElse(0L);
+    if (current == revision)
+      return;
+
+    List<CollectionTypeEntity> modified = revision < 0
+        ? repository.findByDeletedFalse()
+        : repository.findByRevisionGreaterThan(revision);
+
+    Map<String, CollectionType> updated = new TreeMap<>(types);
+    long latest = current;
+    for (CollectionTypeEntity e : modified) {
+      latest = Math.max(latest, e.getRevision());
+      if (e.isDeleted()) {
+        updated.remove(e.getId());
+        continue;
+      }
+
+      try {
+        updated.put(e.getId(), unmarshal(e));
+      } catch (IOException ex) {
+        LOGGER.warn("Can't unmarshal collection type {} - skipping it", e.getId(), ex);
+        updated.remove(e.getId());
+      }
+    }
+
+    types = Collections.unmodifiableMap(updated);
+    revision = latest;
+  }
+
+  private CollectionType unmarshal(final CollectionTypeEntity e) throws IOException {
+    CollectionType t = objectMapper.readValue(e.getDefinition(), CollectionType.class);
+    t.setId(e.getId());
+    return t;
+  }
+
+  @Override
+  public void save(final CollectionType type) {
+    Objects.requireNonNull(type.getId(), "Collection type id");
+    validators.orderedStream().forEach(v -> v.validate(type));
+
+    String definition;
+    try {
+      definition = objectMapper.writeValueAsString(type);
+    } catch (JsonProcessingException e) {
+      throw new NeverpileException("Can't marshal collection type", e);
+    }
+
+    transactionTemplate.execute(status -> {
+      long next = nextRevision();
+      CollectionTypeEntity e = repository.findById(type.getId()).orElseGet(CollectionTypeEntity::new);
+      e.setId(type.getId());
+      e.setRevision(next);
+      e.setDeleted(false);
+      e.setDefinition(definition);
+      return repository.save(e);
+    });
+
+    refresh();
+  }
+
+  @Override
+  public boolean delete(final String id) {
+    boolean deleted = transactionTemplate.execute(status -> {
+      Optional<CollectionTypeEntity> existing = repository.findById(id).filter(e -> !e.isDeleted());
+      if (!existing.isPresent())
+        return false;
+
+      CollectionTypeEntity e = existing.get();
+      e.setRevision(nextRevision());
+      e.setDeleted(true);
+      repository.save(e);
+      return true;
+    });
+
+    refresh();
+    return deleted;
+  }
+
+  /**
+   * Increment the revision counter. Must be called within a transaction, the counter remains locked
+   * until it ends.
+   */
+  private long nextRevision() {
+    RevisionCounterEntity counter = counterRepository.lock(REVISION_COUNTER) //
+        .orElseGet(() -> new RevisionCounterEntity(REVISION_COUNTER));
+
+    counter.setRevision(counter.getRevision() + 1);
+    counterRepository.save(counter);
+    return counter.getRevision();
+  }
+}
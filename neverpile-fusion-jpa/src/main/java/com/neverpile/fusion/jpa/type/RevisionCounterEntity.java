@@ -0,0 +1,42 @@
+package com.neverpile.fusion.jpa.type;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * A named counter incremented upon every modification of the data it guards. Modifications lock the
+ * counter row until they are committed, so that revisions become visible in the order they were
+ * assigned.
+ */
+@Entity
+@Table(name = "revision_counters")
+public class RevisionCounterEntity {
+  @Id
+  private String name;
+
+  private long revision;
+
+  public RevisionCounterEntity() {
+  }
+
+  public RevisionCounterEntity(final String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(final String name) {
+    this.name = name;
+  }
+
+  public long getRevision() {
+    return revision;
+  }
+
+  public void setRevision(final long revision) {
+    this.revision = revision;
+  }
+}
@@ -0,0 +1,22 @@
+package com.neverpile.fusion.jpa.type;
+
+import java.util.Optional;
+
+import javax.persistence.LockModeType;
+
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+
+/**
+ * A spring CRUD repository for revision counters.
+ */
+public interface RevisionCounterRepository extends CrudRepository<RevisionCounterEntity, String> {
+
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select c from RevisionCounterEntity c where c.name = ?1")
+  Optional<RevisionCounterEntity> lock(String name);
+
+  @Query("select c.revision from RevisionCounterEntity c where c.name = ?1")
+  Optional<Long> findRevision(String name);
+}
@@ -1,12 +1,15 @@
 package com.neverpile.fusion.jpa.collection;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.when;
 
 import java.time.Clock;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -15,12 +18,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.api.CollectionSaveResult;
 import com.neverpile.fusion.api.exception.VersionMismatchException;
+import com.neverpile.fusion.jpa.JPAConfiguration;
 import com.neverpile.fusion.configuration.FusionModelMapperConfiguration;
 import com.neverpile.fusion.configuration.JacksonConfiguration;
 import com.neverpile.fusion.model.Collection;
@@ -43,6 +49,12 @@ public class JPACollectionServiceTest {
   @Autowired
   private ObjectMapper objectMapper;
 
+  @Autowired
+  private TestEntityManager entityManager;
+
+  @Autowired
+  private JPAConfiguration config;
+
   @MockBean
   private Clock clock;
   
@@ -96,6 +108,12 @@ public class JPACollectionServiceTest {
     // both versions must exist
     assertThat(collectionService.getVersion(tf.getId(), v1)).isNotEmpty();
     assertThat(collectionService.getVersion(tf.getId(), v2)).isNotEmpty();
+
+    // the current version timestamp is the one of V2
+    assertThat(collectionService.getCurrentVersionTimestamp(tf.getId())).contains(v2);
+    assertThat(collectionService.getCurrentVersionTimestamp("doesNotExist")).isEmpty();
+    assertThat(collectionService.getCurrentVersionTimestamps(Arrays.asList("doesNotExist", tf.getId())))
+        .containsExactly(entry(tf.getId(), v2));
   }    
   
   @Test
@@ -161,6 +179,91 @@ public class JPACollectionServiceTest {
     assertThrows(VersionMismatchException.class, () -> collectionService.save(tf));
   }    
 
+  @Test
+  public void testThat_currentVersionsOfManyCollectionsCanBeRetrieved() {
+    Collection c1 = createTestCollection();
+    c1.setId(UUID.randomUUID().toString());
+    Collection c2 = createTestCollection();
+    c2.setId(UUID.randomUUID().toString());
+
+    Instant v1 = Instant.ofEpochMilli(10);
+    when(clock.instant()).thenReturn(v1);
+    collectionService.save(c1);
+    collectionService.save(c2);
+
+    // a second version of c2
+    Instant v2 = Instant.ofEpochMilli(20);
+    when(clock.instant()).thenReturn(v2);
+    c2.setVersionTimestamp(v1);
+    collectionService.save(c2);
+
+    // make sure the collections are read from the database
+    entityManager.flush();
+    entityManager.clear();
+
+    String missing = UUID.randomUUID().toString();
+    Map<String, Collection> current = collectionService.getCurrent(
+        Arrays.asList(c2.getId(), missing, c1.getId(), c2.getId()));
+
+    assertThat(current.keySet()).containsExactly(c2.getId(), c1.getId());
+    assertThat(current.get(c1.getId()).getVersionTimestamp()).isEqualTo(v1);
+    assertThat(current.get(c2.getId()).getVersionTimestamp()).isEqualTo(v2);
+    verifyTestCollection(current.get(c1.getId()));
+    verifyTestCollection(current.get(c2.getId()));
+  }
+
+  @Test
+  public void testThat_manyCollectionsCanBeSavedAtOnce() {
+    Instant v1 = Instant.ofEpochMilli(10);
+    Instant v2 = Instant.ofEpochMilli(20);
+
+    Collection existing = createTestCollection();
+    existing.setId(UUID.randomUUID().toString());
+    when(clock.instant()).thenReturn(v1);
+    collectionService.save(existing);
+
+    Collection created = createTestCollection();
+    created.setId(UUID.randomUUID().toString());
+
+    Collection updated = createTestCollection();
+    updated.setId(existing.getId());
+    updated.setVersionTimestamp(v1);
+
+    // a new collection must not carry a version
+    Collection notExisting = createTestCollection();
+    notExisting.setId(UUID.randomUUID().toString());
+    notExisting.setVersionTimestamp(v1);
+
+    // v1 is no longer the current version once the update has been saved
+    Collection stale = createTestCollection();
+    stale.setId(existing.getId());
+    stale.setVersionTimestamp(v1);
+
+    int batchSize = config.getBatchSize();
+    config.setBatchSize(2);
+    try {
+      when(clock.instant()).thenReturn(v2);
+      List<CollectionSaveResult> results = collectionService.saveAll(
+          Arrays.asList(created, updated, notExisting, stale));
+
+      assertThat(results).extracting(CollectionSaveResult::isSaved).containsExactly(true, true, false, false);
+      assertThat(results.get(0).getCollection().getVersionTimestamp()).isEqualTo(v2);
+      assertThat(results.get(2).getFailure()).isInstanceOf(VersionMismatchException.class);
+      assertThat(results.get(3).getFailure()).isInstanceOf(VersionMismatchException.class);
+      assertThat(results.get(3).getCollection()).isSameAs(stale);
+    } finally {
+      config.setBatchSize(batchSize);
+    }
+
+    entityManager.flush();
+    entityManager.clear();
+
+    verifyTestCollection(collectionService.getCurrent(created.getId()).orElseThrow());
+    assertThat(collectionService.getCurrentVersionTimestamp(created.getId())).contains(v2);
+    assertThat(collectionService.getVersions(existing.getId())).containsExactly(v1, v2);
+    assertThat(collectionService.getCurrent(notExisting.getId())).isEmpty();
+  }
+
   private Collection createTestCollection() {
     Collection f = new Collection();
     f.setTypeId("aCollectionType");
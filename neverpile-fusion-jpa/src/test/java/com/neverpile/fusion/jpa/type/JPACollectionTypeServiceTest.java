@@ -0,0 +1,174 @@
+package com.neverpile.fusion.jpa.type;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.api.CollectionTypeValidator;
+import com.neverpile.fusion.api.exception.NeverpileException;
+import com.neverpile.fusion.configuration.JacksonConfiguration;
+import com.neverpile.fusion.jpa.JPAConfiguration;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.View;
+import com.neverpile.fusion.model.rules.javascript.JavascriptRule;
+
+@DataJpaTest(properties = "neverpile-fusion.jpa.collection-type-poll-interval=0")
+@EnableAutoConfiguration
+@ContextConfiguration(classes = {
+    JacksonAutoConfiguration.class, JacksonConfiguration.class, JPACollectionTypeServiceConfiguration.class
+})
+public class JPACollectionTypeServiceTest {
+  @Autowired
+  private JPACollectionTypeService configuredTypeService;
+
+  /**
+   * A fresh instance for every test, as the configured one keeps types of previous tests whose
+   * transactions have been rolled back.
+   */
+  private JPACollectionTypeService typeService;
+
+  @Autowired
+  private CollectionTypeRepository repository;
+
+  @Autowired
+  private RevisionCounterRepository counterRepository;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private JPAConfiguration config;
+
+  @BeforeEach
+  public void setup() {
+    typeService = createNode(Collections.emptyMap());
+  }
+
+  @Test
+  public void testThat_typeServiceIsAvailable() {
+    assertThat(configuredTypeService.get("nonexisting")).isEmpty();
+  }
+
+  @Test
+  public void testThat_typeCanBeSavedAndRetrieved() {
+    typeService.save(createType("aType", "A type"));
+
+    CollectionType t = typeService.get("aType").get();
+    assertThat(t.getName()).isEqualTo("A type");
+    assertThat(t.getPermittedTags()).containsExactly("foo", "bar");
+    assertThat(t.getViews()).hasSize(1);
+    assertThat(t.getViews().get(0).getElementRules().get(0)).isInstanceOf(JavascriptRule.class);
+    assertThat(((JavascriptRule) t.getViews().get(0).getElementRules().get(0)).getScriptCode()) //
+        .isEqualTo("createNode('All', element.id).withElement(element);");
+
+    assertThat(typeService.get("nonexisting")).isEmpty();
+  }
+
+  @Test
+  public void testThat_typeCanBeUpdatedAndDeleted() {
+    typeService.save(createType("aType", "A type"));
+    typeService.save(createType("anotherType", "Another type"));
+    typeService.save(createType("aType", "A modified type"));
+
+    assertThat(typeService.get("aType").get().getName()).isEqualTo("A modified type");
+    assertThat(typeService.getAllTypes()).extracting(CollectionType::getId).containsExactly("aType", "anotherType");
+
+    assertThat(typeService.delete("aType")).isTrue();
+    assertThat(typeService.delete("aType")).isFalse();
+    assertThat(typeService.delete("nonexisting")).isFalse();
+
+    assertThat(typeService.get("aType")).isEmpty();
+    assertThat(typeService.getAllTypes()).extracting(CollectionType::getId).containsExactly("anotherType");
+
+    typeService.save(createType("aType", "A resurrected type"));
+    assertThat(typeService.get("aType").get().getName()).isEqualTo("A resurrected type");
+  }
+
+  @Test
+  public void testThat_modificationsOfOtherNodesArePickedUpUponRefresh() {
+    JPACollectionTypeService otherNode = createNode(Collections.emptyMap());
+
+    typeService.save(createType("aType", "A type"));
+    assertThat(otherNode.getAllTypes()).extracting(CollectionType::getId).containsExactly("aType");
+
+    typeService.save(createType("aType", "A modified type"));
+    typeService.save(createType("anotherType", "Another type"));
+    assertThat(otherNode.get("aType").get().getName()).isEqualTo("A type");
+    assertThat(otherNode.get("anotherType")).isEmpty();
+
+    otherNode.refresh();
+    assertThat(otherNode.get("aType").get().getName()).isEqualTo("A modified type");
+    assertThat(otherNode.get("anotherType")).isPresent();
+
+    otherNode.delete("anotherType");
+    typeService.refresh();
+    assertThat(typeService.get("anotherType")).isEmpty();
+  }
+
+  @Test
+  public void testThat_unchangedRevisionKeepsTypes() {
+    typeService.save(createType("aType", "A type"));
+    CollectionType before = typeService.get("aType").get();
+
+    typeService.refresh();
+
+    assertThat(typeService.get("aType").get()).isSameAs(before);
+  }
+
+  @Test
+  public void testThat_invalidTypesAreRejected() {
+    CollectionTypeValidator validator = t -> {
+      if ("Invalid".equals(t.getName()))
+        throw new NeverpileException("Invalid type " + t.getId());
+    };
+    JPACollectionTypeService validating = createNode(Collections.singletonMap("validator", validator));
+
+    assertThatThrownBy(() -> validating.save(createType("anInvalidType", "Invalid"))) //
+        .isInstanceOf(NeverpileException.class) //
+        .hasMessage("Invalid type anInvalidType");
+    assertThat(repository.findById("anInvalidType")).isEmpty();
+  }
+
+  private JPACollectionTypeService createNode(final Map<String, Object> beans) {
+    ObjectProvider<CollectionTypeValidator> validators = new StaticListableBeanFactory(beans) //
+        .getBeanProvider(CollectionTypeValidator.class);
+    return new JPACollectionTypeService(repository, counterRepository, transactionManager, objectMapper, validators,
+        config);
+  }
+
+  private static CollectionType createType(final String id, final String name) {
+    CollectionType t = new CollectionType();
+    t.setId(id);
+    t.setName(name);
+    t.setPermittedTags(Arrays.asList("foo", "bar"));
+
+    JavascriptRule rule = new JavascriptRule();
+    rule.setName("All");
+    rule.setScriptCode("createNode('All', element.id).withElement(element);");
+
+    View v = new View();
+    v.setName("Default");
+    v.getElementRules().add(rule);
+    t.getViews().add(v);
+
+    return t;
+  }
+}